@@ -6,6 +6,8 @@ import org.jbei.ice.lib.config.ConfigurationSettings;
 import org.jbei.ice.lib.entry.sequence.annotation.AutoAnnotationBlastDbBuildTask;
 import org.jbei.ice.lib.executor.IceExecutorService;
 import org.jbei.ice.lib.group.GroupController;
+import org.jbei.ice.lib.search.RebuildLuceneIndexTask;
+import org.jbei.ice.lib.search.blast.BlastExecutor;
 import org.jbei.ice.lib.search.blast.RebuildBlastIndexTask;
 
 /**
@@ -34,6 +36,7 @@ public class ApplicationInitialize {
         // check for and create default settings
         ConfigurationSettings settings = new ConfigurationSettings();
         settings.initPropertyValues();
+        BlastExecutor.getInstance().configure();
 
         try {
             // check blast database exists and build if it doesn't
@@ -42,6 +45,10 @@ public class ApplicationInitialize {
 
             AutoAnnotationBlastDbBuildTask autoAnnotationBlastDbBuildTask = new AutoAnnotationBlastDbBuildTask();
             IceExecutorService.getInstance().runTask(autoAnnotationBlastDbBuildTask);
+
+            // resume interrupted lucene index rebuild
+            if (RebuildLuceneIndexTask.hasCheckpoint())
+                IceExecutorService.getInstance().runTask(new RebuildLuceneIndexTask(true));
         } catch (Exception e) {
             Logger.error(e);
         }
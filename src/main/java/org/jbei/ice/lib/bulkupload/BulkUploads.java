@@ -14,12 +14,14 @@ import org.jbei.ice.lib.entry.attachment.Attachments;
 import org.jbei.ice.lib.entry.sequence.PartSequence;
 import org.jbei.ice.lib.executor.IceExecutorService;
 import org.jbei.ice.lib.group.GroupController;
+import org.jbei.ice.lib.search.blast.ExactSequenceSearch;
 import org.jbei.ice.lib.utils.Utils;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.ModelToInfoFactory;
 import org.jbei.ice.storage.hibernate.dao.BulkUploadDAO;
 import org.jbei.ice.storage.hibernate.dao.EntryDAO;
 import org.jbei.ice.storage.hibernate.dao.SequenceDAO;
+import org.jbei.ice.storage.hibernate.search.AutoCompleteIndex;
 import org.jbei.ice.storage.model.*;
 
 import java.io.ByteArrayInputStream;
@@ -455,7 +457,18 @@ public class BulkUploads {
         PartSequence partSequence = new PartSequence(userId, Long.toString(entryId));
         try {
             ByteArrayInputStream inputStream = new ByteArrayInputStream(sequenceString.getBytes(StandardCharsets.UTF_8));
-            return partSequence.parseSequenceFile(inputStream, fileName, false);
+            SequenceInfo sequenceInfo = partSequence.parseSequenceFile(inputStream, fileName, false);
+
+            // flag existing entries with the same sequence
+            if (sequenceInfo != null && sequenceInfo.getSequence() != null
+                    && !StringUtils.isEmpty(sequenceInfo.getSequence().getSequence())) {
+                List<Entry> matches = new ExactSequenceSearch().getMatchingEntries(sequenceInfo.getSequence().getSequence());
+                for (Entry match : matches) {
+                    if (match.getId() != entryId)
+                        sequenceInfo.getDuplicates().add(match.getPartNumber());
+                }
+            }
+            return sequenceInfo;
         } catch (IOException e) {
             Logger.error(e);
             return null;
@@ -619,6 +632,7 @@ public class BulkUploads {
             compatibleTypes.add(EntryType.PLASMID.getName());
 
         token = token.replaceAll("'", "");
-        return new ArrayList<>(DAOFactory.getEntryDAO().getMatchingEntryPartNumbers(token, limit, compatibleTypes));
+        return new ArrayList<>(AutoCompleteIndex.getInstance().getMatches(AutoCompleteField.PART_NUMBER, token, limit,
+                compatibleTypes));
     }
 }
@@ -7,6 +7,7 @@ import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.ConfigurationKey;
 import org.jbei.ice.lib.dto.Setting;
 import org.jbei.ice.lib.net.WoRController;
+import org.jbei.ice.lib.search.blast.BlastExecutor;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.hibernate.dao.ConfigurationDAO;
 import org.jbei.ice.storage.model.Configuration;
@@ -114,6 +115,12 @@ public class ConfigurationSettings {
             woRController.setEnable(userId, enable, url);
         }
 
+        // blast search limits
+        if (key == ConfigurationKey.BLAST_MAX_CONCURRENT_SEARCHES || key == ConfigurationKey.BLAST_MAX_QUEUED_SEARCHES
+                || key == ConfigurationKey.BLAST_SEARCH_TIMEOUT) {
+            BlastExecutor.getInstance().configure();
+        }
+
         return configuration.toDataTransferObject();
     }
 
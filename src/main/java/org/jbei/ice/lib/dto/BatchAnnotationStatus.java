@@ -0,0 +1,106 @@
+package org.jbei.ice.lib.dto;
+
+import org.jbei.ice.storage.IDataTransferModel;
+
+/**
+ * Progress of a batch auto annotation job
+ */
+public class BatchAnnotationStatus implements IDataTransferModel {
+
+    private final String id;
+    private final String status;
+    private final boolean apply;
+    private final int total;
+    private final int processed;
+    private final int annotated;
+    private final int featureCount;
+    private final int skipped;
+    private final int failed;
+    private final String resultFileId;
+
+    public BatchAnnotationStatus(String id, String status, boolean apply, int total, int processed, int annotated,
+                                 int featureCount, int skipped, int failed, String resultFileId) {
+        this.id = id;
+        this.status = status;
+        this.apply = apply;
+        this.total = total;
+        this.processed = processed;
+        this.annotated = annotated;
+        this.featureCount = featureCount;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.resultFileId = resultFileId;
+    }
+
+    /**
+     * @return unique identifier for the job
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * @return status of the job task
+     */
+    public String getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return true if the annotations are added to the entries, false if they are only proposed
+     */
+    public boolean isApply() {
+        return this.apply;
+    }
+
+    /**
+     * @return number of entries selected for annotation
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * @return number of entries processed so far
+     */
+    public int getProcessed() {
+        return this.processed;
+    }
+
+    /**
+     * @return number of entries with at least one matching feature
+     */
+    public int getAnnotated() {
+        return this.annotated;
+    }
+
+    /**
+     * @return number of annotations added (or proposed)
+     */
+    public int getFeatureCount() {
+        return this.featureCount;
+    }
+
+    /**
+     * @return number of entries that were not annotated since they have no sequence or the user does not have the
+     * required access to them
+     */
+    public int getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * @return number of entries that could not be processed because of an error
+     */
+    public int getFailed() {
+        return this.failed;
+    }
+
+    /**
+     * @return identifier of the temporary file with the proposed annotations (available once the job completes),
+     * if the annotations are not applied
+     */
+    public String getResultFileId() {
+        return this.resultFileId;
+    }
+}
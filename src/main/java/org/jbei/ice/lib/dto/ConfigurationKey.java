@@ -26,6 +26,9 @@ public enum ConfigurationKey implements IDataTransferModel {
     PART_NUMBER_DELIMITER("_"),
 
     BLAST_INSTALL_DIR(""),
+    BLAST_MAX_CONCURRENT_SEARCHES("4"),
+    BLAST_MAX_QUEUED_SEARCHES("20"),
+    BLAST_SEARCH_TIMEOUT("300"),        // seconds
 
     ADD_TO_CART_DEFAULT_SET_TO_LOCAL("YES"),
     NEW_REGISTRATION_ALLOWED("NO"),
@@ -14,6 +14,7 @@ public class Results<T extends IDataTransferModel> implements IDataTransferModel
 
     private long resultCount;
     private List<T> data;
+    private String nextCursor;
 
     public Results() {
         this.data = new ArrayList<>();
@@ -37,4 +38,16 @@ public class Results<T extends IDataTransferModel> implements IDataTransferModel
     public void setData(List<T> data) {
         this.data = new ArrayList<>(data);
     }
+
+    /**
+     * @return cursor for retrieving the page following this one when using cursor paging.
+     * null if cursor paging was not requested or there are no more results
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
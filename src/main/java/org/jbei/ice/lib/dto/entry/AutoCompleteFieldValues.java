@@ -1,10 +1,8 @@
 package org.jbei.ice.lib.dto.entry;
 
-import org.jbei.ice.storage.DAOFactory;
-import org.jbei.ice.storage.hibernate.dao.EntryDAO;
+import org.jbei.ice.storage.hibernate.search.AutoCompleteIndex;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -15,7 +13,6 @@ import java.util.List;
 public class AutoCompleteFieldValues {
 
     private final AutoCompleteField autoCompleteField;
-    private final EntryDAO entryDAO;
 
     /**
      * Each instance of this object is tied to a specified field
@@ -24,7 +21,6 @@ public class AutoCompleteFieldValues {
      */
     public AutoCompleteFieldValues(String field) {
         this.autoCompleteField = AutoCompleteField.valueOf(field);
-        this.entryDAO = DAOFactory.getEntryDAO();
     }
 
     /**
@@ -39,35 +35,6 @@ public class AutoCompleteFieldValues {
             return new ArrayList<>();
 
         token = token.replaceAll("'", "");
-        List<String> results;
-        switch (this.autoCompleteField) {
-            case SELECTION_MARKERS:
-                results = DAOFactory.getSelectionMarkerDAO().getMatchingSelectionMarkers(token, limit);
-                break;
-
-            case ORIGIN_OF_REPLICATION:
-            case PROMOTERS:
-            case REPLICATES_IN:
-                results = entryDAO.getMatchingPlasmidField(this.autoCompleteField, token, limit);
-                break;
-
-            case PART_NUMBER:
-                results = entryDAO.getMatchingEntryPartNumbers(token, limit, null);
-                break;
-
-            default:
-                return new ArrayList<>();
-        }
-
-        // process to remove commas
-        HashSet<String> individualResults = new HashSet<>();
-        for (String result : results) {
-            for (String split : result.split(",")) {
-                if (!split.toLowerCase().contains(token.toLowerCase()))
-                    continue;
-                individualResults.add(split.trim());
-            }
-        }
-        return new ArrayList<>(individualResults);
+        return AutoCompleteIndex.getInstance().getMatches(this.autoCompleteField, token, limit, null);
     }
 }
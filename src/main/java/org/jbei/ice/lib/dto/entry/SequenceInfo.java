@@ -4,6 +4,8 @@ import org.jbei.ice.lib.dto.DNASequence;
 import org.jbei.ice.lib.entry.sequence.SequenceFormat;
 import org.jbei.ice.storage.IDataTransferModel;
 
+import java.util.ArrayList;
+
 /**
  * Data transfer object for sequence
  *
@@ -16,6 +18,7 @@ public class SequenceInfo implements IDataTransferModel {
     private DNASequence sequence;
     private long entryId;
     private SequenceFormat format;
+    private ArrayList<String> duplicates = new ArrayList<>();
 
     public String getFilename() {
         return filename;
@@ -56,4 +59,15 @@ public class SequenceInfo implements IDataTransferModel {
     public void setFormat(SequenceFormat format) {
         this.format = format;
     }
+
+    /**
+     * @return part numbers of existing entries that have the same sequence (or its reverse complement)
+     */
+    public ArrayList<String> getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(ArrayList<String> duplicates) {
+        this.duplicates = duplicates;
+    }
 }
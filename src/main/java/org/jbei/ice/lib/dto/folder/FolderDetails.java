@@ -23,6 +23,7 @@ public class FolderDetails extends AbstractFolder {
     private FolderDetails parent;
     private RegistryPartner remotePartner;
     private SampleRequest sampleRequest;
+    private String nextCursor;
 
     public FolderDetails() {
         super();
@@ -123,4 +124,16 @@ public class FolderDetails extends AbstractFolder {
     public void setSampleRequest(SampleRequest sampleRequest) {
         this.sampleRequest = sampleRequest;
     }
+
+    /**
+     * @return cursor for retrieving the page of entries following the current one, when using cursor paging.
+     * null if cursor paging was not requested or there are no more entries
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -13,6 +13,7 @@ public class BlastQuery implements IDataTransferModel {
 
     private BlastProgram blastProgram;
     private String sequence;
+    private boolean exactMatch;
 
     // required no arg constructor
     public BlastQuery() {
@@ -34,4 +35,16 @@ public class BlastQuery implements IDataTransferModel {
     public void setSequence(String sequence) {
         this.sequence = sequence;
     }
+
+    /**
+     * @return true if only entries with sequences identical to the query (or its reverse complement) are to be
+     * returned, without running a similarity search
+     */
+    public boolean isExactMatch() {
+        return exactMatch;
+    }
+
+    public void setExactMatch(boolean exactMatch) {
+        this.exactMatch = exactMatch;
+    }
 }
@@ -97,6 +97,8 @@ public class SearchQuery implements IDataTransferModel {
         private boolean hasSequence;
         private boolean hasAttachment;
         private boolean hasSample;
+        private String cursor;
+        private boolean retrieveFacets;
 
         public Parameters() {
             start = 0;
@@ -160,5 +162,29 @@ public class SearchQuery implements IDataTransferModel {
         public void setRetrieveCount(int retrieveCount) {
             this.retrieveCount = retrieveCount;
         }
+
+        /**
+         * @return cursor (returned with a previous page of results) for the page to retrieve. If set, it is used
+         * instead of <code>start</code>
+         */
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * @return whether to include the counts of results for each record type, status, bio-safety level and
+         * has sequence/sample/attachment value with the results
+         */
+        public boolean isRetrieveFacets() {
+            return retrieveFacets;
+        }
+
+        public void setRetrieveFacets(boolean retrieveFacets) {
+            this.retrieveFacets = retrieveFacets;
+        }
     }
 }
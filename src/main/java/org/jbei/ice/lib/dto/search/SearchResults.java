@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Wrapper around a list of search results which also contains information about the search.
@@ -21,6 +22,8 @@ public class SearchResults implements IDataTransferModel {
     private long resultCount;
     private LinkedList<SearchResult> results;
     private SearchQuery query;
+    private String nextCursor;
+    private Map<String, Map<String, Long>> facets;
 
     public SearchResults() {
         results = new LinkedList<>();
@@ -57,6 +60,32 @@ public class SearchResults implements IDataTransferModel {
         this.query = query;
     }
 
+    /**
+     * @return cursor for retrieving the page of results following this one, or null if there are no more results
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Counts of results for each value of the facet fields (<code>recordType</code>, <code>status</code>,
+     * <code>bioSafetyLevel</code>, <code>hasSequence</code>, <code>hasSample</code> and <code>hasAttachment</code>).
+     * Only the results that have a sequence, sample or attachment are counted (as "true") for the latter
+     *
+     * @return map of facet field to counts of results by value. null if facets were not requested
+     */
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Long>> facets) {
+        this.facets = facets;
+    }
+
     public static void sort(ColumnField sortField, LinkedList<SearchResult> results) {
         Comparator<SearchResult> comparator;
         switch (sortField) {
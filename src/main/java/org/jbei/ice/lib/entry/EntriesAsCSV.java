@@ -11,6 +11,7 @@ import org.jbei.ice.lib.dto.entry.PartData;
 import org.jbei.ice.lib.entry.sequence.InputStreamWrapper;
 import org.jbei.ice.lib.entry.sequence.PartSequence;
 import org.jbei.ice.lib.entry.sequence.SequenceFormat;
+import org.jbei.ice.lib.entry.sequence.SequenceOutput;
 import org.jbei.ice.lib.group.GroupController;
 import org.jbei.ice.lib.utils.Utils;
 import org.jbei.ice.storage.DAOFactory;
@@ -226,8 +227,9 @@ public class EntriesAsCSV {
             // get sequence formats
             for (long entryId : sequenceSet) {
                 for (String format : formats) {
-                    InputStreamWrapper wrapper = new PartSequence(userId, Long.toString(entryId)).toFile(SequenceFormat.fromString(format));
-                    putZipEntry(wrapper, zos);
+                    SequenceOutput output = new PartSequence(userId, Long.toString(entryId)).toStream(SequenceFormat.fromString(format));
+                    if (output != null)
+                        putZipEntry(output.getName(), output, zos);
                 }
             }
 
@@ -258,6 +260,17 @@ public class EntriesAsCSV {
         }
     }
 
+    // writes the sequence file directly to the zip file
+    private void putZipEntry(String name, SequenceOutput output, ZipOutputStream zos) {
+        try {
+            zos.putNextEntry(new ZipEntry(name));
+            output.write(zos);
+            zos.closeEntry();
+        } catch (Exception e) {
+            Logger.error(e);
+        }
+    }
+
     private EntryField[] getEntryFields() {
         Set<String> recordTypes = new HashSet<>(dao.getRecordTypes(entries));
         List<EntryField> fields = EntryFields.getCommonFields();
@@ -312,14 +325,13 @@ public class EntriesAsCSV {
                 }
 
                 // get the sequence
-                InputStreamWrapper wrapper = new PartSequence(userId, Long.toString(entryId)).toFile(format);
-                if (wrapper == null) {
+                SequenceOutput output = new PartSequence(userId, Long.toString(entryId)).toStream(format);
+                if (output == null) {
                     Logger.error("ERROR : no sequence " + entryId);
                     continue;
                 }
 
-                wrapper.setName(entry.getPartNumber() + File.separatorChar + wrapper.getName());
-                putZipEntry(wrapper, zos);
+                putZipEntry(entry.getPartNumber() + File.separatorChar + output.getName(), output, zos);
             }
             this.includeSequences = false;
             writeList(selection.getFields().toArray(new EntryField[0]));
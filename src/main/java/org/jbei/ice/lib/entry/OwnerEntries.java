@@ -10,7 +10,6 @@ import org.jbei.ice.storage.hibernate.dao.EntryDAO;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Group;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -72,13 +71,7 @@ public class OwnerEntries {
                     accountGroups, sort, asc, start, limit, filter);
         }
 
-        ArrayList<PartData> data = new ArrayList<>();
-        for (Long id : entries) {
-            PartData info = ModelToInfoFactory.createTableView(id, fields);
-            data.add(info);
-        }
-
-        return data;
+        return ModelToInfoFactory.createTableViews(entries, fields);
     }
 
     public long getNumberOfOwnerEntries() {
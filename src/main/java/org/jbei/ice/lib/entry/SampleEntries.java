@@ -8,7 +8,6 @@ import org.jbei.ice.storage.ModelToInfoFactory;
 import org.jbei.ice.storage.hibernate.dao.FolderDAO;
 import org.jbei.ice.storage.model.Account;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,12 +33,6 @@ public class SampleEntries {
 
     public List<PartData> get(ColumnField field, boolean asc, int start, int limit, String filter, List<String> fields) {
         List<Long> entries = this.dao.getEntrysByFolderType(FolderType.SAMPLE, field, asc, start, limit, filter);
-
-        ArrayList<PartData> data = new ArrayList<>();
-        for (Long entry : entries) {
-            PartData info = ModelToInfoFactory.createTableView(entry, fields);
-            data.add(info);
-        }
-        return data;
+        return ModelToInfoFactory.createTableViews(entries, fields);
     }
 }
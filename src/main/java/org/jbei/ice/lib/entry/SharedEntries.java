@@ -5,11 +5,12 @@ import org.jbei.ice.lib.group.GroupController;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.ModelToInfoFactory;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.hibernate.dao.EntryDAO;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Group;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -45,12 +46,22 @@ public class SharedEntries {
         Set<Group> accountGroups = account.getGroups();
         accountGroups.remove(publicGroup);
         List<Long> entries = this.entryDAO.sharedWithUserEntries(account, accountGroups, field, asc, start, limit, filter);
+        return ModelToInfoFactory.createTableViews(entries, fields);
+    }
 
-        ArrayList<PartData> data = new ArrayList<>();
-        for (Long id : entries) {
-            PartData info = ModelToInfoFactory.createTableView(id, fields);
-            data.add(info);
-        }
-        return data;
+    /**
+     * Retrieves the page of shared entries following the specified cursor
+     *
+     * @param cursor position of the page; also specifies the sort
+     * @param limit  maximum number of entries to retrieve
+     * @param filter optional filter text
+     * @return ids of the entries in the page
+     */
+    public List<Long> getEntryIds(PageCursor cursor, int limit, String filter) {
+        GroupController groupController = new GroupController();
+        Group publicGroup = groupController.createOrRetrievePublicGroup();
+        Set<Group> accountGroups = new HashSet<>(account.getGroups());
+        accountGroups.remove(publicGroup);
+        return this.entryDAO.sharedWithUserEntries(account, accountGroups, cursor, limit, filter);
     }
 }
@@ -5,11 +5,11 @@ import org.jbei.ice.lib.group.GroupController;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.ModelToInfoFactory;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.hibernate.dao.EntryDAO;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Group;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -51,13 +51,29 @@ public class VisibleEntries {
             resultIds = dao.retrieveVisibleEntries(account, accountGroups, field, asc, start, limit, filter);
         }
 
-        ArrayList<PartData> data = new ArrayList<>();
-        for (Long id : resultIds) {
-            PartData info = ModelToInfoFactory.createTableView(id, fields);
-            data.add(info);
+        return ModelToInfoFactory.createTableViews(resultIds, fields);
+    }
+
+    /**
+     * Retrieves the page of visible entries following the specified cursor
+     *
+     * @param cursor position of the page; also specifies the sort
+     * @param limit  maximum number of entries to retrieve
+     * @param filter optional filter text
+     * @return ids of the entries in the page
+     */
+    public List<Long> getEntryIds(PageCursor cursor, int limit, String filter) {
+        List<Long> resultIds;
+
+        if (isAdmin) {
+            resultIds = dao.retrieveAllEntryIds(cursor, limit, filter);
+        } else {
+            Set<Group> accountGroups = new HashSet<>(account.getGroups());
+            accountGroups.add(everybodyGroup);
+            resultIds = dao.retrieveVisibleEntries(account, accountGroups, cursor, limit, filter);
         }
 
-        return data;
+        return resultIds;
     }
 
     /**
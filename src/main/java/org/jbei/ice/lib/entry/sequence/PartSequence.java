@@ -3,6 +3,7 @@ package org.jbei.ice.lib.entry.sequence;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.ConfigurationKey;
 import org.jbei.ice.lib.dto.FeaturedDNASequence;
@@ -25,16 +26,18 @@ import org.jbei.ice.lib.parsers.genbank.GenBankParser;
 import org.jbei.ice.lib.parsers.sbol.SBOLParser;
 import org.jbei.ice.lib.search.blast.Action;
 import org.jbei.ice.lib.search.blast.RebuildBlastIndexTask;
+import org.jbei.ice.lib.utils.Utils;
 import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
 import org.jbei.ice.storage.hibernate.dao.FeatureDAO;
 import org.jbei.ice.storage.hibernate.dao.SequenceDAO;
 import org.jbei.ice.storage.hibernate.dao.SequenceFeatureDAO;
 import org.jbei.ice.storage.model.*;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -270,6 +273,7 @@ public class PartSequence {
             }
         }
 
+        SequenceFileCache.getInstance().invalidate(this.entry.getId());
         scheduleBlastIndexRebuildTask(Action.CREATE, sequence.getEntry().getPartNumber());
         return sequence;
     }
@@ -327,6 +331,8 @@ public class PartSequence {
             // rebuild the trace sequence alignments // todo : this might not be needed for all updates
             rebuildTraceAlignments();
 
+            SequenceFileCache.getInstance().invalidate(this.entry.getId());
+
             // rebuild blast
             scheduleBlastIndexRebuildTask(Action.UPDATE, this.entry.getPartNumber());
         } else {
@@ -343,6 +349,7 @@ public class PartSequence {
         sequence.setEntry(null);
         sequence.setSequenceFeatures(null);
         sequenceDAO.delete(sequence);
+        SequenceFileCache.getInstance().invalidate(this.entry.getId());
         scheduleBlastIndexRebuildTask(Action.DELETE, this.entry.getPartNumber());
     }
 
@@ -511,75 +518,135 @@ public class PartSequence {
     }
 
     /**
-     * Convert sequence to a byte array of the specified format with the intention of being written to a file
+     * Retrieve the sequence in the specified format, to be written to a file (or response) as it is formatted.
+     * The sequence and its features are loaded when this is called; the file is only formatted when it is written
+     * to an output stream, and is streamed, so the memory used does not depend on the size of the file
+     * <p>
+     * Converted files are cached (see {@link SequenceFileCache}) by the version of the entry, sequence and features,
+     * in which case neither the sequence nor its features are loaded (unless the cached file is discarded before it is
+     * written)
      *
      * @param format specified format for sequence conversion
-     * @return wrapper around the outputstream for the converted format and name
+     * @return writer of the converted format and name of the file, or null if the entry has no sequence or the
+     * sequence cannot be converted
      */
-    public InputStreamWrapper toFile(SequenceFormat format) {
+    public SequenceOutput toStream(SequenceFormat format) {
         entryAuthorization.expectRead(userId, entry);
-        Sequence sequence = sequenceDAO.getByEntry(entry);
-        if (sequence == null)
+        Optional<Object[]> version = sequenceDAO.getSequenceVersion(entry);
+        if (!version.isPresent())
             return null;
 
         // if requested format is the same as the original format (if original exist) then get the original instead
-        if (sequence.getFormat() == format && DAOFactory.getSequenceDAO().hasOriginalSequence(entry.getId()))
+        if (version.get()[2] == format && sequenceDAO.hasOriginalSequence(entry.getId()))
             format = SequenceFormat.ORIGINAL;
 
-        String name;
-        String sequenceString;
+        // original sequence files are already stored as files
+        if (format == SequenceFormat.ORIGINAL)
+            return toStream(sequenceDAO.getByEntry(entry), format);
+
+        SequenceFileCache cache = SequenceFileCache.getInstance();
+        String key = SequenceFileCache.getKey(entry.getId(), format, getVersionHash(version.get()));
+        long sequenceId = (Long) version.get()[0];
+        SequenceFormat cachedFormat = format;
+        SequenceOutput output = cache.get(key, outputStream -> write(sequenceId, cachedFormat, outputStream));
+        if (output != null)
+            return output;
+
+        output = toStream(sequenceDAO.getByEntry(entry), format);
+        return output == null ? null : cache.cache(key, entry.getId(), output);
+    }
+
+    // formats the sequence again (in a new session, since the output is written after the session of the request is
+    // closed) for a cached file that is discarded before it is written
+    private void write(long sequenceId, SequenceFormat format, OutputStream outputStream) throws IOException {
+        try (Session session = HibernateUtil.newSession()) {
+            SequenceOutput output = toStream(session.get(Sequence.class, sequenceId), format);
+            if (output == null)
+                throw new IOException("Could not generate " + format.name() + " file for sequence " + sequenceId);
+            output.write(outputStream);
+        }
+    }
+
+    // hash of the values that the converted files depend on; the entry, the sequence and the feature locations
+    private String getVersionHash(Object[] sequenceVersion) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(entry.getName()).append('\t')
+                .append(entry.getModificationTime() == null ? "" : entry.getModificationTime().getTime()).append('\t')
+                .append(entry instanceof Plasmid && Boolean.TRUE.equals(((Plasmid) entry).getCircular())).append('\t')
+                .append(sequenceVersion[0]).append('\t').append(sequenceVersion[1]);
+        for (Object[] row : sequenceFeatureDAO.getFeatureLocations(entry)) {
+            builder.append('\n');
+            for (Object value : row)
+                builder.append(value).append('\t');
+        }
+        return Utils.encryptSHA(builder.toString());
+    }
+
+    private SequenceOutput toStream(Sequence sequence, SequenceFormat format) {
+        if (sequence == null)
+            return null;
 
         try {
             switch (format) {
                 case ORIGINAL:
-                    sequenceString = sequence.getSequenceUser();
-                    name = sequence.getFileName();
+                    String sequenceString = StringUtils.defaultString(sequence.getSequenceUser());
+                    String name = sequence.getFileName();
                     if (StringUtils.isEmpty(name))
                         name = entry.getPartNumber() + ".gb";
                     try {
                         SequenceFile sequenceFile = new SequenceFile(sequenceString);
-                        return new InputStreamWrapper(sequenceFile.getStream(), name);
+                        return new SequenceOutput(name, outputStream -> {
+                            try (InputStream inputStream = sequenceFile.getStream()) {
+                                IOUtils.copy(inputStream, outputStream);
+                            }
+                        });
                     } catch (Exception e) {
                         Logger.error(e.getMessage());
-                        break;
+                        return new SequenceOutput(name, outputStream -> outputStream.write(sequenceString.getBytes()));
                     }
 
                 case GENBANK:
                 default:
                     GenbankFormatter genbankFormatter = new GenbankFormatter(entry.getName());
-                    genbankFormatter.setCircular((entry instanceof Plasmid) ? ((Plasmid) entry).getCircular() : false);
-                    sequenceString = compose(sequence, genbankFormatter);
-                    name = entry.getPartNumber() + ".gb";
-                    break;
+                    genbankFormatter.setCircular((entry instanceof Plasmid)
+                            && Boolean.TRUE.equals(((Plasmid) entry).getCircular()));
+                    loadFeatures(sequence);
+                    return new SequenceOutput(entry.getPartNumber() + ".gb",
+                            outputStream -> genbankFormatter.format(sequence, outputStream));
 
                 case FASTA:
                     FastaFormatter formatter = new FastaFormatter();
-                    sequenceString = compose(sequence, formatter);
-                    name = entry.getPartNumber() + ".fa";
-                    break;
+                    return new SequenceOutput(entry.getPartNumber() + ".fa",
+                            outputStream -> formatter.format(sequence, outputStream));
 
                 case SBOL1:
-                    sequenceString = compose(sequence, new SBOLFormatter());
-                    name = entry.getPartNumber() + ".xml";
-                    break;
+                    byte[] sbol = compose(sequence, new SBOLFormatter()).getBytes();
+                    return new SequenceOutput(entry.getPartNumber() + ".xml", outputStream -> outputStream.write(sbol));
 
                 case SBOL2:
-                    sequenceString = compose(sequence, new SBOL2Formatter());
-                    name = entry.getPartNumber() + ".xml";
-                    break;
+                    byte[] sbol2 = compose(sequence, new SBOL2Formatter()).getBytes();
+                    return new SequenceOutput(entry.getPartNumber() + ".xml", outputStream -> outputStream.write(sbol2));
 
                 case GFF3:
-                    sequenceString = compose(sequence, new GFF3Formatter());
-                    name = entry.getPartNumber() + ".gff3";
-                    break;
+                    GFF3Formatter gff3Formatter = new GFF3Formatter();
+                    loadFeatures(sequence);
+                    return new SequenceOutput(entry.getPartNumber() + ".gff3",
+                            outputStream -> gff3Formatter.format(sequence, outputStream));
             }
         } catch (Exception e) {
             Logger.error("Failed to generate " + format.name() + " file for download!", e);
             return null;
         }
+    }
+
+    // loads the (lazy) features of the sequence, and their locations, so that they are available to a formatter
+    // after the session is closed
+    private void loadFeatures(Sequence sequence) {
+        if (sequence.getSequenceFeatures() == null)
+            return;
 
-        ByteArrayInputStream stream = new ByteArrayInputStream(sequenceString.getBytes());
-        return new InputStreamWrapper(stream, name);
+        for (SequenceFeature sequenceFeature : sequence.getSequenceFeatures())
+            sequenceFeature.getAnnotationLocations().size();
     }
 
     /**
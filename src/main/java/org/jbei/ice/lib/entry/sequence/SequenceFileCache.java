@@ -0,0 +1,242 @@
+package org.jbei.ice.lib.entry.sequence;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.ConfigurationKey;
+import org.jbei.ice.lib.utils.Utils;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disk backed cache of formatted sequence files, so that sequences that are downloaded repeatedly are not formatted
+ * for every download. Files are keyed by entry, format and a hash of the version of the sequence and its features
+ * (see {@link #getKey(long, SequenceFormat, String)}) and are written to the cache while they are first streamed
+ * (see {@link #cache(String, long, SequenceOutput)}). Cached files are copied to the output with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * <p>
+ * The least recently used files are discarded once the total size of the files exceeds the maximum size. The files
+ * of an entry are discarded when its sequence is saved, updated or deleted. The cache is cleared on start-up since the
+ * index of the files is only kept in memory
+ */
+class SequenceFileCache {
+
+    private static final String CACHE_DIRECTORY = "sequence-cache";
+    private static final long MAX_SIZE = 512L * 1024 * 1024;
+    private static SequenceFileCache instance;
+
+    private final Path directory;
+    private final long maxSize;
+    private final Map<String, CachedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long generation;
+
+    static synchronized SequenceFileCache getInstance() {
+        if (instance == null) {
+            Path directory = Paths.get(Utils.getConfigValue(ConfigurationKey.DATA_DIRECTORY), CACHE_DIRECTORY);
+            instance = new SequenceFileCache(directory, MAX_SIZE);
+        }
+        return instance;
+    }
+
+    // replaces the cache, e.g. with a cache in a temporary directory
+    static synchronized void setInstance(SequenceFileCache cache) {
+        instance = cache;
+    }
+
+    /**
+     * @param directory directory for the cached files. Any existing contents are deleted
+     * @param maxSize   maximum total size (in bytes) of the cached files
+     */
+    SequenceFileCache(Path directory, long maxSize) {
+        this.maxSize = maxSize;
+        Path cacheDirectory = directory;
+        try {
+            FileUtils.deleteDirectory(directory.toFile());
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            Logger.error("Could not create sequence file cache directory " + directory, e);
+            cacheDirectory = null;
+        }
+        this.directory = cacheDirectory;
+    }
+
+    /**
+     * Creates the cache key (which is also the name of the cached file) for a formatted sequence
+     *
+     * @param entryId unique identifier for entry
+     * @param format  format of file
+     * @param version hash of the version of the sequence and its features
+     * @return cache key
+     */
+    static String getKey(long entryId, SequenceFormat format, String version) {
+        return entryId + "-" + format.name().toLowerCase() + "-" + version;
+    }
+
+    /**
+     * Retrieves a cached file. The file is only opened when the output is written; if it has been discarded from the
+     * cache by then, the file is formatted again with the fallback (and cached again)
+     *
+     * @param key      cache key for file
+     * @param fallback writer that formats the file again if it is discarded from the cache before it is written
+     * @return output for the cached file, or null if the file is not cached
+     */
+    synchronized SequenceOutput get(String key, SequenceOutput.Content fallback) {
+        CachedFile cached = files.get(key);
+        if (cached == null)
+            return null;
+
+        return new SequenceOutput(cached.name, outputStream -> {
+            FileChannel channel = open(key);
+            if (channel == null) {
+                cache(key, cached.entryId, new SequenceOutput(cached.name, fallback)).write(outputStream);
+                return;
+            }
+
+            try (FileChannel fileChannel = channel) {
+                transfer(fileChannel, outputStream);
+            }
+        });
+    }
+
+    /**
+     * Wraps a sequence output so that the file is also written to the cache when it is written to an output stream.
+     * The file is not cached if the files of the entry are discarded before it is completely written
+     *
+     * @param key     cache key for file
+     * @param entryId unique identifier for entry of the file
+     * @param output  output to cache
+     * @return output that writes to the cache, or the output if the cache is not available
+     */
+    SequenceOutput cache(String key, long entryId, SequenceOutput output) {
+        if (directory == null)
+            return output;
+
+        long startGeneration = getGeneration();
+        return new SequenceOutput(output.getName(), outputStream -> {
+            Path tempFile = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (OutputStream fileStream = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                    output.write(new TeeOutputStream(outputStream, fileStream));
+                }
+                put(key, entryId, output.getName(), startGeneration, tempFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        });
+    }
+
+    /**
+     * Discards the cached files of an entry
+     *
+     * @param entryId unique identifier for entry
+     */
+    synchronized void invalidate(long entryId) {
+        generation += 1;
+        Iterator<Map.Entry<String, CachedFile>> iterator = files.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedFile> entry = iterator.next();
+            if (entry.getValue().entryId != entryId)
+                continue;
+
+            iterator.remove();
+            delete(entry.getValue());
+        }
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    // moves a written file into the cache and discards the least recently used files while the cache is too large
+    private synchronized void put(String key, long entryId, String name, long startGeneration, Path tempFile)
+            throws IOException {
+        if (startGeneration != generation || files.containsKey(key))
+            return;
+
+        long fileSize = Files.size(tempFile);
+        if (fileSize > maxSize)
+            return;
+
+        Path path = directory.resolve(key);
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+        files.put(key, new CachedFile(entryId, name, path, fileSize));
+        size += fileSize;
+
+        Iterator<Map.Entry<String, CachedFile>> iterator = files.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            CachedFile eldest = iterator.next().getValue();
+            iterator.remove();
+            delete(eldest);
+        }
+    }
+
+    // opens a cached file; an open file can still be read if it is discarded. returns null if it is not cached
+    private synchronized FileChannel open(String key) {
+        CachedFile cached = files.get(key);
+        if (cached == null)
+            return null;
+
+        try {
+            return FileChannel.open(cached.path);
+        } catch (IOException e) {
+            Logger.error(e);
+            remove(key);
+            return null;
+        }
+    }
+
+    private void remove(String key) {
+        CachedFile cached = files.remove(key);
+        if (cached != null)
+            delete(cached);
+    }
+
+    private void delete(CachedFile cached) {
+        size -= cached.size;
+        try {
+            Files.deleteIfExists(cached.path);
+        } catch (IOException e) {
+            Logger.error(e);
+        }
+    }
+
+    // copies the file to the output stream; directly (without copying the file into memory) if it is a file stream
+    private static void transfer(FileChannel channel, OutputStream outputStream) throws IOException {
+        outputStream.flush();
+        WritableByteChannel target = outputStream instanceof FileOutputStream
+                ? ((FileOutputStream) outputStream).getChannel() : Channels.newChannel(outputStream);
+        long position = 0;
+        long fileSize = channel.size();
+        while (position < fileSize)
+            position += channel.transferTo(position, fileSize - position, target);
+    }
+
+    private static class CachedFile {
+        private final long entryId;
+        private final String name;
+        private final Path path;
+        private final long size;
+
+        CachedFile(long entryId, String name, Path path, long size) {
+            this.entryId = entryId;
+            this.name = name;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
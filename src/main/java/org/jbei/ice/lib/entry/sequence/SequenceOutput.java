@@ -0,0 +1,43 @@
+package org.jbei.ice.lib.entry.sequence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sequence file of a specific format that is only written (formatted) when requested, directly to the output stream
+ * it is requested for (e.g. the response to a download request)
+ *
+ * @see PartSequence#toStream(SequenceFormat)
+ */
+public class SequenceOutput {
+
+    private final String name;
+    private final Content content;
+
+    /**
+     * Writer for the content of the file
+     */
+    @FunctionalInterface
+    interface Content {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    SequenceOutput(String name, Content content) {
+        this.name = name;
+        this.content = content;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Writes the file to the output stream. The stream is not closed
+     *
+     * @param outputStream stream to write to
+     * @throws IOException on exception writing to the stream
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        content.write(outputStream);
+    }
+}
@@ -2,23 +2,23 @@ package org.jbei.ice.lib.entry.sequence.annotation;
 
 import org.jbei.ice.lib.access.PermissionException;
 import org.jbei.ice.lib.account.AccountType;
-import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.BatchAnnotationStatus;
 import org.jbei.ice.lib.dto.DNAFeature;
 import org.jbei.ice.lib.dto.DNAFeatureLocation;
 import org.jbei.ice.lib.dto.DNAFeatures;
 import org.jbei.ice.lib.dto.FeaturedDNASequence;
 import org.jbei.ice.lib.dto.common.Results;
-import org.jbei.ice.lib.dto.search.BlastQuery;
+import org.jbei.ice.lib.dto.entry.EntryType;
+import org.jbei.ice.lib.entry.Entries;
+import org.jbei.ice.lib.entry.EntrySelection;
 import org.jbei.ice.lib.executor.IceExecutorService;
 import org.jbei.ice.lib.group.GroupController;
-import org.jbei.ice.lib.search.blast.BlastException;
-import org.jbei.ice.lib.search.blast.FeaturesBlastDatabase;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.hibernate.dao.*;
 import org.jbei.ice.storage.model.*;
 
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * ICE Annotations with support for generating potential annotations for a specified entry
@@ -26,6 +26,7 @@ import java.util.Map;
  * @author Hector Plahar
  */
 public class Annotations {
+    private static final int MAX_QUERY_IDS = 1000;
     private final SequenceDAO sequenceDAO;
     private final String userId;
     private final FeatureDAO featureDAO;
@@ -35,7 +36,7 @@ public class Annotations {
     private final FeatureCurationModelDAO curationModelDAO;
     private final EntryDAO entryDAO;
     private final AccountDAO accountDAO;
-    private final FeaturesBlastDatabase featuresBlastDatabase;
+    private final AutoAnnotationIndex annotationIndex;
 
     public Annotations(String userId) {
         this.sequenceDAO = DAOFactory.getSequenceDAO();
@@ -47,7 +48,7 @@ public class Annotations {
         this.curationModelDAO = DAOFactory.getFeatureCurationModelDAO();
         this.entryDAO = DAOFactory.getEntryDAO();
         this.accountDAO = DAOFactory.getAccountDAO();
-        this.featuresBlastDatabase = new FeaturesBlastDatabase();
+        this.annotationIndex = AutoAnnotationIndex.getInstance();
     }
 
     /**
@@ -130,50 +131,49 @@ public class Annotations {
             return null;
 
         String sequenceString = sequence.getSequence();
-        BlastQuery query = new BlastQuery();
-        query.setSequence(sequenceString);
-
-        try {
-            List<DNAFeature> features = featuresBlastDatabase.runBlast(query);
-            FeaturedDNASequence dnaSequence = new FeaturedDNASequence();
-            if (features.isEmpty())
-                return dnaSequence;
+        boolean circular = entry.getRecordType().equalsIgnoreCase(EntryType.PLASMID.name())
+                && Boolean.TRUE.equals(((Plasmid) entry).getCircular());
+        List<DNAFeature> features = annotationIndex.annotate(sequenceString, circular);
+        FeaturedDNASequence dnaSequence = new FeaturedDNASequence();
+        if (features.isEmpty())
+            return dnaSequence;
 
-            // check permissions
-            Account account = accountDAO.getByEmail(userId);
+        // resolve the entries of all the matched features and filter them by permissions together
+        Account account = accountDAO.getByEmail(userId);
+        Set<Long> featureIds = new HashSet<>();
+        for (DNAFeature dnaFeature : features)
+            featureIds.add(dnaFeature.getId());
+        Map<Long, List<Long>> featureEntries = getEntryIdsByFeatures(featureIds);
+        Set<Long> entryIds = new HashSet<>();
+        for (List<Long> ids : featureEntries.values())
+            entryIds.addAll(ids);
+
+        Set<Long> visibleEntryIds = entryIds;
+        if (account == null || account.getType() != AccountType.ADMIN) {
             List<Group> groups = this.groupDAO.retrieveMemberGroups(account);
+            visibleEntryIds = filterEntryIds(visibleEntryIds,
+                    ids -> this.permissionDAO.getCanReadEntries(account, groups, ids));
+        }
 
-            for (DNAFeature dnaFeature : features) {
-                Feature feature = this.featureDAO.get(dnaFeature.getId());
-                if (feature == null)
-                    continue;
-
-                List<Long> entries = this.sequenceFeatureDAO.getEntryIdsByFeature(feature);
-                if (entries.isEmpty())
-                    continue;
-
-                if (!isAdministrator()) {
-                    entries = this.permissionDAO.getCanReadEntries(account, groups, entries);
-                    if (entries.isEmpty())
-                        continue;
-                }
+        if (ownerFeatures)
+            visibleEntryIds = filterEntryIds(visibleEntryIds, ids -> this.entryDAO.filterByUserId(this.userId, ids));
 
-                if (ownerFeatures) {
-                    entries = this.entryDAO.filterByUserId(this.userId, entries);
-                }
+        for (DNAFeature dnaFeature : features) {
+            List<Long> entries = featureEntries.get(dnaFeature.getId());
+            if (entries == null)
+                continue;
 
-                if (entries != null && !entries.isEmpty()) {
-                    dnaFeature.getEntries().addAll(entries);
-                    dnaSequence.getFeatures().add(dnaFeature);
-                }
+            for (Long id : entries) {
+                if (visibleEntryIds.contains(id))
+                    dnaFeature.getEntries().add(id);
             }
 
-            dnaSequence.setLength(sequenceString.length());
-            return dnaSequence;
-        } catch (BlastException e) {
-            Logger.error(e);
-            return null;
+            if (!dnaFeature.getEntries().isEmpty())
+                dnaSequence.getFeatures().add(dnaFeature);
         }
+
+        dnaSequence.setLength(sequenceString.length());
+        return dnaSequence;
     }
 
     /**
@@ -184,21 +184,48 @@ public class Annotations {
      * @return wrapper around passed sequence and now with list if annotations for that sequence
      */
     public FeaturedDNASequence generate(FeaturedDNASequence sequence) {
-        BlastQuery query = new BlastQuery();
-        query.setSequence(sequence.getSequence());
-
-        try {
-            List<DNAFeature> features = featuresBlastDatabase.runBlast(query);
-            sequence.getFeatures().addAll(features);
-            return sequence;
-        } catch (BlastException e) {
-            Logger.error(e);
+        List<DNAFeature> features = annotationIndex.annotate(sequence.getSequence(), sequence.getIsCircular());
+        sequence.getFeatures().addAll(features);
+        return sequence;
+    }
+
+    /**
+     * Starts a job to auto annotate all the entries in a selection (e.g. a folder or collection)
+     *
+     * @param selection entries to annotate
+     * @param apply     whether to add the matching annotations to the entries (that the user can edit) or only
+     *                  propose them in a file that is available once the job completes
+     * @return status of the job
+     */
+    public BatchAnnotationStatus generate(EntrySelection selection, boolean apply) {
+        List<Long> entryIds = new Entries(this.userId).getEntriesFromSelectionContext(selection);
+        if (entryIds == null)
+            entryIds = new ArrayList<>();
+
+        BatchAnnotationTask task = new BatchAnnotationTask(this.userId, entryIds, apply);
+        IceExecutorService.getInstance().runTask(task);
+        return task.getProgress();
+    }
+
+    /**
+     * Retrieves the progress of a batch auto annotation job
+     *
+     * @param jobId unique identifier for job
+     * @return status of the job, or null if there is no job with the identifier
+     * @throws PermissionException if the job was not started by the requesting user (or user is not an administrator)
+     */
+    public BatchAnnotationStatus getBatchStatus(String jobId) {
+        BatchAnnotationTask task = BatchAnnotationTask.get(jobId);
+        if (task == null)
             return null;
-        }
+
+        if (!task.getUserId().equalsIgnoreCase(this.userId) && !isAdministrator())
+            throw new PermissionException("Cannot retrieve annotation job " + jobId);
+        return task.getProgress();
     }
 
     /**
-     * Rebuild the annotations blast database
+     * Rebuild the auto annotation index
      *
      * @throws PermissionException if the specified user does not have administrator privileges
      */
@@ -210,6 +237,26 @@ public class Annotations {
         IceExecutorService.getInstance().runTask(autoAnnotationBlastDbBuildTask);
     }
 
+    private Map<Long, List<Long>> getEntryIdsByFeatures(Set<Long> featureIds) {
+        Map<Long, List<Long>> featureEntries = new HashMap<>();
+        List<Long> ids = new ArrayList<>(featureIds);
+        for (int i = 0; i < ids.size(); i += MAX_QUERY_IDS) {
+            featureEntries.putAll(sequenceFeatureDAO.getEntryIdsByFeatures(
+                    ids.subList(i, Math.min(ids.size(), i + MAX_QUERY_IDS))));
+        }
+        return featureEntries;
+    }
+
+    // applies a filter query to the entry ids, in chunks to bound the size of the query
+    private static Set<Long> filterEntryIds(Set<Long> entryIds, Function<List<Long>, List<Long>> filter) {
+        Set<Long> filtered = new HashSet<>();
+        List<Long> ids = new ArrayList<>(entryIds);
+        for (int i = 0; i < ids.size(); i += MAX_QUERY_IDS) {
+            filtered.addAll(filter.apply(ids.subList(i, Math.min(ids.size(), i + MAX_QUERY_IDS))));
+        }
+        return filtered;
+    }
+
     protected boolean isAdministrator() {
         Account account = DAOFactory.getAccountDAO().getByEmail(this.userId);
         return account != null && account.getType() == AccountType.ADMIN;
@@ -250,6 +297,11 @@ public class Annotations {
             if (curationModel != null) {
                 feature.setCuration(curationModel);
                 featureDAO.update(feature);
+
+                if (curationModel.isExclude())
+                    annotationIndex.exclude(feature.getId());
+                else
+                    annotationIndex.include(feature);
             }
         }
     }
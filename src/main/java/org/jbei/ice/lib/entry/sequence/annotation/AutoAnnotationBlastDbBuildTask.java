@@ -2,8 +2,7 @@ package org.jbei.ice.lib.entry.sequence.annotation;
 
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.executor.Task;
-import org.jbei.ice.lib.search.blast.BlastException;
-import org.jbei.ice.lib.search.blast.FeaturesBlastDatabase;
+import org.jbei.ice.storage.DAOException;
 
 import java.util.Calendar;
 import java.util.Date;
@@ -11,7 +10,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 /**
- * Task to rebuild blast database of features for auto annotation
+ * Task to rebuild the index of features for auto annotation
  * <p>
  * Uses a lock object to wait until a specific time of day and then re-builds.
  * </p>
@@ -26,11 +25,11 @@ public class AutoAnnotationBlastDbBuildTask extends Task {
     private int exceptionCount;
     private static final int RUN_HOUR = 1;    // make config param
     private final boolean runOnce;
-    private FeaturesBlastDatabase featuresBlastDatabase;
+    private final AutoAnnotationIndex annotationIndex;
 
     AutoAnnotationBlastDbBuildTask(boolean runOnce) {
         this.runOnce = runOnce;
-        featuresBlastDatabase = new FeaturesBlastDatabase();
+        annotationIndex = AutoAnnotationIndex.getInstance();
     }
 
     public AutoAnnotationBlastDbBuildTask() {
@@ -43,8 +42,8 @@ public class AutoAnnotationBlastDbBuildTask extends Task {
 
         // first run on task start up
         try {
-            featuresBlastDatabase.rebuild();
-        } catch (BlastException e) {
+            annotationIndex.rebuild();
+        } catch (DAOException e) {
             Logger.error(e);
             exceptionCount += 1;
         }
@@ -56,9 +55,9 @@ public class AutoAnnotationBlastDbBuildTask extends Task {
             waitUntil(timeTillRun());
 
             try {
-                Logger.info("Rebuilding auto annotation blast database");
-                featuresBlastDatabase.rebuild();
-            } catch (BlastException ioe) {
+                Logger.info("Rebuilding auto annotation index");
+                annotationIndex.rebuild();
+            } catch (DAOException ioe) {
                 Logger.error(ioe);
                 if (exceptionCount++ >= 10) {
                     Logger.error(exceptionCount + " exceptions encountered. Aborting annotation rebuild");
@@ -0,0 +1,168 @@
+package org.jbei.ice.lib.entry.sequence.annotation;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.DNAFeature;
+import org.jbei.ice.lib.dto.DNAFeatureLocation;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.ScrollableRows;
+import org.jbei.ice.storage.model.Feature;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the (non-excluded) features on this instance, used to auto annotate sequences with exact
+ * matches of the features. The index is built from the features table the first time it is used and rebuilt
+ * by the {@link AutoAnnotationBlastDbBuildTask}.
+ * <p>
+ * Curation changes are applied without a rebuild; excluded features are skipped when matched and features that
+ * are included again are added to a (small) separate automaton which is merged into the main one once it grows
+ * to {@link #MAX_ADDED_FEATURES}
+ *
+ * @see FeatureAutomaton
+ */
+class AutoAnnotationIndex {
+
+    // blastn (megablast), which was previously used for auto annotation, does not match features shorter than this
+    static final int MIN_FEATURE_LENGTH = 28;
+    private static final int MAX_ADDED_FEATURES = 100;
+    private static final int CHUNK_SIZE = 500;
+    private static final AutoAnnotationIndex INSTANCE = new AutoAnnotationIndex();
+
+    private volatile FeatureAutomaton automaton;
+    private volatile FeatureAutomaton added = new FeatureAutomaton(new ArrayList<>());
+    private final Set<Long> excluded = ConcurrentHashMap.newKeySet();
+
+    static AutoAnnotationIndex getInstance() {
+        return INSTANCE;
+    }
+
+    AutoAnnotationIndex() {
+    }
+
+    /**
+     * Finds the features that occur (in their entirety, on either strand) in a sequence
+     *
+     * @param sequence dna sequence
+     * @param circular whether the sequence is circular
+     * @return list of matching features with the location of the match. The location of a match that spans the end
+     * and start of a circular sequence has a start greater than its end
+     */
+    List<DNAFeature> annotate(String sequence, boolean circular) {
+        List<DNAFeature> features = new ArrayList<>();
+        if (sequence == null || sequence.isEmpty())
+            return features;
+
+        FeatureAutomaton current = automaton;
+        if (current == null)
+            current = build();
+
+        int length = sequence.length();
+        Set<String> duplicates = new HashSet<>();
+        FeatureAutomaton.MatchHandler handler = (feature, strand, start) -> {
+            if (excluded.contains(feature.getId()))
+                return;
+
+            int end = start + feature.getLength();
+            if (end > length)
+                end -= length;
+            if (!duplicates.add(feature.getName() + ":" + start + ":" + end + ":" + strand))
+                return;
+
+            DNAFeature dnaFeature = new DNAFeature();
+            dnaFeature.setId(feature.getId());
+            dnaFeature.setName(feature.getName());
+            dnaFeature.setType(feature.getType());
+            dnaFeature.setStrand(strand);
+            dnaFeature.getLocations().add(new DNAFeatureLocation(start + 1, end));
+            features.add(dnaFeature);
+        };
+        current.scan(sequence, circular, handler);
+        added.scan(sequence, circular, handler);
+        return features;
+    }
+
+    /**
+     * Rebuilds the index from the features table. The features are read in a separate session (and transaction) since
+     * the session they are read in is cleared as they are read, which would detach the objects of the caller
+     */
+    synchronized void rebuild() {
+        List<FeatureAutomaton.IndexedFeature> features = new ArrayList<>();
+        try (Session session = HibernateUtil.newSession()) {
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableRows rows = DAOFactory.getFeatureDAO().scrollAnnotationFeatures(session, CHUNK_SIZE)) {
+                while (rows.hasNext()) {
+                    Object[] row = rows.next();
+                    FeatureAutomaton.IndexedFeature feature = createFeature(((Number) row[0]).longValue(),
+                            (String) row[1], (String) row[2], (String) row[3]);
+                    if (feature != null)
+                        features.add(feature);
+                }
+            } finally {
+                // read only
+                transaction.rollback();
+            }
+        }
+
+        automaton = new FeatureAutomaton(features);
+        added = new FeatureAutomaton(new ArrayList<>());
+        Logger.info("Built auto annotation index of " + features.size() + " features");
+    }
+
+    /**
+     * Excludes a (curated) feature from the matches
+     *
+     * @param featureId unique identifier for feature
+     */
+    synchronized void exclude(long featureId) {
+        excluded.add(featureId);
+    }
+
+    /**
+     * Includes a (curated) feature in the matches, adding it to the index if it is not already indexed
+     *
+     * @param feature feature to include
+     */
+    synchronized void include(Feature feature) {
+        excluded.remove(feature.getId());
+        if (automaton == null || automaton.contains(feature.getId()) || added.contains(feature.getId()))
+            return;
+
+        FeatureAutomaton.IndexedFeature indexedFeature = createFeature(feature.getId(), feature.getName(),
+                feature.getGenbankType(), feature.getSequence());
+        if (indexedFeature == null)
+            return;
+
+        List<FeatureAutomaton.IndexedFeature> features = new ArrayList<>(added.getFeatures());
+        features.add(indexedFeature);
+        if (features.size() < MAX_ADDED_FEATURES) {
+            added = new FeatureAutomaton(features);
+            return;
+        }
+
+        features.addAll(automaton.getFeatures());
+        automaton = new FeatureAutomaton(features);
+        added = new FeatureAutomaton(new ArrayList<>());
+    }
+
+    private synchronized FeatureAutomaton build() {
+        if (automaton == null)
+            rebuild();
+        return automaton;
+    }
+
+    private static FeatureAutomaton.IndexedFeature createFeature(long id, String name, String type, String sequence) {
+        if (name == null || name.trim().isEmpty())
+            return null;
+
+        if (sequence == null || sequence.trim().length() < MIN_FEATURE_LENGTH)
+            return null;
+        return FeatureAutomaton.IndexedFeature.create(id, name, type, sequence);
+    }
+}
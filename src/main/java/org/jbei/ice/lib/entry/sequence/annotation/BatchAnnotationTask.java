@@ -0,0 +1,248 @@
+package org.jbei.ice.lib.entry.sequence.annotation;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.BatchAnnotationStatus;
+import org.jbei.ice.lib.dto.ConfigurationKey;
+import org.jbei.ice.lib.dto.DNAFeature;
+import org.jbei.ice.lib.dto.DNAFeatureLocation;
+import org.jbei.ice.lib.dto.entry.EntryType;
+import org.jbei.ice.lib.entry.EntryAuthorization;
+import org.jbei.ice.lib.executor.Task;
+import org.jbei.ice.lib.utils.Utils;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.dao.FeatureDAO;
+import org.jbei.ice.storage.hibernate.dao.SequenceDAO;
+import org.jbei.ice.storage.hibernate.dao.SequenceFeatureDAO;
+import org.jbei.ice.storage.model.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Task to auto annotate the sequences of a selection of entries (e.g. the contents of a folder) in a single job.
+ * <p>
+ * The sequences are loaded and matched against the {@link AutoAnnotationIndex} in chunks of {@link #CHUNK_SIZE}
+ * entries, each in its own transaction, so that the memory used does not depend on the number of entries. The
+ * matching annotations are either added to the sequences (that the user can edit) or, if they are only proposed,
+ * written (as json) to a temporary file for the user to review.
+ * <p>
+ * Tasks are registered by id when created so that their progress can be retrieved (see {@link #get(String)}) while
+ * they run and for some time after they complete
+ */
+public class BatchAnnotationTask extends Task {
+
+    static final int CHUNK_SIZE = 100;
+    private static final int MAX_TASKS = 100;
+    private static final Map<String, BatchAnnotationTask> TASKS = new LinkedHashMap<String, BatchAnnotationTask>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BatchAnnotationTask> eldest) {
+            return size() > MAX_TASKS;
+        }
+    };
+
+    private final String id;
+    private final String userId;
+    private final List<Long> entryIds;
+    private final boolean apply;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger annotated = new AtomicInteger();
+    private final AtomicInteger featureCount = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile String resultFileId;
+
+    /**
+     * @param userId   unique identifier for user the job is run for
+     * @param entryIds unique identifiers of the entries to annotate
+     * @param apply    whether to add the annotations to the entries or only propose them
+     */
+    BatchAnnotationTask(String userId, List<Long> entryIds, boolean apply) {
+        this.id = Utils.generateUUID();
+        this.userId = userId;
+        this.entryIds = new ArrayList<>(entryIds);
+        this.apply = apply;
+        synchronized (TASKS) {
+            TASKS.put(id, this);
+        }
+    }
+
+    /**
+     * @param id unique identifier for task
+     * @return the task with the specified identifier, if it is still registered, or null
+     */
+    static BatchAnnotationTask get(String id) {
+        synchronized (TASKS) {
+            return TASKS.get(id);
+        }
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return current progress of the task
+     */
+    BatchAnnotationStatus getProgress() {
+        return new BatchAnnotationStatus(id, getStatus().name(), apply, entryIds.size(), processed.get(),
+                annotated.get(), featureCount.get(), skipped.get(), failed.get(), resultFileId);
+    }
+
+    @Override
+    public void execute() {
+        Logger.info("Auto annotating " + entryIds.size() + " entries for " + userId);
+        Path resultPath = null;
+        Writer writer = null;
+        JsonWriter jsonWriter = null;
+
+        try {
+            if (!apply) {
+                String fileId = Utils.generateUUID();
+                resultPath = Paths.get(Utils.getConfigValue(ConfigurationKey.TEMPORARY_DIRECTORY), fileId);
+                writer = Files.newBufferedWriter(resultPath, StandardCharsets.UTF_8);
+                jsonWriter = new JsonWriter(writer);
+                jsonWriter.beginArray();
+            }
+
+            for (int i = 0; i < entryIds.size(); i += CHUNK_SIZE) {
+                List<Long> chunk = entryIds.subList(i, Math.min(entryIds.size(), i + CHUNK_SIZE));
+                annotateChunk(chunk, jsonWriter);
+                processed.addAndGet(chunk.size());
+            }
+
+            if (jsonWriter != null) {
+                jsonWriter.endArray();
+                jsonWriter.flush();
+                resultFileId = resultPath.getFileName().toString();
+            }
+            Logger.info("Auto annotation of " + entryIds.size() + " entries completed with " + featureCount.get()
+                    + " annotations");
+        } catch (IOException e) {
+            Logger.error(e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    Logger.error(e);
+                }
+            }
+        }
+    }
+
+    // annotates the sequences of the entries in a transaction. entries that the user does not have access to or that
+    // have no sequence are counted as skipped and entries in a chunk that fails are counted as failed
+    private void annotateChunk(List<Long> chunk, JsonWriter jsonWriter) throws IOException {
+        SequenceDAO sequenceDAO = DAOFactory.getSequenceDAO();
+        EntryAuthorization authorization = new EntryAuthorization();
+        Map<Long, Feature> features = new HashMap<>();
+        Gson gson = new Gson();
+        AutoAnnotationIndex index = AutoAnnotationIndex.getInstance();
+        List<ProposedAnnotations> proposals = new ArrayList<>();
+        int chunkAnnotated = 0;
+        int chunkFeatures = 0;
+        int chunkSkipped;
+
+        HibernateUtil.beginTransaction();
+        try {
+            List<Sequence> sequences = sequenceDAO.getByEntryIds(chunk);
+            chunkSkipped = chunk.size() - sequences.size();
+            for (Sequence sequence : sequences) {
+                Entry entry = sequence.getEntry();
+                if (apply ? !authorization.canWrite(userId, entry) : !authorization.canRead(userId, entry)) {
+                    chunkSkipped += 1;
+                    continue;
+                }
+
+                boolean circular = entry.getRecordType().equalsIgnoreCase(EntryType.PLASMID.name())
+                        && Boolean.TRUE.equals(((Plasmid) entry).getCircular());
+                List<DNAFeature> matches = index.annotate(sequence.getSequence(), circular);
+                if (apply)
+                    matches = addAnnotations(sequence, matches, features);
+                else if (!matches.isEmpty())
+                    proposals.add(new ProposedAnnotations(entry.getId(), entry.getPartNumber(), matches));
+
+                if (!matches.isEmpty()) {
+                    chunkAnnotated += 1;
+                    chunkFeatures += matches.size();
+                }
+            }
+            HibernateUtil.commitTransaction();
+        } catch (RuntimeException e) {
+            Logger.error(e);
+            HibernateUtil.rollbackTransaction();
+            HibernateUtil.closeSession();
+            failed.addAndGet(chunk.size());
+            return;
+        }
+
+        annotated.addAndGet(chunkAnnotated);
+        featureCount.addAndGet(chunkFeatures);
+        skipped.addAndGet(chunkSkipped);
+        for (ProposedAnnotations proposal : proposals)
+            gson.toJson(proposal, ProposedAnnotations.class, jsonWriter);
+    }
+
+    // adds the matched features that the sequence is not already annotated with. returns the features added
+    private List<DNAFeature> addAnnotations(Sequence sequence, List<DNAFeature> matches, Map<Long, Feature> features) {
+        List<DNAFeature> added = new ArrayList<>();
+        if (matches.isEmpty())
+            return added;
+
+        Set<String> existing = new HashSet<>();
+        for (SequenceFeature sequenceFeature : sequence.getSequenceFeatures()) {
+            if (sequenceFeature.getFeature() == null)
+                continue;
+            existing.add(getKey(sequenceFeature.getFeature().getId(), sequenceFeature.getStrand(),
+                    sequenceFeature.getUniqueGenbankStart(), sequenceFeature.getUniqueEnd()));
+        }
+
+        FeatureDAO featureDAO = DAOFactory.getFeatureDAO();
+        SequenceFeatureDAO sequenceFeatureDAO = DAOFactory.getSequenceFeatureDAO();
+        for (DNAFeature match : matches) {
+            DNAFeatureLocation location = match.getLocations().get(0);
+            if (!existing.add(getKey(match.getId(), match.getStrand(), location.getGenbankStart(), location.getEnd())))
+                continue;
+
+            Feature feature = features.computeIfAbsent(match.getId(), featureDAO::get);
+            if (feature == null)
+                continue;
+
+            SequenceFeature sequenceFeature = new SequenceFeature(sequence, feature, match.getStrand(),
+                    match.getName(), match.getType(), null);
+            sequenceFeature.getAnnotationLocations().add(
+                    new AnnotationLocation(location.getGenbankStart(), location.getEnd(), sequenceFeature));
+            sequenceFeatureDAO.create(sequenceFeature);
+            added.add(match);
+        }
+        return added;
+    }
+
+    private static String getKey(long featureId, int strand, int start, int end) {
+        return featureId + ":" + strand + ":" + start + ":" + end;
+    }
+
+    /**
+     * Annotations proposed for an entry, as written to the result file
+     */
+    private static class ProposedAnnotations {
+        private final long entryId;
+        private final String partId;
+        private final List<DNAFeature> features;
+
+        ProposedAnnotations(long entryId, String partId, List<DNAFeature> features) {
+            this.entryId = entryId;
+            this.partId = partId;
+            this.features = features;
+        }
+    }
+}
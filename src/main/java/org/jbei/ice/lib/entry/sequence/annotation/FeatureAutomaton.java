@@ -0,0 +1,313 @@
+package org.jbei.ice.lib.entry.sequence.annotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton for finding exact occurrences of feature sequences (on both strands) in a dna sequence
+ * in a single pass over the sequence.
+ * <p>
+ * Each feature is indexed as two patterns; its sequence (positive strand) and the reverse complement of its sequence
+ * (negative strand). To bound the size of the automaton, only the first {@link #PREFIX_DEPTH} bases of each pattern
+ * are added to the trie and the remainder of a pattern is compared against the sequence when its prefix is matched.
+ * Features with sequences that are not plain (<code>a, c, g, t</code>) dna are not indexed.
+ * <p>
+ * The automaton is immutable once built and can be used concurrently
+ */
+class FeatureAutomaton {
+
+    static final int PREFIX_DEPTH = 24;
+    private static final int ALPHABET_SIZE = 4;
+    private static final byte[] COMPLEMENT = {3, 2, 1, 0};
+
+    private final List<IndexedFeature> features;
+    private final Map<Long, Integer> featureIndex;
+
+    // trie nodes: transitions (complete, after failure links are resolved), depth, first output and nearest node
+    // on the failure chain that has outputs
+    private int[] next;
+    private int[] depth;
+    private int[] outputHead;
+    private int[] outputLink;
+    private int nodeCount;
+
+    // outputs as linked lists of patterns (feature index * 2, + 1 for the negative strand)
+    private int[] outputPattern;
+    private int[] outputNext;
+    private int outputCount;
+
+    private int maxPrefixLength;
+
+    /**
+     * Handler for the matches found when scanning a sequence
+     */
+    interface MatchHandler {
+
+        /**
+         * @param feature feature matched
+         * @param strand  strand of the match; 1 or -1
+         * @param start   (0-based) start of the match in the sequence
+         */
+        void handle(IndexedFeature feature, int strand, int start);
+    }
+
+    /**
+     * Sequence feature added to the automaton
+     */
+    static class IndexedFeature {
+        private final long id;
+        private final String name;
+        private final String type;
+        private final byte[] sequence;
+
+        /**
+         * @return the feature, or null if the sequence is not plain dna
+         */
+        static IndexedFeature create(long id, String name, String type, String sequence) {
+            if (sequence == null)
+                return null;
+
+            sequence = sequence.trim();
+            if (sequence.isEmpty())
+                return null;
+
+            byte[] encoded = new byte[sequence.length()];
+            for (int i = 0; i < sequence.length(); i += 1) {
+                int symbol = encode(sequence.charAt(i));
+                if (symbol < 0)
+                    return null;
+                encoded[i] = (byte) symbol;
+            }
+            return new IndexedFeature(id, name, type, encoded);
+        }
+
+        private IndexedFeature(long id, String name, String type, byte[] sequence) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.sequence = sequence;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getType() {
+            return type;
+        }
+
+        int getLength() {
+            return sequence.length;
+        }
+
+        // symbol at position of the feature on the specified strand
+        private int symbolAt(int position, boolean negative) {
+            if (!negative)
+                return sequence[position];
+            return COMPLEMENT[sequence[sequence.length - 1 - position]];
+        }
+
+        // true if the feature is its own reverse complement
+        private boolean isPalindrome() {
+            for (int i = 0; i < sequence.length; i += 1) {
+                if (symbolAt(i, false) != symbolAt(i, true))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    FeatureAutomaton(List<IndexedFeature> features) {
+        this.features = Collections.unmodifiableList(new ArrayList<>(features));
+        this.featureIndex = new HashMap<>();
+        for (int i = 0; i < this.features.size(); i += 1)
+            featureIndex.put(this.features.get(i).getId(), i);
+
+        int capacity = 16;
+        next = new int[capacity * ALPHABET_SIZE];
+        depth = new int[capacity];
+        outputHead = new int[capacity];
+        outputPattern = new int[capacity];
+        outputNext = new int[capacity];
+        newNode(0);
+
+        for (int i = 0; i < this.features.size(); i += 1) {
+            IndexedFeature feature = this.features.get(i);
+            addPattern(i * 2);
+            if (!feature.isPalindrome())
+                addPattern(i * 2 + 1);
+        }
+        link();
+    }
+
+    /**
+     * @return the features of the automaton
+     */
+    List<IndexedFeature> getFeatures() {
+        return features;
+    }
+
+    boolean contains(long featureId) {
+        return featureIndex.containsKey(featureId);
+    }
+
+    /**
+     * Finds all occurrences of the features in a sequence, in the order of their (prefix) end position. For circular
+     * sequences, occurrences that span the end and start of the sequence are also found. Features that are longer
+     * than the sequence are not matched.
+     *
+     * @param sequence dna sequence
+     * @param circular whether the sequence is circular
+     * @param handler  handler for the occurrences found
+     */
+    void scan(CharSequence sequence, boolean circular, MatchHandler handler) {
+        int length = sequence.length();
+        if (length == 0 || features.isEmpty())
+            return;
+
+        // for circular sequences the scan continues over the start of the sequence for matches that wrap around
+        int scanLength = circular ? length + Math.min(maxPrefixLength, length) - 1 : length;
+        int state = 0;
+        for (int i = 0; i < scanLength; i += 1) {
+            int symbol = encode(sequence.charAt(i % length));
+            if (symbol < 0) {
+                state = 0;
+                continue;
+            }
+
+            state = next[state * ALPHABET_SIZE + symbol];
+            int node = outputHead[state] != -1 ? state : outputLink[state];
+            while (node > 0) {
+                int start = i - depth[node] + 1;
+                // matches that start after the end of a circular sequence are found from its start
+                if (start < length) {
+                    for (int output = outputHead[node]; output != -1; output = outputNext[output]) {
+                        int pattern = outputPattern[output];
+                        IndexedFeature feature = features.get(pattern / 2);
+                        boolean negative = pattern % 2 == 1;
+                        if (matches(sequence, circular, start, feature, negative))
+                            handler.handle(feature, negative ? -1 : 1, start);
+                    }
+                }
+                node = outputLink[node];
+            }
+        }
+    }
+
+    // compares the remainder of the feature (after the prefix in the trie) with the sequence
+    private boolean matches(CharSequence sequence, boolean circular, int start, IndexedFeature feature,
+                            boolean negative) {
+        int length = sequence.length();
+        int featureLength = feature.getLength();
+        if (featureLength > length || (!circular && start + featureLength > length))
+            return false;
+
+        for (int i = Math.min(featureLength, PREFIX_DEPTH); i < featureLength; i += 1) {
+            if (encode(sequence.charAt((start + i) % length)) != feature.symbolAt(i, negative))
+                return false;
+        }
+        return true;
+    }
+
+    private void addPattern(int pattern) {
+        IndexedFeature feature = features.get(pattern / 2);
+        boolean negative = pattern % 2 == 1;
+        int prefixLength = Math.min(feature.getLength(), PREFIX_DEPTH);
+        maxPrefixLength = Math.max(maxPrefixLength, prefixLength);
+
+        int node = 0;
+        for (int i = 0; i < prefixLength; i += 1) {
+            int index = node * ALPHABET_SIZE + feature.symbolAt(i, negative);
+            if (next[index] == 0) {
+                // the node arrays may be reallocated when adding a node
+                int child = newNode(depth[node] + 1);
+                next[index] = child;
+            }
+            node = next[index];
+        }
+
+        if (outputCount == outputPattern.length) {
+            outputPattern = Arrays.copyOf(outputPattern, outputCount * 2);
+            outputNext = Arrays.copyOf(outputNext, outputCount * 2);
+        }
+        outputPattern[outputCount] = pattern;
+        outputNext[outputCount] = outputHead[node];
+        outputHead[node] = outputCount;
+        outputCount += 1;
+    }
+
+    private int newNode(int nodeDepth) {
+        if (nodeCount == depth.length) {
+            int capacity = nodeCount * 2;
+            next = Arrays.copyOf(next, capacity * ALPHABET_SIZE);
+            depth = Arrays.copyOf(depth, capacity);
+            outputHead = Arrays.copyOf(outputHead, capacity);
+        }
+        depth[nodeCount] = nodeDepth;
+        outputHead[nodeCount] = -1;
+        nodeCount += 1;
+        return nodeCount - 1;
+    }
+
+    // sets the failure transitions (breadth first) and the links to the nearest nodes with outputs
+    private void link() {
+        next = Arrays.copyOf(next, nodeCount * ALPHABET_SIZE);
+        depth = Arrays.copyOf(depth, nodeCount);
+        outputHead = Arrays.copyOf(outputHead, nodeCount);
+        outputLink = new int[nodeCount];
+        int[] fail = new int[nodeCount];
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+
+        for (int symbol = 0; symbol < ALPHABET_SIZE; symbol += 1) {
+            int child = next[symbol];
+            if (child != 0)
+                queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            int node = queue[head++];
+            for (int symbol = 0; symbol < ALPHABET_SIZE; symbol += 1) {
+                int index = node * ALPHABET_SIZE + symbol;
+                int child = next[index];
+                int failTransition = next[fail[node] * ALPHABET_SIZE + symbol];
+                if (child == 0) {
+                    next[index] = failTransition;
+                    continue;
+                }
+
+                fail[child] = failTransition;
+                outputLink[child] = outputHead[failTransition] != -1 ? failTransition : outputLink[failTransition];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private static int encode(char base) {
+        switch (base) {
+            case 'a':
+            case 'A':
+                return 0;
+            case 'c':
+            case 'C':
+                return 1;
+            case 'g':
+            case 'G':
+                return 2;
+            case 't':
+            case 'T':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+}
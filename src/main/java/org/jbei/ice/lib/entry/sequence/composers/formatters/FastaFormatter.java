@@ -3,36 +3,41 @@ package org.jbei.ice.lib.entry.sequence.composers.formatters;
 import org.jbei.ice.storage.model.Entry;
 import org.jbei.ice.storage.model.Sequence;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Formatter for creating a FASTA formatted output.
  * <p/>
+ * The sequence is written in lines of {@link #LINE_LENGTH} characters directly from the stored sequence
  *
  * @author Hector Plahar
  */
 public class FastaFormatter extends AbstractFormatter {
 
+    private static final int LINE_LENGTH = 80;
+
     @Override
     public void format(Sequence sequence, OutputStream outputStream) throws IOException {
         if (sequence == null)
             throw new IllegalArgumentException("Cannot write null sequence");
 
-        StringBuilder builder = new StringBuilder();
         Entry entry = sequence.getEntry();
         if (entry == null)
             throw new IOException("Cannot retrieve entry for sequence");
 
-        builder.append(">")
-                .append(entry.getPartNumber())
-                .append(System.lineSeparator());
-        for (int i = 1; i <= sequence.getSequence().length(); i += 1) {
-            builder.append(sequence.getSequence().charAt(i - 1));
-            if (i % 80 == 0)
-                builder.append(System.lineSeparator());
-        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(">");
+        writer.write(entry.getPartNumber());
+        writer.write(System.lineSeparator());
 
-        outputStream.write(builder.toString().getBytes());
+        String sequenceString = sequence.getSequence();
+        for (int i = 0; i < sequenceString.length(); i += LINE_LENGTH) {
+            int length = Math.min(LINE_LENGTH, sequenceString.length() - i);
+            writer.write(sequenceString, i, length);
+            if (length == LINE_LENGTH)
+                writer.write(System.lineSeparator());
+        }
+        writer.flush();
     }
 }
@@ -5,12 +5,14 @@ import org.jbei.ice.storage.model.AnnotationLocation;
 import org.jbei.ice.storage.model.Sequence;
 import org.jbei.ice.storage.model.SequenceFeature;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
- * Formatter for GFF3 Format
+ * Formatter for GFF3 Format. Each location of the (sorted) features is written as a line to the output stream
  *
  * @author Hector Plahar
  */
@@ -25,26 +27,32 @@ public class GFF3Formatter extends AbstractFormatter {
         if (sequence == null)
             throw new IllegalArgumentException("Cannot write null sequence");
 
-        StringBuilder builder = new StringBuilder();
-
-        builder.append("##gff-version 3.2.1").append(System.lineSeparator());
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write("##gff-version 3.2.1");
+        writer.write(System.lineSeparator());
 
         // add headers
-        builder.append("##");
+        writer.write("##");
         for (String header : HEADERS) {
-            builder.append(header).append("\t");
+            writer.write(header);
+            writer.write("\t");
         }
-        builder.append(System.lineSeparator());
+        writer.write(System.lineSeparator());
 
         String sequenceId = sequence.getEntry().getPartNumber();
         sequenceId = sequenceId.replaceAll("[^a-zA-Z0-9.:^*$@!+_?-|]", "_");
         Set<SequenceFeature> featureSet = sequence.getSequenceFeatures();
         if (featureSet != null) {
-            for (SequenceFeature sequenceFeature : featureSet) {
+            List<SequenceFeature> features = new ArrayList<>(featureSet);
+            features.sort(new SequenceFeatureComparator());
+
+            StringBuilder builder = new StringBuilder();
+            for (SequenceFeature sequenceFeature : features) {
                 String featureLine = sequenceFeature.getName() + " ICE " + sequenceFeature.getGenbankType();
 
                 // location
                 for (AnnotationLocation location : sequenceFeature.getAnnotationLocations()) {
+                    builder.setLength(0);
                     builder.append(sequenceId).append("\t")
                             .append(".").append("\t")
                             .append(getColumn3(sequenceFeature.getGenbankType())).append("\t")
@@ -55,11 +63,11 @@ public class GFF3Formatter extends AbstractFormatter {
                             .append(".").append("\t")
                             .append("ID=").append(featureLine);
                     builder.append(System.lineSeparator());
+                    writer.append(builder);
                 }
             }
         }
-
-        outputStream.write(builder.toString().getBytes());
+        writer.flush();
     }
 
     protected String getColumn3(String genbankType) {
@@ -1,33 +1,39 @@
 package org.jbei.ice.lib.entry.sequence.composers.formatters;
 
-import org.biojava.bio.seq.DNATools;
-import org.biojava.bio.seq.Feature;
-import org.biojava.bio.symbol.Location;
-import org.biojavax.RichAnnotation;
-import org.biojavax.RichObjectFactory;
-import org.biojavax.SimpleNote;
-import org.biojavax.SimpleRichAnnotation;
-import org.biojavax.bio.seq.*;
-import org.biojavax.bio.seq.RichLocation.Strand;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.storage.model.AnnotationLocation;
 import org.jbei.ice.storage.model.Sequence;
 import org.jbei.ice.storage.model.SequenceFeature;
 import org.jbei.ice.storage.model.SequenceFeatureAttribute;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.TreeSet;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 /**
  * Formatter for the Genbank file format.
+ * <p>
+ * The record is written incrementally to the output stream; the features are sorted once and the bases of the
+ * <code>ORIGIN</code> section are copied from the stored sequence one (60 base) line at a time, so that no copy of
+ * the whole sequence or document is created
  *
  * @author Zinovii Dmytriv, Timothy Ham
  */
 public class GenbankFormatter extends AbstractFormatter {
+
+    private static final int LINE_WIDTH = 80;
+    private static final int HEADER_INDENT = 12;
+    private static final int FEATURE_INDENT = 21;
+    private static final int BASES_PER_LINE = 60;
+    private static final int BASES_PER_BLOCK = 10;
+    private static final int POSITION_WIDTH = 9;
+
+    // qualifiers whose values are not quoted
+    private static final Set<String> UNQUOTED_QUALIFIERS = new HashSet<>(Arrays.asList(
+            "anticodon", "citation", "codon", "codon_start", "compare", "cons_splice", "direction",
+            "estimated_length", "label", "mod_base", "number", "rpt_type", "rpt_unit_range", "transl_except",
+            "transl_table"));
+
     private final String name;
     private final String accessionNumber;
     private int version = 1;
@@ -95,130 +101,209 @@ public class GenbankFormatter extends AbstractFormatter {
         this.identifier = identifier;
     }
 
+    public double getSeqVersion() {
+        return seqVersion;
+    }
+
     @Override
     public void format(Sequence sequence, OutputStream outputStream) throws IOException {
         if (sequence == null || outputStream == null || sequence.getSequence().isEmpty()) {
             return;
         }
 
-        SimpleRichSequence simpleRichSequence;
-        try {
-            simpleRichSequence = new SimpleRichSequence(
-                    getNamespace(), normalizeLocusName(name), accessionNumber, version,
-                    DNATools.createDNA(sequence.getSequence()), seqVersion);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeHeader(writer, sequence.getSequence().length());
+        writeFeatures(writer, sequence);
+        writeOrigin(writer, sequence.getSequence());
+        writer.flush();
+    }
 
-            simpleRichSequence.setCircular(getCircular());
-            if (getDescription() != null && !getDescription().isEmpty()) {
-                simpleRichSequence.setDescription(getDescription());
-            }
+    private void writeHeader(Writer writer, int length) throws IOException {
+        StringBuilder locus = new StringBuilder("LOCUS       ");
+        appendPadded(locus, normalizeLocusName(name), 16);
+        locus.append(' ');
+        String lengthString = Integer.toString(length);
+        for (int i = lengthString.length(); i < 11; i += 1)
+            locus.append(' ');
+        locus.append(lengthString).append(" bp    DNA     ");
+        appendPadded(locus, getCircular() ? "circular" : "linear", 8);
+        locus.append(' ');
+        if (getDivision() != null)
+            locus.append(getDivision());
+        int end = locus.length();
+        while (locus.charAt(end - 1) == ' ')
+            end -= 1;
+        writer.write(locus.toString(), 0, end);
+        writer.write(System.lineSeparator());
+
+        if (getDescription() != null && !getDescription().isEmpty())
+            writeKeyValue(writer, "DEFINITION", getDescription(), HEADER_INDENT, ' ');
+
+        String accession = accessionNumber == null ? "" : accessionNumber;
+        writeKeyValue(writer, "ACCESSION", accession, HEADER_INDENT, ' ');
+        String versionString = accession + "." + version;
+        if (getIdentifier() != null && !getIdentifier().isEmpty())
+            versionString += "  GI:" + getIdentifier();
+        writeKeyValue(writer, "VERSION", versionString, HEADER_INDENT, ' ');
+        writeKeyValue(writer, "KEYWORDS", ".", HEADER_INDENT, ' ');
+    }
 
-            if (getDivision() != null && !getDivision().isEmpty()) {
-                simpleRichSequence.setDivision(getDivision());
-            }
+    private void writeFeatures(Writer writer, Sequence sequence) throws IOException {
+        writer.write("FEATURES             Location/Qualifiers");
+        writer.write(System.lineSeparator());
+        if (sequence.getSequenceFeatures() == null)
+            return;
 
-            if (getIdentifier() != null && !getIdentifier().isEmpty()) {
-                simpleRichSequence.setIdentifier(getIdentifier());
+        List<SequenceFeature> features = new ArrayList<>(sequence.getSequenceFeatures().size());
+        for (SequenceFeature sequenceFeature : sequence.getSequenceFeatures()) {
+            if (sequenceFeature.getFeature() == null) {
+                Logger.warn("In sequence with id: " + sequence.getId()
+                        + "; SequenceFeature object has no feature assigned to it.");
+                continue;
             }
 
-            if (sequence.getSequenceFeatures() != null && sequence.getSequenceFeatures().size() > 0) {
-                Set<Feature> featureSet = new LinkedHashSet<>();
-
-                for (SequenceFeature sequenceFeature : sequence.getSequenceFeatures()) {
-                    if (sequenceFeature.getFeature() == null) {
-                        Logger.warn("In sequence with id: " + sequence.getId()
-                                + "; SequenceFeature object has no feature assigned to it.");
-
-                        continue;
-                    }
-
-                    RichFeature.Template featureTemplate = new RichFeature.Template();
-                    featureTemplate.annotation = getAnnotations(sequenceFeature);
-
-                    Set<AnnotationLocation> locations = sequenceFeature.getAnnotationLocations();
-                    if (locations == null || locations.size() == 0)
-                        continue;
-
-                    if (locations.size() == 1) {
-                        featureTemplate.location = new SimpleRichLocation(new SimplePosition(
-                                sequenceFeature.getUniqueGenbankStart()), new SimplePosition(
-                                sequenceFeature.getUniqueEnd()), 1, getStrand(sequenceFeature));
-                    } else {
-                        ArrayList<Location> members = new ArrayList<>();
-                        for (AnnotationLocation location : locations) {
-                            members.add(new SimpleRichLocation(new SimplePosition(location.getGenbankStart()),
-                                    new SimplePosition(location.getEnd()), 1, getStrand(sequenceFeature)));
-                        }
-                        featureTemplate.location = new CompoundRichLocation(members);
-                    }
-
-                    featureTemplate.source = getDefaultFeatureSource();
-                    featureTemplate.type = getFeatureType(sequenceFeature);
-                    featureTemplate.rankedCrossRefs = new TreeSet<>();
-
-                    SimpleRichFeature simpleRichFeature = new SimpleRichFeature(simpleRichSequence, featureTemplate);
-                    featureSet.add(simpleRichFeature);
-                }
+            Set<AnnotationLocation> locations = sequenceFeature.getAnnotationLocations();
+            if (locations == null || locations.isEmpty())
+                continue;
+            features.add(sequenceFeature);
+        }
+        features.sort(new SequenceFeatureComparator());
+
+        for (SequenceFeature sequenceFeature : features) {
+            writeKeyValue(writer, "     " + getFeatureType(sequenceFeature), getLocation(sequenceFeature),
+                    FEATURE_INDENT, ',');
 
-                simpleRichSequence.setFeatureSet(featureSet);
+            if (sequenceFeature.getName() != null && !sequenceFeature.getName().isEmpty())
+                writeQualifier(writer, "label", normalizeFeatureValue(sequenceFeature.getName()));
+
+            for (SequenceFeatureAttribute attribute : sequenceFeature.getSequenceFeatureAttributes()) {
+                String key = attribute.getKey();
+                if (key == null || key.isEmpty() || key.equalsIgnoreCase("label")) // skip invalid or "label" note
+                    continue;
+                writeQualifier(writer, key, normalizeFeatureValue(attribute.getValue()));
             }
-        } catch (Exception e) {
-            throw new IOException("Failed to create generate genbank file", e);
         }
+    }
 
-        RichSequence.IOTools.writeGenbank(outputStream, simpleRichSequence, getNamespace());
+    private void writeQualifier(Writer writer, String key, String value) throws IOException {
+        String qualifier;
+        if (value.isEmpty())
+            qualifier = "/" + key;
+        else if (UNQUOTED_QUALIFIERS.contains(key))
+            qualifier = "/" + key + "=" + value;
+        else
+            qualifier = "/" + key + "=\"" + value + "\"";
+        writeKeyValue(writer, "", qualifier, FEATURE_INDENT, ' ');
+    }
+
+    // writes the bases, lower cased, in numbered lines of 60 bases in blocks of 10
+    private void writeOrigin(Writer writer, String sequence) throws IOException {
+        writer.write("ORIGIN");
+        writer.write(System.lineSeparator());
+
+        int length = sequence.length();
+        char[] bases = new char[BASES_PER_LINE];
+        char[] line = new char[POSITION_WIDTH + BASES_PER_LINE + BASES_PER_LINE / BASES_PER_BLOCK];
+        for (int start = 0; start < length; start += BASES_PER_LINE) {
+            int end = Math.min(length, start + BASES_PER_LINE);
+            sequence.getChars(start, end, bases, 0);
+
+            String position = Integer.toString(start + 1);
+            int index = 0;
+            for (int i = position.length(); i < POSITION_WIDTH; i += 1)
+                line[index++] = ' ';
+            for (int i = 0; i < position.length(); i += 1)
+                line[index++] = position.charAt(i);
+
+            for (int i = 0; i < end - start; i += 1) {
+                if (i % BASES_PER_BLOCK == 0)
+                    line[index++] = ' ';
+                line[index++] = Character.toLowerCase(bases[i]);
+            }
+            writer.write(line, 0, index);
+            writer.write(System.lineSeparator());
+        }
+        writer.write("//");
+        writer.write(System.lineSeparator());
     }
 
     /**
-     * Get the strand of the {@link SequenceFeature} feature.
-     *
-     * @param sequenceFeature
-     * @return Strand of the feature.
+     * Writes a key (padded to the indent) followed by the value, wrapped at the line width. Lines of the value are
+     * broken after the last separator that fits on the line, or at the line width if there is none
      */
-    protected Strand getStrand(SequenceFeature sequenceFeature) {
-        Strand strand;
+    private void writeKeyValue(Writer writer, String key, String value, int indent, char separator)
+            throws IOException {
+        int width = LINE_WIDTH - indent - 1;
+        writer.write(key);
+        for (int i = key.length(); i < indent; i += 1)
+            writer.write(' ');
+        if (key.length() >= indent)
+            writer.write(' ');
+
+        boolean first = true;
+        int start = 0;
+        int length = value.length();
+        while (first || start < length) {
+            if (!first) {
+                for (int i = 0; i < indent; i += 1)
+                    writer.write(' ');
+            }
+            first = false;
 
-        if (sequenceFeature.getStrand() == -1) {
-            strand = Strand.NEGATIVE_STRAND;
-        } else if (sequenceFeature.getStrand() == 1) {
-            strand = Strand.POSITIVE_STRAND;
-        } else {
-            strand = Strand.UNKNOWN_STRAND;
-        }
+            int newLine = value.indexOf('\n', start);
+            int lineEnd = newLine == -1 ? length : newLine;
+            int next;
+            if (lineEnd - start <= width) {
+                next = lineEnd + 1;
+            } else {
+                lineEnd = start + width;
+                int separatorIndex = value.lastIndexOf(separator, separator == ' ' ? lineEnd : lineEnd - 1);
+                if (separatorIndex > start) {
+                    // spaces are dropped at line breaks, other separators are kept at the end of the line
+                    lineEnd = separator == ' ' ? separatorIndex : separatorIndex + 1;
+                    next = separatorIndex + 1;
+                } else {
+                    next = lineEnd;
+                }
+            }
 
-        return strand;
+            writer.write(value, start, lineEnd - start);
+            writer.write(System.lineSeparator());
+            start = next;
+        }
     }
 
     /**
-     * Convert {@link SequenceFeature} into a {@link RichAnnotation}.
+     * Genbank location of the sequence feature; e.g. <code>complement(join(1..50,101..150))</code>
      *
      * @param sequenceFeature
-     * @return RichAnnotation object.
+     * @return location string
      */
-    protected RichAnnotation getAnnotations(SequenceFeature sequenceFeature) {
-        RichAnnotation richAnnotation = new SimpleRichAnnotation();
-
-        if (sequenceFeature.getName() != null && !sequenceFeature.getName().isEmpty()) {
-            richAnnotation
-                    .addNote(new SimpleNote(RichObjectFactory.getDefaultOntology().getOrCreateTerm(
-                            "label"), normalizeFeatureValue(sequenceFeature.getName()), 1));
-        }
-
-        int i = 0;
-        for (SequenceFeatureAttribute attribute : sequenceFeature.getSequenceFeatureAttributes()) {
-            String key = attribute.getKey();
-            String value = attribute.getValue();
-            if (key == null || key.isEmpty() || key.toLowerCase().equals(
-                    "label")) { // skip invalid or feature with "label" note
-                continue;
-            }
-
-            richAnnotation.addNote(new SimpleNote(RichObjectFactory.getDefaultOntology()
-                    .getOrCreateTerm(key), normalizeFeatureValue(value),
-                    i + 2));
-            i++;
+    protected String getLocation(SequenceFeature sequenceFeature) {
+        StringBuilder builder = new StringBuilder();
+        boolean complement = sequenceFeature.getStrand() == -1;
+        if (complement)
+            builder.append("complement(");
+
+        Set<AnnotationLocation> locations = sequenceFeature.getAnnotationLocations();
+        if (locations.size() > 1)
+            builder.append("join(");
+
+        boolean first = true;
+        for (AnnotationLocation location : locations) {
+            if (!first)
+                builder.append(',');
+            first = false;
+            builder.append(location.getGenbankStart());
+            if (location.getGenbankStart() != location.getEnd())
+                builder.append("..").append(location.getEnd());
         }
 
-        return richAnnotation;
+        if (locations.size() > 1)
+            builder.append(')');
+        if (complement)
+            builder.append(')');
+        return builder.toString();
     }
 
     /**
@@ -243,13 +328,10 @@ public class GenbankFormatter extends AbstractFormatter {
         return featureType;
     }
 
-    /**
-     * Return the default feature source for a Genbank file.
-     *
-     * @return Returns "org.jbei".
-     */
-    protected String getDefaultFeatureSource() {
-        return "org.jbei";
+    private static void appendPadded(StringBuilder builder, String value, int width) {
+        builder.append(value);
+        for (int i = value.length(); i < width; i += 1)
+            builder.append(' ');
     }
 
     /**
@@ -301,4 +383,4 @@ public class GenbankFormatter extends AbstractFormatter {
 
         return result;
     }
-}
\ No newline at end of file
+}
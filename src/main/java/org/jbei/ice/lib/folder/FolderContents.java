@@ -25,6 +25,7 @@ import org.jbei.ice.lib.net.RemoteContact;
 import org.jbei.ice.lib.net.RemoteTransfer;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.ModelToInfoFactory;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.hibernate.dao.EntryDAO;
 import org.jbei.ice.storage.hibernate.dao.FolderDAO;
 import org.jbei.ice.storage.hibernate.dao.PermissionDAO;
@@ -378,13 +379,27 @@ public class FolderContents {
 
         // retrieve folder contents
         List<Long> results = folderDAO.retrieveFolderContents(folderId, pageParameters, visibleOnly);
-        for (Long entryId : results) {
-            PartData info = ModelToInfoFactory.createTableView(entryId, fields);
-            details.getEntries().add(info);
-        }
+        details.getEntries().addAll(ModelToInfoFactory.createTableViews(results, fields));
+        setNextCursor(details, results, pageParameters);
         return details;
     }
 
+    /**
+     * Sets the cursor for the page of entries following the retrieved page, if cursor paging was requested
+     * and the page is full
+     */
+    private void setNextCursor(FolderDetails details, List<Long> results, PageParameters pageParameters) {
+        if (StringUtils.isEmpty(pageParameters.getCursor()) || results.isEmpty()
+                || results.size() < pageParameters.getLimit())
+            return;
+
+        long lastId = results.get(results.size() - 1);
+        PageCursor cursor = DAOFactory.getEntryDAO().getCursor(lastId, pageParameters.getSortField(),
+                pageParameters.isAscending());
+        if (cursor != null)
+            details.setNextCursor(cursor.encode());
+    }
+
     /**
      * Determines (based on user access privileges and folder type), if the
      *
@@ -487,11 +502,11 @@ public class FolderContents {
 
         // retrieve folder contents
         List<Long> results = folderDAO.retrieveFolderContents(folderId, pageParameters, true);
-        for (Long entryId : results) {
-            PartData info = ModelToInfoFactory.createTableView(entryId, fields);
+        for (PartData info : ModelToInfoFactory.createTableViews(results, fields)) {
             info.setCanEdit(canEdit);
             details.getEntries().add(info);
         }
+        setNextCursor(details, results, pageParameters);
         return details;
     }
 
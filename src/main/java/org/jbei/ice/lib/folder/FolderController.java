@@ -119,14 +119,9 @@ public class FolderController {
         FolderDetails details = new FolderDetails();
         details.setCount(visibleCount);
 
-        for (Long id : results) {
-            try {
-                PartData info = ModelToInfoFactory.createTableView(id, fields);
-                info.setPublicRead(true);
-                details.getEntries().add(info);
-            } catch (Exception e) {
-                Logger.error(e);
-            }
+        for (PartData info : ModelToInfoFactory.createTableViews(results, fields)) {
+            info.setPublicRead(true);
+            details.getEntries().add(info);
         }
         return details;
     }
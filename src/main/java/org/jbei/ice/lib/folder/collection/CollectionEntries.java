@@ -14,6 +14,7 @@ import org.jbei.ice.lib.group.GroupController;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.ModelToInfoFactory;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.hibernate.dao.EntryDAO;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Group;
@@ -122,6 +123,70 @@ public class CollectionEntries {
         }
     }
 
+    /**
+     * Retrieves parts based on the type of collection using cursor paging; where each page is retrieved by seeking
+     * past the last entry of the previous page instead of skipping over an offset, so the cost of retrieving a page
+     * does not depend on its position. Supported for the personal, available (featured) and shared collections
+     *
+     * @param sortField sort field
+     * @param asc       sort order
+     * @param cursor    cursor returned with the previous page or {@link PageCursor#START} for the first page
+     * @param limit     maximum number of entries to retrieve
+     * @param filter    optional text
+     * @param fields    fields to include
+     * @return wrapper around list of parts that conform to the parameters, the maximum number
+     * of such entries that are available (only counted for the first page, so that the cost of retrieving the
+     * following pages does not depend on the size of the collection) and the cursor for the next page (if any)
+     * @throws IllegalArgumentException if the cursor is not valid for the sort or the collection type does not
+     *                                  support cursor paging
+     */
+    public Results<PartData> getEntries(ColumnField sortField, boolean asc, String cursor, int limit, String filter,
+                                        List<String> fields) {
+        PageCursor pageCursor = PageCursor.decode(cursor, sortField, asc);
+        List<Long> ids;
+        long count = 0;
+
+        switch (this.type) {
+            case PERSONAL:
+                if (userId == null || userId.isEmpty())
+                    throw new PermissionException("User id is required to retrieve owner entries");
+                ids = entryDAO.retrieveOwnerEntries(userId, pageCursor, limit, filter);
+                if (pageCursor.isStart())
+                    count = new OwnerEntries(userId, userId).getNumberOfOwnerEntries();
+                break;
+
+            case FEATURED:
+            case AVAILABLE:
+                VisibleEntries visibleEntries = new VisibleEntries(userId);
+                ids = visibleEntries.getEntryIds(pageCursor, limit, filter);
+                if (pageCursor.isStart())
+                    count = visibleEntries.getEntryCount(filter);
+                break;
+
+            case SHARED:
+                SharedEntries sharedEntries = new SharedEntries(this.userId);
+                ids = sharedEntries.getEntryIds(pageCursor, limit, filter);
+                if (pageCursor.isStart())
+                    count = sharedEntries.getNumberOfEntries(filter);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Cursor paging is not supported for collection " + this.type);
+        }
+
+        Results<PartData> results = new Results<>();
+        results.setResultCount(count);
+        results.setData(ModelToInfoFactory.createTableViews(ids, fields));
+
+        // a full page of ids indicates that there may be more entries (whether or not they could all be retrieved)
+        if (!ids.isEmpty() && ids.size() == limit) {
+            PageCursor next = entryDAO.getCursor(ids.get(ids.size() - 1), sortField, asc);
+            if (next != null)
+                results.setNextCursor(next.encode());
+        }
+        return results;
+    }
+
     private Results<PartData> getSampleEntries(ColumnField field, boolean asc, int offset, int limit, String filter, List<String> fields) {
         SampleEntries entries = new SampleEntries(this.userId);
         final List<PartData> list = entries.get(field, asc, offset, limit, filter, fields);
@@ -218,10 +283,7 @@ public class CollectionEntries {
                                                      int offset, int limit, String user, String filter, List<String> fields) {
         List<Long> entries = entryDAO.getByVisibility(user, visibility, field, asc, offset, limit, filter);
         Results<PartData> results = new Results<>();
-        for (Long id : entries) {
-            PartData info = ModelToInfoFactory.createTableView(id, fields);
-            results.getData().add(info);
-        }
+        results.getData().addAll(ModelToInfoFactory.createTableViews(entries, fields));
 
         results.setResultCount(entryDAO.getByVisibilityCount(user, visibility, filter));
         return results;
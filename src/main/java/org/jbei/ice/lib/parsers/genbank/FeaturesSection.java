@@ -131,8 +131,8 @@ public class FeaturesSection extends GenBankSection {
         if (currentNote == null)
             return false;
 
-        line = line.replaceAll("\\\\", " ");
-        line = line.replaceAll("\"\"", "\"");
+        line = line.replace('\\', ' ');
+        line = line.replace("\"\"", "\"");
 
         currentNote.setValue(currentNote.getValue() + line);
         return true;
@@ -173,8 +173,8 @@ public class FeaturesSection extends GenBankSection {
         if (value.endsWith("\""))
             value = value.substring(0, value.length() - 1);
 
-        value = value.replaceAll("\\\\", " ");
-        value = value.replaceAll("\"\"", "\"");
+        value = value.replace('\\', ' ');
+        value = value.replace("\"\"", "\"");
 
         currentNote.setValue(value);
         determineFeatureName();
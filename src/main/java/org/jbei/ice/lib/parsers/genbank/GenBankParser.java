@@ -1,6 +1,5 @@
 package org.jbei.ice.lib.parsers.genbank;
 
-import org.apache.commons.lang3.StringUtils;
 import org.jbei.ice.lib.dto.FeaturedDNASequence;
 import org.jbei.ice.lib.parsers.AbstractParser;
 
@@ -15,17 +14,6 @@ public class GenBankParser extends AbstractParser {
 
     private FeaturedDNASequence sequence;
 
-    private String getFirstWordFromLine(String line) {
-        if (StringUtils.isBlank(line))
-            return "";
-
-        String[] chunks = line.split("\\s+");
-        if (chunks.length == 0)
-            return "";
-
-        return chunks[0];
-    }
-
     /**
      * More like a section factory.
      * Uses the GenBank tag that has been detected to obtain the appropriate GenBank section
@@ -60,8 +48,7 @@ public class GenBankParser extends AbstractParser {
 
         while (iterator.hasNext()) {
             String line = iterator.next();
-            String firstWord = getFirstWordFromLine(line);
-            GenbankTag genbankTag = GenbankTag.getTagForString(firstWord);
+            GenbankTag genbankTag = GenbankTag.getTagForLine(line);
 
             // encountered new tag
             if (genbankTag != null) {
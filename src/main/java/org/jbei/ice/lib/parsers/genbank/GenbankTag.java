@@ -21,6 +21,8 @@ public enum GenbankTag {
     CONTIG,
     ORIGIN;
 
+    private static final GenbankTag[] TAGS = values();
+
     public static GenbankTag getTagForString(String tagString) {
         if (StringUtils.isBlank(tagString))
             return null;
@@ -32,4 +34,27 @@ public enum GenbankTag {
 
         return null;
     }
+
+    /**
+     * Detects the tag at the start of a line of a GenBank file without splitting the line. Tags are expected to start
+     * at the beginning of the line and be followed by whitespace or the end of the line
+     *
+     * @param line line of GenBank file
+     * @return tag for the first word of the line, or null if the line does not start with a tag
+     */
+    public static GenbankTag getTagForLine(String line) {
+        if (line == null || line.isEmpty() || Character.isWhitespace(line.charAt(0)))
+            return null;
+
+        int length = 0;
+        while (length < line.length() && !Character.isWhitespace(line.charAt(length)))
+            length += 1;
+
+        for (GenbankTag tag : TAGS) {
+            String name = tag.name();
+            if (name.length() == length && line.regionMatches(true, 0, name, 0, length))
+                return tag;
+        }
+        return null;
+    }
 }
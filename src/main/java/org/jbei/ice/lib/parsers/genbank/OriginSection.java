@@ -1,15 +1,25 @@
 package org.jbei.ice.lib.parsers.genbank;
 
 import org.jbei.ice.lib.dto.FeaturedDNASequence;
-import org.jbei.ice.lib.utils.Utils;
-
-import java.util.Arrays;
 
 /**
+ * <code>ORIGIN</code> section of a GenBank file.
+ * <p>
+ * The bases of each line are appended (lower cased) directly to the sequence as the line is scanned, using a
+ * lookup table for (ascii) characters, so that no temporary strings are created per line
+ *
  * @author Hector Plahar
  */
 public class OriginSection extends GenBankSection {
 
+    // lower case value of ascii characters; 0 for whitespace, which is skipped
+    private static final char[] LOWER_CASE = new char[128];
+
+    static {
+        for (char c = 0; c < LOWER_CASE.length; c += 1)
+            LOWER_CASE[c] = Character.isWhitespace(c) ? 0 : Character.toLowerCase(c);
+    }
+
     private StringBuilder sequenceString;
 
     public OriginSection(FeaturedDNASequence sequence) {
@@ -21,14 +31,42 @@ public class OriginSection extends GenBankSection {
         if (line.contains("ORIGIN"))
             return;
 
-        if (line.trim().equals("//"))
+        if (isEnd(line)) {
             sequence.setSequence(sequenceString.toString());
+            return;
+        }
+
+        int length = line.length();
+        int i = 0;
+        while (i < length && Character.isWhitespace(line.charAt(i)))
+            i += 1;
+
+        // skip the base number at the start of the line. sometimes sequence block is un-numbered fasta
+        int start = i;
+        while (i < length && line.charAt(i) >= '0' && line.charAt(i) <= '9')
+            i += 1;
+        if (i < length && !Character.isWhitespace(line.charAt(i)))
+            i = start;
 
-        line = cleanSequence(line);
-        String[] chunks = line.split("\\s+");
-        if (chunks[0].matches("\\d*")) { // sometimes sequence block is un-numbered fasta
-            chunks[0] = "";
+        for (; i < length; i += 1) {
+            char c = line.charAt(i);
+            if (c < LOWER_CASE.length) {
+                if (LOWER_CASE[c] != 0)
+                    sequenceString.append(LOWER_CASE[c]);
+            } else if (!Character.isWhitespace(c)) {
+                sequenceString.append(Character.toLowerCase(c));
+            }
         }
-        sequenceString.append(Utils.join("", Arrays.asList(chunks)).toLowerCase());
+    }
+
+    // checks for the "//" line that ends the record
+    private static boolean isEnd(String line) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start)))
+            start += 1;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1)))
+            end -= 1;
+        return end - start == 2 && line.charAt(start) == '/' && line.charAt(start + 1) == '/';
     }
 }
@@ -0,0 +1,104 @@
+package org.jbei.ice.lib.search;
+
+import org.jbei.ice.storage.IDataTransferModel;
+
+/**
+ * Status of the blast searches that are running and waiting to run
+ */
+public class BlastQueueStatus implements IDataTransferModel {
+
+    private final int maxRunning;
+    private final int maxQueued;
+    private final int running;
+    private final int queued;
+    private final long completed;
+    private final long rejected;
+    private final long timedOut;
+    private final long cancelled;
+    private final long averageRunTime;
+    private final long maxRunTime;
+
+    public BlastQueueStatus(int maxRunning, int maxQueued, int running, int queued, long completed, long rejected,
+                            long timedOut, long cancelled, long averageRunTime, long maxRunTime) {
+        this.maxRunning = maxRunning;
+        this.maxQueued = maxQueued;
+        this.running = running;
+        this.queued = queued;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.timedOut = timedOut;
+        this.cancelled = cancelled;
+        this.averageRunTime = averageRunTime;
+        this.maxRunTime = maxRunTime;
+    }
+
+    /**
+     * @return maximum number of blast processes that run at the same time
+     */
+    public int getMaxRunning() {
+        return this.maxRunning;
+    }
+
+    /**
+     * @return maximum number of searches that wait for a blast process
+     */
+    public int getMaxQueued() {
+        return this.maxQueued;
+    }
+
+    /**
+     * @return number of blast processes running
+     */
+    public int getRunning() {
+        return this.running;
+    }
+
+    /**
+     * @return number of searches waiting for a blast process
+     */
+    public int getQueued() {
+        return this.queued;
+    }
+
+    /**
+     * @return number of blast processes that have run since startup
+     */
+    public long getCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * @return number of searches rejected since startup because the queue was full
+     */
+    public long getRejected() {
+        return this.rejected;
+    }
+
+    /**
+     * @return number of blast processes killed since startup because they took too long
+     */
+    public long getTimedOut() {
+        return this.timedOut;
+    }
+
+    /**
+     * @return number of searches cancelled since startup
+     */
+    public long getCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return average time (ms) taken by a blast process
+     */
+    public long getAverageRunTime() {
+        return this.averageRunTime;
+    }
+
+    /**
+     * @return longest time (ms) taken by a blast process
+     */
+    public long getMaxRunTime() {
+        return this.maxRunTime;
+    }
+}
@@ -9,10 +9,24 @@ public class IndexBuildStatus implements IDataTransferModel {
 
     private final long done;
     private final long total;
+    private final double rate;
+    private final long eta;
 
     public IndexBuildStatus(long done, long total) {
+        this(done, total, 0, -1);
+    }
+
+    /**
+     * @param done  number of items indexed
+     * @param total total number of items to index
+     * @param rate  items indexed per second
+     * @param eta   estimated number of seconds to completion; -1 if unknown
+     */
+    public IndexBuildStatus(long done, long total, double rate, long eta) {
         this.done = done;
         this.total = total;
+        this.rate = rate;
+        this.eta = eta;
     }
 
     public long getDone() {
@@ -22,4 +36,12 @@ public class IndexBuildStatus implements IDataTransferModel {
     public long getTotal() {
         return this.total;
     }
+
+    public double getRate() {
+        return this.rate;
+    }
+
+    public long getEta() {
+        return this.eta;
+    }
 }
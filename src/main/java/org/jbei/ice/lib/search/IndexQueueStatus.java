@@ -0,0 +1,55 @@
+package org.jbei.ice.lib.search;
+
+import org.jbei.ice.storage.IDataTransferModel;
+
+/**
+ * Status of the queue of pending (asynchronous) search index updates
+ */
+public class IndexQueueStatus implements IDataTransferModel {
+
+    private final boolean async;
+    private final int pending;
+    private final long lag;
+    private final long indexed;
+    private final long failed;
+
+    public IndexQueueStatus(boolean async, int pending, long lag, long indexed, long failed) {
+        this.async = async;
+        this.pending = pending;
+        this.lag = lag;
+        this.indexed = indexed;
+        this.failed = failed;
+    }
+
+    public boolean isAsync() {
+        return this.async;
+    }
+
+    /**
+     * @return number of entries and folders waiting to be indexed
+     */
+    public int getPending() {
+        return this.pending;
+    }
+
+    /**
+     * @return time (ms) by which the search index lags behind entry changes
+     */
+    public long getLag() {
+        return this.lag;
+    }
+
+    /**
+     * @return number of entries indexed asynchronously since startup
+     */
+    public long getIndexed() {
+        return this.indexed;
+    }
+
+    /**
+     * @return number of entries that could not be indexed asynchronously (after retrying) since startup
+     */
+    public long getFailed() {
+        return this.failed;
+    }
+}
@@ -12,6 +12,7 @@ public class IndexerProgressMonitor implements MassIndexerProgressMonitor {
     private static IndexerProgressMonitor INSTANCE = new IndexerProgressMonitor();
     private final AtomicLong documentsDoneCounter = new AtomicLong();
     private final AtomicLong totalCounter = new AtomicLong();
+    private final AtomicLong startTime = new AtomicLong();
 
     private IndexerProgressMonitor() {
     }
@@ -20,6 +21,17 @@ public class IndexerProgressMonitor implements MassIndexerProgressMonitor {
         return INSTANCE;
     }
 
+    /**
+     * Resets the counters at the start of an index build
+     *
+     * @param total total number of documents to be indexed
+     */
+    public void start(long total) {
+        documentsDoneCounter.set(0L);
+        totalCounter.set(total);
+        startTime.set(System.currentTimeMillis());
+    }
+
     @Override
     /**
      * {@inheritDoc}
@@ -40,6 +52,7 @@ public class IndexerProgressMonitor implements MassIndexerProgressMonitor {
      * {@inheritDoc}
      */
     public void addToTotalCount(long count) {
+        startTime.compareAndSet(0L, System.currentTimeMillis());
         totalCounter.addAndGet(count);
     }
 
@@ -48,8 +61,9 @@ public class IndexerProgressMonitor implements MassIndexerProgressMonitor {
      * {@inheritDoc}
      */
     public void indexingCompleted() {
-        documentsDoneCounter.set(0l);
-        totalCounter.set(0l);
+        documentsDoneCounter.set(0L);
+        totalCounter.set(0L);
+        startTime.set(0L);
     }
 
     @Override
@@ -64,7 +78,20 @@ public class IndexerProgressMonitor implements MassIndexerProgressMonitor {
 
     }
 
+    /**
+     * @return number of documents indexed and total for the current build, along with the average indexing rate
+     * (documents/second) and estimated time to completion (seconds) since the build started
+     */
     public IndexBuildStatus getStatus() {
-        return new IndexBuildStatus(documentsDoneCounter.get(), totalCounter.get());
+        long done = documentsDoneCounter.get();
+        long total = totalCounter.get();
+        long started = startTime.get();
+        if (started == 0 || done == 0)
+            return new IndexBuildStatus(done, total);
+
+        double seconds = Math.max(1, System.currentTimeMillis() - started) / 1000.0;
+        double rate = done / seconds;
+        long eta = (long) Math.ceil(Math.max(0, total - done) / rate);
+        return new IndexBuildStatus(done, total, rate, eta);
     }
 }
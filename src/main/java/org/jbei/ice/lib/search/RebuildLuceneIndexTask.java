@@ -1,35 +1,281 @@
 package org.jbei.ice.lib.search;
 
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.search.FullTextSession;
-import org.hibernate.search.MassIndexer;
 import org.hibernate.search.Search;
 import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.ConfigurationKey;
 import org.jbei.ice.lib.executor.Task;
+import org.jbei.ice.lib.utils.Utils;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.Message;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Task to rebuild lucene index
+ * Task to rebuild lucene index.
+ * <p>
+ * The entry ids are read in ascending order by the task (the producer) and split into batches which are loaded and
+ * indexed, each in its own transaction, by a dedicated pool of loader threads. After all the batches up to an id have
+ * been committed, that id is recorded as a checkpoint in the data directory so that a rebuild that is interrupted
+ * (e.g. by a restart) resumes after it instead of starting over (see {@link #hasCheckpoint()}). The (much smaller)
+ * message index is rebuilt from the start by the task once all the entries are indexed.
+ * <p>
+ * The number of loader threads, the batch size and the id fetch size are set using the hibernate configuration
+ * properties {@link #LOADER_THREADS_PROPERTY}, {@link #BATCH_SIZE_PROPERTY} and {@link #ID_FETCH_SIZE_PROPERTY}
  *
  * @author Hector Plahar
  */
 public class RebuildLuceneIndexTask extends Task {
 
+    public static final String LOADER_THREADS_PROPERTY = "ice.search.reindex.loader_threads";
+    public static final String BATCH_SIZE_PROPERTY = "ice.search.reindex.batch_size";
+    public static final String ID_FETCH_SIZE_PROPERTY = "ice.search.reindex.id_fetch_size";
+
+    private static final String CHECKPOINT_FILE = "lucene-reindex.checkpoint";
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private final boolean resume;
+
+    /**
+     * Creates a task to rebuild the index from the start
+     */
+    public RebuildLuceneIndexTask() {
+        this(false);
+    }
+
+    /**
+     * @param resume if true, the rebuild resumes after the last checkpoint (if any) of an interrupted rebuild.
+     *               Otherwise the index is cleared and rebuilt from the start
+     */
+    public RebuildLuceneIndexTask(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * @return true if there is a checkpoint for an interrupted rebuild
+     */
+    public static boolean hasCheckpoint() {
+        return Files.exists(getCheckpointPath());
+    }
+
     @Override
     public void execute() {
-        Logger.info("Rebuilding lucene index in background");
-        Session session = HibernateUtil.newSession();
-        FullTextSession fullTextSession = Search.getFullTextSession(session);
-        MassIndexer indexer = fullTextSession.createIndexer();
-        indexer.idFetchSize(20);
-        indexer.progressMonitor(IndexerProgressMonitor.getInstance());
+        if (!running.compareAndSet(false, true)) {
+            Logger.warn("Lucene rebuild already in progress");
+            return;
+        }
 
         try {
-            indexer.startAndWait();
+            Path checkpointPath = getCheckpointPath();
+            long lastId = resume ? readCheckpoint(checkpointPath) : 0;
+            if (lastId > 0) {
+                Logger.info("Resuming lucene index rebuild after entry id " + lastId);
+            } else {
+                Logger.info("Rebuilding lucene index in background");
+                purgeIndex(Entry.class);
+                writeCheckpoint(checkpointPath, 0);
+            }
+
+            if (rebuild(checkpointPath, lastId)) {
+                rebuildMessages();
+                Files.deleteIfExists(checkpointPath);
+                Logger.info("Lucene rebuild complete");
+            }
+        } catch (IOException e) {
+            Logger.error(e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // indexes entries with ids after the specified id. returns true if all entries were indexed
+    private boolean rebuild(Path checkpointPath, long afterId) throws IOException {
+        Properties properties = getProperties();
+        int loaderThreads = getIntProperty(properties, LOADER_THREADS_PROPERTY, 4);
+        int batchSize = getIntProperty(properties, BATCH_SIZE_PROPERTY, 50);
+        int idFetchSize = getIntProperty(properties, ID_FETCH_SIZE_PROPERTY, 1000);
+
+        IndexerProgressMonitor monitor = IndexerProgressMonitor.getInstance();
+        monitor.start(countEntries(afterId));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService loaders = Executors.newFixedThreadPool(loaderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ice-lucene-reindex-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // submitted batches (last id of batch and completion) in id order
+        Deque<Map.Entry<Long, Future<?>>> pending = new ArrayDeque<>();
+        long lastId = afterId;
+        boolean completed = false;
+        try {
+            List<Long> ids;
+            do {
+                ids = retrieveIds(Entry.class, lastId, idFetchSize);
+                for (int i = 0; i < ids.size(); i += batchSize) {
+                    List<Long> batch = new ArrayList<>(ids.subList(i, Math.min(ids.size(), i + batchSize)));
+                    Future<?> future = loaders.submit(() -> indexEntries(batch));
+                    pending.add(new AbstractMap.SimpleEntry<>(batch.get(batch.size() - 1), future));
+
+                    // bound the number of outstanding batches
+                    while (pending.size() > loaderThreads * 2)
+                        checkpoint(checkpointPath, pending.poll());
+                }
+                if (!ids.isEmpty())
+                    lastId = ids.get(ids.size() - 1);
+            } while (ids.size() == idFetchSize);
+
+            while (!pending.isEmpty())
+                checkpoint(checkpointPath, pending.poll());
+
+            optimizeIndex(Entry.class);
+            completed = true;
         } catch (InterruptedException e) {
-            Thread.interrupted();
+            Thread.currentThread().interrupt();
+            Logger.warn("Lucene rebuild interrupted; will resume from checkpoint");
+        } catch (ExecutionException e) {
+            Logger.error("Lucene rebuild failed; will resume from checkpoint", e.getCause());
+        } finally {
+            loaders.shutdownNow();
+            monitor.indexingCompleted();
+        }
+        return completed;
+    }
+
+    // waits for the batch to be committed and records its last id as the checkpoint
+    private void checkpoint(Path checkpointPath, Map.Entry<Long, Future<?>> batch)
+            throws InterruptedException, ExecutionException, IOException {
+        batch.getValue().get();
+        writeCheckpoint(checkpointPath, batch.getKey());
+    }
+
+    private void indexEntries(List<Long> ids) {
+        IndexerProgressMonitor.getInstance().documentsAdded(index(Entry.class, ids));
+    }
+
+    // re-indexes all messages in batches, in the task thread
+    private void rebuildMessages() {
+        int batchSize = getIntProperty(getProperties(), BATCH_SIZE_PROPERTY, 50);
+        purgeIndex(Message.class);
+
+        long lastId = 0;
+        List<Long> ids;
+        do {
+            ids = retrieveIds(Message.class, lastId, batchSize);
+            if (!ids.isEmpty()) {
+                index(Message.class, ids);
+                lastId = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == batchSize);
+        optimizeIndex(Message.class);
+    }
+
+    // loads and indexes the objects of the specified type in a single transaction. returns the number indexed
+    private int index(Class<?> type, List<Long> ids) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            fullTextSession.setHibernateFlushMode(FlushMode.MANUAL);
+            fullTextSession.setCacheMode(CacheMode.IGNORE);
+            Transaction transaction = fullTextSession.beginTransaction();
+
+            try {
+                List<?> objects = fullTextSession.createQuery("from " + type.getSimpleName() + " where id in :ids")
+                        .setParameterList("ids", ids)
+                        .list();
+                for (Object object : objects)
+                    fullTextSession.index(object);
+
+                fullTextSession.flushToIndexes();
+                transaction.commit();
+                return objects.size();
+            } catch (RuntimeException e) {
+                if (transaction.isActive())
+                    transaction.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private List<Long> retrieveIds(Class<?> type, long afterId, int limit) {
+        try (Session session = HibernateUtil.newSession()) {
+            return session.createQuery("select id from " + type.getSimpleName() + " where id > :id order by id",
+                    Long.class)
+                    .setParameter("id", afterId)
+                    .setMaxResults(limit)
+                    .list();
         }
-        fullTextSession.close();
-        Logger.info("Lucene rebuild complete");
+    }
+
+    private long countEntries(long afterId) {
+        try (Session session = HibernateUtil.newSession()) {
+            return session.createQuery("select count(id) from Entry where id > :id", Long.class)
+                    .setParameter("id", afterId)
+                    .uniqueResult();
+        }
+    }
+
+    private void purgeIndex(Class<?> type) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            fullTextSession.beginTransaction();
+            fullTextSession.purgeAll(type);
+            fullTextSession.flushToIndexes();
+            fullTextSession.getTransaction().commit();
+        }
+    }
+
+    private void optimizeIndex(Class<?> type) {
+        try (Session session = HibernateUtil.newSession()) {
+            Search.getFullTextSession(session).getSearchFactory().optimize(type);
+        }
+    }
+
+    static Path getCheckpointPath() {
+        return Paths.get(Utils.getConfigValue(ConfigurationKey.DATA_DIRECTORY), CHECKPOINT_FILE);
+    }
+
+    private static long readCheckpoint(Path path) {
+        try {
+            if (Files.exists(path))
+                return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            Logger.error("Could not read lucene rebuild checkpoint", e);
+        }
+        return 0;
+    }
+
+    private static void writeCheckpoint(Path path, long id) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        Files.write(tmp, Long.toString(id).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Properties getProperties() {
+        Properties properties = new Properties();
+        properties.putAll(HibernateUtil.getSessionFactory().getProperties());
+        return properties;
+    }
+
+    private static int getIntProperty(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        return Integer.parseInt(value.trim());
     }
 }
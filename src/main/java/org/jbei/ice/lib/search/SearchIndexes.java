@@ -7,8 +7,11 @@ import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.search.*;
 import org.jbei.ice.lib.executor.IceExecutorService;
 import org.jbei.ice.lib.search.blast.BlastException;
+import org.jbei.ice.lib.search.blast.BlastExecutor;
 import org.jbei.ice.lib.search.blast.BlastPlus;
+import org.jbei.ice.lib.search.blast.ExactSequenceSearch;
 import org.jbei.ice.lib.search.blast.StandardBlastDatabase;
+import org.jbei.ice.storage.hibernate.search.EntryIndexQueue;
 import org.jbei.ice.storage.hibernate.search.HibernateSearch;
 
 import java.util.HashMap;
@@ -37,12 +40,18 @@ public class SearchIndexes {
             if (query.getBlastQuery().getBlastProgram() == null)
                 query.getBlastQuery().setBlastProgram(BlastProgram.BLAST_N);
 
-            try {
-                StandardBlastDatabase blastDatabase = StandardBlastDatabase.getInstance();
-                blastResults = blastDatabase.runBlast(query.getBlastQuery());
-            } catch (BlastException e) {
-                Logger.error("Exception running blast " + e.getMessage());
-                return null;
+            // identical sequences are found using the sequence hashes, without running blast. a similarity search
+            // runs blast only, since identical sequences are also reported by blast
+            if (query.getBlastQuery().isExactMatch()) {
+                blastResults = new ExactSequenceSearch().run(query.getBlastQuery().getSequence());
+            } else {
+                try {
+                    StandardBlastDatabase blastDatabase = StandardBlastDatabase.getInstance();
+                    blastResults = blastDatabase.runBlast(query.getBlastQuery());
+                } catch (BlastException e) {
+                    Logger.error("Exception running blast " + e.getMessage());
+                    return null;
+                }
             }
         }
 
@@ -68,6 +77,16 @@ public class SearchIndexes {
         }
     }
 
+    /**
+     * Checks the page cursor of a search query
+     *
+     * @param query search query
+     * @throws IllegalArgumentException if the cursor is malformed or not valid for the sort of the query
+     */
+    public void checkCursor(SearchQuery query) {
+        HibernateSearch.getInstance().decodeCursor(query.getParameters());
+    }
+
     /**
      * Rebuilds the search indices. Admin privileges required
      *
@@ -113,6 +132,23 @@ public class SearchIndexes {
         }
     }
 
+    /**
+     * @return status of the queue of pending search index updates, including how far the index lags behind
+     * entry changes
+     */
+    public IndexQueueStatus getIndexQueueStatus() {
+        EntryIndexQueue queue = EntryIndexQueue.getInstance();
+        return new IndexQueueStatus(queue.isRunning(), queue.getPendingCount(), queue.getLag(),
+                queue.getIndexedCount(), queue.getFailedCount());
+    }
+
+    /**
+     * @return status of the blast searches that are running and waiting to run, including their run times
+     */
+    public BlastQueueStatus getBlastQueueStatus() {
+        return BlastExecutor.getInstance().getStatus();
+    }
+
     /**
      * Parses the query string checking for terms and phrases. A quote is used to indicate
      * the boundaries of a phrase
@@ -0,0 +1,212 @@
+package org.jbei.ice.lib.search.blast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Gathers blast queries that arrive within a short window into batches which are run as a single multi-query
+ * blast search, so that the cost of starting blast and loading the database is shared by the queries of a batch.
+ * Only queries with the same key (e.g. program and database) are batched together.
+ * <p>
+ * The first query of a batch waits for the window to pass (or for the batch to fill up) and then runs the batch
+ * on its thread while the other queries of the batch wait for it to complete. The queries are identified in the
+ * multi-query (fasta) input as <code>q0, q1, ...</code> and the output rows of the batch, which are expected to
+ * have the query id in the first column, are passed (without the query id) to the handler of their query.
+ * <p>
+ * Since one invalid or slow query fails (or times out) the batch of all the queries it was batched with, the queries
+ * of a batch that fails are each run again on their own. The handlers may then be passed rows they were already
+ * passed by the failed batch run
+ */
+class BlastBatcher {
+
+    private final long windowMillis;
+    private final int maxQueries;
+    private final HashMap<String, Batch> open = new HashMap<>();
+
+    /**
+     * Runs the blast search for a batch of queries
+     */
+    interface BatchRunner {
+
+        /**
+         * @param input   query sequences in fasta format
+         * @param handler handler for the rows of the blast output
+         * @return true if blast completed, false if it exited with an error
+         * @throws BlastException on exception running blast
+         */
+        boolean run(String input, BlastSearch.RowHandler handler) throws BlastException;
+    }
+
+    BlastBatcher(long windowMillis, int maxQueries) {
+        this.windowMillis = windowMillis;
+        this.maxQueries = maxQueries;
+    }
+
+    /**
+     * @param sequence query sequence
+     * @return true if the sequence can be batched with other queries; i.e. it is a single plain sequence and not
+     * in fasta format (which could contain multiple queries)
+     */
+    static boolean isBatchable(String sequence) {
+        return sequence != null && !sequence.trim().isEmpty() && sequence.indexOf('>') == -1;
+    }
+
+    /**
+     * Adds a query to the open batch for the key (or a new one) and waits for the batch to be run
+     *
+     * @param key      key of queries that can be batched together
+     * @param sequence query sequence
+     * @param handler  handler for the rows of the blast output for the query
+     * @param runner   used to run the batch, if this is the first query of the batch
+     * @return true if blast completed, false if it exited with an error
+     * @throws BlastException on exception running blast
+     */
+    boolean run(String key, String sequence, BlastSearch.RowHandler handler, BatchRunner runner)
+            throws BlastException {
+        Batch batch;
+        boolean first;
+        synchronized (open) {
+            batch = open.get(key);
+            first = batch == null;
+            if (first) {
+                batch = new Batch(runner);
+                open.put(key, batch);
+            }
+            batch.add(sequence, handler);
+            if (batch.size() >= maxQueries) {
+                open.remove(key);
+                batch.full.countDown();
+            }
+        }
+
+        BooleanSupplier cancelCheck = BlastExecutor.getCancelCheck();
+        if (!first) {
+            try {
+                while (!batch.done.await(BlastExecutor.CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    if (cancelCheck != null && cancelCheck.getAsBoolean())
+                        throw new BlastException("Blast search cancelled");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BlastException("Blast search cancelled", e);
+            }
+            return getResult(batch, sequence, handler, runner);
+        }
+
+        // the batch is run even if this thread is interrupted (or its search is cancelled) since other queries may
+        // be waiting for it
+        boolean interrupted = false;
+        try {
+            batch.full.await(windowMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        synchronized (open) {
+            open.remove(key, batch);
+        }
+
+        BlastExecutor.setCancelCheck(batch.size() == 1 ? cancelCheck : null);
+        try {
+            batch.run();
+        } finally {
+            BlastExecutor.setCancelCheck(cancelCheck);
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        return getResult(batch, sequence, handler, runner);
+    }
+
+    // result of the batch for a query, which is run again on its own if the batch (of more than one query) failed
+    private static boolean getResult(Batch batch, String sequence, BlastSearch.RowHandler handler,
+                                     BatchRunner runner) throws BlastException {
+        if (batch.size() == 1 || !batch.isFailed())
+            return batch.getResult();
+
+        Batch single = new Batch(runner);
+        single.add(sequence, handler);
+        single.run();
+        return single.getResult();
+    }
+
+    /**
+     * Queries that are run together
+     */
+    private static class Batch implements BlastSearch.RowHandler {
+
+        private final BatchRunner runner;
+        private final List<String> sequences = new ArrayList<>();
+        private final List<BlastSearch.RowHandler> handlers = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private boolean[] stopped;
+        private int stoppedCount;
+        private boolean success;
+        private Exception exception;
+
+        Batch(BatchRunner runner) {
+            this.runner = runner;
+        }
+
+        void add(String sequence, BlastSearch.RowHandler handler) {
+            sequences.add(sequence);
+            handlers.add(handler);
+        }
+
+        int size() {
+            return sequences.size();
+        }
+
+        void run() {
+            // no more queries are added once the batch is no longer open
+            StringBuilder input = new StringBuilder();
+            for (int i = 0; i < sequences.size(); i += 1) {
+                input.append(">q").append(i).append("\n").append(sequences.get(i).trim()).append("\n");
+            }
+            stopped = new boolean[sequences.size()];
+
+            try {
+                success = runner.run(input.toString(), this);
+            } catch (BlastException | RuntimeException e) {
+                exception = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        // passes the row to the handler of its query; stops reading once all the handlers have stopped
+        @Override
+        public boolean handle(String[] row) {
+            int index;
+            try {
+                index = Integer.parseInt(row[0].trim().substring(1));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return true;
+            }
+            if (index < 0 || index >= stopped.length || stopped[index])
+                return true;
+
+            if (!handlers.get(index).handle(Arrays.copyOfRange(row, 1, row.length))) {
+                stopped[index] = true;
+                stoppedCount += 1;
+            }
+            return stoppedCount < stopped.length;
+        }
+
+        boolean isFailed() {
+            return exception != null || !success;
+        }
+
+        boolean getResult() throws BlastException {
+            if (exception instanceof BlastException)
+                throw (BlastException) exception;
+            if (exception != null)
+                throw (RuntimeException) exception;
+            return success;
+        }
+    }
+}
@@ -14,6 +14,7 @@ public class BlastDatabase {
     protected static final String DELIMITER = ",";
     protected final Path indexPath;
     protected final String dbName;
+    protected final BlastDatabaseVersions versions;
 
     public BlastDatabase(String folderName) {
         this.indexPath = Paths.get(Utils.getConfigValue(ConfigurationKey.DATA_DIRECTORY), folderName);
@@ -26,5 +27,6 @@ public class BlastDatabase {
             }
         }
         this.dbName = "ice";
+        this.versions = BlastDatabaseVersions.get(this.indexPath);
     }
 }
@@ -0,0 +1,205 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.apache.commons.io.FileUtils;
+import org.jbei.ice.lib.common.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Versions of a blast database. Each (re)build of a database is created in its own version directory
+ * (<code>v1</code>, <code>v2</code>, ...) in the database folder and then published by atomically replacing the
+ * pointer file (<code>current</code>) which names the version to use. Searches acquire the current version for their
+ * duration, so that a rebuild neither interrupts them nor exposes a partially written database. Versions that are
+ * neither current, being built nor in use by a search are deleted.
+ * <p>
+ * There is a single instance per database folder (see {@link #get(Path)})
+ */
+class BlastDatabaseVersions {
+
+    private static final String CURRENT_FILE = "current";
+    private static final Pattern VERSION_PATTERN = Pattern.compile("v\\d+");
+    private static final Map<Path, BlastDatabaseVersions> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final Map<Path, Integer> references;   // version directory -> number of searches and builds using it
+    private Path current;
+    private boolean loaded;
+
+    private BlastDatabaseVersions(Path root) {
+        this.root = root;
+        this.references = new HashMap<>();
+    }
+
+    /**
+     * @param root database folder
+     * @return versions of the database in the folder
+     */
+    static BlastDatabaseVersions get(Path root) {
+        return INSTANCES.computeIfAbsent(root.toAbsolutePath().normalize(), BlastDatabaseVersions::new);
+    }
+
+    /**
+     * @return directory of the current version or null if no version has been published
+     */
+    synchronized Path getCurrent() {
+        if (!loaded) {
+            current = readPointer();
+            loaded = true;
+        }
+        return current;
+    }
+
+    /**
+     * Acquires the current version, which is then not deleted until the returned handle is closed
+     *
+     * @return handle to current version or null if no version has been published
+     */
+    synchronized Version acquire() {
+        Path path = getCurrent();
+        if (path == null)
+            return null;
+
+        references.merge(path, 1, Integer::sum);
+        return new Version(path);
+    }
+
+    /**
+     * @param path version directory
+     * @return true if the version is not acquired by any search or build
+     */
+    synchronized boolean isUnused(Path path) {
+        return !references.containsKey(path);
+    }
+
+    /**
+     * Creates the directory for a new version. The version is acquired until it is published or discarded
+     *
+     * @return new version directory
+     * @throws IOException on exception creating the directory
+     */
+    synchronized Path create() throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (VERSION_PATTERN.matcher(name).matches())
+                    last = Math.max(last, Integer.parseInt(name.substring(1)));
+            }
+        }
+
+        Path path = Files.createDirectory(root.resolve("v" + (last + 1)));
+        references.merge(path, 1, Integer::sum);
+        return path;
+    }
+
+    /**
+     * Makes a new version the current version and deletes the versions that are no longer used
+     *
+     * @param path directory of new version
+     * @throws IOException on exception writing the pointer to the version
+     */
+    synchronized void publish(Path path) throws IOException {
+        Path pointer = root.resolve(CURRENT_FILE);
+        Path tmp = root.resolve(CURRENT_FILE + ".tmp");
+        Files.write(tmp, path.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, pointer, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        current = path;
+        loaded = true;
+        Logger.info("Published blast database version " + path);
+
+        release(path);
+        deleteUnused();
+    }
+
+    /**
+     * Deletes a new version that could not be built
+     *
+     * @param path directory of new version
+     */
+    synchronized void discard(Path path) {
+        release(path);
+        deleteUnused();
+    }
+
+    private void release(Path path) {
+        references.computeIfPresent(path, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    // deletes version directories (and files from before versioning) that are not current or in use
+    private void deleteUnused() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (path.equals(current) || references.containsKey(path) || name.equals(CURRENT_FILE))
+                    continue;
+
+                if (Files.isDirectory(path)) {
+                    if (VERSION_PATTERN.matcher(name).matches()) {
+                        FileUtils.deleteQuietly(path.toFile());
+                        Logger.info("Deleted blast database version " + path);
+                    }
+                } else if (current != null) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            Logger.error("Could not delete unused blast database versions in " + root, e);
+        }
+    }
+
+    private Path readPointer() {
+        Path pointer = root.resolve(CURRENT_FILE);
+        if (!Files.exists(pointer))
+            return null;
+
+        try {
+            String name = new String(Files.readAllBytes(pointer), StandardCharsets.UTF_8).trim();
+            Path path = root.resolve(name);
+            if (VERSION_PATTERN.matcher(name).matches() && Files.isDirectory(path))
+                return path;
+            Logger.error("Invalid blast database version \"" + name + "\" in " + pointer);
+        } catch (IOException e) {
+            Logger.error(e);
+        }
+        return null;
+    }
+
+    /**
+     * Handle to an acquired version, released when closed
+     */
+    class Version implements AutoCloseable {
+
+        private final Path path;
+        private boolean closed;
+
+        private Version(Path path) {
+            this.path = path;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            synchronized (BlastDatabaseVersions.this) {
+                if (closed)
+                    return;
+
+                closed = true;
+                release(path);
+                if (!path.equals(current) && !references.containsKey(path))
+                    deleteUnused();
+            }
+        }
+    }
+}
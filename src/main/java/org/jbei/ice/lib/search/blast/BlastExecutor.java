@@ -0,0 +1,402 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.ConfigurationKey;
+import org.jbei.ice.lib.search.BlastQueueStatus;
+import org.jbei.ice.lib.utils.Utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the blast program processes for searches. The number of processes that run at the same time is limited
+ * ({@link ConfigurationKey#BLAST_MAX_CONCURRENT_SEARCHES}) and searches wait for a free worker in a bounded queue
+ * ({@link ConfigurationKey#BLAST_MAX_QUEUED_SEARCHES}). Searches submitted when the queue is full are rejected
+ * immediately with a {@link BlastQueueFullException}.
+ * <p>
+ * A process that runs for longer than {@link ConfigurationKey#BLAST_SEARCH_TIMEOUT} seconds is killed and the
+ * search fails with a {@link ProgramTookTooLongException} cause. The process (or queued search) is also cancelled
+ * when the thread waiting for the search is interrupted, or when the cancel check of the thread reports that the
+ * search is no longer needed (see {@link #setCancelCheck(BooleanSupplier)}); e.g. because the client that requested
+ * it has disconnected.
+ * <p>
+ * The input of a process is written, and its error output read, on separate threads while its output is read, so
+ * that a process blocked writing to a full pipe does not block the search
+ */
+public class BlastExecutor {
+
+    private static final int DEFAULT_MAX_CONCURRENT = 4;
+    private static final int DEFAULT_MAX_QUEUED = 20;
+    private static final long DEFAULT_TIMEOUT_SECONDS = 300;
+    private static final int MAX_ERROR_OUTPUT = 4096;
+    static final long CANCEL_CHECK_INTERVAL = 2000;
+    private static final ThreadLocal<BooleanSupplier> CANCEL_CHECK = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService streams;
+    private final Set<BlastRun> running = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong totalRunTime = new AtomicLong();
+    private final AtomicLong maxRunTime = new AtomicLong();
+
+    private volatile int maxConcurrent;
+    private volatile int maxQueued;
+    private volatile long timeoutMillis;
+
+    BlastExecutor(int maxConcurrent, int maxQueued, long timeoutMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "ice-blast-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ice-blast-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger streamThreadCount = new AtomicInteger();
+        this.streams = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ice-blast-io-" + streamThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static class SingletonHolder {
+        private static final BlastExecutor INSTANCE = new BlastExecutor(DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_QUEUED,
+                TimeUnit.SECONDS.toMillis(DEFAULT_TIMEOUT_SECONDS));
+    }
+
+    public static BlastExecutor getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Sets the cancel check for the searches run by the calling thread. While the thread waits for a search, the
+     * check is called every {@link #CANCEL_CHECK_INTERVAL} ms (by the waiting thread) and the search is cancelled
+     * if it returns true
+     *
+     * @param check check of whether searches are no longer needed, or null to remove the check
+     */
+    public static void setCancelCheck(BooleanSupplier check) {
+        if (check == null)
+            CANCEL_CHECK.remove();
+        else
+            CANCEL_CHECK.set(check);
+    }
+
+    /**
+     * @return cancel check of the calling thread, or null if there is none
+     */
+    static BooleanSupplier getCancelCheck() {
+        return CANCEL_CHECK.get();
+    }
+
+    /**
+     * Sets the concurrency limit, queue size and timeout from the system configuration. Invalid values are ignored
+     */
+    public void configure() {
+        try {
+            configure(getIntValue(ConfigurationKey.BLAST_MAX_CONCURRENT_SEARCHES, maxConcurrent),
+                    getIntValue(ConfigurationKey.BLAST_MAX_QUEUED_SEARCHES, maxQueued),
+                    TimeUnit.SECONDS.toMillis(getIntValue(ConfigurationKey.BLAST_SEARCH_TIMEOUT,
+                            (int) TimeUnit.MILLISECONDS.toSeconds(timeoutMillis))));
+        } catch (IllegalArgumentException e) {
+            Logger.warn(e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the limits. Searches that are already running or queued are not affected
+     *
+     * @param maxConcurrent maximum number of blast processes that run at the same time
+     * @param maxQueued     maximum number of searches that wait for a process
+     * @param timeoutMillis maximum time (ms) a process is allowed to run for
+     */
+    public synchronized void configure(int maxConcurrent, int maxQueued, long timeoutMillis) {
+        if (maxConcurrent < 1 || maxQueued < 0 || timeoutMillis <= 0)
+            throw new IllegalArgumentException("Invalid blast search limits");
+
+        // the maximum pool size cannot be less than the core size
+        if (maxConcurrent > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(maxConcurrent);
+            pool.setCorePoolSize(maxConcurrent);
+        } else {
+            pool.setCorePoolSize(maxConcurrent);
+            pool.setMaximumPoolSize(maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeoutMillis;
+        Logger.info("Blast searches limited to " + maxConcurrent + " running, " + maxQueued + " queued and "
+                + timeoutMillis + "ms");
+    }
+
+    /**
+     * Runs a blast program process, waiting for a worker to be available if the maximum number of processes are
+     * already running. The input is written to the standard input of the process and its output (in csv format) is
+     * passed to the handler as it is read
+     *
+     * @param command blast program command line
+     * @param input   input for the program (query sequence)
+     * @param handler handler for the rows of the output
+     * @return true if the process completed (or was stopped by the handler), false if it exited with an error
+     * @throws BlastQueueFullException if the maximum number of searches are already queued
+     * @throws BlastException          if the process could not be run, took too long or was cancelled
+     */
+    public boolean run(String[] command, String input, BlastSearch.RowHandler handler) throws BlastException {
+        BlastRun run = new BlastRun(command, input, handler);
+        Future<Integer> future;
+        synchronized (this) {
+            if (pending.get() >= maxConcurrent + maxQueued) {
+                rejected.incrementAndGet();
+                throw new BlastQueueFullException("Maximum number of blast searches (" + pending.get()
+                        + ") already running or queued");
+            }
+            pending.incrementAndGet();
+            try {
+                future = pool.submit(run);
+            } catch (RejectedExecutionException e) {
+                run.release();
+                throw new BlastException(e);
+            }
+        }
+
+        int exitValue;
+        BooleanSupplier cancelCheck = CANCEL_CHECK.get();
+        try {
+            while (true) {
+                try {
+                    exitValue = cancelCheck == null ? future.get()
+                            : future.get(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (cancelCheck.getAsBoolean()) {
+                        cancel(run, future);
+                        throw new BlastException("Blast search cancelled");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel(run, future);
+            Thread.currentThread().interrupt();
+            throw new BlastException("Blast search cancelled", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BlastException)
+                throw (BlastException) e.getCause();
+            throw new BlastException(e.getCause());
+        }
+
+        // logged in the calling thread, which has the transaction needed for the error email configuration
+        String errors = run.errors.isEmpty() ? "" : ": " + run.errors;
+        switch (exitValue) {
+            case 0:
+                return true;
+
+            case 1:
+                Logger.error("Error in query sequence(s) or BLAST options" + errors);
+                break;
+
+            case 2:
+                Logger.error("Error in BLAST database" + errors);
+                break;
+
+            default:
+                Logger.error("Unknown exit value " + exitValue + errors);
+        }
+        return false;
+    }
+
+    private void cancel(BlastRun run, Future<Integer> future) {
+        future.cancel(false);
+        run.cancel();
+        cancelled.incrementAndGet();
+    }
+
+    /**
+     * @return status of the blast searches that are running and waiting to run, and of those that have run
+     * since startup
+     */
+    public BlastQueueStatus getStatus() {
+        int runningCount = running.size();
+        long count = completed.get();
+        return new BlastQueueStatus(maxConcurrent, maxQueued, runningCount,
+                Math.max(0, pending.get() - runningCount), count, rejected.get(), timedOut.get(), cancelled.get(),
+                count == 0 ? 0 : totalRunTime.get() / count, maxRunTime.get());
+    }
+
+    /**
+     * Stops the workers, killing any running blast processes
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+        timer.shutdownNow();
+        streams.shutdownNow();
+        for (BlastRun run : running)
+            run.cancel();
+    }
+
+    private static int getIntValue(ConfigurationKey key, int defaultValue) {
+        String value = Utils.getConfigValue(key);
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            Logger.warn("Invalid value \"" + value + "\" for " + key.name());
+            return defaultValue;
+        }
+    }
+
+    /**
+     * A single run of a blast program process
+     */
+    private class BlastRun implements Callable<Integer> {
+
+        private final String[] command;
+        private final String input;
+        private final BlastSearch.RowHandler handler;
+        private Process process;
+        private boolean isCancelled;
+        private volatile boolean isTimedOut;
+        private boolean isReleased;
+        private volatile String errors = "";
+
+        BlastRun(String[] command, String input, BlastSearch.RowHandler handler) {
+            this.command = command;
+            this.input = input;
+            this.handler = handler;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            synchronized (this) {
+                if (isCancelled)
+                    throw new BlastException("Blast search cancelled");
+                try {
+                    process = Runtime.getRuntime().exec(command);
+                } catch (IOException e) {
+                    release();
+                    throw new BlastException(e);
+                }
+            }
+
+            running.add(this);
+            long start = System.currentTimeMillis();
+            ScheduledFuture<?> timeout = timer.schedule(this::timeout, timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                streams.execute(this::writeInput);
+                Future<String> errorOutput = streams.submit(this::readErrors);
+
+                boolean stopped;
+                try (Reader output = new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)) {
+                    stopped = BlastSearch.read(output, handler);
+                }
+                if (stopped)
+                    return 0;
+
+                int exitValue = process.waitFor();
+                checkInterrupted();
+                if (exitValue != 0)
+                    errors = getErrors(errorOutput);
+                return exitValue;
+            } catch (IOException e) {
+                // output closed when the process is killed
+                checkInterrupted();
+                throw new BlastException(e);
+            } finally {
+                timeout.cancel(false);
+                process.destroy();
+                running.remove(this);
+                release();
+
+                long runTime = System.currentTimeMillis() - start;
+                completed.incrementAndGet();
+                totalRunTime.addAndGet(runTime);
+                maxRunTime.accumulateAndGet(runTime, Math::max);
+            }
+        }
+
+        private void writeInput() {
+            try (BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
+                writer.write(input);
+            } catch (IOException e) {
+                // process exited (or was killed) before reading all of the input; reported by the exit value
+                Logger.debug("Could not write blast input: " + e.getMessage());
+            }
+        }
+
+        // reads the error output, keeping only the start of it
+        private String readErrors() throws IOException {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[1024];
+            try (Reader reader = new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8)) {
+                int read;
+                while ((read = reader.read(buffer)) != -1)
+                    builder.append(buffer, 0, Math.min(read, MAX_ERROR_OUTPUT - builder.length()));
+            }
+            return builder.toString().trim();
+        }
+
+        private String getErrors(Future<String> errorOutput) {
+            try {
+                return errorOutput.get(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                Logger.debug("Could not read blast error output: " + e.getMessage());
+            }
+            return "";
+        }
+
+        private void checkInterrupted() throws BlastException {
+            if (isTimedOut)
+                throw new BlastException(new ProgramTookTooLongException("Blast search killed after "
+                        + timeoutMillis + "ms"));
+            synchronized (this) {
+                if (isCancelled)
+                    throw new BlastException("Blast search cancelled");
+            }
+        }
+
+        private void timeout() {
+            isTimedOut = true;
+            timedOut.incrementAndGet();
+            Logger.warn("Killing blast search that ran for longer than " + timeoutMillis + "ms");
+            process.destroyForcibly();
+        }
+
+        synchronized void cancel() {
+            isCancelled = true;
+            if (process != null)
+                process.destroyForcibly();
+            else
+                release();      // not started
+        }
+
+        // frees the place of this run in the queue
+        synchronized void release() {
+            if (isReleased)
+                return;
+
+            isReleased = true;
+            pending.decrementAndGet();
+        }
+    }
+}
@@ -3,24 +3,33 @@ package org.jbei.ice.lib.search.blast;
 import org.apache.commons.io.FileUtils;
 import org.jbei.ice.lib.common.logging.Logger;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Fasta file containing all sequences used to create the blast database
+ * <p>
+ * The file is maintained with a sidecar offset index (<code>BlastFastaFile.idx</code>) that records the byte range
+ * of each record, together with the first (subject identifier) and last (part number) fields of its header. Records
+ * are copied to another file (e.g. when the database is compacted) by transferring the byte ranges of the records
+ * that are kept, without reading them line by line. The index is rebuilt (by scanning the fasta file) if it is missing or does not match
+ * the fasta file
  *
  * @author Hector Plahar
  */
 public class BlastFastaFile {
 
     private final static String FILE_NAME = "BlastFastaFile";
+    private static final String INDEX_FILE_NAME = FILE_NAME + ".idx";
     private static final String LOCK_FILE_NAME = "write.lock";
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final Path filePath;
-    private boolean exclude;
+    private final Path indexPath;
     private FileLock lock;
 
     /**
@@ -31,7 +40,7 @@ public class BlastFastaFile {
             throw new IllegalArgumentException("Cannot create fasta file in " + dir + " because it is not a directory");
 
         this.filePath = Paths.get(dir.toString(), FILE_NAME);
-        this.exclude = false;
+        this.indexPath = Paths.get(dir.toString(), INDEX_FILE_NAME);
     }
 
     public Path getFilePath() {
@@ -84,11 +93,20 @@ public class BlastFastaFile {
         try {
             Files.deleteIfExists(this.filePath);
             Files.createFile(this.filePath);
+            Files.deleteIfExists(this.indexPath);
+            Files.createFile(this.indexPath);
         } catch (IOException e) {
             Logger.error(e);
         }
     }
 
+    /**
+     * Appends records to the fasta file. Each value is written followed by a new line and may contain one or more
+     * records
+     *
+     * @param iterable fasta records
+     * @return true if the records were written, false otherwise
+     */
     public boolean write(Iterable<String> iterable) {
         File lockFile = createLock();
         if (lockFile == null)
@@ -101,9 +119,25 @@ public class BlastFastaFile {
             if (lock == null)
                 return false;
 
-            Files.write(this.filePath, iterable, StandardOpenOption.APPEND);
+            // the index is only maintained if it is up to date; otherwise it is rebuilt when next needed
+            boolean indexed = isIndexValid();
+            long offset = Files.size(this.filePath);
+            try (OutputStream outputStream = new BufferedOutputStream(
+                    Files.newOutputStream(this.filePath, StandardOpenOption.APPEND), BUFFER_SIZE);
+                 Writer indexWriter = indexed ? Files.newBufferedWriter(this.indexPath, StandardCharsets.UTF_8,
+                         StandardOpenOption.CREATE, StandardOpenOption.APPEND) : null) {
+                RecordScanner scanner = new RecordScanner(offset, record -> writeIndexLine(indexWriter, record));
+                for (String value : iterable) {
+                    byte[] bytes = (value + "\n").getBytes(StandardCharsets.UTF_8);
+                    outputStream.write(bytes);
+                    if (indexed)
+                        scanner.scan(bytes, bytes.length);
+                }
+                if (indexed)
+                    scanner.finish();
+            }
             return true;
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             Logger.error(e);
             return false;
         } finally {
@@ -111,45 +145,248 @@ public class BlastFastaFile {
         }
     }
 
-    public void delete(String partNumber) throws IOException {
-        File lockFile = createLock();
+    /**
+     * Appends records of this file to another fasta file, copying their byte ranges
+     *
+     * @param target fasta file to append records to
+     * @param filter selects the records to copy
+     * @throws IOException on exception copying the records
+     */
+    public void copy(BlastFastaFile target, Predicate<Record> filter) throws IOException {
+        File lockFile = target.createLock();
         if (lockFile == null)
-            return;
+            throw new IOException("Blast fasta file " + target.filePath + " is locked");
 
         try {
-            Path tmpFile = Paths.get(filePath.getParent().toString(), FILE_NAME + ".tmp");
-            Files.deleteIfExists(tmpFile);
-            Files.createFile(tmpFile);
-            if (!Files.exists(tmpFile))
-                throw new IOException(tmpFile + " could not be created");
+            if (!Files.exists(this.filePath))
+                return;
 
-            Stream<String> lines = Files.lines(this.filePath);
+            checkIndex();
+            boolean indexed = target.isIndexValid();
+            try (FileChannel channel = FileChannel.open(target.filePath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 Writer indexWriter = indexed ? Files.newBufferedWriter(target.indexPath, StandardCharsets.UTF_8,
+                         StandardOpenOption.CREATE, StandardOpenOption.APPEND) : null) {
+                transfer(filter, channel, indexWriter);
+            }
+        } finally {
+            target.releaseLock(lockFile);
+        }
+    }
+
+    public boolean isLocked() {
+        return lock != null && lock.isValid();
+    }
 
-            lines.forEach(line -> {
+    /**
+     * Copies the byte ranges of the records that pass the filter to the target channel (at its current position),
+     * with adjacent ranges copied together
+     *
+     */
+    private void transfer(Predicate<Record> filter, FileChannel target, Writer indexWriter) throws IOException {
+        try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ);
+             BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            long rangeStart = -1;
+            long rangeEnd = -1;
+            long position = target.position();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record = Record.parse(line);
+                if (record == null)
+                    continue;
 
-                if (line.startsWith(">")) {
-                    String[] split = line.split(",");
-                    if (split.length != 4)
-                        return;
+                if (!filter.test(record))
+                    continue;
 
-                    exclude = split[3].trim().equalsIgnoreCase(partNumber.trim());
+                if (record.offset != rangeEnd) {
+                    transferRange(source, rangeStart, rangeEnd, target);
+                    rangeStart = record.offset;
                 }
+                rangeEnd = record.offset + record.length;
+
+                if (indexWriter != null)
+                    writeIndexLine(indexWriter, new Record(position, record.length, record.subjectId, record.partNumber));
+                position += record.length;
+            }
+            transferRange(source, rangeStart, rangeEnd, target);
+        }
+    }
 
-                if (exclude) return;
+    private static void transferRange(FileChannel source, long start, long end, FileChannel target)
+            throws IOException {
+        long position = start;
+        while (position < end) {
+            long count = source.transferTo(position, end - position, target);
+            if (count <= 0)
+                throw new IOException("Could not copy blast fasta records");
+            position += count;
+        }
+    }
 
-                try {
-                    Files.write(tmpFile, (line + "\n").getBytes(), StandardOpenOption.APPEND);
-                } catch (IOException e) {
-                    Logger.error(e);
-                }
-            });
-            Files.move(tmpFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } finally {
-            releaseLock(lockFile);
+    /**
+     * @return true if the index exists and ends where the fasta file ends
+     */
+    private boolean isIndexValid() throws IOException {
+        if (!Files.exists(indexPath) || !Files.exists(filePath))
+            return false;
+
+        long end = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record = Record.parse(line);
+                if (record == null)
+                    return false;
+                end = record.offset + record.length;
+            }
         }
+        return end == Files.size(filePath);
     }
 
-    public boolean isLocked() {
-        return lock != null && lock.isValid();
+    // rebuilds the index by scanning the fasta file if it is not up to date
+    private void checkIndex() throws IOException {
+        if (isIndexValid())
+            return;
+
+        Logger.info("Rebuilding blast fasta file index for " + filePath);
+        Path tmpIndex = filePath.resolveSibling(INDEX_FILE_NAME + ".tmp");
+        try (InputStream inputStream = Files.newInputStream(filePath);
+             Writer indexWriter = Files.newBufferedWriter(tmpIndex, StandardCharsets.UTF_8)) {
+            RecordScanner scanner = new RecordScanner(0, record -> writeIndexLine(indexWriter, record));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1)
+                scanner.scan(buffer, read);
+            scanner.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(tmpIndex, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeIndexLine(Writer writer, Record record) {
+        try {
+            writer.write(record.offset + "\t" + record.length + "\t" + record.subjectId + "\t" + record.partNumber
+                    + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Byte range and identifying header fields of a fasta record
+     */
+    public static class Record {
+
+        private final long offset;
+        private final long length;
+        private final String subjectId;
+        private final String partNumber;
+
+        Record(long offset, long length, String subjectId, String partNumber) {
+            this.offset = offset;
+            this.length = length;
+            this.subjectId = subjectId;
+            this.partNumber = partNumber;
+        }
+
+        // record for index line
+        private static Record parse(String line) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length != 4)
+                return null;
+
+            try {
+                return new Record(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], fields[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return first field of the record header
+         */
+        public String getSubjectId() {
+            return subjectId;
+        }
+
+        /**
+         * @return last field of the record header
+         */
+        public String getPartNumber() {
+            return partNumber;
+        }
+    }
+
+    /**
+     * Finds the records in fasta content supplied in chunks. A record starts with a header line (starting with
+     * <code>&gt;</code>) and extends to the start of the next record or the end of the content
+     */
+    private static class RecordScanner {
+
+        private final Consumer<Record> consumer;
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        private long position;
+        private long recordStart = -1;
+        private String subjectId;
+        private String partNumber;
+        private boolean lineStart = true;
+        private boolean inHeader;
+
+        RecordScanner(long position, Consumer<Record> consumer) {
+            this.position = position;
+            this.consumer = consumer;
+        }
+
+        void scan(byte[] bytes, int length) {
+            for (int i = 0; i < length; i += 1) {
+                byte b = bytes[i];
+                if (lineStart && b == '>') {
+                    emit();
+                    recordStart = position;
+                    inHeader = true;
+                    header.reset();
+                } else if (inHeader) {
+                    if (b == '\n') {
+                        inHeader = false;
+                        parseHeader();
+                    } else if (b != '\r') {
+                        header.write(b);
+                    }
+                }
+                lineStart = b == '\n';
+                position += 1;
+            }
+        }
+
+        void finish() {
+            if (inHeader) {
+                inHeader = false;
+                parseHeader();
+            }
+            emit();
+        }
+
+        private void parseHeader() {
+            String line = new String(header.toByteArray(), StandardCharsets.UTF_8);
+            int first = line.indexOf(BlastDatabase.DELIMITER);
+            int last = line.lastIndexOf(BlastDatabase.DELIMITER);
+            subjectId = (first == -1 ? line : line.substring(0, first)).trim();
+            partNumber = (last == -1 ? line : line.substring(last + 1)).trim();
+        }
+
+        private void emit() {
+            if (recordStart != -1 && position > recordStart)
+                consumer.accept(new Record(recordStart, position - recordStart, subjectId, partNumber));
+            recordStart = -1;
+        }
     }
 }
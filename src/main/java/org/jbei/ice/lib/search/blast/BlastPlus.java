@@ -83,8 +83,18 @@ public class BlastPlus {
     }
 
     public void formatBlastDb(BlastFastaFile fastaFile, String dbName) throws BlastException {
+        formatBlastDb(fastaFile.getFilePath(), dbName);
+    }
+
+    /**
+     * Creates a blast database from a fasta file. The database files are created in the directory of the fasta file
+     *
+     * @param filePath path to fasta file
+     * @param dbName   name of blast database
+     * @throws BlastException on exception running makeblastdb
+     */
+    public void formatBlastDb(Path filePath, String dbName) throws BlastException {
         ArrayList<String> commands = new ArrayList<>();
-        Path filePath = fastaFile.getFilePath();
         String makeBlastDbCmd = getBlastInstallDirectory().toAbsolutePath().toString() + File.separator + "makeblastdb";
         commands.add(makeBlastDbCmd);
         commands.add("-dbtype nucl");
@@ -0,0 +1,13 @@
+package org.jbei.ice.lib.search.blast;
+
+/**
+ * Exception thrown when a blast search is rejected because the maximum number of searches are already running
+ * or waiting to run
+ */
+public class BlastQueueFullException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BlastQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,141 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.dto.entry.PartData;
+import org.jbei.ice.lib.dto.search.BlastProgram;
+import org.jbei.ice.lib.dto.search.SearchResult;
+import org.jbei.ice.lib.utils.SequenceUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the (unfiltered) hits of blast searches, so that searches that are repeated with the same query sequence
+ * do not run blast again. Hits are keyed by the hash of the normalized query sequence, the blast program and options
+ * and the version of the blast database. Cached hits expire after a fixed time and the least recently used are
+ * discarded once the maximum number of queries is reached.
+ * <p>
+ * The cache is invalidated whenever the blast database is rebuilt or updated. Hits are copied into and out of the
+ * cache since search results are modified when they are filtered (per user) and paged
+ */
+class BlastResultCache {
+
+    private final Map<String, CachedHits> hits;
+    private final long ttlMillis;
+    private long generation;
+
+    BlastResultCache(int maxQueries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.hits = new LinkedHashMap<String, CachedHits>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedHits> eldest) {
+                return size() > maxQueries;
+            }
+        };
+    }
+
+    /**
+     * Creates the cache key for a blast search
+     *
+     * @param program  blast program
+     * @param options  blast command line options
+     * @param version  directory of the blast database version searched
+     * @param sequence query sequence
+     * @return cache key
+     */
+    static String getKey(BlastProgram program, String[] options, Path version, String sequence) {
+        // sequences in fasta format may contain multiple queries so only plain sequences are normalized
+        String query = BlastBatcher.isBatchable(sequence) ? ExactSequenceSearch.normalize(sequence) : sequence;
+        return program.name() + ":" + String.join(" ", options) + ":" + version.toString() + ":"
+                + SequenceUtils.calculateSequenceHash(query);
+    }
+
+    /**
+     * @return current generation of the cache, which changes when the cache is invalidated. Retrieved before a
+     * search is run so that its hits are not cached if the database is updated while the search is running
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Retrieves a copy of the cached hits for a search
+     *
+     * @param key         cache key for search
+     * @param queryLength length of the query sequence of the search
+     * @return mapping of entry id to hit (in the order of the blast output), or null if the hits are not cached
+     */
+    synchronized LinkedHashMap<String, SearchResult> get(String key, int queryLength) {
+        CachedHits cached = hits.get(key);
+        if (cached == null)
+            return null;
+
+        if (System.currentTimeMillis() - cached.created > ttlMillis) {
+            hits.remove(key);
+            return null;
+        }
+
+        LinkedHashMap<String, SearchResult> results = new LinkedHashMap<>();
+        for (SearchResult result : cached.results) {
+            SearchResult copy = copy(result);
+            copy.setQueryLength(queryLength);
+            results.put(Long.toString(copy.getEntryInfo().getId()), copy);
+        }
+        return results;
+    }
+
+    /**
+     * Caches a copy of the hits of a search, unless the cache was invalidated since the specified generation
+     *
+     * @param key        cache key for search
+     * @param generation generation of the cache when the search was started
+     * @param results    mapping of entry id to hit
+     */
+    synchronized void put(String key, long generation, Map<String, SearchResult> results) {
+        if (generation != this.generation)
+            return;
+
+        List<SearchResult> copies = new ArrayList<>(results.size());
+        for (SearchResult result : results.values())
+            copies.add(copy(result));
+        hits.put(key, new CachedHits(copies));
+    }
+
+    /**
+     * Discards all cached hits
+     */
+    synchronized void invalidate() {
+        generation += 1;
+        hits.clear();
+    }
+
+    // copy of the values set when the blast output is parsed
+    private static SearchResult copy(SearchResult result) {
+        PartData info = result.getEntryInfo();
+        PartData view = new PartData(info.getType());
+        view.setId(info.getId());
+        view.setName(info.getName());
+        view.setPartId(info.getPartId());
+
+        SearchResult copy = new SearchResult();
+        copy.setEntryInfo(view);
+        copy.seteValue(result.geteValue());
+        copy.setScore(result.getScore());
+        copy.setAlignment(result.getAlignment());
+        copy.setQueryLength(result.getQueryLength());
+        copy.setNident(result.getNident());
+        return copy;
+    }
+
+    private static class CachedHits {
+        private final List<SearchResult> results;
+        private final long created;
+
+        CachedHits(List<SearchResult> results) {
+            this.results = results;
+            this.created = System.currentTimeMillis();
+        }
+    }
+}
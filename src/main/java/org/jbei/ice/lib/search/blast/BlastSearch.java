@@ -1,5 +1,7 @@
 package org.jbei.ice.lib.search.blast;
 
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.ConfigurationKey;
 import org.jbei.ice.lib.dto.search.BlastProgram;
@@ -25,97 +27,77 @@ public class BlastSearch {
     }
 
     /**
-     * Runs a blast query in the specified database folder
-     * using the specified options
+     * Runs a blast query in the specified database folder using the specified options. The output of the blast
+     * program (which is expected to be in csv format) is parsed as it is read and each row is passed to the handler,
+     * so that the output is never held in memory. If the handler stops the reading, the blast process is terminated.
+     * The process is run by the {@link BlastExecutor}, which limits the number of processes and their run time
      *
      * @param query   wrapper around blast query including options such as blast type
+     * @param handler handler for the rows of the blast output
      * @param options command line options for blast
-     * @return results of the query run. An empty string is returned if the specified blast database does not exist
-     * in the ice data directory
-     * @throws BlastException on exception running blast on the command line
+     * @return true if blast completed (or was stopped by the handler), false if it exited with an error.
+     * No rows are handled if the specified blast database (or alias database) does not exist in the ice data directory
+     * @throws BlastQueueFullException if the maximum number of blast searches are already running or queued
+     * @throws BlastException          on exception running blast on the command line
      */
-    public String run(BlastQuery query, String... options) throws BlastException {
+    public boolean run(BlastQuery query, RowHandler handler, String... options) throws BlastException {
         if (query.getBlastProgram() == null)
             query.setBlastProgram(BlastProgram.BLAST_N);
 
+        String[] blastCommand;
         try {
             Path commandPath = Paths.get(Utils.getConfigValue(ConfigurationKey.BLAST_INSTALL_DIR),
                     query.getBlastProgram().getName());
             String blastDb = Paths.get(this.indexPath.toString(), this.dbName).toString();
-            if (!Files.exists(Paths.get(blastDb + ".nsq"))) {
-                return "";
+            if (!Files.exists(Paths.get(blastDb + ".nsq")) && !Files.exists(Paths.get(blastDb + ".nal"))) {
+                return true;
             }
 
-            String[] blastCommand = new String[3 + options.length];
+            blastCommand = new String[3 + options.length];
             blastCommand[0] = commandPath.toString();
             blastCommand[1] = "-db";
             blastCommand[2] = blastDb;
             if (options.length > 0)
                 System.arraycopy(options, 0, blastCommand, 3, options.length);
-
-            Process process = Runtime.getRuntime().exec(blastCommand);
-            ProcessResultReader reader = new ProcessResultReader(process.getInputStream());
-            reader.start();
-            BufferedWriter programInputWriter = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-
-            programInputWriter.write(query.getSequence());
-            programInputWriter.flush();
-            programInputWriter.close();
-            process.getOutputStream().close();
-
-            // TODO this should go into the thread itself & have future wait on it
-            final int exitValue = process.waitFor();
-            switch (exitValue) {
-                case 0:
-                    return reader.toString();
-
-                case 1:
-                    Logger.error("Error in query sequence(s) or BLAST options");
-                    break;
-
-                case 2:
-                    Logger.error("Error in BLAST database");
-                    break;
-
-                default:
-                    Logger.error("Unknown exit value " + exitValue);
-            }
-            return null;
         } catch (Exception e) {
             Logger.error(e);
             throw new BlastException(e);
         }
-    }
 
+        return BlastExecutor.getInstance().run(blastCommand, query.getSequence(), handler);
+    }
 
     /**
-     * Thread that reads the result of a command line process execution
+     * Reads blast output in csv format, passing each (non empty) row to the handler
+     *
+     * @param output  blast output
+     * @param handler handler for the rows
+     * @return true if the handler stopped the reading before the end of the output
+     * @throws IOException            on exception reading the output
+     * @throws CsvValidationException if the output is not valid csv
      */
-    static class ProcessResultReader extends Thread {
-        final InputStream inputStream;
-        final StringBuilder sb;
-
-        ProcessResultReader(final InputStream is) {
-            this.inputStream = is;
-            this.sb = new StringBuilder();
+    static boolean read(Reader output, RowHandler handler) throws IOException, CsvValidationException {
+        CSVReader reader = new CSVReader(new BufferedReader(output));
+        String[] row;
+        while ((row = reader.readNext()) != null) {
+            if (row.length == 0 || (row.length == 1 && row[0].isEmpty()))
+                continue;
+
+            if (!handler.handle(row))
+                return true;
         }
+        return false;
+    }
 
-        public void run() {
-            try (final InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                final BufferedReader br = new BufferedReader(inputStreamReader);
-                String line;
-                while ((line = br.readLine()) != null) {
-                    this.sb.append(line).append("\n");
-                }
-            } catch (final IOException ioe) {
-                Logger.error(ioe.getMessage());
-                throw new RuntimeException(ioe);
-            }
-        }
+    /**
+     * Handler for the rows of blast output as they are read
+     */
+    public interface RowHandler {
 
-        @Override
-        public String toString() {
-            return this.sb.toString();
-        }
+        /**
+         * @param row values of a single row (hit) of the blast output
+         * @return true to continue reading the output, false to stop
+         */
+        boolean handle(String[] row);
     }
 }
@@ -0,0 +1,366 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.common.logging.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Layout of the incrementally updated sequence blast database. The database is made up of a base volume built from
+ * all sequences and a list of small delta volumes holding sequences added or changed since, combined by a blast alias
+ * database (<code>&lt;dbName&gt;.nal</code>) that lists the volumes. Searches run against the alias.
+ * <p>
+ * Each fasta record identifies its entry and the volume it was written to (see {@link #subjectId(long, int)}).
+ * When the sequence of an entry changes, the new sequence is written to a delta volume and the entry is mapped to it;
+ * when it is deleted, the entry is mapped to {@link #DELETED}. Hits on records that are not in the volume their
+ * entry is mapped to (if any) are superseded and must be excluded from results ({@link #isLive(String)}).
+ * Compaction merges the live records into a new base volume (in a new database version) with no deltas.
+ * <p>
+ * The state is kept in <code>&lt;dbName&gt;.volumes</code>. Changes must be serialized by the caller; the live
+ * check can be made concurrently with them. Delta volumes replaced by a change are retired rather than deleted, since
+ * searches that started before the change may still use them (see {@link #deleteRetired()})
+ */
+class BlastVolumes {
+
+    static final int BASE = 0;
+    static final int DELETED = -1;
+    private static final String VOLUME_SEPARATOR = ":";
+
+    private final Path dir;
+    private final String dbName;
+    private final Path statePath;
+    private final LinkedHashMap<Integer, Integer> deltas;      // delta volume -> number of sequences
+    private final List<Integer> retired;
+    private volatile Map<Long, Integer> entries;               // entry -> volume with its current sequence
+    private int nextVolume;
+
+    BlastVolumes(Path dir, String dbName) {
+        this.dir = dir;
+        this.dbName = dbName;
+        this.statePath = dir.resolve(dbName + ".volumes");
+        this.deltas = new LinkedHashMap<>();
+        this.retired = new ArrayList<>();
+        this.entries = Collections.emptyMap();
+        this.nextVolume = 1;
+        load();
+    }
+
+    // read-only copy of the state of volumes
+    private BlastVolumes(BlastVolumes volumes) {
+        this.dir = volumes.dir;
+        this.dbName = volumes.dbName;
+        this.statePath = volumes.statePath;
+        this.deltas = new LinkedHashMap<>(volumes.deltas);
+        this.retired = new ArrayList<>();
+        this.entries = volumes.entries;
+        this.nextVolume = volumes.nextVolume;
+    }
+
+    /**
+     * @param entryId unique entry identifier
+     * @param volume  volume the record is written to
+     * @return identifier used as the first field of fasta record headers
+     */
+    static String subjectId(long entryId, int volume) {
+        return entryId + VOLUME_SEPARATOR + volume;
+    }
+
+    static long getEntryId(String subjectId) {
+        int index = subjectId.indexOf(VOLUME_SEPARATOR);
+        return Long.decode(index == -1 ? subjectId.trim() : subjectId.substring(0, index).trim());
+    }
+
+    static int getVolume(String subjectId) {
+        int index = subjectId.indexOf(VOLUME_SEPARATOR);
+        return index == -1 ? BASE : Integer.parseInt(subjectId.substring(index + 1).trim());
+    }
+
+    Path getDirectory() {
+        return dir;
+    }
+
+    String getBaseName() {
+        return dbName + "_base";
+    }
+
+    String getVolumeName(int volume) {
+        return volume == BASE ? getBaseName() : dbName + "_delta_" + volume;
+    }
+
+    Path getFastaPath(int volume) {
+        return dir.resolve(getVolumeName(volume) + ".fasta");
+    }
+
+    Path getAliasPath() {
+        return dir.resolve(dbName + ".nal");
+    }
+
+    synchronized List<Integer> getDeltas() {
+        return new ArrayList<>(deltas.keySet());
+    }
+
+    /**
+     * @return number of entries whose sequences were changed or deleted since the base volume was built
+     */
+    int getChangedCount() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether a record (identified by the first field of its header) is the current sequence of its entry
+     *
+     * @param subjectId subject identifier
+     * @return false if the sequence of the entry was since changed or deleted, true otherwise
+     */
+    boolean isLive(String subjectId) {
+        try {
+            return isLive(getEntryId(subjectId), getVolume(subjectId));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    boolean isLive(long entryId, int volume) {
+        Integer current = entries.get(entryId);
+        return current == null ? volume == BASE : current == volume;
+    }
+
+    /**
+     * @param maxSequences maximum number of sequences in a delta volume
+     * @return last delta volume if it has fewer than the maximum number of sequences (and can therefore be extended
+     * with more), null otherwise
+     */
+    synchronized Integer getActiveVolume(int maxSequences) {
+        Integer last = null;
+        for (Integer volume : deltas.keySet())
+            last = volume;
+        return last != null && deltas.get(last) < maxSequences ? last : null;
+    }
+
+    synchronized int newVolume() {
+        return nextVolume++;
+    }
+
+    /**
+     * Registers a delta volume (whose database has been created) containing the current sequences of the specified
+     * entries and publishes it in the alias
+     *
+     * @param volume   new volume
+     * @param entryIds entries with sequences in the volume
+     * @param replaced volume whose live records were all copied to the new volume, and which is therefore removed
+     *                 from the alias and retired. Optional
+     * @throws IOException on exception writing the state or alias files
+     */
+    synchronized void addVolume(int volume, Set<Long> entryIds, Integer replaced) throws IOException {
+        Map<Long, Integer> updated = new HashMap<>(entries);
+        for (Long entryId : entryIds)
+            updated.put(entryId, volume);
+        entries = updated;
+
+        if (replaced != null)
+            deltas.remove(replaced);
+        deltas.put(volume, entryIds.size());
+        save();
+
+        if (replaced != null)
+            retired.add(replaced);
+    }
+
+    /**
+     * Deletes the files of retired volumes. Must only be called when no search that started before the volumes were
+     * retired is still running
+     */
+    synchronized void deleteRetired() {
+        for (Integer volume : retired)
+            deleteVolumeFiles(volume);
+        retired.clear();
+    }
+
+    /**
+     * Excludes the sequence of an entry from results
+     *
+     * @param entryId unique entry identifier
+     * @throws IOException on exception writing the state file
+     */
+    void delete(long entryId) throws IOException {
+        delete(Collections.singleton(entryId));
+    }
+
+    /**
+     * Excludes the sequences of entries from results
+     *
+     * @param entryIds unique entry identifiers
+     * @throws IOException on exception writing the state file
+     */
+    synchronized void delete(Collection<Long> entryIds) throws IOException {
+        Map<Long, Integer> updated = new HashMap<>(entries);
+        for (Long entryId : entryIds)
+            updated.put(entryId, DELETED);
+        entries = updated;
+        save();
+    }
+
+    /**
+     * Takes a snapshot of the volumes, e.g. to build a new base volume from while changes continue to be made. The
+     * snapshot must not be changed
+     *
+     * @return read-only copy of the current state
+     */
+    synchronized BlastVolumes snapshot() {
+        return new BlastVolumes(this);
+    }
+
+    /**
+     * @param snapshot earlier snapshot of these volumes
+     * @return entries whose sequences were deleted since the snapshot was taken
+     */
+    synchronized Set<Long> getDeletedSince(BlastVolumes snapshot) {
+        Set<Long> deleted = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+            Integer previous = snapshot.entries.get(entry.getKey());
+            if (entry.getValue() == DELETED && (previous == null || previous != DELETED))
+                deleted.add(entry.getKey());
+        }
+        return deleted;
+    }
+
+    /**
+     * Clears the delta volumes and exclusions, and writes the state and alias files. Called once the base volume of
+     * a new database version has been built with all current sequences
+     *
+     * @throws IOException on exception writing the state or alias files
+     */
+    synchronized void reset() throws IOException {
+        deltas.clear();
+        entries = Collections.emptyMap();
+        save();
+    }
+
+    /**
+     * @return true if the state and alias files exist
+     */
+    boolean exists() {
+        return Files.exists(statePath) && Files.exists(getAliasPath());
+    }
+
+    /**
+     * Copies the live records of a volume fasta file to a writer, setting their volume to the target volume
+     *
+     * @param volume   volume of the records in the fasta file
+     * @param fasta    fasta file to copy records from
+     * @param writer   writer to copy records to
+     * @param target   volume the records are copied to
+     * @param skip     entries whose records are not copied
+     * @param entryIds entries whose records were copied are added to this set
+     * @throws IOException on exception reading or writing records
+     */
+    void copyLiveRecords(int volume, Path fasta, Writer writer, int target, Set<Long> skip, Set<Long> entryIds)
+            throws IOException {
+        if (!Files.exists(fasta))
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(fasta, StandardCharsets.UTF_8)) {
+            boolean copy = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(">")) {
+                    int index = line.indexOf(BlastDatabase.DELIMITER);
+                    String subjectId = line.substring(1, index == -1 ? line.length() : index);
+                    long entryId;
+                    try {
+                        entryId = getEntryId(subjectId);
+                    } catch (NumberFormatException e) {
+                        Logger.error("Invalid fasta header \"" + line + "\" in " + fasta);
+                        copy = false;
+                        continue;
+                    }
+
+                    copy = !skip.contains(entryId) && isLive(entryId, volume);
+                    if (copy) {
+                        entryIds.add(entryId);
+                        line = ">" + subjectId(entryId, target) + (index == -1 ? "" : line.substring(index));
+                    }
+                }
+
+                if (copy) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(statePath))
+            return;
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(statePath, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            Logger.error("Could not read blast volumes from " + statePath, e);
+            return;
+        }
+
+        Map<Long, Integer> loaded = new HashMap<>();
+        TreeMap<Integer, Integer> volumes = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name).trim();
+            if (name.equals("next"))
+                nextVolume = Integer.parseInt(value);
+            else if (name.startsWith("delta."))
+                volumes.put(Integer.parseInt(name.substring(6)), Integer.parseInt(value));
+            else if (name.startsWith("entry."))
+                loaded.put(Long.parseLong(name.substring(6)), Integer.parseInt(value));
+        }
+        deltas.putAll(volumes);
+        entries = loaded;
+    }
+
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("next", Integer.toString(nextVolume));
+        for (Map.Entry<Integer, Integer> delta : deltas.entrySet())
+            properties.setProperty("delta." + delta.getKey(), Integer.toString(delta.getValue()));
+        for (Map.Entry<Long, Integer> entry : entries.entrySet())
+            properties.setProperty("entry." + entry.getKey(), Integer.toString(entry.getValue()));
+
+        Path tmp = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(tmp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeAlias();
+    }
+
+    /**
+     * Writes the alias database listing the base and delta volumes. The alias is written when the state changes; it
+     * only needs to be written otherwise if the last change may have been interrupted
+     *
+     * @throws IOException on exception writing the alias file
+     */
+    synchronized void writeAlias() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TITLE ").append(dbName).append('\n');
+        builder.append("DBLIST ").append(getBaseName());
+        for (Integer volume : deltas.keySet())
+            builder.append(' ').append(getVolumeName(volume));
+        builder.append('\n');
+
+        Path aliasPath = getAliasPath();
+        Path tmp = aliasPath.resolveSibling(aliasPath.getFileName() + ".tmp");
+        Files.write(tmp, builder.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, aliasPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteVolumeFiles(int volume) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, getVolumeName(volume) + ".*")) {
+            for (Path path : stream)
+                Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Logger.error("Could not delete files of blast volume " + getVolumeName(volume), e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.dto.entry.EntryType;
+import org.jbei.ice.lib.dto.entry.PartData;
+import org.jbei.ice.lib.dto.search.SearchResult;
+import org.jbei.ice.lib.utils.SequenceUtils;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.dao.SequenceDAO;
+import org.jbei.ice.storage.model.Entry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Finds entries with sequences identical to a query sequence (or its reverse complement) using the
+ * hashes stored with sequences instead of running blast
+ */
+public class ExactSequenceSearch {
+
+    private final SequenceDAO sequenceDAO;
+
+    public ExactSequenceSearch() {
+        this.sequenceDAO = DAOFactory.getSequenceDAO();
+    }
+
+    /**
+     * Normalizes a query sequence for hashing by dropping fasta header lines and any characters
+     * other than sequence symbols (e.g. whitespace and position numbers)
+     *
+     * @param sequence query sequence
+     * @return normalized (lower case) sequence
+     */
+    public static String normalize(String sequence) {
+        StringBuilder builder = new StringBuilder(sequence.length());
+        for (String line : sequence.split("\\r?\\n")) {
+            if (line.trim().startsWith(">"))
+                continue;
+
+            for (int i = 0; i < line.length(); i += 1) {
+                char c = line.charAt(i);
+                if (Character.isLetter(c))
+                    builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Retrieves the entries with sequences identical to the query sequence or its reverse complement
+     *
+     * @param sequence query sequence
+     * @return entries with matching sequences
+     */
+    public List<Entry> getMatchingEntries(String sequence) {
+        String normalized = normalize(sequence);
+        if (normalized.isEmpty())
+            return new ArrayList<>();
+        return sequenceDAO.getEntriesBySequenceHash(SequenceUtils.calculateSequenceHash(normalized));
+    }
+
+    /**
+     * Runs an exact match search for the query sequence, with results in the same form as blast results
+     *
+     * @param sequence query sequence
+     * @return mapping of entry id to search result (as a full length identical match) for each matching entry
+     */
+    public LinkedHashMap<String, SearchResult> run(String sequence) {
+        LinkedHashMap<String, SearchResult> results = new LinkedHashMap<>();
+        int queryLength = normalize(sequence).length();
+
+        for (Entry entry : getMatchingEntries(sequence)) {
+            PartData view = new PartData(EntryType.nameToType(entry.getRecordType()));
+            view.setId(entry.getId());
+            view.setName(entry.getName());
+            view.setPartId(entry.getPartNumber());
+            view.setShortDescription(entry.getShortDescription());
+
+            SearchResult searchResult = new SearchResult();
+            searchResult.setEntryInfo(view);
+            searchResult.seteValue("0.0");
+            searchResult.setScore(queryLength);
+            searchResult.setQueryLength(queryLength);
+            searchResult.setNident(queryLength);
+            searchResult.setAlignment(Integer.toString(queryLength));
+            results.put(Long.toString(entry.getId()), searchResult);
+        }
+        return results;
+    }
+}
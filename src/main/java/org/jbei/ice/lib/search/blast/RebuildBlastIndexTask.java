@@ -30,22 +30,19 @@ public class RebuildBlastIndexTask extends Task {
      * <p>
      * <code>CHECK</code>: check if database exists and if not rebuilds it <br>
      * <code>CREATE</code>: add a new sequence to the blast database<br>
-     * <code>DELETE</code>: delete a sequence from the blast database<br>
-     * <code>UPDATE</code>: update the blast database by removing and adding a sequence<br>
+     * <code>DELETE</code>: exclude a sequence from the blast database<br>
+     * <code>UPDATE</code>: update the blast database by adding a sequence that supersedes the existing one<br>
+     * <code>COMPACT</code>: merge the volumes of the blast database if it has too many changes<br>
      * code>FORCE_REBUILD</code>: blow away existing blast database and create a new one from scratch
      * <p>
-     * The blast database uses a lock file to prevent multiple concurrent actions that modify if
+     * Actions that modify the blast database are run one at a time; an action waits for any running action to
+     * complete
      */
     @Override
     public void execute() {
         Logger.info("Running blast task with action: " + action.name());
         try {
             StandardBlastDatabase standardBlastDatabase = StandardBlastDatabase.getInstance();
-            if (standardBlastDatabase.isLocked()) { // todo : wait / notify
-                Logger.info("Aborting run. Blast database is locked");
-                return;
-            }
-
             switch (this.action) {
                 case CHECK:
                     standardBlastDatabase.checkRebuild(false);
@@ -63,6 +60,10 @@ public class RebuildBlastIndexTask extends Task {
                     standardBlastDatabase.updateSequence(this.partId);
                     break;
 
+                case COMPACT:
+                    standardBlastDatabase.compactIfNeeded();
+                    break;
+
                 case FORCE_BUILD:
                     standardBlastDatabase.checkRebuild(true);
                     break;
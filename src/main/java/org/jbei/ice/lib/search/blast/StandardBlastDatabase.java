@@ -1,7 +1,5 @@
 package org.jbei.ice.lib.search.blast;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
 import org.apache.commons.lang3.StringUtils;
 import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.seq.RNATools;
@@ -14,62 +12,106 @@ import org.jbei.ice.lib.dto.search.BlastProgram;
 import org.jbei.ice.lib.dto.search.BlastQuery;
 import org.jbei.ice.lib.dto.search.SearchResult;
 import org.jbei.ice.lib.entry.HasEntry;
+import org.jbei.ice.lib.executor.IceExecutorService;
 import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.ScrollableRows;
 import org.jbei.ice.storage.hibernate.dao.SequenceDAO;
 import org.jbei.ice.storage.model.Entry;
 import org.jbei.ice.storage.model.Sequence;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
 import static org.jbei.ice.lib.utils.SequenceUtils.breakUpLines;
 
 /**
- * Standard blast database for sequences
+ * Standard blast database for sequences.
+ * <p>
+ * The database is updated incrementally: sequences that are added or changed are written to small delta volumes
+ * which are searched together with the base volume through an alias database, and sequences that are changed or
+ * deleted are excluded from results using the mapping of entries to their current volume (see {@link BlastVolumes}).
+ * Once there are {@link #MAX_DELTA_VOLUMES} delta volumes or {@link #MAX_CHANGED_ENTRIES} changed entries
+ * the database is compacted in a separate task (also when the database is checked at startup) by merging the
+ * live records of all volumes into a new base volume. Sequences can be added and removed while the new base volume
+ * is built; these changes are applied to the new version before it is published.
+ * <p>
+ * Full builds and compactions create a new version of the database which is published once it is complete (see
+ * {@link BlastDatabaseVersions}); searches use the version that is current when they start.
  *
  * @author Hector Plahar
  */
 public class StandardBlastDatabase extends BlastDatabase {
 
+    static final int MAX_DELTA_SEQUENCES = 200;
+    static final int MAX_DELTA_VOLUMES = 10;
+    static final int MAX_CHANGED_ENTRIES = 10000;
+    static final int MAX_HIT_ENTRIES = 500;     // same as the default maximum number of blast target sequences
+    static final long BATCH_WINDOW_MILLIS = 25;
+    static final int MAX_BATCH_QUERIES = 50;
+    static final int MAX_CACHED_QUERIES = 1000;
+    static final long CACHE_TTL_MILLIS = 10 * 60 * 1000;
+    private static final String OUTPUT_COLUMNS = "stitle qstart qend sstart send sstrand evalue bitscore score "
+            + "length nident";
+
     private static StandardBlastDatabase INSTANCE;
     private final Object LOCK;
     private BlastPlus blastPlus;
-    private BlastFastaFile blastFastaFile;
+    private volatile BlastVolumes volumes;      // volumes of current version
     private SequenceDAO sequenceDAO;
+    private boolean compacting;                 // guarded by lock
+    private final BlastBatcher batcher = new BlastBatcher(BATCH_WINDOW_MILLIS, MAX_BATCH_QUERIES);
+    private final BlastResultCache cache = new BlastResultCache(MAX_CACHED_QUERIES, CACHE_TTL_MILLIS);
 
     private StandardBlastDatabase() {
         super("blast");
         blastPlus = new BlastPlus();
         sequenceDAO = DAOFactory.getSequenceDAO();
-        blastFastaFile = new BlastFastaFile(indexPath);
         LOCK = new Object();
+
+        Path current = versions.getCurrent();
+        if (current != null) {
+            volumes = new BlastVolumes(current, dbName);
+            try {
+                volumes.writeAlias();
+            } catch (IOException e) {
+                Logger.error(e);
+            }
+        }
     }
 
-    public static StandardBlastDatabase getInstance() {
+    public static synchronized StandardBlastDatabase getInstance() {
         if (INSTANCE == null)
             INSTANCE = new StandardBlastDatabase();
         return INSTANCE;
     }
 
-    private static String getSequenceFasta(Sequence sequence) {
+    private static String getSequenceFasta(Sequence sequence, int volume) {
+        Entry entry = sequence.getEntry();
+        return getSequenceFasta(entry.getId(), entry.getRecordType(), entry.getName(), entry.getPartNumber(),
+                sequence.getSequence(), volume);
+    }
+
+    private static String getSequenceFasta(long id, String recordType, String name, String partNumber,
+                                           String sequence, int volume) {
         String sequenceString = "";
-        String temp = sequence.getSequence();
 
-        if (temp != null) {
+        if (sequence != null) {
             SymbolList symL;
             try {
-                symL = DNATools.createDNA(sequence.getSequence().trim());
+                symL = DNATools.createDNA(sequence.trim());
             } catch (IllegalSymbolException e1) {
                 // maybe it's rna?
                 try {
-                    symL = RNATools.createRNA(sequence.getSequence().trim());
+                    symL = RNATools.createRNA(sequence.trim());
                 } catch (IllegalSymbolException e2) {
                     // skip this sequence
-                    Logger.debug("Invalid characters in sequence for " + sequence.getEntry().getId()
-                            + ". Skipped for indexing");
+                    Logger.debug("Invalid characters in sequence for " + id + ". Skipped for indexing");
                     Logger.debug(e2.toString());
                     return null;
                 }
@@ -81,21 +123,14 @@ public class StandardBlastDatabase extends BlastDatabase {
         if (StringUtils.isEmpty(sequenceString))
             return null;
 
-        long id = sequence.getEntry().getId();
-        String idString = ">" + id;
-        idString += DELIMITER + sequence.getEntry().getRecordType();
-        String name = sequence.getEntry().getName() == null ? "None" : sequence.getEntry().getName();
-        idString += DELIMITER + name;
-        String pNumber = sequence.getEntry().getPartNumber();
-        idString += DELIMITER + pNumber;
+        String idString = ">" + BlastVolumes.subjectId(id, volume);
+        idString += DELIMITER + recordType;
+        idString += DELIMITER + (name == null ? "None" : name);
+        idString += DELIMITER + partNumber;
         idString += "\n";
         return (idString + sequenceString + "\n");
     }
 
-    public boolean isLocked() {
-        return blastFastaFile.isLocked();
-    }
-
     /**
      * Run a blast query using the following output format options
      * <ul>
@@ -110,74 +145,81 @@ public class StandardBlastDatabase extends BlastDatabase {
      * <li><code>length</code> - alignment length</li>
      * <li><code>nident</code> - number of identical matches</li>
      * </ul>
+     * Plain sequence queries that arrive within {@link #BATCH_WINDOW_MILLIS} of each other are run together as a
+     * single multi-query blast search (see {@link BlastBatcher}), with the query id as an additional first column.
+     * The hits are cached until the database is next updated (see {@link BlastResultCache})
      *
      * @param query wrapper around blast query
      * @return map of unique entry identifier (whose sequence was a subject) to the search result hit details
-     * @throws BlastException if results of running blast is null
+     * @throws BlastException if blast exits with an error
      */
     public HashMap<String, SearchResult> runBlast(BlastQuery query) throws BlastException {
-        List<String> options;
-        if (query.getBlastProgram() == null || query.getBlastProgram() == BlastProgram.BLAST_N)
-            options = Arrays.asList("-perc_identity", "70", "-outfmt",
-                    "10 stitle qstart qend sstart send sstrand evalue bitscore score length nident");
-        else
-            options = Arrays.asList("-outfmt",
-                    "10 stitle qstart qend sstart send sstrand evalue bitscore score length nident");
-
-        BlastSearch blastSearch = new BlastSearch(this.indexPath, this.dbName);
-        String result = blastSearch.run(query, options.toArray(new String[]{}));
-        if (result == null)
-            throw new BlastException("Exception running blast");
-        return processBlastOutput(result, query.getSequence().length());
-    }
-
-    /**
-     * Processes the result of a blast search
-     *
-     * @param blastOutput result output from running blast on the command line
-     * @param queryLength length of query sequence
-     * @return mapping of entryId to search result object containing information about the blast search for that particular hit
-     */
-    private LinkedHashMap<String, SearchResult> processBlastOutput(String blastOutput, int queryLength) {
-        LinkedHashMap<String, SearchResult> hashMap = new LinkedHashMap<>();
-
-        try (CSVReader reader = new CSVReader(new StringReader(blastOutput))) {
-            List<String[]> lines = reader.readAll();
-            reader.close();
-
-            for (String[] line : lines) {
-                SearchResult info = parseBlastOutputLine(line);
-                if (info == null)
-                    continue;
-
-                info.setQueryLength(queryLength);
-                String idString = Long.toString(info.getEntryInfo().getId());
-                // if there is an existing record for same entry with a lower relative score then replace
-                hashMap.putIfAbsent(idString, info);
+        BlastProgram program = query.getBlastProgram() == null ? BlastProgram.BLAST_N : query.getBlastProgram();
+        long generation = cache.getGeneration();
+
+        try (BlastDatabaseVersions.Version version = versions.acquire()) {
+            if (version == null)
+                return new LinkedHashMap<>();
+
+            String cacheKey = BlastResultCache.getKey(program, getOptions(program, OUTPUT_COLUMNS), version.getPath(),
+                    query.getSequence());
+            LinkedHashMap<String, SearchResult> cached = cache.get(cacheKey, query.getSequence().length());
+            if (cached != null)
+                return cached;
+
+            BlastSearch blastSearch = new BlastSearch(version.getPath(), this.dbName);
+            BlastHits hits = new BlastHits(getVolumes(version.getPath()), query.getSequence().length(),
+                    MAX_HIT_ENTRIES);
+            boolean success;
+            if (BlastBatcher.isBatchable(query.getSequence())) {
+                String[] options = getOptions(program, "qseqid " + OUTPUT_COLUMNS);
+                String key = program.name() + ":" + version.getPath();
+                success = batcher.run(key, query.getSequence(), hits, (input, handler) -> {
+                    BlastQuery batchQuery = new BlastQuery();
+                    batchQuery.setBlastProgram(program);
+                    batchQuery.setSequence(input);
+                    return blastSearch.run(batchQuery, handler, options);
+                });
+            } else {
+                success = blastSearch.run(query, hits, getOptions(program, OUTPUT_COLUMNS));
             }
-        } catch (IOException | CsvException e) {
-            Logger.error(e);
-            return null;
+
+            if (!success)
+                throw new BlastException("Exception running blast");
+            cache.put(cacheKey, generation, hits.getResults());
+            return hits.getResults();
         }
+    }
+
+    private static String[] getOptions(BlastProgram program, String outputColumns) {
+        if (program == BlastProgram.BLAST_N)
+            return new String[]{"-perc_identity", "70", "-outfmt", "10 " + outputColumns};
+        return new String[]{"-outfmt", "10 " + outputColumns};
+    }
 
-        return hashMap;
+    // volumes of the specified version, which is not the current version if it changed since the search started
+    private BlastVolumes getVolumes(Path version) {
+        BlastVolumes current = volumes;
+        if (current != null && current.getDirectory().equals(version))
+            return current;
+        return new BlastVolumes(version, dbName);
     }
 
     /**
-     * Parses a blast output that represents a single hit
+     * Parses a blast output that represents a single hit. Only the values in the output are set on the entry
+     * information; the remaining values are retrieved once the hits have been filtered and paged
+     * (see {@link org.jbei.ice.storage.hibernate.search.HibernateSearch})
      *
      * @param line blast output for hit
      * @return object wrapper around details of the hit
      */
-    private SearchResult parseBlastOutputLine(String[] line) {
+    private static SearchResult parseBlastOutputLine(String[] line) {
         try {
             // extract part information
             PartData view = new PartData(EntryType.nameToType(line[1]));
-            view.setId(Long.decode(line[0]));
+            view.setId(BlastVolumes.getEntryId(line[0]));
             view.setName(line[2]);
             view.setPartId(line[3]);
-            String summary = DAOFactory.getEntryDAO().getEntrySummary(view.getId());
-            view.setShortDescription(summary);
 
             //search result object
             SearchResult searchResult = new SearchResult();
@@ -202,18 +244,29 @@ public class StandardBlastDatabase extends BlastDatabase {
      * @throws BlastException on exception rebuilding sequence db
      */
     public void checkRebuild(boolean force) throws BlastException {
-        if (!force && blastDatabaseExists()) {
-            Logger.info("Blast database found in " + indexPath.toString());
-            return;
-        }
+        synchronized (LOCK) {
+            if (!force && blastDatabaseExists()) {
+                Logger.info("Blast database found in " + volumes.getDirectory().toString());
+                scheduleCompaction();
+                return;
+            }
 
-        // delete fasta file and create a new one with all sequences in database
-        blastFastaFile.createNew();
-        Iterable<String> iterable = () -> new AllSequencesStream(sequenceDAO);
-        blastFastaFile.write(iterable);
-        blastPlus.formatBlastDb(blastFastaFile, this.dbName);
+            // new version with fasta file containing all sequences in database
+            build(fastaFile -> {
+                fastaFile.createNew();
+                if (!fastaFile.write(() -> new AllSequencesStream(sequenceDAO)))
+                    throw new IOException("Could not write " + fastaFile.getFilePath());
+            });
+        }
     }
 
+    /**
+     * Adds the sequence of an entry to the blast database. The sequence is written, together with the current
+     * sequences of the last delta volume if that volume is not full, to a new delta volume which replaces it.
+     * The cost is therefore proportional to the size of a delta volume rather than the size of the database
+     *
+     * @param partId part number of entry
+     */
     public void addSequence(String partId) {
         Entry entry = new HasEntry().getEntry(partId);
         if (entry == null) {
@@ -221,86 +274,302 @@ public class StandardBlastDatabase extends BlastDatabase {
             return;
         }
 
-        Sequence sequence = sequenceDAO.getByEntry(entry);
-        final String blastFasta = getSequenceFasta(sequence);
-        if (blastFasta == null)
-            return;
-
-        blastFastaFile.write(() -> new Iterator<String>() {
-            private boolean called = false;
+        synchronized (LOCK) {
+            try {
+                if (!blastDatabaseExists()) {
+                    checkRebuild(false);
+                    return;
+                }
 
-            @Override
-            public boolean hasNext() {
-                if (called)
-                    return false;
+                Sequence sequence = sequenceDAO.getByEntry(entry);
+                Integer active = volumes.getActiveVolume(MAX_DELTA_SEQUENCES);
+                int volume = volumes.newVolume();
+                String blastFasta = sequence == null ? null : getSequenceFasta(sequence, volume);
+                if (blastFasta == null) {
+                    // no (valid) sequence; exclude any previous one
+                    volumes.delete(entry.getId());
+                } else {
+                    Path fastaPath = volumes.getFastaPath(volume);
+                    Set<Long> entryIds = new HashSet<>();
+                    try (BufferedWriter writer = Files.newBufferedWriter(fastaPath, StandardCharsets.UTF_8)) {
+                        if (active != null) {
+                            volumes.copyLiveRecords(active, volumes.getFastaPath(active), writer, volume,
+                                    Collections.singleton(entry.getId()), entryIds);
+                        }
+                        writer.write(blastFasta);
+                    }
+                    entryIds.add(entry.getId());
+                    blastPlus.formatBlastDb(fastaPath, volumes.getVolumeName(volume));
+                    volumes.addVolume(volume, entryIds, active);
+                    if (versions.isUnused(volumes.getDirectory()))
+                        volumes.deleteRetired();
+                }
 
-                called = true;
-                return true;
+                scheduleCompaction();
+            } catch (IOException | BlastException e) {
+                Logger.error(e);
+            } finally {
+                cache.invalidate();
             }
+        }
+    }
+
+    /**
+     * Removes the sequence of an entry from the blast database by excluding it from results. It is removed from the
+     * database files when the database is next compacted
+     *
+     * @param partId part number of entry
+     */
+    public void removeSequence(String partId) {
+        Entry entry = new HasEntry().getEntry(partId);
+        if (entry == null) {
+            Logger.error("Could not retrieve entry with id " + partId + ". Sequence was not removed from blast");
+            return;
+        }
+
+        synchronized (LOCK) {
+            if (!blastDatabaseExists())
+                return;
 
-            @Override
-            public String next() {
-                return blastFasta;
+            try {
+                volumes.delete(entry.getId());
+                scheduleCompaction();
+            } catch (IOException e) {
+                Logger.error(e);
+            } finally {
+                cache.invalidate();
             }
-        });
+        }
+    }
+
+    public void updateSequence(String partId) {
+        // the new sequence supersedes the existing one
+        addSequence(partId);
+    }
 
+    /**
+     * Compacts the database if there are too many delta volumes or changed entries. Searches use the current
+     * version of the database, and sequences can still be added and removed, while it is compacted
+     */
+    public void compactIfNeeded() {
         try {
-            blastPlus.formatBlastDb(blastFastaFile, this.dbName);
+            compact();
         } catch (BlastException e) {
             Logger.error(e);
         }
     }
 
-    public void removeSequence(String partId) {
+    // compacts in a separate task so that the update that needs it does not wait for it. caller holds lock
+    private void scheduleCompaction() {
+        if (isCompactionNeeded())
+            IceExecutorService.getInstance().runTask(new RebuildBlastIndexTask(Action.COMPACT, null));
+    }
+
+    // caller holds lock
+    private boolean isCompactionNeeded() {
+        return volumes.getDeltas().size() >= MAX_DELTA_VOLUMES || volumes.getChangedCount() >= MAX_CHANGED_ENTRIES;
+    }
+
+    /**
+     * Merges the live records of the base and delta volumes into a new version of the database, if compaction is
+     * needed and the database is not already being compacted.
+     * <p>
+     * The new base volume is built without holding the lock from a snapshot of the volumes, so that sequences can
+     * still be added and removed in the meantime. Records of the base fasta file are copied by byte range using its
+     * offset index, skipping those of entries whose sequences were changed or deleted before the snapshot; the live
+     * records of the (small) delta volumes are then appended. The changes made since the snapshot are then replayed
+     * onto the new version under the lock before it is published (see {@link #replay(BlastVolumes, BlastVolumes)})
+     *
+     * @throws BlastException on exception writing the fasta file or creating the base volume
+     */
+    private void compact() throws BlastException {
+        BlastVolumes snapshot;
+        BlastDatabaseVersions.Version version;
+        synchronized (LOCK) {
+            if (compacting || !blastDatabaseExists() || !isCompactionNeeded())
+                return;
+
+            // the version is acquired so that the delta volumes of the snapshot are not deleted when retired
+            version = versions.acquire();
+            if (version == null)
+                return;
+            snapshot = volumes.snapshot();
+            compacting = true;
+        }
+
+        try (BlastDatabaseVersions.Version ignored = version) {
+            Logger.info("Compacting blast database (" + snapshot.getDeltas().size() + " delta volumes, "
+                    + snapshot.getChangedCount() + " changed entries)");
+            BlastFastaFile currentFasta = new BlastFastaFile(snapshot.getDirectory());
+
+            BlastVolumes newVolumes = create(fastaFile -> {
+                fastaFile.createNew();
+                currentFasta.copy(fastaFile, record -> snapshot.isLive(record.getSubjectId()));
+
+                Set<Long> entryIds = new HashSet<>();
+                for (Integer volume : snapshot.getDeltas()) {
+                    StringWriter writer = new StringWriter();
+                    snapshot.copyLiveRecords(volume, snapshot.getFastaPath(volume), writer, BlastVolumes.BASE,
+                            Collections.emptySet(), entryIds);
+                    if (writer.getBuffer().length() > 0 && !fastaFile.write(Collections.singleton(writer.toString())))
+                        throw new IOException("Could not write " + fastaFile.getFilePath());
+                }
+            });
+
+            synchronized (LOCK) {
+                boolean published = false;
+                try {
+                    // not published if the database was rebuilt in the meantime
+                    if (volumes != null && volumes.getDirectory().equals(snapshot.getDirectory())) {
+                        replay(snapshot, newVolumes);
+                        publish(newVolumes);
+                        published = true;
+                    }
+                } catch (IOException e) {
+                    throw new BlastException(e);
+                } finally {
+                    if (!published)
+                        versions.discard(newVolumes.getDirectory());
+                }
+            }
+        } finally {
+            synchronized (LOCK) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Applies the changes made to the current volumes since a snapshot was taken to the volumes of a new version
+     * built from the snapshot. Sequences added or changed since are in delta volumes created after the snapshot;
+     * their live records are written to a single new delta volume. Caller holds lock
+     *
+     * @param snapshot   snapshot the new version was built from
+     * @param newVolumes volumes of new version
+     * @throws IOException    on exception writing the delta volume or state files
+     * @throws BlastException on exception creating the delta volume database
+     */
+    private void replay(BlastVolumes snapshot, BlastVolumes newVolumes) throws IOException, BlastException {
+        List<Integer> snapshotDeltas = snapshot.getDeltas();
+        int volume = newVolumes.newVolume();
+        Path fastaPath = newVolumes.getFastaPath(volume);
+        Set<Long> entryIds = new HashSet<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(fastaPath, StandardCharsets.UTF_8)) {
+            for (Integer delta : volumes.getDeltas()) {
+                if (!snapshotDeltas.contains(delta)) {
+                    volumes.copyLiveRecords(delta, volumes.getFastaPath(delta), writer, volume,
+                            Collections.emptySet(), entryIds);
+                }
+            }
+        }
+
+        if (entryIds.isEmpty()) {
+            Files.deleteIfExists(fastaPath);
+        } else {
+            blastPlus.formatBlastDb(fastaPath, newVolumes.getVolumeName(volume));
+            newVolumes.addVolume(volume, entryIds, null);
+        }
+
+        Set<Long> deleted = volumes.getDeletedSince(snapshot);
+        if (!deleted.isEmpty())
+            newVolumes.delete(deleted);
+    }
+
+    /**
+     * Builds a new version of the database from a fasta file and publishes it. The current version remains in use
+     * until then. Caller holds lock
+     *
+     * @param fastaWriter writes the fasta file of the new version
+     * @throws BlastException on exception writing the fasta file or creating the database
+     */
+    private void build(FastaWriter fastaWriter) throws BlastException {
+        BlastVolumes newVolumes = create(fastaWriter);
         try {
-            blastFastaFile.delete(partId);
-            blastPlus.formatBlastDb(blastFastaFile, this.dbName);
-        } catch (IOException | BlastException e) {
-            Logger.error(e);
+            publish(newVolumes);
+        } catch (IOException e) {
+            versions.discard(newVolumes.getDirectory());
+            throw new BlastException(e);
         }
     }
 
-    public void updateSequence(String partId) {
-        // remove and add
+    /**
+     * Creates a new version of the database with a base volume built from a fasta file. The version is discarded if
+     * it cannot be created; otherwise the caller either publishes or discards it
+     *
+     * @param fastaWriter writes the fasta file of the new version
+     * @return volumes of the new version
+     * @throws BlastException on exception writing the fasta file or creating the database
+     */
+    private BlastVolumes create(FastaWriter fastaWriter) throws BlastException {
+        Path dir;
         try {
-            blastFastaFile.delete(partId);
+            dir = versions.create();
         } catch (IOException e) {
-            Logger.error(e);
-            return;
+            throw new BlastException(e);
         }
-        addSequence(partId);
+
+        boolean created = false;
+        try {
+            BlastFastaFile fastaFile = new BlastFastaFile(dir);
+            fastaWriter.write(fastaFile);
+            BlastVolumes newVolumes = new BlastVolumes(dir, dbName);
+            blastPlus.formatBlastDb(fastaFile, newVolumes.getBaseName());
+            newVolumes.reset();
+            created = true;
+            return newVolumes;
+        } catch (IOException e) {
+            throw new BlastException(e);
+        } finally {
+            if (!created)
+                versions.discard(dir);
+        }
+    }
+
+    // makes a new version the current version. caller holds lock
+    private void publish(BlastVolumes newVolumes) throws IOException {
+        versions.publish(newVolumes.getDirectory());
+        volumes = newVolumes;
+        cache.invalidate();
     }
 
     /**
-     * Checks if a database exists for blast searches exists by checking for the existence of
-     * the blast database name (currently <code>ice</code>) with <code>.nsq</code> extension
+     * Checks if a database exists for blast searches exists by checking for the existence of the volumes state,
+     * alias database (currently <code>ice.nal</code>) and base volume of the current version
      *
      * @return true is a blast database is found, false otherwise
      */
     private boolean blastDatabaseExists() {
-        return Files.exists(Paths.get(indexPath.toString(), this.dbName + ".nsq"));
+        BlastVolumes current = volumes;
+        if (current == null || !current.exists())
+            return false;
+
+        Path base = current.getDirectory().resolve(current.getBaseName());
+        return Files.exists(Paths.get(base + ".nsq")) || Files.exists(Paths.get(base + ".nal"));
+    }
+
+    private interface FastaWriter {
+        void write(BlastFastaFile fastaFile) throws IOException;
     }
 
+    /**
+     * Fasta records of all sequences, read in a single pass over the sequences table through a forward-only cursor
+     */
     private static class AllSequencesStream implements Iterator<String> {
 
-        private int available;
-        private int currentOffset;
-        private SequenceDAO dao;
+        private static final int CHUNK_SIZE = 500;
+        private final ScrollableRows rows;
         private String nextValue;
 
         public AllSequencesStream(SequenceDAO sequenceDAO) {
-            dao = sequenceDAO;
-            available = dao.getSequenceCount();
+            rows = sequenceDAO.scrollBlastSequences(CHUNK_SIZE);
         }
 
         @Override
         public boolean hasNext() {
-            while (currentOffset < available) {
-                Sequence sequence = dao.getSequence(currentOffset++);
-                if (sequence == null || sequence.getEntry() == null)
-                    continue;
-
-                nextValue = getSequenceFasta(sequence);
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                nextValue = getSequenceFasta(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        (String) row[3], (String) row[4], BlastVolumes.BASE);
                 if (nextValue == null)
                     continue;
 
@@ -317,4 +586,52 @@ public class StandardBlastDatabase extends BlastDatabase {
             return nextValue;
         }
     }
+
+    /**
+     * Collects the hits of a blast search as the output is read, keeping only the best hit for each entry.
+     * Hits on sequences that have since been changed or deleted are skipped, and the reading is stopped once
+     * there are hits for the maximum number of entries
+     */
+    static class BlastHits implements BlastSearch.RowHandler {
+
+        private final LinkedHashMap<String, SearchResult> results;
+        private final BlastVolumes volumes;
+        private final int queryLength;
+        private final int maxEntries;
+
+        BlastHits(BlastVolumes volumes, int queryLength, int maxEntries) {
+            this.results = new LinkedHashMap<>();
+            this.volumes = volumes;
+            this.queryLength = queryLength;
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        public boolean handle(String[] line) {
+            if (!volumes.isLive(line[0]))
+                return true;
+
+            String idString = Long.toString(BlastVolumes.getEntryId(line[0]));
+            SearchResult existing = results.get(idString);
+            if (existing == null && results.size() >= maxEntries)
+                return false;
+
+            // replace existing hit for the same entry only if this one has a higher score
+            SearchResult info = parseBlastOutputLine(line);
+            if (info == null || (existing != null && existing.getScore() >= info.getScore()))
+                return true;
+
+            info.setQueryLength(queryLength);
+            results.put(idString, info);
+            return true;
+        }
+
+        /**
+         * @return mapping of entryId to search result object containing information about the blast search for
+         * that particular hit, in the order of the blast output
+         */
+        LinkedHashMap<String, SearchResult> getResults() {
+            return results;
+        }
+    }
 }
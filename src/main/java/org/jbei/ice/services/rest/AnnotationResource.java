@@ -7,6 +7,7 @@ import org.jbei.ice.lib.access.PermissionException;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.DNAFeature;
 import org.jbei.ice.lib.dto.FeaturedDNASequence;
+import org.jbei.ice.lib.entry.EntrySelection;
 import org.jbei.ice.lib.entry.sequence.annotation.Annotations;
 
 import javax.ws.rs.*;
@@ -91,6 +92,45 @@ public class AnnotationResource extends RestResource {
         return super.respond(annotatedSequence);
     }
 
+    /**
+     * Starts a job to auto annotate the entries in a selection (e.g. a folder or collection). The progress of the
+     * job is available at <code>/annotations/batch/{id}</code>
+     *
+     * @param apply     whether to add the annotations to the entries or only propose them. Proposed annotations
+     *                  are available (as json) from the temporary file in the job status once the job completes
+     * @param selection entries to annotate
+     * @return status of the job
+     */
+    @POST
+    @Path("/batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response generateForSelection(@DefaultValue("false") @QueryParam("apply") boolean apply,
+                                         EntrySelection selection) {
+        String userId = requireUserId();
+        log(userId, "requesting auto annotations for selection (apply: " + apply + ")");
+        Annotations annotations = new Annotations(userId);
+        return super.respond(annotations.generate(selection, apply));
+    }
+
+    /**
+     * Retrieves the progress of a batch auto annotation job
+     *
+     * @param id unique identifier for job
+     * @return status of the job
+     */
+    @GET
+    @Path("/batch/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getBatchStatus(@PathParam("id") String id) {
+        String userId = requireUserId();
+        Annotations annotations = new Annotations(userId);
+        try {
+            return super.respond(annotations.getBatchStatus(id));
+        } catch (PermissionException pe) {
+            throw new WebApplicationException(Response.Status.FORBIDDEN);
+        }
+    }
+
     @PUT
     @Path("/indexes")
     public Response rebuildAnnotations() {
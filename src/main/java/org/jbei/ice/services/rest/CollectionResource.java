@@ -1,5 +1,6 @@
 package org.jbei.ice.services.rest;
 
+import org.apache.commons.lang3.StringUtils;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.common.Results;
 import org.jbei.ice.lib.dto.entry.PartData;
@@ -79,7 +80,10 @@ public class CollectionResource extends RestResource {
     }
 
     /**
-     * Retrieve entries by collection type using paging parameters, including a filter
+     * Retrieve entries by collection type using paging parameters, including a filter.
+     * If a <code>cursor</code> is specified (<code>*</code> for the first page), entries are paged using the cursor
+     * instead of the offset and the results include the cursor for the next page. The number of available entries is
+     * only returned with the first page
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -90,13 +94,22 @@ public class CollectionResource extends RestResource {
                          @DefaultValue("created") @QueryParam("sort") final String sort,
                          @DefaultValue("false") @QueryParam("asc") final boolean asc,
                          @DefaultValue("") @QueryParam("filter") String filter,
+                         @QueryParam("cursor") String cursor,
                          @QueryParam("fields") List<String> fields) {
         String userId = requireUserId();
         CollectionType type = CollectionType.valueOf(collectionType.toUpperCase());
         ColumnField sortField = ColumnField.valueOf(sort.toUpperCase());
         log(userId, "retrieving entries for collection " + type);
         CollectionEntries entries = new CollectionEntries(userId, type);
-        Results<PartData> results = entries.getEntries(sortField, asc, offset, limit, filter, fields);
-        return super.respond(results);
+        if (StringUtils.isEmpty(cursor))
+            return super.respond(entries.getEntries(sortField, asc, offset, limit, filter, fields));
+
+        try {
+            Results<PartData> results = entries.getEntries(sortField, asc, cursor, limit, filter, fields);
+            return super.respond(results);
+        } catch (IllegalArgumentException ile) {
+            Logger.error(ile);
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
     }
 }
@@ -21,6 +21,7 @@ import org.jbei.ice.lib.entry.attachment.Attachments;
 import org.jbei.ice.lib.entry.sequence.InputStreamWrapper;
 import org.jbei.ice.lib.entry.sequence.PartSequence;
 import org.jbei.ice.lib.entry.sequence.SequenceFormat;
+import org.jbei.ice.lib.entry.sequence.SequenceOutput;
 import org.jbei.ice.lib.entry.sequence.Sequences;
 import org.jbei.ice.lib.entry.sequence.analysis.TraceSequences;
 import org.jbei.ice.lib.net.RemoteEntries;
@@ -210,9 +211,12 @@ public class FileResource extends RestResource {
 
             return addHeaders(Response.ok(stream), wrapper.getName());
         } else {
-            InputStreamWrapper wrapper = new PartSequence(userId, partId).toFile(SequenceFormat.fromString(downloadType));
-            StreamingOutput stream = output -> IOUtils.copy(wrapper.getInputStream(), output);
-            return addHeaders(Response.ok(stream), wrapper.getName());
+            SequenceOutput sequenceOutput = new PartSequence(userId, partId).toStream(SequenceFormat.fromString(downloadType));
+            if (sequenceOutput == null)
+                return respond(Response.Status.NOT_FOUND);
+
+            StreamingOutput stream = sequenceOutput::write;
+            return addHeaders(Response.ok(stream), sequenceOutput.getName());
         }
     }
 
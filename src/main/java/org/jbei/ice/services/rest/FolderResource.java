@@ -204,7 +204,9 @@ public class FolderResource extends RestResource {
 
     /**
      * Retrieves the entries for specified folder. Handles request
-     * from a local client (ui) or from a remote ice instance
+     * from a local client (ui) or from a remote ice instance.
+     * If a <code>cursor</code> is specified (<code>*</code> for the first page), entries are paged using the cursor
+     * instead of the offset and the cursor for the next page is returned in the folder details
      *
      * @return list of retrieved entries wrapped in folder object
      */
@@ -217,6 +219,7 @@ public class FolderResource extends RestResource {
                               @DefaultValue("created") @QueryParam("sort") final String sort,
                               @DefaultValue("false") @QueryParam("asc") final boolean asc,
                               @DefaultValue("") @QueryParam("filter") String filter,
+                              @QueryParam("cursor") String cursor,
                               @QueryParam("token") String token,                            // todo: move to headers
                               @QueryParam("userId") String remoteUserId,                    // todo : ditto
                               @QueryParam("fields") List<String> fields) {
@@ -237,6 +240,7 @@ public class FolderResource extends RestResource {
                 message += " filtered by \"" + filter + "\"";
             FolderContents folderContents = new FolderContents();
             PageParameters pageParameters = new PageParameters(offset, limit, field, asc, filter);
+            pageParameters.setCursor(cursor);
 
             if (StringUtils.isEmpty(userId)) {
                 if (StringUtils.isEmpty(token)) {  // todo :verify partner? {
@@ -255,6 +259,9 @@ public class FolderResource extends RestResource {
         } catch (final NumberFormatException nfe) {
             Logger.error("Passed folder id " + folderId + " is not a number");
             return null;
+        } catch (IllegalArgumentException e) {
+            Logger.error(e);
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
     }
 
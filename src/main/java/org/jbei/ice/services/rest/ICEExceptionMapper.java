@@ -2,6 +2,7 @@ package org.jbei.ice.services.rest;
 
 import org.jbei.ice.lib.access.PermissionException;
 import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.search.blast.BlastQueueFullException;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
@@ -25,6 +26,8 @@ public class ICEExceptionMapper implements ExceptionMapper<Exception> {
             response = webEx.getResponse();
         } else if (exception instanceof PermissionException) {
             response = Response.status(Response.Status.FORBIDDEN).build();
+        } else if (exception instanceof BlastQueueFullException) {
+            response = Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
         } else {
             response = Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         }
@@ -9,11 +9,16 @@ import org.jbei.ice.lib.dto.search.SearchResults;
 import org.jbei.ice.lib.search.IndexBuildStatus;
 import org.jbei.ice.lib.search.SearchIndexes;
 import org.jbei.ice.lib.search.WebSearch;
+import org.jbei.ice.lib.search.blast.BlastExecutor;
 import org.jbei.ice.lib.shared.ColumnField;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -28,6 +33,9 @@ public class SearchResource extends RestResource {
 
     private SearchIndexes controller = new SearchIndexes();
 
+    @Context
+    private HttpServletResponse response;
+
     /**
      * Search entries by using filters on the values
      */
@@ -46,7 +54,11 @@ public class SearchResource extends RestResource {
 
     /**
      * Advanced Search. The use of post is mostly for the sequence string for blast which can get
-     * very long and results in a 413 status code if sent via GET
+     * very long and results in a 413 status code if sent via GET.
+     * <p>
+     * A blast search is cancelled if the client disconnects while it runs. This is detected by writing whitespace
+     * (which is ignored by json parsers) ahead of the results while the search runs, so a long running search
+     * that then fails returns an empty response instead of an error status
      *
      * @param searchWeb whether to perform a web of registry search or not
      * @param query     parameters to the search
@@ -70,8 +82,16 @@ public class SearchResource extends RestResource {
             requireWebPartner();
         }
 
-        final SearchResults results = controller.runSearch(userId, query);
-        return super.respond(Response.Status.OK, results);
+        if (!query.hasBlastQuery())
+            return super.respond(Response.Status.OK, runSearch(userId, query));
+
+        BlastExecutor.setCancelCheck(this::isDisconnected);
+        try {
+            final SearchResults results = runSearch(userId, query);
+            return super.respond(Response.Status.OK, results);
+        } finally {
+            BlastExecutor.setCancelCheck(null);
+        }
     }
 
     /**
@@ -83,6 +103,9 @@ public class SearchResource extends RestResource {
      * @param limit       result count upper limit
      * @param sort        result sort
      * @param asc         true if return results in ascending order, false otherwise
+     * @param cursor      optional cursor returned with the previous page of results. Used instead of the offset
+     * @param facets      whether to include the counts of results by record type, status, bio-safety level and
+     *                    has sequence/sample/attachment
      * @return wrapper around list of search results conforming to query params
      */
     @GET
@@ -92,7 +115,9 @@ public class SearchResource extends RestResource {
                            @DefaultValue("0") @QueryParam("offset") final int offset,
                            @DefaultValue("15") @QueryParam("limit") final int limit,
                            @DefaultValue("relevance") @QueryParam("sort") final String sort,
-                           @DefaultValue("false") @QueryParam("asc") final boolean asc) {
+                           @DefaultValue("false") @QueryParam("asc") final boolean asc,
+                           @QueryParam("cursor") final String cursor,
+                           @DefaultValue("false") @QueryParam("facets") final boolean facets) {
         final String userId = getUserId();
         if (StringUtils.isEmpty(userId) && !searchWeb) {
             return super.respond(Response.Status.FORBIDDEN);
@@ -106,10 +131,38 @@ public class SearchResource extends RestResource {
         parameters.setStart(offset);
         parameters.setSortAscending(asc);
         parameters.setSortField(ColumnField.valueOf(sort.toUpperCase()));
+        parameters.setCursor(cursor);
+        parameters.setRetrieveFacets(facets);
 
         final List<EntryType> types = Arrays.asList(EntryType.values());
         query.setEntryTypes(types);
-        return super.respond(controller.runSearch(userId, query));
+        return super.respond(runSearch(userId, query));
+    }
+
+    // invalid paging cursors are a bad request
+    private SearchResults runSearch(String userId, SearchQuery query) {
+        try {
+            controller.checkCursor(query);
+        } catch (IllegalArgumentException e) {
+            log(userId, e.getMessage());
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return controller.runSearch(userId, query);
+    }
+
+    // checks whether the client is still connected by writing (and flushing) whitespace to the response, which
+    // fails once the connection is closed
+    private boolean isDisconnected() {
+        try {
+            if (!response.isCommitted())
+                response.setContentType(MediaType.APPLICATION_JSON);
+            OutputStream outputStream = response.getOutputStream();
+            outputStream.write(' ');
+            outputStream.flush();
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
     }
 
     /**
@@ -143,4 +196,24 @@ public class SearchResource extends RestResource {
         IndexBuildStatus status = controller.getIndexStatus(IndexType.valueOf(indexType.toUpperCase()));
         return super.respond(status);
     }
+
+    /**
+     * Retrieve the number of pending asynchronous search index updates and the indexing lag
+     */
+    @GET
+    @Path("/indexes/lucene/queue")
+    public Response getIndexQueueStatus() {
+        requireUserId();
+        return super.respond(controller.getIndexQueueStatus());
+    }
+
+    /**
+     * Retrieve the number of running and queued blast searches and their run times
+     */
+    @GET
+    @Path("/indexes/blast/queue")
+    public Response getBlastQueueStatus() {
+        requireUserId();
+        return super.respond(controller.getBlastQueueStatus());
+    }
 }
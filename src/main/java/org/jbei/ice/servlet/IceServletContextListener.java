@@ -4,7 +4,9 @@ import org.hibernate.SessionFactory;
 import org.jbei.ice.ApplicationInitialize;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.executor.IceExecutorService;
+import org.jbei.ice.lib.search.blast.BlastExecutor;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.search.EntryIndexQueue;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
@@ -31,6 +33,12 @@ public class IceServletContextListener implements ServletContextListener {
         // shutdown executor service
         IceExecutorService.getInstance().stopService();
 
+        // kill running blast searches
+        BlastExecutor.getInstance().shutdown();
+
+        // index pending entry changes
+        EntryIndexQueue.getInstance().stop(30000);
+
         closeSessionFactory(HibernateUtil.getSessionFactory());
 
         Enumeration<Driver> drivers = DriverManager.getDrivers();
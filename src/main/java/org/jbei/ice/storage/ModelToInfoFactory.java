@@ -10,10 +10,7 @@ import org.jbei.ice.storage.model.*;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Factory for converting {@link Entry}s to a {@link org.jbei.ice.lib.dto.entry.PartData}
@@ -259,67 +256,116 @@ public class ModelToInfoFactory {
 
 
     public static PartData createTableView(long entryId, List<String> fields) {
+        List<PartData> views = createTableViews(Collections.singletonList(entryId), fields);
+        return views.isEmpty() ? null : views.get(0);
+    }
+
+    /**
+     * Creates the table (list) views for a page of entries using a fixed number of set based queries
+     * (as opposed to a number of queries per entry)
+     *
+     * @param entryIds unique identifiers for entries whose views are to be created
+     * @param fields   optional fields to include in addition to the minimum set of values
+     * @return list of entry views in the same order as <code>entryIds</code>. Entries that cannot be retrieved, or
+     * whose views cannot be created, are not included
+     */
+    public static List<PartData> createTableViews(List<Long> entryIds, List<String> fields) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
         Set<String> fieldsToProcess;
         if (fields == null)
             fieldsToProcess = new HashSet<>();
         else
             fieldsToProcess = new HashSet<>(fields);
 
-        fieldsToProcess.add("name");
-        fieldsToProcess.add("status");
-        fieldsToProcess.add("recordType");
-        fieldsToProcess.add("creation_time");
-        fieldsToProcess.add("short_description");
-
         // minimum set of values
-        Entry entry = DAOFactory.getEntryDAO().get(entryId);
-        EntryType type = EntryType.nameToType(entry.getRecordType());
-        PartData view = new PartData(type);
-        view.setId(entry.getId());
-        view.setRecordId(entry.getRecordId());
-        view.setPartId(entry.getPartNumber());
-        view.setName(entry.getName());
-        view.setShortDescription(entry.getShortDescription());
-        view.setCreationTime(entry.getCreationTime().getTime());
-        view.setStatus(entry.getStatus());
-        view.setShortDescription(entry.getShortDescription());
+        Map<Long, PartData> views = new HashMap<>();
+        List<Long> localIds = new ArrayList<>();
+        for (Entry entry : DAOFactory.getEntryDAO().getEntriesByIdSet(entryIds)) {
+            // an entry with invalid values is skipped instead of failing the whole page
+            try {
+                EntryType type = EntryType.nameToType(entry.getRecordType());
+                PartData view = new PartData(type);
+                view.setId(entry.getId());
+                view.setRecordId(entry.getRecordId());
+                view.setPartId(entry.getPartNumber());
+                view.setName(entry.getName());
+                view.setShortDescription(entry.getShortDescription());
+                view.setCreationTime(entry.getCreationTime().getTime());
+                view.setStatus(entry.getStatus());
+                view.setOwner(entry.getOwner());
+                view.setOwnerEmail(entry.getOwnerEmail());
+
+                // has sequence (remote entries do not have local sequences)
+                Visibility visibility = Visibility.valueToEnum(entry.getVisibility());
+                boolean remote = visibility == Visibility.REMOTE;
+                if (remote)
+                    view.setHasSequence("sequence".equalsIgnoreCase(entry.getLongDescriptionType()));
+
+                // optional values
+                if (fieldsToProcess.contains("alias"))
+                    view.setAlias(entry.getAlias());
+
+                views.put(entry.getId(), view);
+                if (!remote)
+                    localIds.add(entry.getId());
+            } catch (Exception e) {
+                Logger.error("Could not create table view for entry " + entry.getId(), e);
+            }
+        }
 
         // has sample
-        view.setHasSample(DAOFactory.getSampleDAO().hasSample(entry));
+        for (Long id : DAOFactory.getSampleDAO().getEntryIdsWithSample(entryIds)) {
+            PartData view = views.get(id);
+            if (view != null)
+                view.setHasSample(true);
+        }
+
+        // has attachment
+        for (Long id : DAOFactory.getAttachmentDAO().getEntryIdsWithAttachment(entryIds)) {
+            PartData view = views.get(id);
+            if (view != null)
+                view.setHasAttachment(true);
+        }
 
         // has sequence
-        Visibility visibility = Visibility.valueToEnum(entry.getVisibility());
-        if (visibility == Visibility.REMOTE) {
-            view.setHasSequence(entry.getLongDescriptionType().equalsIgnoreCase("sequence"));
-        } else {
-            SequenceDAO sequenceDAO = DAOFactory.getSequenceDAO();
-            view.setHasSequence(sequenceDAO.hasSequence(entry.getId()));
-            view.setHasOriginalSequence(sequenceDAO.hasOriginalSequence(entry.getId()));
+        SequenceDAO sequenceDAO = DAOFactory.getSequenceDAO();
+        for (Long id : sequenceDAO.getEntryIdsWithSequence(localIds)) {
+            views.get(id).setHasSequence(true);
         }
 
-        // optional values
-        if (fieldsToProcess.contains("alias")) {
-            view.setAlias(entry.getAlias());
+        for (Long id : sequenceDAO.getEntryIdsWithOriginalSequence(localIds)) {
+            views.get(id).setHasOriginalSequence(true);
         }
 
+        // links ([entry_id, entry_record_type, linked_entry_id, linked_entry_record_type])
         if (fieldsToProcess.contains("links")) {
-            for (Entry linkedEntry : entry.getLinkedEntries()) {
-                PartData linkedPartData = new PartData(EntryType.nameToType(linkedEntry.getRecordType()));
-                linkedPartData.setId(linkedEntry.getId());
-                view.getLinkedParts().add(linkedPartData);
-            }
+            for (Object[] link : DAOFactory.getEntryDAO().getLinks(entryIds)) {
+                PartData parent = views.get((Long) link[0]);
+                if (parent != null) {
+                    PartData linkedPartData = new PartData(EntryType.nameToType((String) link[3]));
+                    linkedPartData.setId((Long) link[2]);
+                    parent.getLinkedParts().add(linkedPartData);
+                }
 
-            List<Entry> parents = DAOFactory.getEntryDAO().getParents(entry.getId());
-            if (parents != null) {
-                for (Entry parentEntry : parents) {
-                    PartData partData = new PartData(EntryType.nameToType(parentEntry.getRecordType()));
-                    partData.setId(parentEntry.getId());
-                    view.getParents().add(partData);
+                PartData child = views.get((Long) link[2]);
+                if (child != null) {
+                    PartData partData = new PartData(EntryType.nameToType((String) link[1]));
+                    partData.setId((Long) link[0]);
+                    child.getParents().add(partData);
                 }
             }
         }
 
-        return view;
+        // maintain order of ids
+        List<PartData> results = new ArrayList<>(views.size());
+        for (Long id : entryIds) {
+            PartData view = views.get(id);
+            if (view != null)
+                results.add(view);
+        }
+        return results;
     }
 
     public static PartData createTipView(Entry entry) {
@@ -4,8 +4,15 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
 import org.hibernate.service.ServiceRegistry;
 import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.storage.hibernate.search.AutoCompleteIndexListener;
+import org.jbei.ice.storage.hibernate.search.EntryIndexChangeListener;
+import org.jbei.ice.storage.hibernate.search.EntryIndexQueue;
+import org.jbei.ice.storage.hibernate.search.SecurityFilterInvalidationListener;
 import org.jbei.ice.storage.model.*;
 
 /**
@@ -57,7 +64,17 @@ public class HibernateUtil {
     }
 
     /**
-     * Initialize a in-memory mock database for testing.
+     * Closes the session bound to the context without committing; e.g. after its transaction is rolled back
+     */
+    public static void closeSession() {
+        Session session = getSessionFactory().getCurrentSession();
+        if (session.isOpen())
+            session.close();
+    }
+
+    /**
+     * Initialize a in-memory mock database for testing. Entries are indexed asynchronously if the
+     * {@link EntryIndexQueue#ASYNC_PROPERTY} system property is set to <code>true</code>
      */
     public static void initializeMock() {
         initialize(Type.MOCK);
@@ -96,11 +113,18 @@ public class HibernateUtil {
                     configuration.setProperty("hibernate.hbm2ddl.auto", "update");
                     configuration.setProperty("hibernate.search.default.directory_provider",
                             "org.hibernate.search.store.impl.RAMDirectoryProvider");
+                    configuration.setProperty(EntryIndexQueue.ASYNC_PROPERTY,
+                            System.getProperty(EntryIndexQueue.ASYNC_PROPERTY, "false"));
                 } else {
                     configuration.configure();                                  // load base configuration
                     getConnectionProperties(configuration);
                 }
 
+                // entries are indexed by the index queue worker instead of in the transaction modifying them
+                boolean asyncIndexing = Boolean.parseBoolean(configuration.getProperty(EntryIndexQueue.ASYNC_PROPERTY));
+                if (asyncIndexing)
+                    configuration.setProperty("hibernate.search.indexing_strategy", "manual");
+
                 ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder().applySettings(
                         configuration.getProperties()).build();
 
@@ -151,6 +175,11 @@ public class HibernateUtil {
                 configuration.addAnnotatedClass(SampleCreateModel.class);
 
                 sessionFactory = configuration.buildSessionFactory(serviceRegistry);
+                registerEventListeners(asyncIndexing);
+                if (asyncIndexing) {
+                    EntryIndexQueue.getInstance().configure(configuration.getProperties());
+                    EntryIndexQueue.getInstance().start();
+                }
             } catch (Throwable e) {
                 e.printStackTrace();
                 throw new RuntimeException(e);
@@ -158,6 +187,41 @@ public class HibernateUtil {
         }
     }
 
+    /**
+     * Registers listeners for entity changes that invalidate cached data and, if entries are indexed
+     * asynchronously, queue the affected entries for indexing
+     *
+     * @param asyncIndexing whether entries are indexed asynchronously
+     */
+    private static void registerEventListeners(boolean asyncIndexing) {
+        EventListenerRegistry registry = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+
+        SecurityFilterInvalidationListener listener = new SecurityFilterInvalidationListener();
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.POST_DELETE, listener);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+
+        AutoCompleteIndexListener autoCompleteListener = new AutoCompleteIndexListener();
+        registry.appendListeners(EventType.POST_INSERT, autoCompleteListener);
+        registry.appendListeners(EventType.POST_UPDATE, autoCompleteListener);
+        registry.appendListeners(EventType.POST_DELETE, autoCompleteListener);
+
+        if (!asyncIndexing)
+            return;
+
+        EntryIndexChangeListener indexListener = new EntryIndexChangeListener();
+        registry.appendListeners(EventType.POST_INSERT, indexListener);
+        registry.appendListeners(EventType.POST_UPDATE, indexListener);
+        registry.appendListeners(EventType.POST_DELETE, indexListener);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, indexListener);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, indexListener);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, indexListener);
+    }
+
     /**
      * Retrieve the {@link SessionFactory}.
      *
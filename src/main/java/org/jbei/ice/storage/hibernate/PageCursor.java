@@ -0,0 +1,158 @@
+package org.jbei.ice.storage.hibernate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jbei.ice.lib.shared.ColumnField;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Position in a sorted listing (search results, collection or folder entries) used for cursor (keyset) paging.
+ * <p>
+ * The cursor records the sort and the sort key values of the last item on a page, and the next page consists of the
+ * items that sort after it. Unlike offset paging, the cost of retrieving a page is therefore independent of how
+ * deep into the listing it is. Cursors are exchanged with clients as opaque url safe strings (see {@link #encode()})
+ * and are only valid for the sort they were created with. A traversal is started with {@link #START}
+ */
+public class PageCursor {
+
+    /**
+     * Encoded cursor for the start of a listing
+     */
+    public static final String START = "*";
+
+    private static final int VERSION = 1;
+
+    private final ColumnField sortField;
+    private final boolean ascending;
+    private final Object[] values;
+
+    /**
+     * @param sortField sort field for listing
+     * @param ascending sort order
+     * @param values    sort key values of the last item in the page (<code>String</code>, <code>Long</code>,
+     *                  <code>Integer</code>, <code>Float</code> or <code>null</code>).
+     *                  No values indicates the start of the listing
+     */
+    public PageCursor(ColumnField sortField, boolean ascending, Object... values) {
+        this.sortField = sortField;
+        this.ascending = ascending;
+        this.values = values;
+    }
+
+    /**
+     * Decodes a cursor previously obtained from {@link #encode()}
+     *
+     * @param cursor    encoded cursor. If empty or {@link #START}, a cursor for the start of the listing is returned
+     * @param sortField sort field of the listing being paged
+     * @param ascending sort order of the listing being paged
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed or was created for a different sort
+     */
+    public static PageCursor decode(String cursor, ColumnField sortField, boolean ascending) {
+        if (StringUtils.isEmpty(cursor) || START.equals(cursor))
+            return new PageCursor(sortField, ascending);
+
+        PageCursor pageCursor;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (in.readByte() != VERSION)
+                throw new IllegalArgumentException("Unsupported cursor version");
+
+            String field = in.readUTF();
+            boolean asc = in.readBoolean();
+            Object[] values = new Object[in.readUnsignedByte()];
+            for (int i = 0; i < values.length; i += 1) {
+                values[i] = readValue(in);
+            }
+            pageCursor = new PageCursor(field.isEmpty() ? null : ColumnField.valueOf(field), asc, values);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor \"" + cursor + "\"", e);
+        }
+
+        if (pageCursor.sortField != sortField || pageCursor.ascending != ascending)
+            throw new IllegalArgumentException("Cursor \"" + cursor + "\" is not valid for the requested sort");
+        return pageCursor;
+    }
+
+    /**
+     * @return url safe string representation of this cursor
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(sortField == null ? "" : sortField.name());
+            out.writeBoolean(ascending);
+            out.writeByte(values.length);
+            for (Object value : values) {
+                writeValue(out, value);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte('N');
+        } else if (value instanceof String) {
+            out.writeByte('S');
+            out.writeUTF((String) value);
+        } else if (value instanceof Long) {
+            out.writeByte('L');
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt((Integer) value);
+        } else if (value instanceof Float) {
+            out.writeByte('F');
+            out.writeFloat((Float) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported cursor value type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case 'N':
+                return null;
+            case 'S':
+                return in.readUTF();
+            case 'L':
+                return in.readLong();
+            case 'I':
+                return in.readInt();
+            case 'F':
+                return in.readFloat();
+            default:
+                throw new IllegalArgumentException("Unknown cursor value type " + type);
+        }
+    }
+
+    public ColumnField getSortField() {
+        return sortField;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * @return true if this cursor is positioned at the start of the listing (i.e. has no sort key values)
+     */
+    public boolean isStart() {
+        return values.length == 0;
+    }
+
+    public Object[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return sortField + (ascending ? " asc " : " desc ") + Arrays.toString(values);
+    }
+}
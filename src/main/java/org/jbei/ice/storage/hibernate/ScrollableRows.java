@@ -0,0 +1,69 @@
+package org.jbei.ice.storage.hibernate;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Forward-only iteration over the rows of a (projection) query read through a database cursor, so that the rows are
+ * fetched from the database in chunks as they are consumed instead of all at once. The session is cleared after each
+ * chunk so that it does not accumulate the objects loaded while iterating. The cursor is closed when the last row
+ * has been read or when {@link #close()} is called
+ */
+public class ScrollableRows implements Iterator<Object[]>, AutoCloseable {
+
+    private final Session session;
+    private final ScrollableResults results;
+    private final int chunkSize;
+    private int count;
+    private boolean advanced;
+    private boolean hasRow;
+    private boolean closed;
+
+    public ScrollableRows(Session session, ScrollableResults results, int chunkSize) {
+        this.session = session;
+        this.results = results;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed)
+            return false;
+
+        if (!advanced) {
+            hasRow = results.next();
+            advanced = true;
+            if (!hasRow)
+                close();
+        }
+        return hasRow;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        advanced = false;
+        Object[] row = results.get();
+        // rows of (criteria) queries with an array result type are returned as the single element of the row
+        if (row.length == 1 && row[0] instanceof Object[])
+            row = (Object[]) row[0];
+        count += 1;
+        if (count % chunkSize == 0)
+            session.clear();
+        return row;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        results.close();
+    }
+}
@@ -7,8 +7,10 @@ import org.jbei.ice.storage.model.Attachment;
 import org.jbei.ice.storage.model.Entry;
 
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -60,6 +62,28 @@ public class AttachmentDAO extends HibernateRepository<Attachment> {
         }
     }
 
+    /**
+     * Filters the specified list of entry ids for those that have at least one attachment
+     *
+     * @param entryIds unique identifiers of entries to check
+     * @return subset of <code>entryIds</code> that have attachments
+     */
+    public List<Long> getEntryIdsWithAttachment(List<Long> entryIds) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
+        try {
+            CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
+            Root<Attachment> from = query.from(Attachment.class);
+            Join<Attachment, Entry> entry = from.join("entry");
+            query.select(entry.get("id")).distinct(true).where(entry.get("id").in(entryIds));
+            return currentSession().createQuery(query).list();
+        } catch (Exception e) {
+            Logger.error(e);
+            throw new DAOException("Failed to retrieve attachments for entries", e);
+        }
+    }
+
     /**
      * Retrieves attachment referenced by a unique file identifier
      *
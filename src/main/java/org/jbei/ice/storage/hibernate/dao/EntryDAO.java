@@ -2,13 +2,13 @@ package org.jbei.ice.storage.hibernate.dao;
 
 import org.hibernate.HibernateException;
 import org.jbei.ice.lib.common.logging.Logger;
-import org.jbei.ice.lib.dto.entry.AutoCompleteField;
 import org.jbei.ice.lib.dto.entry.EntryType;
 import org.jbei.ice.lib.dto.entry.Visibility;
 import org.jbei.ice.lib.entry.EntryUtil;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOException;
 import org.jbei.ice.storage.hibernate.HibernateRepository;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.model.*;
 
 import javax.persistence.criteria.*;
@@ -45,48 +45,23 @@ public class EntryDAO extends HibernateRepository<Entry> {
         }
     }
 
-    public List<String> getMatchingPlasmidField(AutoCompleteField field, String token, int limit) {
-        String fieldString;
-        switch (field) {
-            case ORIGIN_OF_REPLICATION:
-            default:
-                fieldString = "originOfReplication";
-                break;
-
-            case PROMOTERS:
-                fieldString = "promoters";
-                break;
-
-            case REPLICATES_IN:
-                fieldString = "replicatesIn";
-                break;
-        }
-
-        try {
-            CriteriaQuery<String> query = getBuilder().createQuery(String.class);
-            Root<Plasmid> from = query.from(Plasmid.class);
-            query
-                    .select(from.get(fieldString))
-                    .where(getBuilder().like(getBuilder().lower(from.get(fieldString)), token.toLowerCase() + "%"));
-            return currentSession().createQuery(query).setMaxResults(limit).list();
-        } catch (HibernateException he) {
-            Logger.error(he);
-            throw new DAOException(he);
-        }
-    }
-
-    public List<String> getMatchingEntryPartNumbers(String token, int limit, Set<String> include) {
+    /**
+     * Retrieves the distinct values of an entry attribute along with the number of entries of each record type
+     * that have each value
+     *
+     * @param entryClass entry class having the attribute (e.g. {@link Plasmid} for plasmid fields)
+     * @param attribute  name of (string) attribute
+     * @return list of value, record type and entry count arrays
+     * @throws DAOException on hibernate exception
+     */
+    public List<Object[]> getFieldValueCounts(Class<? extends Entry> entryClass, String attribute) {
         try {
-            CriteriaQuery<String> query = getBuilder().createQuery(String.class);
-            Root<Entry> from = query.from(Entry.class);
-
-            ArrayList<Predicate> predicates = new ArrayList<>();
-            predicates.add(getBuilder().like(getBuilder().lower(from.get("partNumber")), "%" + token.toLowerCase() + "%"));
-            if (include != null && !include.isEmpty()) {
-                predicates.add(from.get("recordType").in(include));
-            }
-            query.select(from.get("partNumber")).distinct(true).where(predicates.toArray(new Predicate[0]));
-            return currentSession().createQuery(query).setMaxResults(limit).list();
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
+            Root<? extends Entry> from = query.from(entryClass);
+            query.multiselect(from.get(attribute), from.get("recordType"), getBuilder().count(from))
+                    .where(getBuilder().isNotNull(from.get(attribute)))
+                    .groupBy(from.get(attribute), from.get("recordType"));
+            return currentSession().createQuery(query).list();
         } catch (HibernateException he) {
             Logger.error(he);
             throw new DAOException(he);
@@ -192,6 +167,69 @@ public class EntryDAO extends HibernateRepository<Entry> {
         }
     }
 
+    /**
+     * Retrieves the page of visible entries following the specified cursor (keyset paging).
+     * See {@link #retrieveVisibleEntries(Account, Set, ColumnField, boolean, int, int, String)}
+     *
+     * @param account account whose permissions are used for visibility; null to use groups only
+     * @param groups  groups whose permissions are used for visibility
+     * @param cursor  position of the page in the listing; also specifies the sort
+     * @param count   maximum number of entries to retrieve
+     * @param filter  optional filter text
+     * @return ids of entries in page
+     * @throws DAOException on hibernate exception
+     */
+    public List<Long> retrieveVisibleEntries(Account account, Set<Group> groups, PageCursor cursor, int count,
+                                             String filter) {
+        try {
+            CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
+            Root<Entry> from = query.from(Entry.class);
+
+            // permission check in subquery instead of join since an entry may have multiple matching permissions
+            Subquery<Long> permissionQuery = query.subquery(Long.class);
+            Root<Permission> permission = permissionQuery.from(Permission.class);
+            List<Predicate> permissionPredicates = new ArrayList<>();
+            permissionPredicates.add(getBuilder().equal(permission.get("entry"), from));
+            if (account != null) {
+                permissionPredicates.add(getBuilder().or(
+                        getBuilder().equal(permission.get("account"), account),
+                        permission.get("group").in(groups)
+                ));
+            } else if (!groups.isEmpty()) {
+                permissionPredicates.add(permission.get("group").in(groups));
+            }
+            permissionQuery.select(permission.get("id")).where(permissionPredicates.toArray(new Predicate[0]));
+
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(getBuilder().equal(from.get("visibility"), Visibility.OK.getValue()));
+            predicates.add(getBuilder().exists(permissionQuery));
+            createFilterPredicate(from, filter, predicates);
+            EntryKeyset.apply(currentSession(), query, from, cursor, predicates);
+
+            query.select(from.get("id")).where(predicates.toArray(new Predicate[0]));
+            return currentSession().createQuery(query).setMaxResults(count).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
+    /**
+     * Creates the page cursor positioned at the specified entry; typically the last entry of a page
+     * retrieved using keyset paging
+     *
+     * @param entryId   unique identifier for entry
+     * @param sortField sort field for listing
+     * @param asc       sort order for listing
+     * @return cursor for the following page or null if the entry cannot be found
+     */
+    public PageCursor getCursor(long entryId, ColumnField sortField, boolean asc) {
+        Entry entry = get(entryId);
+        if (entry == null)
+            return null;
+        return EntryKeyset.cursorAt(entry, sortField, asc);
+    }
+
     // todo : or entry is in a folder that is public
     public long visibleEntryCount(Account account, Set<Group> groups, String filter) {
         try {
@@ -323,6 +361,47 @@ public class EntryDAO extends HibernateRepository<Entry> {
         }
     }
 
+    /**
+     * Retrieves the page of entries shared with the requester that follows the specified cursor (keyset paging)
+     *
+     * @param requester     account that entries are shared with
+     * @param accountGroups groups that account belongs to
+     * @param cursor        position of the page in the listing; also specifies the sort
+     * @param limit         maximum number of entries to retrieve
+     * @param filter        optional filter text
+     * @return ids of entries in page
+     * @throws DAOException on hibernate exception
+     */
+    public List<Long> sharedWithUserEntries(Account requester, Set<Group> accountGroups, PageCursor cursor,
+                                            int limit, String filter) {
+        try {
+            CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
+            Root<Entry> from = query.from(Entry.class);
+
+            Subquery<Long> permissionQuery = query.subquery(Long.class);
+            Root<Permission> permission = permissionQuery.from(Permission.class);
+            Predicate shared = getBuilder().or(getBuilder().equal(permission.get("account"), requester));
+            if (!accountGroups.isEmpty()) {
+                shared.getExpressions().add(permission.get("group").in(accountGroups));
+            }
+            permissionQuery.select(permission.get("id")).where(shared,
+                    getBuilder().equal(permission.get("entry"), from));
+
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(getBuilder().exists(permissionQuery));
+            predicates.add(getBuilder().notEqual(from.get("ownerEmail"), requester.getEmail()));
+            predicates.add(getBuilder().equal(from.get("visibility"), Visibility.OK.getValue()));
+            createFilterPredicate(from, filter, predicates);
+            EntryKeyset.apply(currentSession(), query, from, cursor, predicates);
+
+            query.select(from.get("id")).where(predicates.toArray(new Predicate[0]));
+            return currentSession().createQuery(query).setMaxResults(limit).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     /**
      * Retrieves the entries for the specified owner, that the requester has read access to
      *
@@ -502,6 +581,18 @@ public class EntryDAO extends HibernateRepository<Entry> {
     @SafeVarargs
     private final List<Long> getResultList(int start, int limit, ColumnField sort, boolean asc, String filter,
                                            Map<String, String>... predicatesMap) {
+        return getResultList(start, limit, sort, asc, null, filter, predicatesMap);
+    }
+
+    /**
+     * Retrieves page of entries with visibility "OK" or "PENDING" and matching the specified predicates
+     *
+     * @param cursor if not null, the page is retrieved using keyset paging from this cursor; in which case the
+     *               start and sort parameters are ignored
+     */
+    @SafeVarargs
+    private final List<Long> getResultList(int start, int limit, ColumnField sort, boolean asc, PageCursor cursor,
+                                           String filter, Map<String, String>... predicatesMap) {
         if (sort == null)
             sort = ColumnField.CREATED;
 
@@ -522,6 +613,12 @@ public class EntryDAO extends HibernateRepository<Entry> {
 
             query.select(from.get("id"));
             checkAddFilter(predicates, from, filter);
+            if (cursor != null) {
+                EntryKeyset.apply(currentSession(), query, from, cursor, predicates);
+                query.where(predicates.toArray(new Predicate[0]));
+                return currentSession().createQuery(query).setMaxResults(limit).list();
+            }
+
             query.where(predicates.toArray(new Predicate[0]));
             String fieldName = EntryAccessorUtilities.columnFieldToString(sort);
             query.orderBy(asc ? getBuilder().asc(from.get(fieldName)) : getBuilder().desc(from.get(fieldName)));
@@ -536,6 +633,10 @@ public class EntryDAO extends HibernateRepository<Entry> {
         return getResultList(start, limit, sort, asc, filter);
     }
 
+    public List<Long> retrieveAllEntryIds(PageCursor cursor, int limit, String filter) {
+        return getResultList(0, limit, cursor.getSortField(), cursor.isAscending(), cursor, filter);
+    }
+
     /**
      * Retrieves entry ids owned by account with specified email and with visibility of "pending" or "ok"
      *
@@ -555,6 +656,23 @@ public class EntryDAO extends HibernateRepository<Entry> {
         return getResultList(start, limit, sort, asc, filter, predicatesMap);
     }
 
+    /**
+     * Retrieves the page of entry ids owned by account with specified email (and with visibility of "pending" or
+     * "ok") that follows the specified cursor (keyset paging)
+     *
+     * @param ownerEmail email for account whose entries are to be retrieved
+     * @param cursor     position of the page in the listing; also specifies the sort
+     * @param limit      maximum number of records to retrieve
+     * @param filter     filter for entries
+     * @return list of matching entries
+     * @throws DAOException on Hibernate Exception
+     */
+    public List<Long> retrieveOwnerEntries(String ownerEmail, PageCursor cursor, int limit, String filter) {
+        Map<String, String> predicatesMap = new HashMap<>();
+        predicatesMap.put("ownerEmail", ownerEmail);
+        return getResultList(0, limit, cursor.getSortField(), cursor.isAscending(), cursor, filter, predicatesMap);
+    }
+
     private List<Predicate> getOwnerPredicate(Root<Entry> from, String ownerEmail) {
         List<Predicate> predicates = new ArrayList<>();
         predicates.add(getBuilder().equal(from.get("ownerEmail"), ownerEmail));
@@ -713,6 +831,30 @@ public class EntryDAO extends HibernateRepository<Entry> {
         }
     }
 
+    /**
+     * Retrieves the parent/child links (see {@link #getParents(long)}) where either side of the reln
+     * is one of the specified entries
+     *
+     * @param entryIds unique identifiers of entries whose links are to be retrieved
+     * @return list of arrays in the form [entry_id, entry_record_type, linked_entry_id, linked_entry_record_type]
+     */
+    public List<Object[]> getLinks(List<Long> entryIds) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
+        try {
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
+            Root<Entry> from = query.from(Entry.class);
+            Join<Entry, Entry> linked = from.join("linkedEntries");
+            query.multiselect(from.get("id"), from.get("recordType"), linked.get("id"), linked.get("recordType"))
+                    .where(getBuilder().or(from.get("id").in(entryIds), linked.get("id").in(entryIds)));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     public int getDeletedCount(String ownerUserId) {
         try {
             CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
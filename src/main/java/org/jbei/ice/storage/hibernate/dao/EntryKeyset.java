@@ -0,0 +1,168 @@
+package org.jbei.ice.storage.hibernate.dao;
+
+import org.hibernate.Session;
+import org.jbei.ice.lib.shared.ColumnField;
+import org.jbei.ice.storage.hibernate.PageCursor;
+import org.jbei.ice.storage.model.Entry;
+
+import javax.persistence.criteria.*;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+/**
+ * Keyset paging of entry listings. Entries are ordered on <code>(sort attribute, id)</code> and a page is
+ * retrieved by seeking past the key of the last entry of the previous page (recorded in a {@link PageCursor})
+ * instead of using an offset.
+ * <p>
+ * The entries are ordered and compared on the sort column itself so that an index on it can be used. Nulls are
+ * placed where the database orders them, which is read from the jdbc metadata; entries with a null attribute are
+ * selected by an explicit <code>is null</code> condition. Sorting on the creation time uses the entry id, which is
+ * assigned in creation order
+ */
+final class EntryKeyset {
+
+    private static volatile NullOrdering nullOrdering;
+
+    private EntryKeyset() {
+    }
+
+    /**
+     * Adds the predicate selecting the entries after the cursor position (if any) to the list of predicates
+     * and sets the keyset order on the query
+     *
+     * @param session    session the query is run in
+     * @param query      entry listing query
+     * @param entry      entry path in query
+     * @param cursor     page cursor
+     * @param predicates predicates for the query
+     * @throws IllegalArgumentException if the cursor values are not valid for the sort
+     */
+    static void apply(Session session, CriteriaQuery<?> query, Path<Entry> entry, PageCursor cursor,
+                      List<Predicate> predicates) {
+        CriteriaBuilder builder = session.getCriteriaBuilder();
+        Path<Long> id = entry.get("id");
+        String attribute = sortAttribute(cursor.getSortField());
+        Path<String> key = attribute == null ? null : entry.get(attribute);
+        boolean asc = cursor.isAscending();
+
+        if (!cursor.isStart()) {
+            Object[] values = cursor.getValues();
+            try {
+                Long lastId = (Long) values[values.length - 1];
+                Predicate afterId = asc ? builder.greaterThan(id, lastId) : builder.lessThan(id, lastId);
+                if (key == null) {
+                    predicates.add(afterId);
+                } else {
+                    String lastKey = (String) values[0];
+                    boolean nullsFirst = getNullOrdering(session).isFirst(asc);
+                    predicates.add(afterKey(builder, key, lastKey, afterId, asc, nullsFirst));
+                }
+            } catch (ClassCastException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor, e);
+            }
+        }
+
+        if (key == null)
+            query.orderBy(asc ? builder.asc(id) : builder.desc(id));
+        else
+            query.orderBy(asc ? builder.asc(key) : builder.desc(key), asc ? builder.asc(id) : builder.desc(id));
+    }
+
+    // (key > lastKey) or (key = lastKey and id > lastId), with the entries with null keys before or after those
+    private static Predicate afterKey(CriteriaBuilder builder, Path<String> key, String lastKey, Predicate afterId,
+                                      boolean asc, boolean nullsFirst) {
+        if (lastKey == null) {
+            Predicate afterNull = builder.and(builder.isNull(key), afterId);
+            return nullsFirst ? builder.or(afterNull, builder.isNotNull(key)) : afterNull;
+        }
+
+        Predicate after = builder.or(asc ? builder.greaterThan(key, lastKey) : builder.lessThan(key, lastKey),
+                builder.and(builder.equal(key, lastKey), afterId));
+        return nullsFirst ? after : builder.or(after, builder.isNull(key));
+    }
+
+    private static NullOrdering getNullOrdering(Session session) {
+        if (nullOrdering == null) {
+            nullOrdering = session.doReturningWork(connection -> {
+                DatabaseMetaData metaData = connection.getMetaData();
+                if (metaData.nullsAreSortedAtStart())
+                    return NullOrdering.START;
+                if (metaData.nullsAreSortedAtEnd())
+                    return NullOrdering.END;
+                return metaData.nullsAreSortedHigh() ? NullOrdering.HIGH : NullOrdering.LOW;
+            });
+        }
+        return nullOrdering;
+    }
+
+    /**
+     * Creates the cursor positioned at the specified entry
+     *
+     * @param entry     last entry of a page
+     * @param sortField sort field of listing
+     * @param asc       sort order of listing
+     * @return cursor for the page following the entry
+     */
+    static PageCursor cursorAt(Entry entry, ColumnField sortField, boolean asc) {
+        String value;
+        switch (sortField == null ? ColumnField.CREATED : sortField) {
+            case TYPE:
+                value = entry.getRecordType();
+                break;
+
+            case STATUS:
+                value = entry.getStatus();
+                break;
+
+            case PART_ID:
+                value = entry.getPartNumber();
+                break;
+
+            case NAME:
+                value = entry.getName();
+                break;
+
+            case ALIAS:
+                value = entry.getAlias();
+                break;
+
+            case SUMMARY:
+                value = entry.getShortDescription();
+                break;
+
+            case CREATED:
+            default:
+                return new PageCursor(sortField, asc, entry.getId());
+        }
+        return new PageCursor(sortField, asc, value, entry.getId());
+    }
+
+    // entry attribute for sort field; null if entries are ordered by id only
+    private static String sortAttribute(ColumnField sortField) {
+        if (sortField == null)
+            return null;
+
+        switch (sortField) {
+            case TYPE:
+            case STATUS:
+            case PART_ID:
+            case NAME:
+            case ALIAS:
+            case SUMMARY:
+                return EntryAccessorUtilities.columnFieldToString(sortField);
+
+            case CREATED:
+            default:
+                return null;
+        }
+    }
+
+    // where the database orders nulls
+    private enum NullOrdering {
+        LOW, HIGH, START, END;
+
+        boolean isFirst(boolean asc) {
+            return this == START || (this == LOW && asc) || (this == HIGH && !asc);
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package org.jbei.ice.storage.hibernate.dao;
 
+import org.hibernate.CacheMode;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.utils.SequenceUtils;
 import org.jbei.ice.storage.DAOException;
 import org.jbei.ice.storage.hibernate.HibernateRepository;
+import org.jbei.ice.storage.hibernate.ScrollableRows;
 import org.jbei.ice.storage.model.Feature;
+import org.jbei.ice.storage.model.FeatureCurationModel;
 
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
+import javax.persistence.criteria.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +53,37 @@ public class FeatureDAO extends HibernateRepository<Feature> {
         }
     }
 
+    /**
+     * Retrieves the features for building the auto annotation index, as rows of
+     * <code>[id, name, genbank type, sequence]</code> read through a forward-only cursor. Features without a name or
+     * excluded by curation are not included
+     *
+     * @param session   session to read the rows in, which is cleared as they are read
+     * @param chunkSize number of rows fetched at a time (and after which the session is cleared)
+     * @return rows, which must be closed if not read to the end
+     * @throws DAOException on Hibernate Exception
+     */
+    public ScrollableRows scrollAnnotationFeatures(Session session, int chunkSize) {
+        try {
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<Object[]> query = builder.createQuery(Object[].class);
+            Root<Feature> from = query.from(Feature.class);
+            Join<Feature, FeatureCurationModel> curation = from.join("curation", JoinType.LEFT);
+            query.multiselect(from.get("id"), from.get("name"), from.get("genbankType"), from.get("sequence"));
+            query.where(builder.isNotNull(from.get("name")), builder.notEqual(from.get("name"), ""),
+                    builder.or(builder.isNull(curation.get("id")), builder.isFalse(curation.get("exclude"))));
+            ScrollableResults results = session.createQuery(query)
+                    .setReadOnly(true)
+                    .setCacheMode(CacheMode.IGNORE)
+                    .setFetchSize(chunkSize)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            return new ScrollableRows(session, results, chunkSize);
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     private void buildFilter(CriteriaQuery<?> query, Root<Feature> from, String filter) {
         if (filter != null && !filter.isEmpty())
             query.where(getBuilder().like(getBuilder().lower(from.get("name")), "%" + filter.toLowerCase() + "%"));
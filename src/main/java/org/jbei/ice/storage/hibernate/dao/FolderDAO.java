@@ -1,5 +1,6 @@
 package org.jbei.ice.storage.hibernate.dao;
 
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.jbei.ice.lib.common.logging.Logger;
@@ -10,6 +11,7 @@ import org.jbei.ice.lib.dto.folder.FolderType;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOException;
 import org.jbei.ice.storage.hibernate.HibernateRepository;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.model.*;
 
 import javax.persistence.criteria.*;
@@ -142,9 +144,16 @@ public class FolderDAO extends HibernateRepository<Folder> {
      * @param pageParameters paging params
      * @param visibleOnly    whether to only include entries with "OK" visibility
      * @return list of found entries
-     * @throws DAOException on Exception retrieving
+     * @throws DAOException             on Exception retrieving
+     * @throws IllegalArgumentException if the paging parameters specify an invalid cursor
      */
     public List<Long> retrieveFolderContents(long folderId, PageParameters pageParameters, boolean visibleOnly) {
+        PageCursor cursor = null;
+        if (!StringUtils.isEmpty(pageParameters.getCursor())) {
+            cursor = PageCursor.decode(pageParameters.getCursor(), pageParameters.getSortField(),
+                    pageParameters.isAscending());
+        }
+
         try {
             String sortString;
             switch (pageParameters.getSortField()) {
@@ -181,6 +190,12 @@ public class FolderDAO extends HibernateRepository<Folder> {
                 predicates.add(entry.get("visibility").in(Arrays.asList(Visibility.OK.getValue(),
                         Visibility.REMOTE.getValue())));
             }
+            if (cursor != null) {
+                EntryKeyset.apply(currentSession(), query, entry, cursor, predicates);
+                query.select(entry.get("id")).where(predicates.toArray(new Predicate[0]));
+                return currentSession().createQuery(query).setMaxResults(pageParameters.getLimit()).list();
+            }
+
             query.select(entry.get("id")).where(predicates.toArray(new Predicate[0]));
             query.orderBy(pageParameters.isAscending() ? getBuilder().asc(entry.get(sortString)) :
                     getBuilder().desc(entry.get(sortString)));
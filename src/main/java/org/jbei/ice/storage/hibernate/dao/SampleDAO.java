@@ -9,7 +9,9 @@ import org.jbei.ice.storage.model.Sample;
 import org.jbei.ice.storage.model.Storage;
 
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -43,6 +45,28 @@ public class SampleDAO extends HibernateRepository<Sample> {
         }
     }
 
+    /**
+     * Filters the specified list of entry ids for those that have at least one sample
+     *
+     * @param entryIds unique identifiers of entries to check
+     * @return subset of <code>entryIds</code> that have samples
+     */
+    public List<Long> getEntryIdsWithSample(List<Long> entryIds) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
+        try {
+            CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
+            Root<Sample> from = query.from(Sample.class);
+            Join<Sample, Entry> entry = from.join("entry");
+            query.select(entry.get("id")).distinct(true).where(entry.get("id").in(entryIds));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException e) {
+            Logger.error(e);
+            throw new DAOException(e);
+        }
+    }
+
     public List<Sample> getSamplesByEntry(Entry entry) {
         try {
             CriteriaQuery<Sample> query = getBuilder().createQuery(Sample.class);
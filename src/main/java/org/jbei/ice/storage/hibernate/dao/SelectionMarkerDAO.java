@@ -4,9 +4,11 @@ import org.hibernate.HibernateException;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.storage.DAOException;
 import org.jbei.ice.storage.hibernate.HibernateRepository;
+import org.jbei.ice.storage.model.Entry;
 import org.jbei.ice.storage.model.SelectionMarker;
 
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
 import java.util.List;
 
@@ -20,13 +22,22 @@ public class SelectionMarkerDAO extends HibernateRepository<SelectionMarker> {
         return super.get(SelectionMarker.class, id);
     }
 
-    public List<String> getMatchingSelectionMarkers(String token, int limit) {
+    /**
+     * Retrieves the distinct selection marker names along with the number of markers for entries of each
+     * record type that have each name
+     *
+     * @return list of name, record type and marker count arrays
+     * @throws DAOException on hibernate exception
+     */
+    public List<Object[]> getNameCounts() {
         try {
-            CriteriaQuery<String> query = getBuilder().createQuery(String.class);
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
             Root<SelectionMarker> from = query.from(SelectionMarker.class);
-            query.where(getBuilder().like(getBuilder().lower(from.get("name")), "%" + token.toLowerCase() + "%"));
-            query.select(from.get("name")).distinct(true);
-            return currentSession().createQuery(query).setMaxResults(limit).list();
+            Join<SelectionMarker, Entry> entry = from.join("entry");
+            query.multiselect(from.get("name"), entry.get("recordType"), getBuilder().count(from))
+                    .where(getBuilder().isNotNull(from.get("name")))
+                    .groupBy(from.get("name"), entry.get("recordType"));
+            return currentSession().createQuery(query).list();
         } catch (HibernateException he) {
             Logger.error(he);
             throw new DAOException(he);
@@ -1,18 +1,24 @@
 package org.jbei.ice.storage.hibernate.dao;
 
+import org.hibernate.CacheMode;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.jbei.ice.lib.common.logging.Logger;
 import org.jbei.ice.lib.dto.entry.Visibility;
 import org.jbei.ice.lib.entry.sequence.SequenceFormat;
 import org.jbei.ice.lib.entry.sequence.SequenceUtil;
 import org.jbei.ice.storage.DAOException;
 import org.jbei.ice.storage.hibernate.HibernateRepository;
+import org.jbei.ice.storage.hibernate.ScrollableRows;
 import org.jbei.ice.storage.model.Entry;
 import org.jbei.ice.storage.model.Sequence;
 
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -62,6 +68,27 @@ public class SequenceDAO extends HibernateRepository<Sequence> {
         }
     }
 
+    /**
+     * Retrieves the values that identify the version of the sequence of an entry, without loading the sequence
+     *
+     * @param entry entry associated with sequence
+     * @return container with the id, hash (see {@link Sequence#getFwdHash()}) and format of the sequence, or an
+     * empty container if the entry has no sequence
+     * @throws DAOException on hibernate exception
+     */
+    public Optional<Object[]> getSequenceVersion(Entry entry) {
+        try {
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
+            Root<Sequence> from = query.from(Sequence.class);
+            query.multiselect(from.get("id"), from.get("fwdHash"), from.get("format"))
+                    .where(getBuilder().equal(from.get("entry"), entry));
+            return currentSession().createQuery(query).uniqueResultOptional();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     public Optional<String> getSequenceString(Entry entry) {
         try {
             CriteriaQuery<String> query = getBuilder().createQuery(String.class);
@@ -74,6 +101,31 @@ public class SequenceDAO extends HibernateRepository<Sequence> {
         }
     }
 
+    /**
+     * Retrieves the visible entries whose sequence is identical to the sequence with the specified hash or is
+     * its reverse complement, using the indexed sequence hashes
+     *
+     * @param sequenceHash hash of normalized sequence (see {@link Sequence#getFwdHash()})
+     * @return list of entries with matching sequences
+     * @throws DAOException on hibernate exception
+     */
+    public List<Entry> getEntriesBySequenceHash(String sequenceHash) {
+        try {
+            CriteriaQuery<Entry> query = getBuilder().createQuery(Entry.class);
+            Root<Sequence> from = query.from(Sequence.class);
+            Join<Sequence, Entry> entry = from.join("entry");
+            query.select(entry).where(
+                    getBuilder().or(
+                            getBuilder().equal(from.get("fwdHash"), sequenceHash),
+                            getBuilder().equal(from.get("revHash"), sequenceHash)),
+                    getBuilder().equal(entry.get("visibility"), Visibility.OK.getValue()));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     public boolean hasSequence(long entryId) {
         try {
             CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
@@ -123,6 +175,75 @@ public class SequenceDAO extends HibernateRepository<Sequence> {
         }
     }
 
+    /**
+     * Filters the specified list of entry ids for those that have an associated sequence
+     *
+     * @param entryIds unique identifiers of entries to check
+     * @return subset of <code>entryIds</code> that have a sequence
+     */
+    public List<Long> getEntryIdsWithSequence(List<Long> entryIds) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
+        try {
+            CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
+            Root<Sequence> from = query.from(Sequence.class);
+            Join<Sequence, Entry> entry = from.join("entry");
+            query.select(entry.get("id")).distinct(true).where(entry.get("id").in(entryIds));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
+    /**
+     * Retrieves the sequences of the specified entries
+     *
+     * @param entryIds unique identifiers of entries
+     * @return sequences of the entries that have one
+     */
+    public List<Sequence> getByEntryIds(List<Long> entryIds) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
+        try {
+            CriteriaQuery<Sequence> query = getBuilder().createQuery(Sequence.class);
+            Root<Sequence> from = query.from(Sequence.class);
+            Join<Sequence, Entry> entry = from.join("entry");
+            query.where(entry.get("id").in(entryIds));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
+    /**
+     * Filters the specified list of entry ids for those whose sequence retains the original user uploaded file
+     *
+     * @param entryIds unique identifiers of entries to check
+     * @return subset of <code>entryIds</code> that have an original sequence
+     */
+    public List<Long> getEntryIdsWithOriginalSequence(List<Long> entryIds) {
+        if (entryIds == null || entryIds.isEmpty())
+            return new ArrayList<>();
+
+        try {
+            CriteriaQuery<Long> query = getBuilder().createQuery(Long.class);
+            Root<Sequence> from = query.from(Sequence.class);
+            Join<Sequence, Entry> entry = from.join("entry");
+            query.select(entry.get("id")).distinct(true).where(
+                    entry.get("id").in(entryIds),
+                    getBuilder().notEqual(from.get("sequenceUser"), ""),
+                    getBuilder().isNotNull(from.get("sequenceUser")));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     /**
      * Enables retrieving sequences in the database without loading everything in memory
      * <p/>
@@ -169,6 +290,34 @@ public class SequenceDAO extends HibernateRepository<Sequence> {
         }
     }
 
+    /**
+     * Retrieves the sequences of all valid (visibility=9) entries for building the blast database, as rows of
+     * <code>[entry id, record type, name, part number, sequence]</code> read through a forward-only cursor
+     *
+     * @param chunkSize number of rows fetched at a time (and after which the session is cleared)
+     * @return rows, which must be closed if not read to the end
+     * @throws DAOException on Hibernate Exception
+     */
+    public ScrollableRows scrollBlastSequences(int chunkSize) {
+        try {
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
+            Root<Sequence> from = query.from(Sequence.class);
+            Join<Sequence, Entry> entry = from.join("entry");
+            query.multiselect(entry.get("id"), entry.get("recordType"), entry.get("name"), entry.get("partNumber"),
+                    from.get("sequence"));
+            query.where(getBuilder().equal(entry.get("visibility"), Visibility.OK.getValue()));
+            ScrollableResults results = currentSession().createQuery(query)
+                    .setReadOnly(true)
+                    .setCacheMode(CacheMode.IGNORE)
+                    .setFetchSize(chunkSize)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            return new ScrollableRows(currentSession(), results, chunkSize);
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     @Override
     public Sequence get(long id) {
         return super.get(Sequence.class, id);
@@ -10,8 +10,7 @@ import org.jbei.ice.storage.model.*;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 /**
  * Hibernate Data accessor object for {@link SequenceFeature}s
@@ -39,6 +38,60 @@ public class SequenceFeatureDAO extends HibernateRepository<SequenceFeature> {
         }
     }
 
+    /**
+     * Retrieves the identifiers of the entries with sequences that are annotated with the specified features
+     *
+     * @param featureIds unique identifiers for features
+     * @return mapping of feature id to the ids of the entries annotated with the feature. Features that are not
+     * annotated on any entry are not included
+     */
+    public Map<Long, List<Long>> getEntryIdsByFeatures(Collection<Long> featureIds) {
+        Map<Long, List<Long>> result = new HashMap<>();
+        if (featureIds.isEmpty())
+            return result;
+
+        try {
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
+            Root<SequenceFeature> from = query.from(SequenceFeature.class);
+            Join<SequenceFeature, Sequence> sequence = from.join("sequence");
+            Join<Sequence, Entry> entry = sequence.join("entry");
+            query.multiselect(from.get("feature").get("id"), entry.get("id")).distinct(true);
+            query.where(from.get("feature").get("id").in(featureIds));
+            for (Object[] row : currentSession().createQuery(query).list()) {
+                result.computeIfAbsent((Long) row[0], key -> new ArrayList<>()).add((Long) row[1]);
+            }
+            return result;
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
+    /**
+     * Retrieves the annotation locations of the sequence features of an entry, in a stable order, without loading
+     * the features
+     *
+     * @param entry entry whose sequence features are retrieved
+     * @return list of rows of sequence feature id, name, genbank type, strand and location start and end
+     */
+    public List<Object[]> getFeatureLocations(Entry entry) {
+        try {
+            CriteriaQuery<Object[]> query = getBuilder().createQuery(Object[].class);
+            Root<AnnotationLocation> from = query.from(AnnotationLocation.class);
+            Join<AnnotationLocation, SequenceFeature> sequenceFeature = from.join("sequenceFeature");
+            Join<SequenceFeature, Sequence> sequence = sequenceFeature.join("sequence");
+            query.multiselect(sequenceFeature.get("id"), sequenceFeature.get("name"),
+                    sequenceFeature.get("genbankType"), sequenceFeature.get("strand"), from.get("genbankStart"),
+                    from.get("end"));
+            query.where(getBuilder().equal(sequence.get("entry"), entry))
+                    .orderBy(getBuilder().asc(sequenceFeature.get("id")), getBuilder().asc(from.get("id")));
+            return currentSession().createQuery(query).list();
+        } catch (HibernateException he) {
+            Logger.error(he);
+            throw new DAOException(he);
+        }
+    }
+
     public List<SequenceFeature> getByFeature(Feature feature) {
         try {
             CriteriaQuery<SequenceFeature> query = getBuilder().createQuery(SequenceFeature.class);
@@ -0,0 +1,314 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.lib.dto.entry.AutoCompleteField;
+import org.jbei.ice.lib.dto.entry.EntryType;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.Plasmid;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory prefix index of the values of the auto complete fields (part numbers, names, aliases, plasmid origins of
+ * replication, promoters and replicates in, and selection markers), with the number of entries of each type that
+ * have each value. Used to provide suggestions without querying the database.
+ * <p>
+ * Values match a token if they start with it (ignoring case). Part numbers and selection markers also match if
+ * any of their words start with the token; words are separated by non alphanumeric characters or start at
+ * the first digit after letters (e.g. <code>JBx_012345</code> matches <code>jbx</code> and <code>0123</code>).
+ * Comma separated plasmid fields and selection markers are indexed as individual values.
+ * <p>
+ * The index is loaded from the database on first use and is then updated with entry changes as they are committed
+ * ({@link AutoCompleteIndexListener})
+ */
+public class AutoCompleteIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<AutoCompleteField, FieldIndex> fields = new EnumMap<>(AutoCompleteField.class);
+    private boolean loaded;
+
+    private AutoCompleteIndex() {
+        for (AutoCompleteField field : AutoCompleteField.values())
+            fields.put(field, new FieldIndex());
+    }
+
+    private static class SingletonHolder {
+        private static final AutoCompleteIndex INSTANCE = new AutoCompleteIndex();
+    }
+
+    public static AutoCompleteIndex getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Retrieves values of the field matching the token
+     *
+     * @param field       auto complete field
+     * @param token       token to match values against
+     * @param limit       maximum number of matching values to return
+     * @param recordTypes if not empty, only values of entries with these record types are returned
+     * @return matching values in key order
+     */
+    public List<String> getMatches(AutoCompleteField field, String token, int limit, Set<String> recordTypes) {
+        if (StringUtils.isBlank(token) || limit <= 0)
+            return new ArrayList<>();
+
+        load();
+
+        boolean[] types = null;
+        if (recordTypes != null && !recordTypes.isEmpty()) {
+            types = new boolean[EntryType.values().length + 1];
+            for (String recordType : recordTypes)
+                types[typeIndex(recordType)] = true;
+        }
+
+        String prefix = token.trim().toLowerCase();
+        Set<String> results = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Set<Suggestion>> entry : fields.get(field).keys.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix))
+                    break;
+
+                for (Suggestion suggestion : entry.getValue()) {
+                    if (types == null || suggestion.hasType(types))
+                        results.add(suggestion.value);
+                    if (results.size() >= limit)
+                        return new ArrayList<>(results);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Applies changes to field values. Ignored if the index has not been loaded, since the changes are then
+     * included when it is
+     *
+     * @param changes field value changes
+     */
+    void apply(List<Change> changes) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded)
+                return;
+
+            for (Change change : changes)
+                update(change.field, change.value, change.recordType, change.delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Discards the index so that it is reloaded on next use. For changes that cannot be applied incrementally
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            for (FieldIndex index : fields.values()) {
+                index.keys.clear();
+                index.values.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        lock.readLock().lock();
+        try {
+            if (loaded)
+                return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (loaded)
+                return;
+
+            long start = System.currentTimeMillis();
+            for (AutoCompleteField field : AutoCompleteField.values()) {
+                List<Object[]> counts;
+                if (field == AutoCompleteField.SELECTION_MARKERS)
+                    counts = DAOFactory.getSelectionMarkerDAO().getNameCounts();
+                else
+                    counts = DAOFactory.getEntryDAO().getFieldValueCounts(entryClass(field), attribute(field));
+
+                for (Object[] row : counts)
+                    update(field, (String) row[0], (String) row[1], ((Number) row[2]).intValue());
+            }
+            loaded = true;
+            Logger.info("Loaded auto complete index in " + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds write lock
+    private void update(AutoCompleteField field, String fieldValue, String recordType, int delta) {
+        if (StringUtils.isBlank(fieldValue) || delta == 0)
+            return;
+
+        FieldIndex index = fields.get(field);
+        int type = typeIndex(recordType);
+        for (String value : split(field, fieldValue)) {
+            Suggestion suggestion = index.values.get(value);
+            if (suggestion == null) {
+                if (delta < 0)
+                    continue;
+
+                suggestion = new Suggestion(value);
+                index.values.put(value, suggestion);
+                for (String key : keys(field, value))
+                    index.keys.computeIfAbsent(key, k -> new HashSet<>(2)).add(suggestion);
+            }
+
+            suggestion.counts[type] = Math.max(0, suggestion.counts[type] + delta);
+            if (suggestion.isEmpty()) {
+                index.values.remove(value);
+                for (String key : keys(field, value)) {
+                    Set<Suggestion> suggestions = index.keys.get(key);
+                    if (suggestions != null && suggestions.remove(suggestion) && suggestions.isEmpty())
+                        index.keys.remove(key);
+                }
+            }
+        }
+    }
+
+    private static List<String> split(AutoCompleteField field, String fieldValue) {
+        List<String> values = new ArrayList<>(1);
+        switch (field) {
+            case PART_NUMBER:
+            case NAME:
+            case ALIAS:
+                values.add(fieldValue.trim());
+                break;
+
+            default:
+                for (String value : fieldValue.split(",")) {
+                    if (!value.trim().isEmpty())
+                        values.add(value.trim());
+                }
+        }
+        return values;
+    }
+
+    // lower case keys for value; the value and, for fields matched on words, the value from each word onwards
+    static Set<String> keys(AutoCompleteField field, String value) {
+        String lower = value.toLowerCase();
+        Set<String> keys = new HashSet<>(2);
+        keys.add(lower);
+        if (field != AutoCompleteField.PART_NUMBER && field != AutoCompleteField.SELECTION_MARKERS)
+            return keys;
+
+        for (int i = 1; i < lower.length(); i += 1) {
+            char previous = lower.charAt(i - 1);
+            char current = lower.charAt(i);
+            if ((!Character.isLetterOrDigit(previous) && Character.isLetterOrDigit(current))
+                    || (Character.isLetter(previous) && Character.isDigit(current)))
+                keys.add(lower.substring(i));
+        }
+        return keys;
+    }
+
+    // index of record type in suggestion counts; unknown types are counted in the last position
+    private static int typeIndex(String recordType) {
+        EntryType type = recordType == null ? null : EntryType.nameToType(recordType);
+        return type == null ? EntryType.values().length : type.ordinal();
+    }
+
+    private static Class<? extends Entry> entryClass(AutoCompleteField field) {
+        switch (field) {
+            case ORIGIN_OF_REPLICATION:
+            case PROMOTERS:
+            case REPLICATES_IN:
+                return Plasmid.class;
+
+            default:
+                return Entry.class;
+        }
+    }
+
+    /**
+     * @param field auto complete field other than selection markers
+     * @return name of entry (or plasmid) attribute for field
+     */
+    static String attribute(AutoCompleteField field) {
+        switch (field) {
+            case ORIGIN_OF_REPLICATION:
+                return "originOfReplication";
+
+            case PROMOTERS:
+                return "promoters";
+
+            case REPLICATES_IN:
+                return "replicatesIn";
+
+            case NAME:
+                return "name";
+
+            case ALIAS:
+                return "alias";
+
+            case PART_NUMBER:
+            default:
+                return "partNumber";
+        }
+    }
+
+    /**
+     * Change in the number of entries of a record type having a field value
+     */
+    static class Change {
+        private final AutoCompleteField field;
+        private final String value;
+        private final String recordType;
+        private final int delta;
+
+        Change(AutoCompleteField field, String value, String recordType, int delta) {
+            this.field = field;
+            this.value = value;
+            this.recordType = recordType;
+            this.delta = delta;
+        }
+    }
+
+    private static class FieldIndex {
+        private final TreeMap<String, Set<Suggestion>> keys = new TreeMap<>();
+        private final Map<String, Suggestion> values = new HashMap<>();
+    }
+
+    private static class Suggestion {
+        private final String value;
+        private final int[] counts = new int[EntryType.values().length + 1];
+
+        Suggestion(String value) {
+            this.value = value;
+        }
+
+        boolean hasType(boolean[] types) {
+            for (int i = 0; i < counts.length; i += 1) {
+                if (types[i] && counts[i] > 0)
+                    return true;
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            for (int count : counts) {
+                if (count > 0)
+                    return false;
+            }
+            return true;
+        }
+    }
+}
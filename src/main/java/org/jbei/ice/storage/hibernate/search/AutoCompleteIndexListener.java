@@ -0,0 +1,109 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.jbei.ice.lib.dto.entry.AutoCompleteField;
+import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.SelectionMarker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Hibernate event listener that updates the {@link AutoCompleteIndex} with the changes to the values of the auto
+ * complete fields of entries and selection markers when the transaction making the changes commits
+ */
+public class AutoCompleteIndexListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+
+    private static final AutoCompleteField[] ENTRY_FIELDS = {AutoCompleteField.PART_NUMBER, AutoCompleteField.NAME,
+            AutoCompleteField.ALIAS, AutoCompleteField.ORIGIN_OF_REPLICATION, AutoCompleteField.PROMOTERS,
+            AutoCompleteField.REPLICATES_IN};
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(event.getEntity(), event.getPersister(), event.getSession(), null, event.getState());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getOldState() == null) {
+            // previous values not known (e.g. detached entity updated)
+            if (event.getEntity() instanceof Entry || event.getEntity() instanceof SelectionMarker) {
+                event.getSession().getActionQueue().registerProcess((success, s) -> {
+                    if (success)
+                        AutoCompleteIndex.getInstance().invalidate();
+                });
+            }
+            return;
+        }
+        changed(event.getEntity(), event.getPersister(), event.getSession(), event.getOldState(), event.getState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        changed(event.getEntity(), event.getPersister(), event.getSession(), event.getDeletedState(), null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void changed(Object entity, EntityPersister persister, EventSource session, Object[] oldState,
+                         Object[] newState) {
+        List<AutoCompleteIndex.Change> changes = new ArrayList<>();
+        if (entity instanceof Entry) {
+            String[] properties = persister.getPropertyNames();
+            int recordTypeIndex = indexOf(properties, "recordType");
+            for (AutoCompleteField field : ENTRY_FIELDS) {
+                int index = indexOf(properties, AutoCompleteIndex.attribute(field));
+                if (index != -1)
+                    addChanges(changes, field, oldState, newState, index, recordTypeIndex);
+            }
+        } else if (entity instanceof SelectionMarker) {
+            Entry entry = ((SelectionMarker) entity).getEntry();
+            String recordType = entry == null ? null : entry.getRecordType();
+            int index = indexOf(persister.getPropertyNames(), "name");
+            if (index != -1) {
+                String oldName = oldState == null ? null : (String) oldState[index];
+                String newName = newState == null ? null : (String) newState[index];
+                if (!Objects.equals(oldName, newName)) {
+                    AutoCompleteField field = AutoCompleteField.SELECTION_MARKERS;
+                    changes.add(new AutoCompleteIndex.Change(field, oldName, recordType, -1));
+                    changes.add(new AutoCompleteIndex.Change(field, newName, recordType, 1));
+                }
+            }
+        }
+
+        if (changes.isEmpty())
+            return;
+
+        session.getActionQueue().registerProcess((success, s) -> {
+            if (success)
+                AutoCompleteIndex.getInstance().apply(changes);
+        });
+    }
+
+    private static void addChanges(List<AutoCompleteIndex.Change> changes, AutoCompleteField field, Object[] oldState,
+                                   Object[] newState, int index, int recordTypeIndex) {
+        String oldValue = oldState == null ? null : (String) oldState[index];
+        String newValue = newState == null ? null : (String) newState[index];
+        String oldType = oldState == null || recordTypeIndex == -1 ? null : (String) oldState[recordTypeIndex];
+        String newType = newState == null || recordTypeIndex == -1 ? null : (String) newState[recordTypeIndex];
+        if (Objects.equals(oldValue, newValue) && Objects.equals(oldType, newType))
+            return;
+
+        changes.add(new AutoCompleteIndex.Change(field, oldValue, oldType, -1));
+        changes.add(new AutoCompleteIndex.Change(field, newValue, newType, 1));
+    }
+
+    private static int indexOf(String[] properties, String name) {
+        for (int i = 0; i < properties.length; i += 1) {
+            if (properties[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+}
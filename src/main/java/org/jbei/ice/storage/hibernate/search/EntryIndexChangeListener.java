@@ -0,0 +1,177 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.jbei.ice.storage.model.*;
+
+import java.util.*;
+
+/**
+ * Hibernate event listener that adds the entries affected by entity changes to the {@link EntryIndexQueue} when
+ * the transaction making the changes commits. Used in place of the hibernate search automatic indexing when
+ * entries are indexed asynchronously.
+ * <p>
+ * Changes to a folder (including its permissions) queue the folder, whose contents are resolved by the index
+ * worker; changes to the contents of a folder queue only the entries added or removed. Other indexed types
+ * (messages) are not queued but indexed in the transaction that changed them, as with automatic indexing
+ */
+public class EntryIndexChangeListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, PostCollectionUpdateEventListener, PostCollectionRecreateEventListener,
+        PostCollectionRemoveEventListener {
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        entityChanged(event.getEntity(), event.getSession(), false);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        entityChanged(event.getEntity(), event.getSession(), false);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        entityChanged(event.getEntity(), event.getSession(), true);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void entityChanged(Object entity, EventSource session, boolean deleted) {
+        if (entity instanceof Message) {
+            indexMessage((Message) entity, session, deleted);
+            return;
+        }
+
+        Set<Long> entryIds = new HashSet<>();
+        Set<Long> folderIds = new HashSet<>();
+
+        if (entity instanceof Entry) {
+            entryIds.add(((Entry) entity).getId());
+        } else if (entity instanceof Permission) {
+            Permission permission = (Permission) entity;
+            addEntry(entryIds, permission.getEntry());
+            if (permission.getFolder() != null)
+                folderIds.add(permission.getFolder().getId());
+        } else if (entity instanceof Folder) {
+            folderIds.add(((Folder) entity).getId());
+        } else if (entity instanceof Sample) {
+            addEntry(entryIds, ((Sample) entity).getEntry());
+        } else if (entity instanceof Attachment) {
+            addEntry(entryIds, ((Attachment) entity).getEntry());
+        } else if (entity instanceof Link) {
+            addEntry(entryIds, ((Link) entity).getEntry());
+        } else if (entity instanceof Parameter) {
+            addEntry(entryIds, ((Parameter) entity).getEntry());
+        } else if (entity instanceof SelectionMarker) {
+            addEntry(entryIds, ((SelectionMarker) entity).getEntry());
+        } else if (entity instanceof Sequence) {
+            addEntry(entryIds, ((Sequence) entity).getEntry());
+        }
+
+        queueOnCommit(session, entryIds, folderIds);
+    }
+
+    private void collectionChanged(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+        Set<Long> entryIds = new HashSet<>();
+        Set<Long> folderIds = new HashSet<>();
+
+        if (owner instanceof Entry) {
+            entryIds.add(((Entry) owner).getId());
+        } else if (owner instanceof Folder && isFolderContents(event.getCollection())) {
+            // entries added or removed
+            PersistentCollection collection = event.getCollection();
+            Set<Long> current = event instanceof PostCollectionRemoveEvent ? Collections.emptySet()
+                    : entryIds(collection.wasInitialized() ? (Collection<?>) collection : null);
+            Set<Long> previous = entryIds(snapshot(collection.getStoredSnapshot()));
+
+            if (current == null || previous == null) {
+                folderIds.add(((Folder) owner).getId());
+                if (current != null)
+                    entryIds.addAll(current);
+            } else {
+                for (Long id : current) {
+                    if (!previous.contains(id))
+                        entryIds.add(id);
+                }
+                for (Long id : previous) {
+                    if (!current.contains(id))
+                        entryIds.add(id);
+                }
+            }
+        }
+
+        queueOnCommit(event.getSession(), entryIds, folderIds);
+    }
+
+    private void queueOnCommit(EventSource session, Set<Long> entryIds, Set<Long> folderIds) {
+        if (entryIds.isEmpty() && folderIds.isEmpty())
+            return;
+
+        session.getActionQueue().registerProcess((success, s) -> {
+            if (success)
+                EntryIndexQueue.getInstance().add(entryIds, folderIds);
+        });
+    }
+
+    // the index work is applied when the transaction commits
+    private void indexMessage(Message message, EventSource session, boolean deleted) {
+        FullTextSession fullTextSession = Search.getFullTextSession(session);
+        if (deleted)
+            fullTextSession.purge(Message.class, message.getId());
+        else
+            fullTextSession.index(message);
+    }
+
+    // the role of a collection that was dereferenced is not available; it is then assumed to be the contents
+    private static boolean isFolderContents(PersistentCollection collection) {
+        return collection.getRole() == null || collection.getRole().endsWith(".contents");
+    }
+
+    private static void addEntry(Set<Long> entryIds, Entry entry) {
+        if (entry != null)
+            entryIds.add(entry.getId());
+    }
+
+    // elements of a collection snapshot (map for sets and maps, list otherwise)
+    private static Collection<?> snapshot(Object snapshot) {
+        if (snapshot instanceof Map)
+            return ((Map<?, ?>) snapshot).values();
+        if (snapshot instanceof Collection)
+            return (Collection<?>) snapshot;
+        return null;
+    }
+
+    private static Set<Long> entryIds(Collection<?> entries) {
+        if (entries == null)
+            return null;
+
+        Set<Long> ids = new HashSet<>();
+        for (Object entry : entries) {
+            if (entry instanceof Entry)
+                ids.add(((Entry) entry).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,458 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.jbei.ice.lib.common.logging.Logger;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Entry;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of pending search index updates used when entries are indexed asynchronously (see
+ * {@link #ASYNC_PROPERTY}). Instead of the entries affected by a change being re-indexed in the transaction
+ * that made the change, their ids are added to this queue when the transaction commits
+ * ({@link EntryIndexChangeListener}) and a dedicated worker thread re-indexes them in batches.
+ * <p>
+ * Multiple changes to the same entry (or folder) before the worker gets to it are coalesced into a single
+ * update. The number of pending updates is bounded; when the queue is full, committing threads index their changes
+ * synchronously (as if asynchronous indexing was disabled) until the worker catches up. Entries of batches that
+ * fail are indexed again a limited number of times (see {@link #retry(List)}). The trade-off is that search results lag behind changes by {@link #getLag()}
+ */
+public class EntryIndexQueue {
+
+    /**
+     * Hibernate configuration property for enabling asynchronous indexing. Defaults to <code>false</code>
+     * (entries indexed synchronously in the transaction that changed them)
+     */
+    public static final String ASYNC_PROPERTY = "ice.search.indexing.async";
+
+    /**
+     * Hibernate configuration property for the maximum number of pending updates
+     */
+    public static final String QUEUE_SIZE_PROPERTY = "ice.search.indexing.queue_size";
+
+    /**
+     * Hibernate configuration property for the number of entries re-indexed in each worker transaction
+     */
+    public static final String BATCH_SIZE_PROPERTY = "ice.search.indexing.batch_size";
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 1000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+
+    // pending entry and folder ids mapped to the time (ms) they were first queued; in queue order
+    private final LinkedHashMap<Long, Long> entries = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, Long> folders = new LinkedHashMap<>();
+
+    // entries of failed batches mapped to the time (ms) they are due to be indexed again, and the number of
+    // failed attempts to index them
+    private final LinkedHashMap<Long, Long> retries = new LinkedHashMap<>();
+    private final Map<Long, Integer> attempts = new HashMap<>();
+
+    private int capacity = DEFAULT_QUEUE_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean processing;
+    private long processingSince;
+    private long indexed;
+    private long failed;
+    private Thread worker;
+
+    EntryIndexQueue() {
+    }
+
+    private static class SingletonHolder {
+        private static final EntryIndexQueue INSTANCE = new EntryIndexQueue();
+    }
+
+    public static EntryIndexQueue getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Sets the queue size and batch size from the hibernate configuration properties, where available
+     *
+     * @param properties hibernate configuration properties
+     */
+    public void configure(Properties properties) {
+        lock.lock();
+        try {
+            capacity = Integer.parseInt(properties.getProperty(QUEUE_SIZE_PROPERTY,
+                    Integer.toString(DEFAULT_QUEUE_SIZE)).trim());
+            batchSize = Integer.parseInt(properties.getProperty(BATCH_SIZE_PROPERTY,
+                    Integer.toString(DEFAULT_BATCH_SIZE)).trim());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the worker thread, if not already running
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (worker != null)
+                return;
+
+            worker = new Thread(this::run, "ice-search-indexer");
+            worker.setDaemon(true);
+            worker.start();
+            Logger.info("Started asynchronous search indexer (queue size " + capacity + ", batch size "
+                    + batchSize + ")");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the worker thread after waiting (up to the specified time) for pending updates to be indexed
+     *
+     * @param timeoutMillis maximum time to wait for pending updates
+     */
+    public void stop(long timeoutMillis) {
+        Thread thread;
+        lock.lock();
+        try {
+            if (worker == null)
+                return;
+            thread = worker;
+        } finally {
+            lock.unlock();
+        }
+
+        if (!awaitIdle(timeoutMillis))
+            Logger.warn("Stopping search indexer with " + getPendingCount() + " pending updates");
+
+        lock.lock();
+        try {
+            worker = null;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues entries and the contents of folders for re-indexing. Does not wait for space when the queue is full;
+     * the updates that do not fit are indexed synchronously (in the calling thread) instead
+     *
+     * @param entryIds  ids of entries to re-index (or remove from the index if they no longer exist)
+     * @param folderIds ids of folders whose contents are to be re-indexed
+     */
+    public void add(Collection<Long> entryIds, Collection<Long> folderIds) {
+        long now = System.currentTimeMillis();
+        List<Long> overflowEntryIds = new ArrayList<>();
+        List<Long> overflowFolderIds = new ArrayList<>();
+        int size;
+        lock.lock();
+        try {
+            for (Long id : entryIds) {
+                if (!put(entries, id, now))
+                    overflowEntryIds.add(id);
+            }
+            for (Long id : folderIds) {
+                if (!put(folders, id, now))
+                    overflowFolderIds.add(id);
+            }
+            notEmpty.signalAll();
+            size = batchSize;
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflowEntryIds.isEmpty() && overflowFolderIds.isEmpty())
+            return;
+
+        Logger.warn("Search index queue is full; indexing " + overflowEntryIds.size() + " entries and "
+                + overflowFolderIds.size() + " folders synchronously");
+        for (Long folderId : overflowFolderIds)
+            overflowEntryIds.addAll(retrieveFolderContents(folderId));
+        for (int i = 0; i < overflowEntryIds.size(); i += size)
+            index(overflowEntryIds.subList(i, Math.min(overflowEntryIds.size(), i + size)));
+    }
+
+    // coalesces with a pending update for the same id or queues it if there is space. returns false if the queue is
+    // full. caller holds lock
+    private boolean put(Map<Long, Long> pending, Long id, long time) {
+        if (id == null || pending.containsKey(id))
+            return true;
+
+        if (entries.size() + folders.size() >= capacity && worker != null)
+            return false;
+
+        pending.put(id, time);
+        return true;
+    }
+
+    /**
+     * @return number of entries and folders waiting to be indexed, including entries waiting to be indexed again
+     * after a failure
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return entries.size() + folders.size() + retries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return time (ms) since the oldest change not yet reflected in the index was made; 0 if the index is
+     * up to date
+     */
+    public long getLag() {
+        lock.lock();
+        try {
+            long oldest = Long.MAX_VALUE;
+            if (processing)
+                oldest = processingSince;
+            if (!entries.isEmpty())
+                oldest = Math.min(oldest, entries.values().iterator().next());
+            if (!folders.isEmpty())
+                oldest = Math.min(oldest, folders.values().iterator().next());
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return total number of entries indexed by the worker
+     */
+    public long getIndexedCount() {
+        lock.lock();
+        try {
+            return indexed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return total number of entries that could not be indexed, after retrying, and are therefore not up to date
+     * in the index until it is rebuilt
+     */
+    public long getFailedCount() {
+        lock.lock();
+        try {
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isRunning() {
+        lock.lock();
+        try {
+            return worker != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for all pending updates to be indexed
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if there are no pending updates, false if the wait timed out
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (processing || !entries.isEmpty() || !folders.isEmpty() || !retries.isEmpty()) {
+                if (remaining <= 0 || worker == null)
+                    return false;
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<Long> entryIds = new ArrayList<>();
+            List<Long> folderIds = new ArrayList<>();
+            List<Long> retryIds = new ArrayList<>();
+            lock.lock();
+            try {
+                processing = false;
+                if (entries.isEmpty() && folders.isEmpty() && retries.isEmpty())
+                    idle.signalAll();
+
+                long retryDelay;
+                while (entries.isEmpty() && folders.isEmpty() && (retryDelay = getRetryDelay()) > 0
+                        && worker == Thread.currentThread()) {
+                    if (retryDelay == Long.MAX_VALUE)
+                        notEmpty.await();
+                    else
+                        notEmpty.await(retryDelay, TimeUnit.MILLISECONDS);
+                }
+
+                if (worker != Thread.currentThread())
+                    return;
+
+                processing = true;
+                processingSince = Math.min(take(folders, folderIds, 1), take(entries, entryIds, batchSize));
+                takeRetries(retryIds);
+            } catch (InterruptedException ie) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            for (Long folderId : folderIds)
+                entryIds.addAll(retrieveFolderContents(folderId));
+
+            for (int i = 0; i < entryIds.size(); i += batchSize) {
+                List<Long> batch = entryIds.subList(i, Math.min(entryIds.size(), i + batchSize));
+                index(batch);
+            }
+
+            // entries of failed batches are indexed one at a time so that an entry that cannot be indexed does not
+            // fail the others again
+            for (Long id : retryIds)
+                index(Collections.singletonList(id));
+        }
+    }
+
+    // time (ms) until the next retry is due; 0 if one is due and Long.MAX_VALUE if there are none. caller holds lock
+    private long getRetryDelay() {
+        long now = System.currentTimeMillis();
+        long delay = Long.MAX_VALUE;
+        for (long due : retries.values())
+            delay = Math.min(delay, Math.max(0, due - now));
+        return delay;
+    }
+
+    // removes the retries that are due. caller holds lock
+    private void takeRetries(List<Long> ids) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, Long>> iterator = retries.entrySet().iterator();
+        while (iterator.hasNext() && ids.size() < batchSize) {
+            Map.Entry<Long, Long> next = iterator.next();
+            if (next.getValue() > now)
+                continue;
+
+            ids.add(next.getKey());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Queues the entries of a failed batch to be indexed again, after a delay that doubles with each failed attempt.
+     * Entries that fail {@link #MAX_ATTEMPTS} times are counted as failed and left for the next rebuild of the index
+     *
+     * @param entryIds ids of entries that could not be indexed
+     */
+    void retry(List<Long> entryIds) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            for (Long id : entryIds) {
+                int attempt = attempts.merge(id, 1, Integer::sum);
+                if (attempt >= MAX_ATTEMPTS) {
+                    attempts.remove(id);
+                    retries.remove(id);
+                    failed += 1;
+                    Logger.error("Could not index entry " + id + " after " + attempt + " attempts");
+                    continue;
+                }
+
+                retries.put(id, now + (RETRY_DELAY << (attempt - 1)));
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // removes up to max ids from the head of the pending map and returns the time the first was queued
+    private long take(LinkedHashMap<Long, Long> pending, List<Long> ids, int max) {
+        long oldest = Long.MAX_VALUE;
+        Iterator<Map.Entry<Long, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && ids.size() < max) {
+            Map.Entry<Long, Long> next = iterator.next();
+            ids.add(next.getKey());
+            oldest = Math.min(oldest, next.getValue());
+            iterator.remove();
+        }
+        return oldest;
+    }
+
+    private List<Long> retrieveFolderContents(long folderId) {
+        try (Session session = HibernateUtil.newSession()) {
+            return session.createQuery("select e.id from Folder f join f.contents e where f.id = :id", Long.class)
+                    .setParameter("id", folderId)
+                    .list();
+        } catch (Exception e) {
+            Logger.error("Error retrieving contents of folder " + folderId + " for indexing", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Re-indexes the specified entries in a single transaction; entries that no longer exist are removed
+     * from the index. The entries are queued to be indexed again if the transaction fails
+     *
+     * @param entryIds ids of entries to index
+     */
+    void index(List<Long> entryIds) {
+        Transaction transaction = null;
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            fullTextSession.setHibernateFlushMode(FlushMode.MANUAL);
+            fullTextSession.setCacheMode(CacheMode.IGNORE);
+            transaction = fullTextSession.beginTransaction();
+
+            for (Long id : entryIds) {
+                Entry entry = fullTextSession.get(Entry.class, id);
+                if (entry == null)
+                    fullTextSession.purge(Entry.class, id);
+                else
+                    fullTextSession.index(entry);
+            }
+
+            fullTextSession.flushToIndexes();
+            transaction.commit();
+
+            lock.lock();
+            try {
+                indexed += entryIds.size();
+                attempts.keySet().removeAll(entryIds);
+            } finally {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            Logger.error("Error indexing entries " + entryIds, e);
+            if (transaction != null && transaction.isActive())
+                transaction.rollback();
+            retry(entryIds);
+        }
+    }
+}
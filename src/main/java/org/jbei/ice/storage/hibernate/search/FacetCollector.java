@@ -0,0 +1,130 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.uninverting.UninvertingReader;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Collects the number of matching entry documents for each value of the facet fields (record type, status,
+ * bio-safety level and the has sequence/sample/attachment flags), using the doc values of the fields.
+ * <p>
+ * Intended to be used along with the collector for the page of results so that the counts are obtained in the
+ * same index traversal and therefore within the same (security) filters as the results
+ */
+class FacetCollector extends SimpleCollector {
+
+    private static final String[] TERM_FIELDS = {"recordType", "status", "hasSequence", "hasSample",
+            "hasAttachment"};
+    private static final String[] NUMERIC_FIELDS = {"bioSafetyLevel"};
+
+    private final Map<String, Map<String, Long>> counts = new HashMap<>();
+
+    // doc values and value (ord) counts for the current segment
+    private final SortedDocValues[] termValues = new SortedDocValues[TERM_FIELDS.length];
+    private final int[][] termCounts = new int[TERM_FIELDS.length][];
+    private final NumericDocValues[] numericValues = new NumericDocValues[NUMERIC_FIELDS.length];
+    private final Bits[] numericDocs = new Bits[NUMERIC_FIELDS.length];
+    private final List<Map<Long, Long>> numericCounts = new ArrayList<>();
+
+    FacetCollector() {
+        for (String field : TERM_FIELDS)
+            counts.put(field, new TreeMap<>());
+        for (int i = 0; i < NUMERIC_FIELDS.length; i += 1)
+            numericCounts.add(new TreeMap<>());
+    }
+
+    /**
+     * The boolean fields and documents indexed before doc values were enabled for the other fields do not have
+     * doc values. These are uninverted (and cached per segment) from the indexed terms
+     *
+     * @return uninverting types for the facet fields
+     */
+    static Map<String, UninvertingReader.Type> getUninvertingTypes() {
+        Map<String, UninvertingReader.Type> types = new HashMap<>();
+        for (String field : TERM_FIELDS)
+            types.put(field, UninvertingReader.Type.SORTED);
+        for (String field : NUMERIC_FIELDS)
+            types.put(field, UninvertingReader.Type.INTEGER);
+        return types;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        flushSegmentCounts();
+
+        LeafReader reader = context.reader();
+        for (int i = 0; i < TERM_FIELDS.length; i += 1) {
+            termValues[i] = reader.getSortedDocValues(TERM_FIELDS[i]);
+            termCounts[i] = termValues[i] == null ? null : new int[termValues[i].getValueCount()];
+        }
+
+        for (int i = 0; i < NUMERIC_FIELDS.length; i += 1) {
+            numericValues[i] = reader.getNumericDocValues(NUMERIC_FIELDS[i]);
+            numericDocs[i] = reader.getDocsWithField(NUMERIC_FIELDS[i]);
+        }
+    }
+
+    @Override
+    public void collect(int doc) {
+        for (int i = 0; i < termValues.length; i += 1) {
+            if (termValues[i] == null)
+                continue;
+
+            int ord = termValues[i].getOrd(doc);
+            if (ord >= 0)
+                termCounts[i][ord] += 1;
+        }
+
+        for (int i = 0; i < numericValues.length; i += 1) {
+            if (numericValues[i] == null || numericDocs[i] == null || !numericDocs[i].get(doc))
+                continue;
+
+            numericCounts.get(i).merge(numericValues[i].get(doc), 1L, Long::sum);
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return map of facet field names to the counts of matching documents for each value of the field
+     */
+    Map<String, Map<String, Long>> getCounts() {
+        flushSegmentCounts();
+        for (int i = 0; i < NUMERIC_FIELDS.length; i += 1) {
+            Map<String, Long> fieldCounts = new TreeMap<>();
+            for (Map.Entry<Long, Long> entry : numericCounts.get(i).entrySet())
+                fieldCounts.put(Long.toString(entry.getKey()), entry.getValue());
+            counts.put(NUMERIC_FIELDS[i], fieldCounts);
+        }
+        return counts;
+    }
+
+    // ords are specific to a segment so the counts are added to the totals by value
+    private void flushSegmentCounts() {
+        for (int i = 0; i < termValues.length; i += 1) {
+            if (termValues[i] == null)
+                continue;
+
+            Map<String, Long> fieldCounts = counts.get(TERM_FIELDS[i]);
+            for (int ord = 0; ord < termCounts[i].length; ord += 1) {
+                if (termCounts[i][ord] == 0)
+                    continue;
+
+                String value = termValues[i].lookupOrd(ord).utf8ToString();
+                fieldCounts.merge(value, (long) termCounts[i][ord], Long::sum);
+            }
+            termValues[i] = null;
+            termCounts[i] = null;
+        }
+    }
+}
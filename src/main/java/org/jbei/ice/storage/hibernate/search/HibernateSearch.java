@@ -2,12 +2,13 @@ package org.jbei.ice.storage.hibernate.search;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsQuery;
 import org.apache.lucene.search.*;
 import org.hibernate.Session;
 import org.hibernate.search.FullTextQuery;
 import org.hibernate.search.FullTextSession;
 import org.hibernate.search.Search;
-import org.hibernate.search.engine.ProjectionConstants;
 import org.hibernate.search.query.dsl.QueryBuilder;
 import org.hibernate.search.query.dsl.TermContext;
 import org.jbei.ice.lib.account.AccountController;
@@ -19,14 +20,14 @@ import org.jbei.ice.lib.dto.search.FieldFilter;
 import org.jbei.ice.lib.dto.search.SearchQuery;
 import org.jbei.ice.lib.dto.search.SearchResult;
 import org.jbei.ice.lib.dto.search.SearchResults;
-import org.jbei.ice.lib.folder.Folders;
-import org.jbei.ice.lib.group.GroupController;
 import org.jbei.ice.lib.search.QueryType;
 import org.jbei.ice.lib.search.filter.SearchFieldFactory;
 import org.jbei.ice.lib.shared.BioSafetyOption;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.ModelToInfoFactory;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.PageCursor;
+import org.jbei.ice.storage.hibernate.filter.EntryHasFilterFactory;
 import org.jbei.ice.storage.model.Entry;
 
 import java.util.*;
@@ -132,33 +133,20 @@ public class HibernateSearch {
         // check if there is a blast results
         createBlastFilterQuery(fullTextSession, blastResults, builder);
 
-        // wrap Lucene query in a org.hibernate.Query
-        FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(builder.build(), Entry.class);
-
-        // get sorting values
-        Sort sort = getSort(searchQuery.getParameters().isSortAscending(), searchQuery.getParameters().getSortField());
-        fullTextQuery.setSort(sort);
-        fullTextQuery.setProjection(ProjectionConstants.ID, "owner");
-
         // enable security filter if needed
-        checkEnableSecurityFilter(userId, fullTextQuery);
+        addSecurityFilter(userId, builder);
 
         // enable has attachment/sequence/sample (if needed)
-        checkEnableHasAttribute(fullTextQuery, searchQuery.getParameters());
-
-        // set paging params
-        fullTextQuery.setFirstResult(searchQuery.getParameters().getStart());
-        fullTextQuery.setMaxResults(searchQuery.getParameters().getRetrieveCount());
+        addHasAttributeFilter(builder, searchQuery.getParameters());
 
-        resultCount = fullTextQuery.getResultSize();
-        List<?> result = fullTextQuery.list();
+        // single pass for result count and page
+        SearchPage page = executePage(fullTextSession, builder.build(), searchQuery.getParameters());
+        resultCount = page.getTotalHits();
 
         LinkedList<SearchResult> searchResults = new LinkedList<>();
+        List<Long> entryIds = new ArrayList<>(page.getEntryIds().size());
 
-        // since we are using projection, result is an arraylist of objects
-        for (Object object : result) {
-            Object[] objects = (Object[]) object;
-            long entryId = (Long) objects[0];
+        for (long entryId : page.getEntryIds()) {
             SearchResult searchResult;
             if (blastResults != null) {
                 searchResult = blastResults.get(Long.toString(entryId));
@@ -167,18 +155,20 @@ public class HibernateSearch {
             } else {
                 searchResult = new SearchResult();
                 searchResult.setScore(1f);
-                PartData info = ModelToInfoFactory.createTableView(entryId, null);
-                info.setOwner((String) objects[1]);
-                searchResult.setEntryInfo(info);
             }
 
             searchResult.setMaxScore(1f);
             searchResults.add(searchResult);
+            entryIds.add(entryId);
         }
+        setEntryInfo(entryIds, searchResults);
 
         SearchResults results = new SearchResults();
         results.setResultCount(resultCount);
         results.setResults(searchResults);
+        if (page.getNextCursor() != null)
+            results.setNextCursor(page.getNextCursor().encode());
+        results.setFacets(page.getFacets());
 
         Logger.info(userId + ": obtained " + resultCount + " results for empty query");
         return results;
@@ -202,21 +192,16 @@ public class HibernateSearch {
         FullTextSession fullTextSession = Search.getFullTextSession(session);
 
         QueryBuilder qb = fullTextSession.getSearchFactory().buildQueryBuilder().forEntity(Entry.class).get();
-        Query query = qb.keyword().onField("visibility").matching(Visibility.OK.getValue()).createQuery();
 
-        // todo : there is a limit of 1024 boolean clauses so return only return top blast results
+        // restrict to visible blast hits
         BooleanQuery.Builder builder = new BooleanQuery.Builder();
-        builder.add(query, BooleanClause.Occur.FILTER);
-
-        // wrap Lucene query in a org.hibernate.Query
-        Class<?>[] classes = SearchFieldFactory.classesForTypes(searchQuery.getEntryTypes());
-        FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(builder.build(), classes);
+        createBlastFilterQuery(fullTextSession, blastResults, builder);
 
         // enable security filter if an admin
-        checkEnableSecurityFilter(userId, fullTextQuery);
+        addSecurityFilter(userId, builder);
 
         // enable has attachment/sequence/sample (if needed)
-        checkEnableHasAttribute(fullTextQuery, searchQuery.getParameters());
+        addHasAttributeFilter(builder, searchQuery.getParameters());
 
         // bio-safety level
         if (searchQuery.getBioSafetyOption() != null) {
@@ -226,6 +211,10 @@ public class HibernateSearch {
             builder.add(biosafetyQuery, BooleanClause.Occur.MUST);
         }
 
+        // wrap Lucene query in a org.hibernate.Query
+        Class<?>[] classes = SearchFieldFactory.classesForTypes(searchQuery.getEntryTypes());
+        FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(builder.build(), classes);
+
         // execute search
         fullTextQuery.setProjection("id");
 
@@ -246,13 +235,18 @@ public class HibernateSearch {
         LinkedList<SearchResult> list = new LinkedList<>(Arrays.asList(blastResults.values().toArray(searchResults))
                 .subList(start, limit));
 
+        // entry information for the page only
+        List<Long> entryIds = new ArrayList<>(list.size());
+        for (SearchResult searchResult : list)
+            entryIds.add(searchResult.getEntryInfo().getId());
+        setEntryInfo(entryIds, list);
+
         SearchResults results = new SearchResults();
         results.setResultCount(blastResults.size());
         results.setResults(list);
         return results;
     }
 
-    @SuppressWarnings("unchecked")
     public SearchResults executeSearch(String userId, HashMap<String, QueryType> terms,
                                        SearchQuery searchQuery,
                                        HashMap<String, SearchResult> blastResults) {
@@ -278,47 +272,30 @@ public class HibernateSearch {
         // check for blast search results filter
         createBlastFilterQuery(fullTextSession, blastResults, builder);
 
-        // wrap Lucene query in a org.hibernate.Query
-        FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(builder.build(), classes);
-
-        // get max score
-        fullTextQuery.setFirstResult(0);
-        fullTextQuery.setMaxResults(1);
-        fullTextQuery.setProjection(FullTextQuery.SCORE);
-        List<?> result = fullTextQuery.list();
-        float maxScore = -1f;
-        if (result.size() == 1) {
-            maxScore = (Float) ((Object[]) (result.get(0)))[0];
-        }
-        // end get max score
-
-        // get sorting values
-        Sort sort = getSort(searchQuery.getParameters().isSortAscending(), searchQuery.getParameters().getSortField());
-        fullTextQuery.setSort(sort);
+        // filters do not contribute to the score
+        BooleanQuery.Builder filtered = new BooleanQuery.Builder();
+        filtered.add(builder.build(), BooleanClause.Occur.MUST);
 
-        // projection (specified properties must be stored in the index @Field(store=Store.YES))
-        fullTextQuery.setProjection(FullTextQuery.SCORE, FullTextQuery.ID, "owner");
+        // restrict to entry types being searched
+        addRecordTypeFilter(fullTextSession, searchQuery.getEntryTypes(), filtered);
 
         // enable security filter if needed
-        checkEnableSecurityFilter(userId.toLowerCase(), fullTextQuery);
+        addSecurityFilter(userId.toLowerCase(), filtered);
 
         // check sample
-        checkEnableHasAttribute(fullTextQuery, searchQuery.getParameters());
+        addHasAttributeFilter(filtered, searchQuery.getParameters());
 
-        // set paging params
-        fullTextQuery.setFirstResult(searchQuery.getParameters().getStart());
-        fullTextQuery.setMaxResults(searchQuery.getParameters().getRetrieveCount());
-
-        resultCount = fullTextQuery.getResultSize();
-
-        // execute search
-        result = fullTextQuery.list();
+        // execute search; single pass for max score, result count and page
+        SearchPage page = executePage(fullTextSession, filtered.build(), searchQuery.getParameters());
+        resultCount = page.getTotalHits();
+        float maxScore = page.getMaxScore();
         Logger.info(userId + ": " + resultCount + " results for \"" + searchQuery.getQueryString() + "\"");
 
         LinkedList<SearchResult> searchResults = new LinkedList<>();
-        for (Object[] objects : (Iterable<Object[]>) result) {
-            float score = (Float) objects[0];
-            Long entryId = (Long) objects[1];
+        List<Long> entryIds = new ArrayList<>(page.getEntryIds().size());
+        for (int i = 0; i < page.getEntryIds().size(); i += 1) {
+            float score = page.getScores().get(i);
+            Long entryId = page.getEntryIds().get(i);
             SearchResult searchResult;
             if (blastResults != null) {
                 searchResult = blastResults.get(Long.toString(entryId));
@@ -327,21 +304,61 @@ public class HibernateSearch {
             } else {
                 searchResult = new SearchResult();
                 searchResult.setScore(score);
-                PartData info = ModelToInfoFactory.createTableView(entryId, null);
-                info.setOwner((String) objects[2]);
-                searchResult.setEntryInfo(info);
             }
 
             searchResult.setMaxScore(maxScore);
             searchResults.add(searchResult);
+            entryIds.add(entryId);
         }
+        setEntryInfo(entryIds, searchResults);
 
         SearchResults results = new SearchResults();
         results.setResultCount(resultCount);
         results.setResults(searchResults);
+        if (page.getNextCursor() != null)
+            results.setNextCursor(page.getNextCursor().encode());
+        results.setFacets(page.getFacets());
         return results;
     }
 
+    /**
+     * Retrieves the page of results for the query specified by the paging parameters; using either the
+     * offset or the cursor (if one is specified). Facet counts are collected in the same pass if requested
+     *
+     * @throws IllegalArgumentException if the parameters specify a cursor that is not valid for the sort
+     */
+    private SearchPage executePage(FullTextSession fullTextSession, Query query, SearchQuery.Parameters parameters) {
+        Sort sort = getSort(parameters.isSortAscending(), parameters.getSortField());
+        PageCursor cursor = decodeCursor(parameters);
+        return SearchPage.execute(fullTextSession, query, sort, parameters.getStart(), parameters.getRetrieveCount(),
+                cursor, parameters.isRetrieveFacets());
+    }
+
+    /**
+     * Sets the table views for a page of search results (in the same order as the results) using a single
+     * batch retrieval. Blast results only have the values in the blast output set when they are parsed so they
+     * are also completed here; a blast result keeps those values if its entry cannot be retrieved
+     *
+     * @param entryIds      ids of entries for search results, in the order of the results
+     * @param searchResults page of search results
+     */
+    private void setEntryInfo(List<Long> entryIds, List<SearchResult> searchResults) {
+        if (entryIds.isEmpty())
+            return;
+
+        Map<Long, PartData> views = new HashMap<>();
+        for (PartData view : ModelToInfoFactory.createTableViews(entryIds, null))
+            views.put(view.getId(), view);
+
+        // iterated together since the results may be linked lists
+        Iterator<Long> idIterator = entryIds.iterator();
+        for (SearchResult searchResult : searchResults) {
+            PartData view = views.get(idIterator.next());
+            if (view != null)
+                searchResult.setEntryInfo(view);
+        }
+    }
+
     private void generateQueriesForType(FullTextSession fullTextSession, HashSet<String> fields,
                                         BooleanQuery.Builder builder, String term, QueryType type,
                                         BioSafetyOption option) {
@@ -390,24 +407,47 @@ public class HibernateSearch {
         }
     }
 
+    /**
+     * Decodes the page cursor of a search and checks that its values are valid for the sort of the search
+     *
+     * @param parameters search parameters
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public PageCursor decodeCursor(SearchQuery.Parameters parameters) {
+        PageCursor cursor = PageCursor.decode(parameters.getCursor(), parameters.getSortField(),
+                parameters.isSortAscending());
+        if (!cursor.isStart())
+            SearchPage.toFieldDoc(getSort(parameters.isSortAscending(), parameters.getSortField()), cursor);
+        return cursor;
+    }
+
+    // the (unique) entry id is the last sort field so that ties are ordered the same way for every search
+    // which keeps the positions of page cursors stable
     private Sort getSort(boolean asc, ColumnField sortField) {
         if (sortField == null)
             sortField = ColumnField.CREATED;
 
+        SortField field;
         switch (sortField) {
             case RELEVANCE:
             default:
-                return new Sort(new SortField(SortField.FIELD_SCORE.getField(), SortField.FIELD_SCORE.getType(), asc));
+                field = new SortField(SortField.FIELD_SCORE.getField(), SortField.FIELD_SCORE.getType(), asc);
+                break;
 
             case TYPE:
-                return new Sort(new SortField("recordType", SortField.Type.STRING, asc));
+                field = new SortField("recordType", SortField.Type.STRING, asc);
+                break;
 
             case PART_ID:
-                return new Sort(new SortField("partNumber_forSort", SortField.Type.STRING, asc));
+                field = new SortField("partNumber_forSort", SortField.Type.STRING, asc);
+                break;
 
             case CREATED:
-                return new Sort(new SortField("creationTime", SortField.Type.INT, asc));
+                field = new SortField("creationTime", SortField.Type.INT, asc);
+                break;
         }
+        return new Sort(field, new SortField("id", SortField.Type.STRING, asc));
     }
 
     // empty blast results indicates valid results
@@ -422,40 +462,29 @@ public class HibernateSearch {
         QueryBuilder qb = fullTextSession.getSearchFactory().buildQueryBuilder().forEntity(Entry.class).get();
         Query query = qb.keyword().onField("visibility").matching(Visibility.OK.getValue()).createQuery();
         builder.add(query, BooleanClause.Occur.FILTER);
+
+        // single id set filter for all hits (not subject to the boolean clause limit)
+        List<Term> ids = new ArrayList<>(blastResults.size());
         for (String id : blastResults.keySet()) {
-            Query filterQuery = qb.keyword().onField("id").matching(id).createQuery();
-            builder.add(filterQuery, BooleanClause.Occur.FILTER);
+            ids.add(new Term("id", id));
         }
+        builder.add(new TermsQuery(ids), BooleanClause.Occur.FILTER);
     }
 
     /**
-     * Enables the security filter if the account does not have administrative privileges
+     * Adds the security filter if the account does not have administrative privileges
      *
-     * @param userId        identifier for account which is checked for administrative privs
-     * @param fullTextQuery search fulltextquery for which filter is enabled
+     * @param userId  identifier for account which is checked for administrative privs
+     * @param builder query builder the filter is added to
      */
-    private void checkEnableSecurityFilter(String userId, FullTextQuery fullTextQuery) {
-        Set<String> groupUUIDs = new HashSet<>();
-        Set<String> folderIds = new HashSet<>();
-
-        if (StringUtils.isEmpty(userId)) {
-            groupUUIDs.add(GroupController.PUBLIC_GROUP_UUID);
-        } else {
-            AccountController accountController = new AccountController();
-            if (accountController.isAdministrator(userId)) {
-                return;
-            }
-            groupUUIDs = new GroupController().retrieveAccountGroupUUIDs(userId);
-            folderIds = new Folders(userId).getCanReadFolderIds();
-        }
+    private void addSecurityFilter(String userId, BooleanQuery.Builder builder) {
+        if (!StringUtils.isEmpty(userId) && new AccountController().isAdministrator(userId))
+            return;
 
-        fullTextQuery.enableFullTextFilter("security")
-                .setParameter("account", userId)
-                .setParameter("folderIds", folderIds)
-                .setParameter("groupUUids", groupUUIDs);
+        builder.add(SecurityFilterCache.getInstance().getFilter(userId), BooleanClause.Occur.FILTER);
     }
 
-    private void checkEnableHasAttribute(FullTextQuery fullTextQuery, SearchQuery.Parameters parameters) {
+    private void addHasAttributeFilter(BooleanQuery.Builder builder, SearchQuery.Parameters parameters) {
         if (parameters == null)
             return;
 
@@ -476,7 +505,23 @@ public class HibernateSearch {
         if (terms.isEmpty())
             return;
 
-        fullTextQuery.enableFullTextFilter("boolean").setParameter("field", terms);
+        EntryHasFilterFactory factory = new EntryHasFilterFactory();
+        factory.setField(terms);
+        builder.add(factory.getFilter(), BooleanClause.Occur.FILTER);
+    }
+
+    private void addRecordTypeFilter(FullTextSession fullTextSession, List<EntryType> entryTypes,
+                                     BooleanQuery.Builder builder) {
+        if (entryTypes == null || entryTypes.isEmpty())
+            return;
+
+        QueryBuilder qb = fullTextSession.getSearchFactory().buildQueryBuilder().forEntity(Entry.class).get();
+        BooleanQuery.Builder typeBuilder = new BooleanQuery.Builder();
+        for (EntryType type : entryTypes) {
+            typeBuilder.add(qb.keyword().onField("recordType").matching(type.getName()).createQuery(),
+                    BooleanClause.Occur.SHOULD);
+        }
+        builder.add(typeBuilder.build(), BooleanClause.Occur.FILTER);
     }
 
     private static class SingletonHolder {
@@ -0,0 +1,100 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Security filter matching the entry documents that a principal can read. i.e. documents that contain any of the
+ * principal's read terms (account/group identifiers for direct permissions and folder ids for
+ * folder permissions).
+ * <p>
+ * Matches are computed once for each index segment directly from the postings of the terms and cached as a doc-id
+ * bitset. Segments are immutable so the bitsets remain valid until the principal's terms change (in which case a new
+ * instance is created; see {@link SecurityFilterCache}). Deleted documents are excluded by the searcher. This
+ * also avoids the boolean clause limit for principals with a large number of groups and folders
+ */
+class ReadableEntriesQuery extends Query {
+
+    private final Set<Term> terms;
+
+    // segment core cache key -> matching docs. weak keys so that merged away segments are dropped
+    private final Map<Object, FixedBitSet> segmentBits = Collections.synchronizedMap(new WeakHashMap<>());
+
+    ReadableEntriesQuery(Set<Term> terms) {
+        this.terms = terms;
+    }
+
+    boolean hasTerm(Term term) {
+        return terms.contains(term);
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) {
+        return new ConstantScoreWeight(this) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                FixedBitSet bits = getBits(context.reader());
+                if (bits == null)
+                    return null;
+                return new ConstantScoreScorer(this, score(), new BitSetIterator(bits, bits.cardinality()));
+            }
+        };
+    }
+
+    /**
+     * Retrieves (computing if not cached) the documents in the specified segment that match
+     *
+     * @param reader segment reader
+     * @return set of matching doc ids or null if there are no matches in the segment
+     * @throws IOException on exception reading the segment
+     */
+    private FixedBitSet getBits(LeafReader reader) throws IOException {
+        Object key = reader.getCoreCacheKey();
+        if (segmentBits.containsKey(key))
+            return segmentBits.get(key);
+
+        FixedBitSet bits = new FixedBitSet(reader.maxDoc());
+        boolean hasMatch = false;
+        for (Term term : terms) {
+            PostingsEnum postings = reader.postings(term, PostingsEnum.NONE);
+            if (postings == null)
+                continue;
+
+            bits.or(postings);
+            hasMatch = true;
+        }
+
+        if (!hasMatch)
+            bits = null;
+        segmentBits.put(key, bits);
+        return bits;
+    }
+
+    @Override
+    public String toString(String field) {
+        return "ReadableEntries" + terms;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj))
+            return false;
+        return terms.equals(((ReadableEntriesQuery) obj).terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + terms.hashCode();
+    }
+}
@@ -0,0 +1,239 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.uninverting.UninvertingReader;
+import org.apache.lucene.util.BytesRef;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.indexes.IndexReaderAccessor;
+import org.jbei.ice.storage.hibernate.PageCursor;
+import org.jbei.ice.storage.model.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Page of full text search results obtained with a single traversal of the entry index.
+ * <p>
+ * The traversal collects the total number of hits, the maximum score and the sorted page of entry ids
+ * (and their scores) together; which using the hibernate search API would require a separate query execution for each.
+ * <p>
+ * Pages can also be retrieved with a {@link PageCursor} (search after) instead of an offset, in which case only
+ * the hits following the cursor position are retained. The sort is expected to end with a unique field so that
+ * the cursor position is not dependent on (internal) document ids, which can change between searches.
+ * <p>
+ * The facet counts of all the matching documents (see {@link FacetCollector}) can also be collected in the same
+ * traversal
+ */
+class SearchPage {
+
+    static final Set<String> ID_FIELD = Collections.singleton("id");
+    private static final Class<?>[] ENTRY_CLASSES = {Entry.class, Part.class, Plasmid.class, Strain.class,
+            ArabidopsisSeed.class, Protein.class};
+
+    private final int totalHits;
+    private final float maxScore;
+    private final List<Long> entryIds;
+    private final List<Float> scores;
+    private PageCursor nextCursor;
+    private Map<String, Map<String, Long>> facets;
+
+    private SearchPage(int totalHits, float maxScore, int size) {
+        this.totalHits = totalHits;
+        this.maxScore = maxScore;
+        this.entryIds = new ArrayList<>(size);
+        this.scores = new ArrayList<>(size);
+    }
+
+    /**
+     * Runs the specified query against the entry index
+     *
+     * @param session full text session
+     * @param query   lucene query. Any filters (e.g. security) are expected to have been added to it
+     * @param sort    sort order for results
+     * @param start   paging start; ignored if the cursor is not at the start
+     * @param count   maximum number of results to return in the page
+     * @param cursor  page position. Results following the cursor are returned
+     * @param facets    whether to also collect the facet counts for all the matching documents
+     * @return page of results
+     * @throws IllegalArgumentException if the cursor values do not match the sort
+     */
+    static SearchPage execute(FullTextSession session, Query query, Sort sort, int start, int count,
+                              PageCursor cursor, boolean facets) {
+        FieldDoc after = cursor.isStart() ? null : toFieldDoc(sort, cursor);
+        IndexReaderAccessor accessor = session.getSearchFactory().getIndexReaderAccessor();
+        IndexReader reader = accessor.open(ENTRY_CLASSES);
+        try {
+            Map<String, UninvertingReader.Type> fields = getSortUninvertingTypes(sort);
+            if (facets)
+                fields.putAll(FacetCollector.getUninvertingTypes());
+            IndexSearcher searcher = new IndexSearcher(uninvert(reader, fields));
+
+            TopFieldCollector collector;
+            if (after == null)
+                collector = TopFieldCollector.create(sort, getNumHits(start, count, reader), true, true, true);
+            else
+                collector = TopFieldCollector.create(sort, getNumHits(0, count, reader), after, true, true, true);
+
+            FacetCollector facetCollector = facets ? new FacetCollector() : null;
+            searcher.search(query, facets ? MultiCollector.wrap(collector, facetCollector) : collector);
+
+            TopDocs topDocs = after == null ? collector.topDocs(start, count) : collector.topDocs(0, count);
+            float maxScore = Float.isNaN(topDocs.getMaxScore()) ? -1f : topDocs.getMaxScore();
+            SearchPage page = new SearchPage(collector.getTotalHits(), maxScore, topDocs.scoreDocs.length);
+
+            // projection on the stored id
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                Document document = searcher.doc(scoreDoc.doc, ID_FIELD);
+                page.entryIds.add(Long.decode(document.get("id")));
+                page.scores.add(scoreDoc.score);
+            }
+
+            // a full page indicates that there may be more results
+            if (count > 0 && topDocs.scoreDocs.length == count) {
+                FieldDoc last = (FieldDoc) topDocs.scoreDocs[count - 1];
+                page.nextCursor = fromFieldDoc(cursor, last);
+            }
+
+            if (facetCollector != null)
+                page.facets = facetCollector.getCounts();
+            return page;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to query entry index", e);
+        } finally {
+            accessor.close(reader);
+        }
+    }
+
+    // number of hits to collect for a page. the collector allocates space for all of them, so there are no more than
+    // the number of documents in the index
+    private static int getNumHits(int start, int count, IndexReader reader) {
+        long hits = (long) start + count;
+        return (int) Math.max(1, Math.min(hits, reader.maxDoc()));
+    }
+
+    /**
+     * Converts the cursor to the position in the results for a search after
+     *
+     * @param sort   sort of the search
+     * @param cursor page cursor
+     * @return position of the cursor
+     * @throws IllegalArgumentException if the cursor values are not valid for the sort
+     */
+    static FieldDoc toFieldDoc(Sort sort, PageCursor cursor) {
+        SortField[] sortFields = sort.getSort();
+        Object[] values = cursor.getValues();
+        if (values.length != sortFields.length)
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+
+        Object[] fields = new Object[values.length];
+        for (int i = 0; i < values.length; i += 1) {
+            Object value = values[i];
+            switch (sortFields[i].getType()) {
+                case STRING:
+                    if (value != null && !(value instanceof String))
+                        throw new IllegalArgumentException("Invalid cursor " + cursor);
+                    fields[i] = value == null ? null : new BytesRef((String) value);
+                    break;
+
+                case SCORE:
+                    if (!(value instanceof Float))
+                        throw new IllegalArgumentException("Invalid cursor " + cursor);
+                    fields[i] = value;
+                    break;
+
+                case INT:
+                    if (!(value instanceof Integer))
+                        throw new IllegalArgumentException("Invalid cursor " + cursor);
+                    fields[i] = value;
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unsupported sort for cursor " + sortFields[i]);
+            }
+        }
+
+        // doc id is only used to break ties, which the (unique) last sort field prevents
+        return new FieldDoc(Integer.MAX_VALUE, Float.NaN, fields);
+    }
+
+    private static PageCursor fromFieldDoc(PageCursor cursor, FieldDoc fieldDoc) {
+        Object[] values = new Object[fieldDoc.fields.length];
+        for (int i = 0; i < values.length; i += 1) {
+            Object value = fieldDoc.fields[i];
+            values[i] = value instanceof BytesRef ? ((BytesRef) value).utf8ToString() : value;
+        }
+        return new PageCursor(cursor.getSortField(), cursor.isAscending(), values);
+    }
+
+    private static Map<String, UninvertingReader.Type> getSortUninvertingTypes(Sort sort) {
+        Map<String, UninvertingReader.Type> types = new HashMap<>();
+        for (SortField sortField : sort.getSort()) {
+            if (sortField.getType() == SortField.Type.STRING)
+                types.put(sortField.getField(), UninvertingReader.Type.SORTED);
+        }
+        return types;
+    }
+
+    /**
+     * Fields that are not indexed with doc values (not annotated with <code>@SortableField</code>)
+     * cannot be sorted on (or faceted) directly. This wraps the index segments for these fields
+     *
+     * @param reader index reader
+     * @param fields fields that are sorted on or faceted, and the type to uninvert them as
+     */
+    private static IndexReader uninvert(IndexReader reader, Map<String, UninvertingReader.Type> fields)
+            throws IOException {
+        Map<String, UninvertingReader.Type> mapping = new HashMap<>();
+        for (Map.Entry<String, UninvertingReader.Type> field : fields.entrySet()) {
+            for (LeafReaderContext context : reader.leaves()) {
+                FieldInfo info = context.reader().getFieldInfos().fieldInfo(field.getKey());
+                if (info != null && info.getDocValuesType() == DocValuesType.NONE) {
+                    mapping.put(field.getKey(), field.getValue());
+                    break;
+                }
+            }
+        }
+
+        if (mapping.isEmpty())
+            return reader;
+
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReader[] readers = new LeafReader[leaves.size()];
+        for (int i = 0; i < readers.length; i += 1) {
+            readers[i] = new UninvertingReader(leaves.get(i).reader(), mapping);
+        }
+        return new MultiReader(readers, false);
+    }
+
+    int getTotalHits() {
+        return totalHits;
+    }
+
+    float getMaxScore() {
+        return maxScore;
+    }
+
+    List<Long> getEntryIds() {
+        return entryIds;
+    }
+
+    List<Float> getScores() {
+        return scores;
+    }
+
+    /**
+     * @return counts of matching documents for each value of the facet fields; null if facets were not collected
+     */
+    Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+
+    /**
+     * @return cursor for the page following this one or null if this is the last page
+     */
+    PageCursor getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,139 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.hibernate.Session;
+import org.hibernate.event.spi.EventSource;
+import org.jbei.ice.lib.access.IndexField;
+import org.jbei.ice.lib.folder.Folders;
+import org.jbei.ice.lib.group.GroupController;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of the full text search security filters, keyed by principal (user id).
+ * <p>
+ * Computing the filter requires the groups the principal is a member of and the folders the principal
+ * can read. The cached filter (see {@link ReadableEntriesQuery}) also retains the matching documents for each index
+ * segment so that the permission cost is paid once instead of for each search.
+ * <p>
+ * The filters of a principal are invalidated whenever its group memberships or folder permissions change
+ * (see {@link SecurityFilterInvalidationListener}). Permissions on entries are indexed with the entries and do not
+ * change the filters
+ */
+public class SecurityFilterCache {
+
+    private static final int MAX_PRINCIPALS = 500;
+
+    private final Map<String, ReadableEntriesQuery> filters;
+    private long generation;
+
+    private SecurityFilterCache() {
+        filters = new LinkedHashMap<String, ReadableEntriesQuery>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReadableEntriesQuery> eldest) {
+                return size() > MAX_PRINCIPALS;
+            }
+        };
+    }
+
+    public static SecurityFilterCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Retrieves the security filter for the specified principal. Note that administrators are not expected to
+     * have a filter applied
+     *
+     * @param userId unique identifier for principal. If empty, the filter for public entries is returned
+     * @return query matching the entries that the principal can read
+     */
+    public Query getFilter(String userId) {
+        String key = StringUtils.isEmpty(userId) ? "" : userId;
+        long current;
+        synchronized (this) {
+            ReadableEntriesQuery filter = filters.get(key);
+            if (filter != null)
+                return filter;
+            current = generation;
+        }
+
+        ReadableEntriesQuery filter = new ReadableEntriesQuery(getReadTerms(userId));
+        synchronized (this) {
+            // do not cache if permissions changed while the filter was being created
+            if (current == generation)
+                filters.put(key, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Discards all cached filters
+     */
+    public synchronized void invalidate() {
+        generation += 1;
+        filters.clear();
+    }
+
+    /**
+     * Discards the cached filters of the principals with the specified identifier as a read term. i.e. the account
+     * with the identifier as user id, or the members of the group with the identifier as uuid
+     *
+     * @param principal user id or group uuid
+     */
+    public synchronized void invalidate(String principal) {
+        generation += 1;
+        Term term = new Term(IndexField.CAN_READ, principal);
+        filters.values().removeIf(filter -> filter.hasTerm(term));
+    }
+
+    /**
+     * Discards the cached filters of the principals with the specified identifier as a read term now and again when
+     * the current transaction of the specified session completes (see {@link #invalidate(Session)})
+     *
+     * @param session   session in which permissions or group memberships were modified
+     * @param principal user id or group uuid
+     */
+    public void invalidate(Session session, String principal) {
+        invalidate(principal);
+        session.unwrap(EventSource.class).getActionQueue().registerProcess((success, s) -> invalidate(principal));
+    }
+
+    /**
+     * Discards all cached filters now and again when the current transaction of the specified session completes.
+     * The latter prevents a search in between from caching a filter created from the previously committed
+     * permissions
+     *
+     * @param session session in which permissions were modified
+     */
+    public void invalidate(Session session) {
+        invalidate();
+        session.unwrap(EventSource.class).getActionQueue().registerProcess((success, s) -> invalidate());
+    }
+
+    private Set<Term> getReadTerms(String userId) {
+        Set<Term> terms = new HashSet<>();
+        if (StringUtils.isEmpty(userId)) {
+            terms.add(new Term(IndexField.CAN_READ, GroupController.PUBLIC_GROUP_UUID));
+            return terms;
+        }
+
+        terms.add(new Term(IndexField.CAN_READ, userId));
+        for (String uuid : new GroupController().retrieveAccountGroupUUIDs(userId)) {
+            terms.add(new Term(IndexField.CAN_READ, uuid));
+        }
+
+        for (String folderId : new Folders(userId).getCanReadFolderIds()) {
+            terms.add(new Term(IndexField.CONTAINED_IN, folderId));
+        }
+        return terms;
+    }
+
+    private static class SingletonHolder {
+        private static final SecurityFilterCache INSTANCE = new SecurityFilterCache();
+    }
+}
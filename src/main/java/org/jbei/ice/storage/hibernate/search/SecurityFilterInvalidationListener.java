@@ -0,0 +1,79 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Group;
+import org.jbei.ice.storage.model.Permission;
+
+/**
+ * Hibernate event listener that invalidates the cached search security filters ({@link SecurityFilterCache})
+ * of the principals affected when folder permissions, groups or group memberships are modified. Bulk (query)
+ * modifications of permissions do not trigger these events and are expected to invalidate the cache directly
+ */
+public class SecurityFilterInvalidationListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, PostCollectionUpdateEventListener, PostCollectionRecreateEventListener,
+        PostCollectionRemoveEventListener {
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        checkInvalidate(event.getEntity(), event.getSession());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        checkInvalidate(event.getEntity(), event.getSession());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        checkInvalidate(event.getEntity(), event.getSession());
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        checkMembershipInvalidate(event);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        checkMembershipInvalidate(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        checkMembershipInvalidate(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void checkInvalidate(Object entity, EventSource session) {
+        if (entity instanceof Permission)
+            checkPermissionInvalidate((Permission) entity, session);
+        else if (entity instanceof Group)
+            SecurityFilterCache.getInstance().invalidate(session, ((Group) entity).getUuid());
+    }
+
+    // only folder permissions are part of the filters; entry permissions are indexed with the entries
+    private void checkPermissionInvalidate(Permission permission, EventSource session) {
+        if (permission.getFolder() == null)
+            return;
+
+        if (permission.getAccount() != null)
+            SecurityFilterCache.getInstance().invalidate(session, permission.getAccount().getEmail());
+        if (permission.getGroup() != null)
+            SecurityFilterCache.getInstance().invalidate(session, permission.getGroup().getUuid());
+    }
+
+    // group memberships are the only collections of accounts and groups
+    private void checkMembershipInvalidate(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+        if (owner instanceof Account)
+            SecurityFilterCache.getInstance().invalidate(event.getSession(), ((Account) owner).getEmail());
+        else if (owner instanceof Group)
+            SecurityFilterCache.getInstance().invalidate(event.getSession(), ((Group) owner).getUuid());
+    }
+}
@@ -140,6 +140,8 @@ public class Entry implements DataModel {
     private String keywords;
 
     @Column(name = "status", length = 127)
+    @Field(analyze = Analyze.NO)
+    @SortableField(forField = "status")
     private String status;
 
     @Column(name = "visibility")
@@ -182,6 +184,7 @@ public class Entry implements DataModel {
 
     @Column(name = "bio_safety_level")
     @Field(analyze = Analyze.NO)
+    @SortableField(forField = "bioSafetyLevel")
     private Integer bioSafetyLevel;
 
     @Column(name = "intellectual_property")
@@ -32,7 +32,9 @@ import static javax.persistence.FetchType.LAZY;
  * @author Timothy Ham, Zinovii Dmytriv
  */
 @Entity
-@Table(name = "sequences")
+@Table(name = "sequences", indexes = {
+        @Index(name = "sequences_fwd_hash_idx", columnList = "fwd_hash"),
+        @Index(name = "sequences_rev_hash_idx", columnList = "rev_hash")})
 @SequenceGenerator(name = "sequences_id", sequenceName = "sequences_id_seq", allocationSize = 1)
 public class Sequence implements DataModel {
 
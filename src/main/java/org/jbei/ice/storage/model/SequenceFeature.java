@@ -18,7 +18,8 @@ import java.util.Set;
  * @author Timothy Ham, Zinovii Dmytriv
  */
 @Entity
-@Table(name = "sequence_feature")
+@Table(name = "sequence_feature", indexes = {
+        @Index(name = "sequence_feature_feature_idx", columnList = "feature_id")})
 @SequenceGenerator(name = "sequence_feature_id", sequenceName = "sequence_feature_id_seq", allocationSize = 1)
 public class SequenceFeature implements DataModel {
 
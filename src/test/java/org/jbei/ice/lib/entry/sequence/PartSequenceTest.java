@@ -8,13 +8,21 @@ import org.jbei.ice.lib.dto.FeaturedDNASequence;
 import org.jbei.ice.lib.dto.entry.EntryType;
 import org.jbei.ice.lib.dto.entry.SequenceInfo;
 import org.jbei.ice.lib.parsers.GeneralParser;
+import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.hibernate.HibernateRepositoryTest;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Strain;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -42,6 +50,24 @@ public class PartSequenceTest extends HibernateRepositoryTest {
                     "ccggcttatcggtcagtttcacttcttcataaaacccgcttcggcgggtttttgcttttacagggcggcaggatgaatga\n" +
                     "ctgtccacgacgctatacccaaaagaaa";
 
+    private Path cacheDirectory;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        cacheDirectory = Files.createTempDirectory("sequence-cache-test");
+        SequenceFileCache.setInstance(new SequenceFileCache(cacheDirectory, 1024 * 1024));
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        SequenceFileCache.setInstance(null);
+        FileUtils.deleteQuietly(cacheDirectory.toFile());
+    }
+
     @Test
     public void testGet() throws Exception {
         Account account = AccountCreator.createTestAccount("PartSequenceTest.testGet", false);
@@ -98,6 +124,70 @@ public class PartSequenceTest extends HibernateRepositoryTest {
         Assert.assertTrue(caught);
     }
 
+    @Test
+    public void testToStream() throws Exception {
+        Account account = AccountCreator.createTestAccount("PartSequenceTest.testToStream", false);
+        PartSequence partSequence = new PartSequence(account.getEmail(), EntryType.PLASMID);
+        FeaturedDNASequence sequence = GeneralParser.parse(genbank);
+        partSequence.save(sequence);
+        String partNumber = partSequence.get().getIdentifier();
+        HibernateUtil.commitTransaction();
+
+        // files are written after the session they are retrieved in is closed
+        HibernateUtil.beginTransaction();
+        partSequence = new PartSequence(account.getEmail(), partNumber);
+        SequenceOutput genbankOutput = partSequence.toStream(SequenceFormat.GENBANK);
+        SequenceOutput fastaOutput = partSequence.toStream(SequenceFormat.FASTA);
+        SequenceOutput gff3Output = partSequence.toStream(SequenceFormat.GFF3);
+        HibernateUtil.commitTransaction();
+        HibernateUtil.beginTransaction();
+
+        // genbank
+        Assert.assertNotNull(genbankOutput);
+        Assert.assertEquals(partNumber + ".gb", genbankOutput.getName());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        genbankOutput.write(outputStream);
+        String genbankString = outputStream.toString();
+        Assert.assertTrue(genbankString.contains("      181 aattaatcat ccggctcgta taatgtgtgg aattgtgagc ggataacaat ttca"));
+        Assert.assertTrue(genbankString.trim().endsWith("//"));
+        FeaturedDNASequence written = GeneralParser.parse(genbankString);
+        Assert.assertEquals(sequence.getSequence(), written.getSequence());
+        Assert.assertEquals(1, written.getFeatures().size());
+        compareFeatures(sequence.getFeatures().get(0), written.getFeatures().get(0));
+
+        // written file is cached
+        genbankOutput = new PartSequence(account.getEmail(), partNumber).toStream(SequenceFormat.GENBANK);
+        outputStream = new ByteArrayOutputStream();
+        genbankOutput.write(outputStream);
+        Assert.assertEquals(genbankString, outputStream.toString());
+
+        // file is formatted again if it is discarded from the cache before it is written
+        genbankOutput = new PartSequence(account.getEmail(), partNumber).toStream(SequenceFormat.GENBANK);
+        HibernateUtil.commitTransaction();
+        HibernateUtil.beginTransaction();
+        SequenceFileCache.getInstance().invalidate(DAOFactory.getEntryDAO().getByPartNumber(partNumber).getId());
+        outputStream = new ByteArrayOutputStream();
+        genbankOutput.write(outputStream);
+        Assert.assertEquals(genbankString, outputStream.toString());
+
+        // fasta
+        Assert.assertNotNull(fastaOutput);
+        Assert.assertEquals(partNumber + ".fa", fastaOutput.getName());
+        outputStream = new ByteArrayOutputStream();
+        fastaOutput.write(outputStream);
+        String[] lines = outputStream.toString().split(System.lineSeparator());
+        Assert.assertEquals(">" + partNumber, lines[0]);
+        Assert.assertEquals(4, lines.length);
+        Assert.assertEquals(80, lines[1].length());
+        Assert.assertEquals(74, lines[3].length());
+
+        // gff3
+        Assert.assertNotNull(gff3Output);
+        outputStream = new ByteArrayOutputStream();
+        gff3Output.write(outputStream);
+        Assert.assertTrue(outputStream.toString().contains(partNumber + "\t.\tregion\t1\t234\t.\t+"));
+    }
+
     private void compareFeatures(DNAFeature feature, DNAFeature compare) {
         Assert.assertEquals(feature.getName(), compare.getName());
         Assert.assertEquals(feature.getType(), compare.getType());
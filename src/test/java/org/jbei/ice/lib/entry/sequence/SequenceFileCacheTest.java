@@ -0,0 +1,128 @@
+package org.jbei.ice.lib.entry.sequence;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SequenceFileCacheTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("sequence-cache-test");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        SequenceFileCache cache = new SequenceFileCache(directory, 1024);
+        String key = SequenceFileCache.getKey(1, SequenceFormat.GENBANK, "abc");
+        Assert.assertNull(get(cache, key));
+
+        // file is cached when it is written
+        SequenceOutput output = cache.cache(key, 1, createOutput("test.gb", "LOCUS test"));
+        Assert.assertEquals("test.gb", output.getName());
+        Assert.assertNull(get(cache, key));
+        Assert.assertEquals("LOCUS test", write(output));
+        Assert.assertEquals(10, cache.getSize());
+
+        SequenceOutput cached = get(cache, key);
+        Assert.assertNotNull(cached);
+        Assert.assertEquals("test.gb", cached.getName());
+        Assert.assertEquals("LOCUS test", write(cached));
+
+        // other versions and formats are not cached
+        Assert.assertNull(get(cache, SequenceFileCache.getKey(1, SequenceFormat.GENBANK, "abd")));
+        Assert.assertNull(get(cache, SequenceFileCache.getKey(1, SequenceFormat.FASTA, "abc")));
+
+        // invalidate other entry
+        cache.invalidate(2);
+        Assert.assertNotNull(get(cache, key));
+
+        // invalidate entry
+        cache.invalidate(1);
+        Assert.assertNull(get(cache, key));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidateWhileWriting() throws Exception {
+        SequenceFileCache cache = new SequenceFileCache(directory, 1024);
+        String key = SequenceFileCache.getKey(1, SequenceFormat.FASTA, "abc");
+        SequenceOutput output = cache.cache(key, 1, createOutput("test.fa", ">test"));
+        cache.invalidate(1);
+        Assert.assertEquals(">test", write(output));
+        Assert.assertNull(get(cache, key));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        SequenceFileCache cache = new SequenceFileCache(directory, 25);
+        String key1 = SequenceFileCache.getKey(1, SequenceFormat.GFF3, "abc");
+        String key2 = SequenceFileCache.getKey(2, SequenceFormat.GFF3, "abc");
+        String key3 = SequenceFileCache.getKey(3, SequenceFormat.GFF3, "abc");
+        write(cache.cache(key1, 1, createOutput("1.gff3", "0123456789")));
+        write(cache.cache(key2, 2, createOutput("2.gff3", "0123456789")));
+
+        // least recently used file is discarded
+        Assert.assertNotNull(get(cache, key1));
+        write(cache.cache(key3, 3, createOutput("3.gff3", "0123456789")));
+        Assert.assertEquals(20, cache.getSize());
+        Assert.assertNotNull(get(cache, key1));
+        Assert.assertNull(get(cache, key2));
+        Assert.assertNotNull(get(cache, key3));
+
+        // files larger than the cache are not cached
+        String key4 = SequenceFileCache.getKey(4, SequenceFormat.GFF3, "abc");
+        write(cache.cache(key4, 4, createOutput("4.gff3", "012345678901234567890123456789")));
+        Assert.assertNull(get(cache, key4));
+        Assert.assertEquals(20, cache.getSize());
+    }
+
+    @Test
+    public void testDiscardBeforeWrite() throws Exception {
+        SequenceFileCache cache = new SequenceFileCache(directory, 1024);
+        String key = SequenceFileCache.getKey(1, SequenceFormat.GENBANK, "abc");
+        write(cache.cache(key, 1, createOutput("test.gb", "LOCUS test")));
+
+        // file is formatted again, and cached again, if it is discarded after it is retrieved
+        SequenceOutput cached = get(cache, key);
+        cache.invalidate(1);
+        Assert.assertEquals("test.gb", cached.getName());
+        Assert.assertEquals("LOCUS fallback", write(cached));
+        Assert.assertEquals("LOCUS fallback", write(get(cache, key)));
+        Assert.assertEquals(14, cache.getSize());
+
+        // or if the file is deleted
+        cached = get(cache, key);
+        Files.delete(directory.resolve(key));
+        Assert.assertEquals("LOCUS fallback", write(cached));
+        Assert.assertEquals(14, cache.getSize());
+    }
+
+    private SequenceOutput get(SequenceFileCache cache, String key) {
+        return cache.get(key, outputStream -> outputStream.write("LOCUS fallback".getBytes()));
+    }
+
+    private SequenceOutput createOutput(String name, String content) {
+        return new SequenceOutput(name, outputStream -> outputStream.write(content.getBytes()));
+    }
+
+    private String write(SequenceOutput output) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        output.write(outputStream);
+        return outputStream.toString();
+    }
+}
@@ -7,6 +7,7 @@ import org.jbei.ice.lib.dto.DNAFeature;
 import org.jbei.ice.lib.dto.FeaturedDNASequence;
 import org.jbei.ice.lib.entry.sequence.PartSequence;
 import org.jbei.ice.lib.parsers.GeneralParser;
+import org.jbei.ice.lib.utils.SequenceUtils;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
 import org.jbei.ice.storage.hibernate.dao.SequenceDAO;
 import org.jbei.ice.storage.hibernate.dao.SequenceFeatureDAO;
@@ -64,12 +65,74 @@ public class AnnotationsTest {
         List<DNAFeature> features = new ArrayList<>();
         features.add(dnaFeature);
 
+        // the index is built from the committed features
+        HibernateUtil.commitTransaction();
+        AutoAnnotationIndex.getInstance().rebuild();
+        HibernateUtil.beginTransaction();
+
+        // feature is found (on the negative strand) in the reverse complement of the sequence
         Annotations annotations = new Annotations(account.getEmail());
+        FeaturedDNASequence generated = annotations.generate(new FeaturedDNASequence(
+                SequenceUtils.reverseComplement(dnaSequence.getSequence()), "test", false, new ArrayList<>(), ""));
+        Assert.assertNotNull(findFeature(generated, feature.getId(), -1));
+
         annotations.curate(features);
 
         sequenceFeatures = sequenceFeatureDAO.getEntrySequenceFeatures(plasmid);
         feature = sequenceFeatures.get(0).getFeature();
         Assert.assertTrue(feature.getCuration().isExclude());
+
+        generated = annotations.generate(new FeaturedDNASequence(dnaSequence.getSequence(), "test", false,
+                new ArrayList<>(), ""));
+        Assert.assertNull(findFeature(generated, feature.getId(), 1));
+
+        // included again
+        curation.setExclude(false);
+        annotations.curate(features);
+        generated = annotations.generate(plasmid.getId(), false);
+        DNAFeature found = findFeature(generated, feature.getId(), 1);
+        Assert.assertNotNull(found);
+        Assert.assertEquals(156, found.getLocations().get(0).getGenbankStart());
+        Assert.assertEquals(804, found.getLocations().get(0).getEnd());
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        Account account = AccountCreator.createTestAccount("AnnotationsTest.testGenerate", false);
+        Account other = AccountCreator.createTestAccount("AnnotationsTest.testGenerateOther", false);
+        Plasmid plasmid = TestEntryCreator.createTestPlasmid(account);
+        Plasmid otherPlasmid = TestEntryCreator.createTestPlasmid(other);
+
+        FeaturedDNASequence dnaSequence = GeneralParser.parse(sequenceString);
+        new PartSequence(account.getEmail(), plasmid.getRecordId()).save(dnaSequence);
+        new PartSequence(other.getEmail(), otherPlasmid.getRecordId()).save(GeneralParser.parse(sequenceString));
+        // the index is built from the committed features
+        HibernateUtil.commitTransaction();
+        AutoAnnotationIndex.getInstance().rebuild();
+        HibernateUtil.beginTransaction();
+
+        // entries of other users that cannot be read are not included
+        FeaturedDNASequence generated = new Annotations(account.getEmail()).generate(plasmid.getId(), false);
+        Assert.assertEquals(804, generated.getLength());
+        Assert.assertFalse(generated.getFeatures().isEmpty());
+        for (DNAFeature dnaFeature : generated.getFeatures()) {
+            Assert.assertTrue(dnaFeature.getEntries().contains(plasmid.getId()));
+            Assert.assertFalse(dnaFeature.getEntries().contains(otherPlasmid.getId()));
+        }
+
+        generated = new Annotations(other.getEmail()).generate(plasmid.getId(), true);
+        for (DNAFeature dnaFeature : generated.getFeatures()) {
+            Assert.assertEquals(1, dnaFeature.getEntries().size());
+            Assert.assertTrue(dnaFeature.getEntries().contains(otherPlasmid.getId()));
+        }
+    }
+
+    private static DNAFeature findFeature(FeaturedDNASequence sequence, long featureId, int strand) {
+        for (DNAFeature dnaFeature : sequence.getFeatures()) {
+            if (dnaFeature.getId() == featureId && dnaFeature.getStrand() == strand)
+                return dnaFeature;
+        }
+        return null;
     }
 
     private static String sequenceString =
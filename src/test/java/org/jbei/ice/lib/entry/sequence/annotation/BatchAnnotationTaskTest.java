@@ -0,0 +1,133 @@
+package org.jbei.ice.lib.entry.sequence.annotation;
+
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.lib.dto.BatchAnnotationStatus;
+import org.jbei.ice.lib.dto.ConfigurationKey;
+import org.jbei.ice.lib.dto.FeaturedDNASequence;
+import org.jbei.ice.lib.entry.sequence.PartSequence;
+import org.jbei.ice.lib.parsers.GeneralParser;
+import org.jbei.ice.lib.utils.Utils;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.*;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class BatchAnnotationTaskTest {
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.initializeMock();
+        HibernateUtil.beginTransaction();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        Account account = AccountCreator.createTestAccount("BatchAnnotationTaskTest.testExecute", false);
+        Account other = AccountCreator.createTestAccount("BatchAnnotationTaskTest.testExecuteOther", false);
+
+        // annotated sequence, the same sequence without annotations, one that cannot be read or edited and an entry
+        // without a sequence
+        Plasmid annotated = TestEntryCreator.createTestPlasmid(account);
+        FeaturedDNASequence dnaSequence = GeneralParser.parse(sequenceString);
+        new PartSequence(account.getEmail(), annotated.getRecordId()).save(dnaSequence);
+        Plasmid plasmid = TestEntryCreator.createTestPlasmid(account);
+        createSequence(plasmid, dnaSequence.getSequence());
+        Plasmid otherPlasmid = TestEntryCreator.createTestPlasmid(other);
+        createSequence(otherPlasmid, dnaSequence.getSequence());
+        Plasmid noSequence = TestEntryCreator.createTestPlasmid(account);
+        Feature feature = DAOFactory.getSequenceFeatureDAO().getEntrySequenceFeatures(annotated).get(0).getFeature();
+        // the index is built from the committed features
+        HibernateUtil.commitTransaction();
+        AutoAnnotationIndex.getInstance().rebuild();
+        HibernateUtil.beginTransaction();
+
+        // proposed annotations
+        BatchAnnotationTask task = new BatchAnnotationTask(account.getEmail(),
+                Arrays.asList(plasmid.getId(), otherPlasmid.getId(), noSequence.getId()), false);
+        task.execute();
+        HibernateUtil.beginTransaction();   // chunks are committed by the task
+        BatchAnnotationStatus status = BatchAnnotationTask.get(task.getProgress().getId()).getProgress();
+        Assert.assertEquals(3, status.getProcessed());
+        Assert.assertEquals(1, status.getAnnotated());
+        Assert.assertEquals(2, status.getSkipped());
+        Assert.assertEquals(0, status.getFailed());
+        Assert.assertNotNull(status.getResultFileId());
+        Path resultPath = Paths.get(Utils.getConfigValue(ConfigurationKey.TEMPORARY_DIRECTORY),
+                status.getResultFileId());
+        String result = new String(Files.readAllBytes(resultPath), StandardCharsets.UTF_8);
+        Files.delete(resultPath);
+        Assert.assertTrue(result.contains("\"entryId\":" + plasmid.getId() + ","));
+        Assert.assertFalse(result.contains("\"entryId\":" + otherPlasmid.getId() + ","));
+        Assert.assertTrue(DAOFactory.getSequenceFeatureDAO().getEntrySequenceFeatures(plasmid).isEmpty());
+
+        // applied annotations are not added again
+        task = new BatchAnnotationTask(account.getEmail(), Arrays.asList(annotated.getId(), plasmid.getId()), true);
+        task.execute();
+        HibernateUtil.beginTransaction();
+        status = task.getProgress();
+        Assert.assertEquals(1, status.getAnnotated());
+        Assert.assertNull(status.getResultFileId());
+
+        SequenceFeature added = null;
+        for (SequenceFeature sequenceFeature : DAOFactory.getSequenceFeatureDAO().getEntrySequenceFeatures(plasmid)) {
+            if (sequenceFeature.getFeature().getId() == feature.getId())
+                added = sequenceFeature;
+        }
+        Assert.assertNotNull(added);
+        Assert.assertEquals(1, added.getStrand());
+        Assert.assertEquals(156, (int) added.getUniqueGenbankStart());
+        Assert.assertEquals(804, (int) added.getUniqueEnd());
+
+        task = new BatchAnnotationTask(account.getEmail(), Arrays.asList(annotated.getId(), plasmid.getId()), true);
+        task.execute();
+        HibernateUtil.beginTransaction();
+        Assert.assertEquals(0, task.getProgress().getFeatureCount());
+    }
+
+    private static void createSequence(Entry entry, String sequenceString) {
+        Sequence sequence = new Sequence();
+        sequence.setSequence(sequenceString);
+        sequence.setEntry(entry);
+        DAOFactory.getSequenceDAO().create(sequence);
+    }
+
+    private static String sequenceString =
+            "LOCUS       pj5_00001                804 bp    dna     circular UNK \n" +
+                    "ACCESSION   pj5_00001\n" +
+                    "VERSION     pj5_00001.1\n" +
+                    "KEYWORDS    .\n" +
+                    "FEATURES             Location/Qualifiers\n" +
+                    "     misc_feature    156..804\n" +
+                    "                     /label=pSMR0100\n" +
+                    "ORIGIN      \n" +
+                    "        1 atgtcgaaag ctacatataa ggaacgtgct gctactcatc ctagtcctgt tgctgccaag\n" +
+                    "       61 ctatttaata tcatgcacga aaagcaaaca aacttgtgtg cttcattgga tgttcgtacc\n" +
+                    "      121 accaaggaat tactggagtt agttgaagca ttaggtccca aaatttgttt actaaaaaca\n" +
+                    "      181 catgtggata tcttgactga tttttccatg gagggcacag ttaagccgct aaaggcatta\n" +
+                    "      241 tccgccaagt acaatttttt actcttcgaa gacagaaaat ttgctgacat tggtaataca\n" +
+                    "      301 gtcaaattgc agtactctgc gggtgtatac agaatagcag aatgggcaga cattacgaat\n" +
+                    "      361 gcacacggtg tggtgggccc aggtattgtt agcggtttga agcaggcggc agaagaagta\n" +
+                    "      421 acaaaggaac ctagaggcct tttgatgtta gcagaattgt catgcaaggg ctccctatct\n" +
+                    "      481 actggagaat atactaaggg tactgttgac attgcgaaga gcgacaaaga ttttgttatc\n" +
+                    "      541 ggctttattg ctcaaagaga catgggtgga agagatgaag gttacgattg gttgattatg\n" +
+                    "      601 acacccggtg tgggtttaga tgacaaggga gatgcattgg gtcaacagta tagaaccgtg\n" +
+                    "      661 gatgatgtgg tttctacagg atctgacatt attattgttg gaagaggact atttgcaaag\n" +
+                    "      721 ggaagggatg ctaaggtaga gggtgaacgt tacagaaaag caggctggga agcatatttg\n" +
+                    "      781 agaagatgcg gccagcaaaa ctaa\n" +
+                    "//";
+}
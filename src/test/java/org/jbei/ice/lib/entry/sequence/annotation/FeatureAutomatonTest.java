@@ -0,0 +1,56 @@
+package org.jbei.ice.lib.entry.sequence.annotation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FeatureAutomatonTest {
+
+    // longer than the prefix depth so that the remainder of the feature is compared with the sequence
+    private static final String PROMOTER = "ttgacaatatcgatacttaagcgtacgatcggatc";
+
+    @Test
+    public void testScan() {
+        FeatureAutomaton automaton = new FeatureAutomaton(Arrays.asList(
+                FeatureAutomaton.IndexedFeature.create(1, "promoter", "promoter", PROMOTER),
+                FeatureAutomaton.IndexedFeature.create(2, "site", "misc_feature", "GAATTCC"),
+                FeatureAutomaton.IndexedFeature.create(3, "palindrome", "misc_feature", "gaattc")));
+        Assert.assertNull(FeatureAutomaton.IndexedFeature.create(4, "ambiguous", "misc_feature", "atgnnc"));
+
+        // positive strand, negative strand (reverse complement) and a mismatch after the prefix
+        String sequence = "cc" + PROMOTER + "ggaattcc" + "gatccgatcgtacgcttaagtatcgatattgtcaa" + "aa"
+                + PROMOTER.substring(0, 30) + "a";
+        Assert.assertEquals(Arrays.asList("1:1:3", "2:-1:38", "3:1:39", "2:1:39", "1:-1:46"),
+                scan(automaton, sequence, false));
+
+        // only the palindrome is reported (once) at each location
+        Assert.assertEquals(Arrays.asList("3:1:1", "3:1:10"), scan(automaton, "GAATTCaaagaattc", false));
+    }
+
+    @Test
+    public void testScanCircular() {
+        FeatureAutomaton automaton = new FeatureAutomaton(Arrays.asList(
+                FeatureAutomaton.IndexedFeature.create(1, "promoter", "promoter", PROMOTER),
+                FeatureAutomaton.IndexedFeature.create(2, "long", "misc_feature", PROMOTER + PROMOTER)));
+
+        // feature spans the end and start of the sequence
+        String sequence = PROMOTER.substring(10) + "aaaaa" + PROMOTER.substring(0, 10);
+        Assert.assertTrue(scan(automaton, sequence, false).isEmpty());
+        Assert.assertEquals(Arrays.asList("1:1:" + (sequence.length() - 9)), scan(automaton, sequence, true));
+
+        // features longer than the sequence are not matched
+        Assert.assertEquals(Arrays.asList("1:1:1"), scan(automaton, PROMOTER, true));
+        Assert.assertTrue(scan(automaton, "", true).isEmpty());
+    }
+
+    // matches as "id:strand:start" (1-based start)
+    private static List<String> scan(FeatureAutomaton automaton, String sequence, boolean circular) {
+        List<String> matches = new ArrayList<>();
+        automaton.scan(sequence, circular, (feature, strand, start) ->
+                matches.add(feature.getId() + ":" + strand + ":" + (start + 1)));
+        return matches;
+    }
+}
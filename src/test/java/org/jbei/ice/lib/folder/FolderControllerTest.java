@@ -1,20 +1,27 @@
 package org.jbei.ice.lib.folder;
 
 import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
 import org.jbei.ice.lib.access.PermissionsController;
 import org.jbei.ice.lib.dto.access.AccessPermission;
+import org.jbei.ice.lib.dto.entry.PartData;
 import org.jbei.ice.lib.dto.folder.FolderDetails;
+import org.jbei.ice.lib.entry.EntryPermissions;
 import org.jbei.ice.lib.group.GroupController;
+import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Folder;
+import org.jbei.ice.storage.model.Plasmid;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author Hector Plahar
@@ -55,6 +62,25 @@ public class FolderControllerTest {
         Assert.assertEquals(details.getName(), results.get(0).getName());
     }
 
+    @Test
+    public void testGetPublicEntries() throws Exception {
+        Account account = AccountCreator.createTestAccount("FolderControllerTest.testGetPublicEntries", false);
+        String userId = account.getEmail();
+        Plasmid plasmid = TestEntryCreator.createTestPlasmid(account);
+        new EntryPermissions(Long.toString(plasmid.getId()), userId).enablePublicReadAccess();
+
+        // entry whose view cannot be created
+        Plasmid invalid = TestEntryCreator.createTestPlasmid(account);
+        new EntryPermissions(Long.toString(invalid.getId()), userId).enablePublicReadAccess();
+        invalid.setCreationTime(null);
+        DAOFactory.getEntryDAO().update(invalid);
+
+        FolderDetails details = controller.getPublicEntries(ColumnField.PART_ID, 0, 1000, true, null);
+        List<Long> ids = details.getEntries().stream().map(PartData::getId).collect(Collectors.toList());
+        Assert.assertTrue(ids.contains(plasmid.getId()));
+        Assert.assertFalse(ids.contains(invalid.getId()));
+    }
+
     @Test
     public void testCreateNewFolder() throws Exception {
         Account account = AccountCreator.createTestAccount("testCreateNewFolder", false);
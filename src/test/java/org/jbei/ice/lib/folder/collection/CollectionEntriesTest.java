@@ -8,6 +8,7 @@ import org.jbei.ice.lib.dto.entry.Visibility;
 import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.PageCursor;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Entry;
 import org.junit.After;
@@ -15,6 +16,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * @author Hector Plahar
  */
@@ -40,6 +46,52 @@ public class CollectionEntriesTest {
         Assert.assertNotNull(results);
     }
 
+    @Test
+    public void testGetEntriesWithCursor() throws Exception {
+        Account account = AccountCreator.createTestAccount("CollectionEntriesTest.testGetEntriesWithCursor", false);
+        Set<Long> created = new HashSet<>();
+        for (int i = 0; i < 5; i += 1) {
+            long id = TestEntryCreator.createTestPart(account.getEmail());
+            created.add(id);
+
+            // entries with and without (null) alias
+            if (i % 2 == 0) {
+                Entry entry = DAOFactory.getEntryDAO().get(id);
+                entry.setAlias(i == 0 ? "alias" : "alias" + i);
+                DAOFactory.getEntryDAO().update(entry);
+            }
+        }
+
+        for (CollectionType type : new CollectionType[]{CollectionType.PERSONAL, CollectionType.AVAILABLE}) {
+            for (ColumnField sortField : new ColumnField[]{ColumnField.CREATED, ColumnField.NAME, ColumnField.ALIAS}) {
+                for (boolean asc : new boolean[]{false, true}) {
+                    CollectionEntries entries = new CollectionEntries(account.getEmail(), type);
+                    List<Long> ids = new ArrayList<>();
+                    String cursor = PageCursor.START;
+                    do {
+                        Results<PartData> results = entries.getEntries(sortField, asc, cursor, 2, null, null);
+                        Assert.assertTrue(results.getData().size() <= 2);
+
+                        // entries are only counted for the first page
+                        if (PageCursor.START.equals(cursor))
+                            Assert.assertTrue(results.getResultCount() >= created.size());
+                        else
+                            Assert.assertEquals(0, results.getResultCount());
+                        for (PartData data : results.getData())
+                            ids.add(data.getId());
+                        cursor = results.getNextCursor();
+                    } while (cursor != null && ids.size() <= created.size() * 10);
+
+                    // all entries retrieved exactly once
+                    Assert.assertEquals(ids.size(), new HashSet<>(ids).size());
+                    Assert.assertTrue(ids.containsAll(created));
+                    if (type == CollectionType.PERSONAL)
+                        Assert.assertEquals(created.size(), ids.size());
+                }
+            }
+        }
+    }
+
     @Test
     public void testGetPersonalEntries() throws Exception {
 
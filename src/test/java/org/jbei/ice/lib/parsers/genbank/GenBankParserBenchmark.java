@@ -0,0 +1,111 @@
+package org.jbei.ice.lib.parsers.genbank;
+
+import org.jbei.ice.lib.dto.FeaturedDNASequence;
+import org.jbei.ice.lib.utils.Utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the time and memory allocated to parse a large (generated) GenBank file with {@link GenBankParser} and
+ * with the previous line processing, which split each line using regular expressions. Not run as part of the tests;
+ * run with e.g.
+ * <code>java -cp target:target/test-classes:[dependencies] org.jbei.ice.lib.parsers.genbank.GenBankParserBenchmark
+ * [bases]</code>
+ */
+public class GenBankParserBenchmark {
+
+    private static final int WARM_UP_RUNS = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int bases = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        List<String> lines = createGenBank(bases);
+
+        for (int i = 0; i < WARM_UP_RUNS; i += 1) {
+            check(parse(lines), bases);
+            check(parseLegacy(lines), bases);
+        }
+
+        measure("current", lines, bases, false);
+        measure("legacy", lines, bases, true);
+    }
+
+    private static void measure(String name, List<String> lines, int bases, boolean legacy) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long time = 0;
+        long allocated = 0;
+        for (int i = 0; i < RUNS; i += 1) {
+            long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            String sequence = legacy ? parseLegacy(lines) : parse(lines);
+            time += System.nanoTime() - start;
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+            check(sequence, bases);
+        }
+        System.out.printf("%-8s %8.1f ms/op %10.1f MB/op%n", name, time / 1e6 / RUNS,
+                allocated / (1024.0 * 1024.0) / RUNS);
+    }
+
+    private static String parse(List<String> lines) {
+        return new GenBankParser().parse(lines.iterator()).getSequence();
+    }
+
+    // line processing (tag detection and origin section) as it was before the parser was made allocation-free
+    private static String parseLegacy(List<String> lines) {
+        FeaturedDNASequence sequence = new FeaturedDNASequence();
+        StringBuilder sequenceString = null;
+        for (String line : lines) {
+            String[] words = line.trim().isEmpty() ? new String[]{""} : line.split("\\s+");
+            GenbankTag tag = GenbankTag.getTagForString(words.length == 0 ? "" : words[0]);
+            if (tag != null)
+                sequenceString = tag == GenbankTag.ORIGIN ? new StringBuilder() : null;
+            if (sequenceString == null || line.contains("ORIGIN"))
+                continue;
+
+            if (line.trim().equals("//"))
+                sequence.setSequence(sequenceString.toString());
+
+            String[] chunks = line.trim().split("\\s+");
+            if (chunks[0].matches("\\d*"))
+                chunks[0] = "";
+            sequenceString.append(Utils.join("", Arrays.asList(chunks)).toLowerCase());
+        }
+        return sequence.getSequence();
+    }
+
+    private static List<String> createGenBank(int bases) {
+        List<String> lines = new ArrayList<>();
+        lines.add("LOCUS       benchmark           " + bases + " bp    DNA     circular UNK 01-JAN-2020");
+        lines.add("FEATURES             Location/Qualifiers");
+        lines.add("     misc_feature    1.." + bases);
+        lines.add("                     /label=benchmark");
+        lines.add("ORIGIN");
+
+        Random random = new Random(1);
+        char[] alphabet = {'A', 'C', 'G', 'T'};
+        StringBuilder line = new StringBuilder();
+        for (int position = 0; position < bases; position += 60) {
+            line.setLength(0);
+            line.append(String.format("%9d", position + 1));
+            for (int i = 0; i < 60 && position + i < bases; i += 1) {
+                if (i % 10 == 0)
+                    line.append(' ');
+                line.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            lines.add(line.toString());
+        }
+        lines.add("//");
+        return lines;
+    }
+
+    private static void check(String sequence, int bases) {
+        if (sequence == null || sequence.length() != bases)
+            throw new IllegalStateException("Unexpected sequence length");
+    }
+}
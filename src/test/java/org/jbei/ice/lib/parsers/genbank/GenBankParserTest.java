@@ -115,4 +115,28 @@ public class GenBankParserTest {
         Assert.assertNotNull(sequence2);
         Assert.assertEquals(3, sequence2.getFeatures().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseOrigin() throws Exception {
+        String genbank = "locus       test                     26 bp    DNA     circular\n" +
+                "ORIGIN\n" +
+                "        1 ATGCatgcat\tgcatgcatgc\r\n" +
+                "acgtac\n" +
+                "  //  \n";
+        FeaturedDNASequence sequence = new GenBankParser().parse(IOUtils.lineIterator(
+                new ByteArrayInputStream(genbank.getBytes()), Charset.defaultCharset()));
+        Assert.assertEquals("atgcatgcatgcatgcatgcacgtac", sequence.getSequence());
+        Assert.assertTrue(sequence.getIsCircular());
+        Assert.assertEquals("test", sequence.getName());
+    }
+
+    @Test
+    public void testGetTagForLine() {
+        Assert.assertEquals(GenbankTag.ORIGIN, GenbankTag.getTagForLine("ORIGIN"));
+        Assert.assertEquals(GenbankTag.LOCUS, GenbankTag.getTagForLine("locus       test   26 bp"));
+        Assert.assertEquals(GenbankTag.FEATURES, GenbankTag.getTagForLine("FEATURES\tLocation/Qualifiers"));
+        Assert.assertNull(GenbankTag.getTagForLine("  ORGANISM  Escherichia coli"));
+        Assert.assertNull(GenbankTag.getTagForLine("ORIGINAL"));
+        Assert.assertNull(GenbankTag.getTagForLine(""));
+    }
+}
@@ -0,0 +1,120 @@
+package org.jbei.ice.lib.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.hibernate.Session;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.Message;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+public class RebuildLuceneIndexTaskTest {
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.initializeMock();
+        HibernateUtil.beginTransaction();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        Account account = AccountCreator.createTestAccount("RebuildLuceneIndexTaskTest.testExecute", false);
+        long id = TestEntryCreator.createTestPart(account.getEmail());
+        Message message = new Message();
+        message.setFromEmail(account.getEmail());
+        message.setTitle("RebuildLuceneIndexTaskTest");
+        message.setDateSent(new Date());
+        message = DAOFactory.getMessageDAO().create(message);
+        HibernateUtil.commitTransaction();
+        purge(id);
+        purgeMessage(message.getId());
+        Assert.assertEquals(0, indexCount(id));
+        Assert.assertEquals(0, messageIndexCount(account.getEmail()));
+
+        HibernateUtil.beginTransaction();
+        new RebuildLuceneIndexTask().execute();
+        Assert.assertEquals(1, indexCount(id));
+        Assert.assertEquals(1, messageIndexCount(account.getEmail()));
+        Assert.assertFalse(RebuildLuceneIndexTask.hasCheckpoint());
+
+        IndexBuildStatus status = IndexerProgressMonitor.getInstance().getStatus();
+        Assert.assertEquals(0, status.getTotal());
+    }
+
+    @Test
+    public void testExecuteResume() throws Exception {
+        Account account = AccountCreator.createTestAccount("RebuildLuceneIndexTaskTest.testExecuteResume", false);
+        long id1 = TestEntryCreator.createTestPart(account.getEmail());
+        long id2 = TestEntryCreator.createTestPart(account.getEmail());
+        long id3 = TestEntryCreator.createTestPart(account.getEmail());
+        HibernateUtil.commitTransaction();
+        purge(id1, id2, id3);
+
+        // interrupted rebuild that indexed up to id1
+        HibernateUtil.beginTransaction();
+        Path checkpoint = RebuildLuceneIndexTask.getCheckpointPath();
+        Files.createDirectories(checkpoint.getParent());
+        Files.write(checkpoint, Long.toString(id1).getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(RebuildLuceneIndexTask.hasCheckpoint());
+
+        new RebuildLuceneIndexTask(true).execute();
+        Assert.assertEquals(0, indexCount(id1));
+        Assert.assertEquals(1, indexCount(id2));
+        Assert.assertEquals(1, indexCount(id3));
+        Assert.assertFalse(RebuildLuceneIndexTask.hasCheckpoint());
+    }
+
+    private void purge(long... ids) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            fullTextSession.beginTransaction();
+            for (long id : ids)
+                fullTextSession.purge(Entry.class, id);
+            fullTextSession.getTransaction().commit();
+        }
+    }
+
+    private void purgeMessage(long id) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            fullTextSession.beginTransaction();
+            fullTextSession.purge(Message.class, id);
+            fullTextSession.getTransaction().commit();
+        }
+    }
+
+    private int messageIndexCount(String fromEmail) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            return fullTextSession.createFullTextQuery(new TermQuery(new Term("fromEmail", fromEmail)),
+                    Message.class).getResultSize();
+        }
+    }
+
+    private int indexCount(long id) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            return fullTextSession.createFullTextQuery(new TermQuery(new Term("id", Long.toString(id))),
+                    Entry.class).getResultSize();
+        }
+    }
+}
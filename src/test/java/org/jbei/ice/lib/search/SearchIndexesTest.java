@@ -4,20 +4,32 @@ import org.jbei.ice.lib.AccountCreator;
 import org.jbei.ice.lib.dto.entry.EntryType;
 import org.jbei.ice.lib.dto.entry.PartData;
 import org.jbei.ice.lib.dto.entry.PlasmidData;
+import org.jbei.ice.lib.dto.search.BlastQuery;
 import org.jbei.ice.lib.dto.search.SearchQuery;
+import org.jbei.ice.lib.dto.search.SearchResult;
 import org.jbei.ice.lib.dto.search.SearchResults;
+import org.jbei.ice.lib.dto.group.UserGroup;
 import org.jbei.ice.lib.entry.Entries;
+import org.jbei.ice.lib.entry.EntryPermissions;
+import org.jbei.ice.lib.group.Groups;
 import org.jbei.ice.lib.shared.BioSafetyOption;
+import org.jbei.ice.lib.shared.ColumnField;
 import org.jbei.ice.storage.DAOFactory;
 import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.PageCursor;
+import org.jbei.ice.storage.hibernate.search.HibernateSearch;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.Sequence;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Hector Plahar
@@ -84,6 +96,27 @@ public class SearchIndexesTest {
         SearchResults results = controller.runSearch(account.getEmail(), query);
         Assert.assertNotNull(results);
         Assert.assertEquals(1, results.getResultCount());
+        Assert.assertEquals(1, results.getResults().size());
+        Assert.assertEquals(entry.getId(), results.getResults().get(0).getEntryInfo().getId());
+        Assert.assertTrue(results.getResults().get(0).getMaxScore() > 0);
+
+        // sort on field without doc values
+        query.getParameters().setSortField(ColumnField.PART_ID);
+        results = controller.runSearch(account.getEmail(), query);
+        Assert.assertNotNull(results);
+        Assert.assertEquals(1, results.getResults().size());
+        query.getParameters().setSortField(ColumnField.RELEVANCE);
+
+        // page larger than the index
+        query.getParameters().setStart(Integer.MAX_VALUE - 1);
+        query.getParameters().setRetrieveCount(Integer.MAX_VALUE);
+        results = controller.runSearch(account.getEmail(), query);
+        Assert.assertEquals(1, results.getResultCount());
+        Assert.assertTrue(results.getResults().isEmpty());
+        query.getParameters().setStart(0);
+        results = controller.runSearch(account.getEmail(), query);
+        Assert.assertEquals(1, results.getResults().size());
+        query.getParameters().setRetrieveCount(15);
 
         // case insensentive
         results = controller.runSearch(account.getEmail().toLowerCase(), query);
@@ -108,4 +141,216 @@ public class SearchIndexesTest {
         Assert.assertNotNull(results);
         Assert.assertEquals(0, results.getResultCount());
     }
+
+    @Test
+    public void testRunSearchWithCursor() throws Exception {
+        Account account = AccountCreator.createTestAccount("SearchIndexesTest.testRunSearchWithCursor", false);
+        for (int i = 0; i < 5; i += 1) {
+            PartData partData = new PartData(EntryType.PART);
+            partData.setBioSafetyLevel(BioSafetyOption.LEVEL_ONE.ordinal());
+            partData.setStatus("Complete");
+            partData.setName("cursorPart");
+            partData.setFundingSource("DOE");
+            partData.setPrincipalInvestigator("Nathan");
+            new Entries(account.getEmail()).create(partData);
+        }
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        for (ColumnField sortField : new ColumnField[]{ColumnField.RELEVANCE, ColumnField.PART_ID}) {
+            SearchQuery query = new SearchQuery();
+            query.setQueryString("cursorPart");
+            query.getParameters().setSortField(sortField);
+            query.getParameters().setRetrieveCount(5);
+            List<Long> expected = new ArrayList<>();
+            for (SearchResult result : controller.runSearch(account.getEmail(), query).getResults())
+                expected.add(result.getEntryInfo().getId());
+            Assert.assertEquals(5, expected.size());
+
+            // walk the results two at a time
+            List<Long> ids = new ArrayList<>();
+            query.getParameters().setRetrieveCount(2);
+            query.getParameters().setCursor(PageCursor.START);
+            SearchResults results;
+            do {
+                results = controller.runSearch(account.getEmail(), query);
+                Assert.assertEquals(5, results.getResultCount());
+                for (SearchResult result : results.getResults())
+                    ids.add(result.getEntryInfo().getId());
+                query.getParameters().setCursor(results.getNextCursor());
+            } while (results.getNextCursor() != null);
+            Assert.assertEquals(expected, ids);
+
+            // cursor is not valid for a different sort order
+            query.getParameters().setCursor(new PageCursor(sortField, false, 1f, "1").encode());
+            query.getParameters().setSortAscending(true);
+            try {
+                controller.runSearch(account.getEmail(), query);
+                Assert.fail("Expected invalid cursor");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRunSearchFacets() throws Exception {
+        Account account = AccountCreator.createTestAccount("SearchIndexesTest.testRunSearchFacets", false);
+        EntryType[] types = {EntryType.PART, EntryType.PART, EntryType.PLASMID};
+        String[] statuses = {"Complete", "Planned", "Complete"};
+        BioSafetyOption[] levels = {BioSafetyOption.LEVEL_ONE, BioSafetyOption.LEVEL_TWO, BioSafetyOption.LEVEL_ONE};
+        for (int i = 0; i < types.length; i += 1) {
+            PartData partData = new PartData(types[i]);
+            partData.setBioSafetyLevel(levels[i].getIntValue());
+            partData.setStatus(statuses[i]);
+            partData.setName("facetEntry");
+            partData.setFundingSource("DOE");
+            partData.setPrincipalInvestigator("Nathan");
+            if (types[i] == EntryType.PLASMID)
+                partData.setPlasmidData(new PlasmidData());
+            partData = new Entries(account.getEmail()).create(partData);
+
+            if (i == 1) {
+                Entry entry = DAOFactory.getEntryDAO().get(partData.getId());
+                Sequence sequence = new Sequence();
+                sequence.setSequence("atgcatgcatgc");
+                sequence.setEntry(entry);
+                entry.setSequence(DAOFactory.getSequenceDAO().create(sequence));
+            }
+        }
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        SearchQuery query = new SearchQuery();
+        query.setQueryString("facetEntry");
+        query.getParameters().setRetrieveCount(1);
+        SearchResults results = controller.runSearch(account.getEmail(), query);
+        Assert.assertNull(results.getFacets());
+
+        // counts are for all results, not just the page
+        query.getParameters().setRetrieveFacets(true);
+        results = controller.runSearch(account.getEmail(), query);
+        Assert.assertEquals(3, results.getResultCount());
+        Assert.assertEquals(1, results.getResults().size());
+        Map<String, Map<String, Long>> facets = results.getFacets();
+        Assert.assertNotNull(facets);
+        Assert.assertEquals(Long.valueOf(2), facets.get("recordType").get(EntryType.PART.getName()));
+        Assert.assertEquals(Long.valueOf(1), facets.get("recordType").get(EntryType.PLASMID.getName()));
+        Assert.assertEquals(Long.valueOf(2), facets.get("status").get("Complete"));
+        Assert.assertEquals(Long.valueOf(1), facets.get("status").get("Planned"));
+        Assert.assertEquals(Long.valueOf(2), facets.get("bioSafetyLevel").get("1"));
+        Assert.assertEquals(Long.valueOf(1), facets.get("bioSafetyLevel").get("2"));
+        Assert.assertEquals(Long.valueOf(1), facets.get("hasSequence").get("true"));
+        Assert.assertTrue(facets.get("hasSample").isEmpty());
+
+        // within the security filter
+        Account other = AccountCreator.createTestAccount("SearchIndexesTest.testRunSearchFacets2", false);
+        results = controller.runSearch(other.getEmail(), query);
+        Assert.assertEquals(0, results.getResultCount());
+        Assert.assertTrue(results.getFacets().get("recordType").isEmpty());
+    }
+
+    @Test
+    public void testRunSearchGroupMembership() throws Exception {
+        Account owner = AccountCreator.createTestAccount("SearchIndexesTest.testRunSearchGroupMembership", false);
+        Account member = AccountCreator.createTestAccount("SearchIndexesTest.testRunSearchGroupMembership2", false);
+
+        PartData partData = new PartData(EntryType.PART);
+        partData.setBioSafetyLevel(BioSafetyOption.LEVEL_ONE.ordinal());
+        partData.setStatus("Complete");
+        partData.setName("groupSharedPart");
+        partData.setFundingSource("DOE");
+        partData.setPrincipalInvestigator("Nathan");
+        partData = new Entries(owner.getEmail()).create(partData);
+
+        // share with (empty) group
+        UserGroup userGroup = new UserGroup();
+        userGroup.setLabel("search group");
+        userGroup.setDescription("search group");
+        Groups groups = new Groups(owner.getEmail());
+        userGroup = groups.addGroup(userGroup);
+        new EntryPermissions(Long.toString(partData.getId()), owner.getEmail()).addGroup(userGroup.getId(), false);
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        SearchQuery query = new SearchQuery();
+        query.setQueryString("groupSharedPart");
+        SearchResults results = controller.runSearch(member.getEmail(), query);
+        Assert.assertEquals(0, results.getResultCount());
+        Assert.assertEquals(1, controller.runSearch(owner.getEmail(), query).getResultCount());
+
+        // add member to group; cached filter for member should be invalidated
+        userGroup.getMembers().add(member.toDataTransferObject());
+        Assert.assertTrue(groups.update(userGroup.getId(), userGroup));
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        results = controller.runSearch(member.getEmail(), query);
+        Assert.assertEquals(1, results.getResultCount());
+    }
+
+    @Test
+    public void testFilterBlastResults() throws Exception {
+        Account account = AccountCreator.createTestAccount("SearchIndexesTest.testFilterBlastResults", false);
+        HashMap<String, SearchResult> blastResults = new HashMap<>();
+        for (int i = 0; i < 2; i += 1) {
+            PartData partData = new PartData(EntryType.PART);
+            partData.setBioSafetyLevel(BioSafetyOption.LEVEL_ONE.ordinal());
+            partData.setStatus("Complete");
+            partData.setName("blastPart" + i);
+            partData.setShortDescription("blast part summary " + i);
+            partData.setFundingSource("DOE");
+            partData.setPrincipalInvestigator("Nathan");
+            partData = new Entries(account.getEmail()).create(partData);
+
+            // blast hits only have the values in the blast output
+            PartData hit = new PartData(EntryType.PART);
+            hit.setId(partData.getId());
+            hit.setName(partData.getName());
+            SearchResult searchResult = new SearchResult();
+            searchResult.setEntryInfo(hit);
+            blastResults.put(Long.toString(partData.getId()), searchResult);
+        }
+        blastResults.put("-1", new SearchResult());
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        SearchResults results = HibernateSearch.getInstance().filterBlastResults(account.getEmail(), 0, 10,
+                new SearchQuery(), blastResults);
+        Assert.assertEquals(2, results.getResultCount());
+        Assert.assertEquals(2, results.getResults().size());
+        for (SearchResult result : results.getResults()) {
+            Assert.assertTrue(result.getEntryInfo().getShortDescription().startsWith("blast part summary"));
+            Assert.assertEquals(account.getEmail(), result.getEntryInfo().getOwnerEmail());
+        }
+    }
+
+    @Test
+    public void testRunSearchExactSequence() throws Exception {
+        Account account = AccountCreator.createTestAccount("SearchIndexesTest.testRunSearchExactSequence", false);
+        PartData partData = new PartData(EntryType.PART);
+        partData.setName("exactSequenceEntry");
+        partData = new Entries(account.getEmail()).create(partData);
+        Entry entry = DAOFactory.getEntryDAO().get(partData.getId());
+        Sequence sequence = new Sequence();
+        sequence.setSequence("gattacagattacaccgtgtgaacc");
+        sequence.setEntry(entry);
+        entry.setSequence(DAOFactory.getSequenceDAO().create(sequence));
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        SearchQuery query = new SearchQuery();
+        BlastQuery blastQuery = new BlastQuery();
+        blastQuery.setSequence("GATTACAGATTACACCGTGTGAACC");
+        blastQuery.setExactMatch(true);
+        query.setBlastQuery(blastQuery);
+        SearchResults results = controller.runSearch(account.getEmail(), query);
+        Assert.assertEquals(1, results.getResultCount());
+        Assert.assertEquals(partData.getId(), results.getResults().get(0).getEntryInfo().getId());
+
+        // no identical sequences
+        blastQuery.setSequence("gattacagattacaccgtgtgaac");
+        results = controller.runSearch(account.getEmail(), query);
+        Assert.assertEquals(0, results.getResultCount());
+    }
 }
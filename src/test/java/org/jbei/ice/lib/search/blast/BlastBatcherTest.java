@@ -0,0 +1,184 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BlastBatcherTest {
+
+    @Test
+    public void testIsBatchable() {
+        Assert.assertTrue(BlastBatcher.isBatchable("atgcatgc"));
+        Assert.assertFalse(BlastBatcher.isBatchable(">query\natgcatgc"));
+        Assert.assertFalse(BlastBatcher.isBatchable(" "));
+        Assert.assertFalse(BlastBatcher.isBatchable(null));
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        BlastBatcher batcher = new BlastBatcher(500, 3);
+        AtomicInteger runs = new AtomicInteger();
+        List<String> inputs = Collections.synchronizedList(new ArrayList<>());
+
+        // echoes the sequence of each query as a row for the query
+        BlastBatcher.BatchRunner runner = (input, handler) -> {
+            runs.incrementAndGet();
+            inputs.add(input);
+            String[] lines = input.split("\n");
+            for (int i = 0; i < lines.length; i += 2) {
+                handler.handle(new String[]{lines[i].substring(1), lines[i + 1], "1"});
+                handler.handle(new String[]{lines[i].substring(1), lines[i + 1], "2"});
+            }
+            return true;
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (String sequence : Arrays.asList("aaaa", "cccc", "gggg", "tttt")) {
+                futures.add(pool.submit(() -> {
+                    List<String> rows = new ArrayList<>();
+                    // only the first row for "cccc"
+                    Assert.assertTrue(batcher.run("blastn", sequence, row -> rows.add(String.join(",", row))
+                            && !"cccc".equals(row[0]), runner));
+                    return rows;
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i += 1) {
+                List<String> rows = futures.get(i).get(10, TimeUnit.SECONDS);
+                String sequence = Arrays.asList("aaaa", "cccc", "gggg", "tttt").get(i);
+                if ("cccc".equals(sequence))
+                    Assert.assertEquals(Collections.singletonList("cccc,1"), rows);
+                else
+                    Assert.assertEquals(Arrays.asList(sequence + ",1", sequence + ",2"), rows);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // first batch full at 3 queries
+        Assert.assertEquals(2, runs.get());
+        Assert.assertEquals(3, inputs.get(0).split("\n").length / 2);
+        Assert.assertTrue(inputs.get(0).startsWith(">q0\n"));
+    }
+
+    @Test
+    public void testCancelCheck() throws Exception {
+        BlastBatcher batcher = new BlastBatcher(200, 10);
+        AtomicInteger runnerChecks = new AtomicInteger();
+        BlastBatcher.BatchRunner runner = (input, handler) -> {
+            // the search of the first query is not cancelled since it is shared with the other queries
+            if (BlastExecutor.getCancelCheck() != null)
+                runnerChecks.incrementAndGet();
+            try {
+                Thread.sleep(BlastExecutor.CANCEL_CHECK_INTERVAL + 1000);
+            } catch (InterruptedException e) {
+                throw new BlastException(e);
+            }
+            return true;
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Boolean> search = () -> {
+                BlastExecutor.setCancelCheck(() -> true);
+                try {
+                    return batcher.run("blastn", "atgc", row -> true, runner);
+                } finally {
+                    BlastExecutor.setCancelCheck(null);
+                }
+            };
+            Future<Boolean> first = pool.submit(search);
+            Thread.sleep(50);
+            Future<Boolean> second = pool.submit(search);
+
+            // other queries of the batch stop waiting for it when they are cancelled
+            try {
+                second.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected cancellation");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof BlastException);
+            }
+            Assert.assertTrue(first.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, runnerChecks.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRunFailedBatch() throws Exception {
+        BlastBatcher batcher = new BlastBatcher(500, 10);
+        AtomicInteger runs = new AtomicInteger();
+
+        // fails for any input with the invalid query
+        BlastBatcher.BatchRunner runner = (input, handler) -> {
+            runs.incrementAndGet();
+            if (input.contains("xxxx"))
+                throw new BlastException("invalid query");
+            String[] lines = input.split("\n");
+            for (int i = 0; i < lines.length; i += 2)
+                handler.handle(new String[]{lines[i].substring(1), lines[i + 1]});
+            return true;
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (String sequence : Arrays.asList("aaaa", "xxxx", "cccc")) {
+                futures.add(pool.submit(() -> {
+                    List<String> rows = new ArrayList<>();
+                    Assert.assertTrue(batcher.run("blastn", sequence, row -> rows.add(row[0]), runner));
+                    return rows;
+                }));
+                Thread.sleep(20);
+            }
+
+            // the valid queries of the failed batch are run again on their own
+            Assert.assertEquals(Collections.singletonList("aaaa"), futures.get(0).get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(Collections.singletonList("cccc"), futures.get(2).get(10, TimeUnit.SECONDS));
+            try {
+                futures.get(1).get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected exception");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof BlastException);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(4, runs.get());
+    }
+
+    @Test
+    public void testRunException() throws Exception {
+        BlastBatcher batcher = new BlastBatcher(200, 10);
+        BlastBatcher.BatchRunner runner = (input, handler) -> {
+            throw new BlastException("failed");
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; i += 1)
+                futures.add(pool.submit(() -> batcher.run("blastn", "atgc", row -> true, runner)));
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    Assert.fail("Expected exception");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof BlastException);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
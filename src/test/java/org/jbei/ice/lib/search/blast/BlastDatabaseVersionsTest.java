@@ -0,0 +1,63 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class BlastDatabaseVersionsTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("blast-versions");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        // file from before versioning
+        Files.write(dir.resolve("ice.nsq"), new byte[]{0});
+
+        BlastDatabaseVersions versions = BlastDatabaseVersions.get(dir);
+        Assert.assertNull(versions.getCurrent());
+        Assert.assertNull(versions.acquire());
+
+        Path first = versions.create();
+        Assert.assertFalse(versions.isUnused(first));
+        Assert.assertNull(versions.getCurrent());
+        versions.publish(first);
+        Assert.assertEquals(first, versions.getCurrent());
+        Assert.assertTrue(versions.isUnused(first));
+        Assert.assertFalse(Files.exists(dir.resolve("ice.nsq")));
+
+        // search in progress while second version is published
+        BlastDatabaseVersions.Version version = versions.acquire();
+        Assert.assertEquals(first, version.getPath());
+        Path second = versions.create();
+        Assert.assertNotEquals(first, second);
+        versions.publish(second);
+        Assert.assertEquals(second, versions.getCurrent());
+        Assert.assertTrue(Files.exists(first));
+
+        // deleted once search completes
+        version.close();
+        Assert.assertFalse(Files.exists(first));
+
+        // failed build
+        Path third = versions.create();
+        versions.discard(third);
+        Assert.assertFalse(Files.exists(third));
+        Assert.assertEquals(second, versions.getCurrent());
+        Assert.assertTrue(Files.exists(second));
+    }
+}
@@ -0,0 +1,148 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.search.BlastQueueStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uses common shell commands in place of the blast programs
+ */
+public class BlastExecutorTest {
+
+    private BlastExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new BlastExecutor(1, 1, 10000);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        List<String> values = new ArrayList<>();
+        Assert.assertTrue(executor.run(new String[]{"cat"}, "1,one\n2,two\n", row -> values.add(row[1])));
+        Assert.assertEquals(Arrays.asList("one", "two"), values);
+
+        // stopped by handler
+        values.clear();
+        Assert.assertTrue(executor.run(new String[]{"sh", "-c", "echo 1,one; echo 2,two; exec sleep 10"}, "",
+                row -> values.add(row[1]) && values.size() < 2));
+        Assert.assertEquals(Arrays.asList("one", "two"), values);
+
+        BlastQueueStatus status = executor.getStatus();
+        Assert.assertEquals(2, status.getCompleted());
+        Assert.assertEquals(0, status.getRunning());
+        Assert.assertEquals(0, status.getQueued());
+    }
+
+    @Test
+    public void testLargeOutput() throws Exception {
+        // input and error output larger than the pipe buffers
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50000; i += 1)
+            input.append(i).append(",row").append(i).append('\n');
+        List<String> values = new ArrayList<>();
+        Assert.assertTrue(executor.run(new String[]{"cat"}, input.toString(), row -> values.add(row[1])));
+        Assert.assertEquals(50000, values.size());
+        Assert.assertEquals("row49999", values.get(49999));
+
+        values.clear();
+        Assert.assertTrue(executor.run(new String[]{"sh", "-c", "head -c 1000000 /dev/zero >&2; echo 1,one"}, "",
+                row -> values.add(row[1])));
+        Assert.assertEquals(Arrays.asList("one"), values);
+        Assert.assertFalse(executor.run(new String[]{"sh", "-c", "echo error >&2; exit 1"}, "", row -> true));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        executor.configure(1, 1, 200);
+        long start = System.currentTimeMillis();
+        try {
+            executor.run(new String[]{"sleep", "10"}, "", row -> true);
+            Assert.fail("Expected timeout");
+        } catch (BlastException e) {
+            Assert.assertTrue(e.getCause() instanceof ProgramTookTooLongException);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(1, executor.getStatus().getTimedOut());
+    }
+
+    @Test
+    public void testCancelCheck() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+        BlastExecutor.setCancelCheck(() -> checks.incrementAndGet() > 1);
+        long start = System.currentTimeMillis();
+        try {
+            executor.run(new String[]{"sleep", "10"}, "", row -> true);
+            Assert.fail("Expected cancellation");
+        } catch (BlastException e) {
+            Assert.assertEquals("Blast search cancelled", e.getMessage());
+        } finally {
+            BlastExecutor.setCancelCheck(null);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 8000);
+        Assert.assertEquals(2, checks.get());
+        Assert.assertEquals(1, executor.getStatus().getCancelled());
+
+        // searches that complete between checks are not affected
+        Assert.assertTrue(executor.run(new String[]{"cat"}, "1,one\n", row -> true));
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread first = new Thread(() -> run(new String[]{"sh", "-c", "echo 1,one; exec sleep 10"}, started));
+        first.start();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // waits for the running search
+        Thread second = new Thread(() -> run(new String[]{"cat"}, null));
+        second.start();
+        long start = System.currentTimeMillis();
+        while (executor.getStatus().getQueued() == 0 && System.currentTimeMillis() - start < 5000)
+            Thread.sleep(10);
+        Assert.assertEquals(1, executor.getStatus().getRunning());
+        Assert.assertEquals(1, executor.getStatus().getQueued());
+
+        try {
+            executor.run(new String[]{"cat"}, "", row -> true);
+            Assert.fail("Expected rejection");
+        } catch (BlastQueueFullException e) {
+            Assert.assertEquals(1, executor.getStatus().getRejected());
+        }
+
+        // cancelling the running search kills the process
+        first.interrupt();
+        first.join(5000);
+        second.join(5000);
+        Assert.assertFalse(first.isAlive());
+        Assert.assertFalse(second.isAlive());
+        Assert.assertEquals(1, executor.getStatus().getCancelled());
+        Assert.assertEquals(0, executor.getStatus().getRunning());
+    }
+
+    private void run(String[] command, CountDownLatch started) {
+        try {
+            executor.run(command, "", row -> {
+                if (started != null)
+                    started.countDown();
+                return true;
+            });
+        } catch (BlastException e) {
+            // expected when cancelled
+        }
+    }
+}
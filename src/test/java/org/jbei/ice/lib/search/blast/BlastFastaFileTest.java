@@ -0,0 +1,68 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class BlastFastaFileTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("blast-fasta");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        BlastFastaFile source = new BlastFastaFile(dir);
+        source.createNew();
+        Assert.assertTrue(source.write(Arrays.asList(">1:0,plasmid,one,P1\natgc\natgc\n",
+                ">2:0,part,two, with comma,P2\nggcc\n", ">3:0,strain,three,P3\nttaa\n")));
+
+        BlastFastaFile target = new BlastFastaFile(Files.createDirectory(dir.resolve("target")));
+        target.createNew();
+        source.copy(target, record -> !record.getPartNumber().equals("P2"));
+        Assert.assertEquals(">1:0,plasmid,one,P1\natgc\natgc\n\n>3:0,strain,three,P3\nttaa\n\n", read(target));
+
+        // target index is maintained on copy and write
+        Assert.assertTrue(target.write(Collections.singleton(">4:0,part,four,P4\ncc\n")));
+        BlastFastaFile copy = new BlastFastaFile(Files.createDirectory(dir.resolve("copy")));
+        copy.createNew();
+        target.copy(copy, record -> !record.getSubjectId().equals("1:0"));
+        Assert.assertEquals(">3:0,strain,three,P3\nttaa\n\n>4:0,part,four,P4\ncc\n\n", read(copy));
+    }
+
+    @Test
+    public void testIndexRebuilt() throws Exception {
+        BlastFastaFile source = new BlastFastaFile(dir);
+        source.createNew();
+        Assert.assertTrue(source.write(Collections.singleton(">1:0,plasmid,one,P1\natgc\n")));
+
+        // index rebuilt after fasta file is changed directly
+        Files.write(source.getFilePath(), ">5:0,part,five,P5\naa\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        BlastFastaFile target = new BlastFastaFile(Files.createDirectory(dir.resolve("target")));
+        target.createNew();
+        source.copy(target, record -> record.getSubjectId().startsWith("5"));
+        Assert.assertEquals(">5:0,part,five,P5\naa\n", read(target));
+    }
+
+    private static String read(BlastFastaFile fastaFile) throws Exception {
+        return new String(Files.readAllBytes(fastaFile.getFilePath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.dto.entry.EntryType;
+import org.jbei.ice.lib.dto.entry.PartData;
+import org.jbei.ice.lib.dto.search.BlastProgram;
+import org.jbei.ice.lib.dto.search.SearchResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class BlastResultCacheTest {
+
+    private static final String[] OPTIONS = new String[]{"-outfmt", "10 stitle"};
+
+    @Test
+    public void testGetKey() {
+        Path version = Paths.get("blast", "v1");
+        String key = BlastResultCache.getKey(BlastProgram.BLAST_N, OPTIONS, version, "ATGC atgc\n");
+        Assert.assertEquals(key, BlastResultCache.getKey(BlastProgram.BLAST_N, OPTIONS, version, "atgcatgc"));
+        Assert.assertNotEquals(key, BlastResultCache.getKey(BlastProgram.TBLAST_X, OPTIONS, version, "atgcatgc"));
+        Assert.assertNotEquals(key, BlastResultCache.getKey(BlastProgram.BLAST_N, OPTIONS, Paths.get("blast", "v2"),
+                "atgcatgc"));
+        Assert.assertNotEquals(key, BlastResultCache.getKey(BlastProgram.BLAST_N, new String[]{"-outfmt", "10"},
+                version, "atgcatgc"));
+    }
+
+    @Test
+    public void testGetAndPut() throws Exception {
+        BlastResultCache cache = new BlastResultCache(2, 60000);
+        long generation = cache.getGeneration();
+        Assert.assertNull(cache.get("one", 10));
+        cache.put("one", generation, createHits(1, 2));
+
+        LinkedHashMap<String, SearchResult> hits = cache.get("one", 12);
+        Assert.assertNotNull(hits);
+        Assert.assertEquals("1", hits.keySet().iterator().next());
+        Assert.assertEquals(12, hits.get("2").getQueryLength());
+        Assert.assertEquals("P2", hits.get("2").getEntryInfo().getPartId());
+
+        // cached hits are not changed by changes to the returned hits
+        hits.remove("1");
+        hits.get("2").getEntryInfo().setShortDescription("summary");
+        hits = cache.get("one", 12);
+        Assert.assertEquals(2, hits.size());
+        Assert.assertNull(hits.get("2").getEntryInfo().getShortDescription());
+
+        // least recently used discarded
+        cache.put("two", generation, createHits(3));
+        cache.get("one", 12);
+        cache.put("three", generation, createHits(4));
+        Assert.assertNotNull(cache.get("one", 12));
+        Assert.assertNull(cache.get("two", 12));
+
+        // not cached if invalidated while searching
+        cache.invalidate();
+        Assert.assertNull(cache.get("one", 12));
+        cache.put("one", generation, createHits(1));
+        Assert.assertNull(cache.get("one", 12));
+        cache.put("one", cache.getGeneration(), createHits(1));
+        Assert.assertNotNull(cache.get("one", 12));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        BlastResultCache cache = new BlastResultCache(10, 50);
+        cache.put("one", cache.getGeneration(), createHits(1));
+        Assert.assertNotNull(cache.get("one", 10));
+        Thread.sleep(100);
+        Assert.assertNull(cache.get("one", 10));
+    }
+
+    private static Map<String, SearchResult> createHits(long... ids) {
+        Map<String, SearchResult> hits = new LinkedHashMap<>();
+        for (long id : ids) {
+            PartData view = new PartData(EntryType.PART);
+            view.setId(id);
+            view.setPartId("P" + id);
+            SearchResult result = new SearchResult();
+            result.setEntryInfo(view);
+            result.setScore(id);
+            hits.put(Long.toString(id), result);
+        }
+        return hits;
+    }
+}
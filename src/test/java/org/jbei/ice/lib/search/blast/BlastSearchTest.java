@@ -0,0 +1,70 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.apache.commons.io.FileUtils;
+import org.jbei.ice.lib.dto.search.SearchResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class BlastSearchTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("blast-search");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        List<String> labels = new ArrayList<>();
+        String output = "1,one,gene,1\n\n2,two,promoter,1\n3,three,gene,-1\n";
+        Assert.assertFalse(BlastSearch.read(new StringReader(output), row -> labels.add(row[1])));
+        Assert.assertEquals(Arrays.asList("one", "two", "three"), labels);
+
+        // stopped by handler
+        labels.clear();
+        Assert.assertTrue(BlastSearch.read(new StringReader(output), row -> labels.add(row[1]) && labels.size() < 2));
+        Assert.assertEquals(Arrays.asList("one", "two"), labels);
+    }
+
+    @Test
+    public void testBlastHits() throws Exception {
+        BlastVolumes volumes = new BlastVolumes(dir, "ice");
+        int volume = volumes.newVolume();
+        volumes.addVolume(volume, Collections.singleton(3L), null);
+
+        String output = String.join("\n",
+                "1:0,plasmid,one,P1,1,20,1,20,plus,1e-5,30.1,15,20,20",
+                "1:0,plasmid,one,P1,5,10,5,10,plus,1e-2,10.1,5,6,6",
+                "2:0,part,two,P2,1,20,1,20,plus,1e-5,30.1,25,20,20",
+                "3:0,strain,three,P3,1,20,1,20,plus,1e-5,30.1,40,20,20",     // replaced by delta volume
+                "3:" + volume + ",strain,three,P3,1,20,1,20,plus,1e-5,30.1,12,20,19",
+                "4:0,part,four,P4,1,20,1,20,plus,1e-5,30.1,10,20,20");
+
+        StandardBlastDatabase.BlastHits hits = new StandardBlastDatabase.BlastHits(volumes, 20, 3);
+        Assert.assertTrue(BlastSearch.read(new StringReader(output), hits));
+        Map<String, SearchResult> results = hits.getResults();
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), new ArrayList<>(results.keySet()));
+        Assert.assertEquals(15f, results.get("1").getScore(), 0f);
+        Assert.assertEquals(12f, results.get("3").getScore(), 0f);
+        Assert.assertEquals(19, results.get("3").getNident());
+        Assert.assertEquals("P2", results.get("2").getEntryInfo().getPartId());
+        Assert.assertEquals(20, results.get("2").getQueryLength());
+    }
+}
@@ -0,0 +1,134 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class BlastVolumesTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("blast-volumes");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    @Test
+    public void testSubjectId() {
+        String subjectId = BlastVolumes.subjectId(123, 4);
+        Assert.assertEquals(123, BlastVolumes.getEntryId(subjectId));
+        Assert.assertEquals(4, BlastVolumes.getVolume(subjectId));
+
+        // records without a volume are in the base volume
+        Assert.assertEquals(123, BlastVolumes.getEntryId("123"));
+        Assert.assertEquals(BlastVolumes.BASE, BlastVolumes.getVolume("123"));
+    }
+
+    @Test
+    public void testAddAndDelete() throws Exception {
+        BlastVolumes volumes = new BlastVolumes(dir, "ice");
+        Assert.assertTrue(volumes.isLive(1, BlastVolumes.BASE));
+        Assert.assertTrue(volumes.isLive(2, BlastVolumes.BASE));
+
+        // sequence of entry 1 changed
+        int volume = volumes.newVolume();
+        volumes.addVolume(volume, Collections.singleton(1L), null);
+        Assert.assertFalse(volumes.isLive(1, BlastVolumes.BASE));
+        Assert.assertTrue(volumes.isLive(BlastVolumes.subjectId(1, volume)));
+        Assert.assertEquals(volume, volumes.getActiveVolume(2).intValue());
+        Assert.assertEquals("TITLE ice\nDBLIST ice_base ice_delta_" + volume + "\n",
+                new String(Files.readAllBytes(volumes.getAliasPath()), StandardCharsets.UTF_8));
+
+        // entry 2 deleted
+        volumes.delete(2);
+        Assert.assertFalse(volumes.isLive(BlastVolumes.subjectId(2, BlastVolumes.BASE)));
+        Assert.assertEquals(2, volumes.getChangedCount());
+
+        // active volume replaced
+        Files.write(volumes.getFastaPath(volume), Collections.singleton(">1:" + volume + ",plasmid,one,P1"));
+        int next = volumes.newVolume();
+        volumes.addVolume(next, new HashSet<>(Arrays.asList(1L, 3L)), volume);
+        Assert.assertEquals(Collections.singletonList(next), volumes.getDeltas());
+        Assert.assertTrue(Files.exists(volumes.getFastaPath(volume)));
+        volumes.deleteRetired();
+        Assert.assertFalse(Files.exists(volumes.getFastaPath(volume)));
+        Assert.assertTrue(volumes.isLive(3, next));
+        Assert.assertNull(volumes.getActiveVolume(2));
+
+        // state is reloaded
+        BlastVolumes reloaded = new BlastVolumes(dir, "ice");
+        Assert.assertTrue(reloaded.exists());
+        Assert.assertEquals(Collections.singletonList(next), reloaded.getDeltas());
+        Assert.assertTrue(reloaded.isLive(1, next));
+        Assert.assertFalse(reloaded.isLive(2, BlastVolumes.BASE));
+        Assert.assertTrue(next < reloaded.newVolume());
+
+        // base rebuilt
+        reloaded.reset();
+        Assert.assertTrue(reloaded.getDeltas().isEmpty());
+        Assert.assertTrue(reloaded.isLive(2, BlastVolumes.BASE));
+        Assert.assertEquals("TITLE ice\nDBLIST ice_base\n",
+                new String(Files.readAllBytes(reloaded.getAliasPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        BlastVolumes volumes = new BlastVolumes(dir, "ice");
+        int volume = volumes.newVolume();
+        volumes.addVolume(volume, Collections.singleton(1L), null);
+        volumes.delete(2);
+
+        BlastVolumes snapshot = volumes.snapshot();
+        Assert.assertEquals(Collections.singletonList(volume), snapshot.getDeltas());
+
+        // changes after the snapshot are not visible in it
+        int next = volumes.newVolume();
+        volumes.addVolume(next, Collections.singleton(3L), null);
+        volumes.delete(Arrays.asList(1L, 2L, 4L));
+        Assert.assertEquals(Collections.singletonList(volume), snapshot.getDeltas());
+        Assert.assertTrue(snapshot.isLive(1, volume));
+        Assert.assertTrue(snapshot.isLive(3, BlastVolumes.BASE));
+        Assert.assertFalse(volumes.isLive(1, volume));
+
+        // entry 2 was already deleted when the snapshot was taken
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 4L)), volumes.getDeletedSince(snapshot));
+    }
+
+    @Test
+    public void testCopyLiveRecords() throws Exception {
+        BlastVolumes volumes = new BlastVolumes(dir, "ice");
+        Path base = dir.resolve("BlastFastaFile");
+        Files.write(base, Arrays.asList(">1,plasmid,one,P1", "atgc", "atgc", ">2:0,part,two, with comma,P2",
+                "ggcc", ">3,strain,three,P3", "ttaa"));
+
+        int volume = volumes.newVolume();
+        volumes.addVolume(volume, Collections.singleton(2L), null);
+        volumes.delete(3);
+
+        StringWriter writer = new StringWriter();
+        Set<Long> entryIds = new HashSet<>();
+        volumes.copyLiveRecords(BlastVolumes.BASE, base, writer, volume, Collections.emptySet(), entryIds);
+        Assert.assertEquals(">1:" + volume + ",plasmid,one,P1\natgc\natgc\n", writer.toString());
+        Assert.assertEquals(Collections.singleton(1L), entryIds);
+
+        writer = new StringWriter();
+        entryIds.clear();
+        volumes.copyLiveRecords(BlastVolumes.BASE, base, writer, BlastVolumes.BASE, Collections.singleton(1L),
+                entryIds);
+        Assert.assertEquals("", writer.toString());
+        Assert.assertTrue(entryIds.isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package org.jbei.ice.lib.search.blast;
+
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.lib.dto.search.SearchResult;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.Sequence;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+public class ExactSequenceSearchTest {
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.initializeMock();
+        HibernateUtil.beginTransaction();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testNormalize() {
+        Assert.assertEquals("atgcnn", ExactSequenceSearch.normalize(">seq1 description\n1 ATGC nn\r\n"));
+        Assert.assertEquals("", ExactSequenceSearch.normalize(" 10 20 "));
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        Account account = AccountCreator.createTestAccount("ExactSequenceSearchTest.testRun", false);
+        long id = TestEntryCreator.createTestPart(account.getEmail());
+        Entry entry = DAOFactory.getEntryDAO().get(id);
+        Sequence sequence = new Sequence();
+        sequence.setSequence("ttgaccagtacgatcgatcgaaacctg");
+        sequence.setEntry(entry);
+        entry.setSequence(DAOFactory.getSequenceDAO().create(sequence));
+
+        ExactSequenceSearch search = new ExactSequenceSearch();
+        LinkedHashMap<String, SearchResult> results = search.run(">query\nTTGACCAGTA CGATCGATCG\nAAACCTG");
+        Assert.assertEquals(1, results.size());
+        SearchResult result = results.get(Long.toString(id));
+        Assert.assertNotNull(result);
+        Assert.assertEquals(entry.getPartNumber(), result.getEntryInfo().getPartId());
+        Assert.assertEquals(27, result.getNident());
+
+        // reverse complement
+        Assert.assertEquals(1, search.getMatchingEntries("caggtttcgatcgatcgtactggtcaa").size());
+
+        // similar but not identical
+        Assert.assertTrue(search.run("ttgaccagtacgatcgatcgaaacct").isEmpty());
+    }
+}
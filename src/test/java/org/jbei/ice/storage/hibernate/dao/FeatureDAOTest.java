@@ -0,0 +1,66 @@
+package org.jbei.ice.storage.hibernate.dao;
+
+import org.hibernate.Session;
+import org.jbei.ice.lib.utils.SequenceUtils;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateRepositoryTest;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.hibernate.ScrollableRows;
+import org.jbei.ice.storage.model.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class FeatureDAOTest extends HibernateRepositoryTest {
+
+    private FeatureDAO featureDAO = new FeatureDAO();
+
+    @Test
+    public void testScrollAnnotationFeatures() throws Exception {
+        Feature feature = createFeature("feature", "ggcctt");
+        Feature unnamed = createFeature("", "ttaagg");
+        Feature excluded = createFeature("excluded", "gcatgc");
+        FeatureCurationModel curation = new FeatureCurationModel();
+        curation.setFeature(excluded);
+        curation.setExclude(true);
+        curation = DAOFactory.getFeatureCurationModelDAO().create(curation);
+        excluded.setCuration(curation);
+        featureDAO.update(excluded);
+
+        HibernateUtil.commitTransaction();
+
+        Map<Long, Object[]> rows = new HashMap<>();
+        try (Session session = HibernateUtil.newSession()) {
+            session.beginTransaction();
+            try (ScrollableRows results = featureDAO.scrollAnnotationFeatures(session, 2)) {
+                while (results.hasNext()) {
+                    Object[] row = results.next();
+                    rows.put(((Number) row[0]).longValue(), row);
+                }
+            }
+            session.getTransaction().rollback();
+        }
+        HibernateUtil.beginTransaction();
+
+        Object[] row = rows.get(feature.getId());
+        Assert.assertNotNull(row);
+        Assert.assertEquals(4, row.length);
+        Assert.assertEquals("feature", row[1]);
+        Assert.assertEquals("misc_feature", row[2]);
+        Assert.assertEquals("ggcctt", row[3]);
+
+        Assert.assertFalse(rows.containsKey(unnamed.getId()));
+        Assert.assertFalse(rows.containsKey(excluded.getId()));
+    }
+
+    private Feature createFeature(String name, String sequence) {
+        Feature feature = new Feature();
+        feature.setName(name);
+        feature.setGenbankType("misc_feature");
+        feature.setSequence(sequence);
+        feature.setHash(SequenceUtils.calculateSequenceHash(sequence));
+        return featureDAO.create(feature);
+    }
+}
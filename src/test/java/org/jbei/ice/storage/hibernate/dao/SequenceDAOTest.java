@@ -6,6 +6,7 @@ import org.jbei.ice.lib.dto.FeaturedDNASequence;
 import org.jbei.ice.lib.entry.sequence.SequenceUtil;
 import org.jbei.ice.lib.parsers.GeneralParser;
 import org.jbei.ice.storage.hibernate.HibernateRepositoryTest;
+import org.jbei.ice.storage.hibernate.ScrollableRows;
 import org.jbei.ice.storage.model.Account;
 import org.jbei.ice.storage.model.Plasmid;
 import org.jbei.ice.storage.model.Sequence;
@@ -13,6 +14,9 @@ import org.jbei.ice.storage.model.Strain;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -196,6 +200,33 @@ public class SequenceDAOTest extends HibernateRepositoryTest {
         Assert.assertTrue(sequenceDAO.hasSequence(plasmid3.getId()));
     }
 
+    @Test
+    public void testGetEntryIdsWithSequence() throws Exception {
+        Account account = AccountCreator.createTestAccount("SequenceDAOTest.testGetEntryIdsWithSequence", false);
+        Plasmid plasmid1 = TestEntryCreator.createTestPlasmid(account);
+        Plasmid plasmid2 = TestEntryCreator.createTestPlasmid(account);
+
+        // create sequence for plasmid1 only
+        FeaturedDNASequence dnaSequence = GeneralParser.parse(sequenceString);
+        Sequence sequence = SequenceUtil.dnaSequenceToSequence(dnaSequence);
+        Assert.assertNotNull(sequence);
+        sequence.setEntry(plasmid1);
+        sequence.setSequenceUser(sequenceString);
+        sequence = sequenceDAO.create(sequence);
+        Assert.assertNotNull(sequence);
+
+        List<Long> ids = Arrays.asList(plasmid1.getId(), plasmid2.getId());
+        List<Long> result = sequenceDAO.getEntryIdsWithSequence(ids);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(plasmid1.getId(), result.get(0).longValue());
+
+        result = sequenceDAO.getEntryIdsWithOriginalSequence(ids);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(plasmid1.getId(), result.get(0).longValue());
+
+        Assert.assertTrue(sequenceDAO.getEntryIdsWithSequence(new ArrayList<>()).isEmpty());
+    }
+
     @Test
     public void testGetSequenceFilename() throws Exception {
         Account account = AccountCreator.createTestAccount("SequenceDAOTest.testGetSequenceFilename", false);
@@ -311,6 +342,34 @@ public class SequenceDAOTest extends HibernateRepositoryTest {
         Assert.assertTrue(sequenceDAO.getSequenceCount() >= 4);
     }
 
+    @Test
+    public void testScrollBlastSequences() throws Exception {
+        Account account = AccountCreator.createTestAccount("SequenceDAOTest.testScrollBlastSequences", false);
+        Plasmid plasmid = TestEntryCreator.createTestPlasmid(account);
+        Assert.assertNotNull(plasmid);
+
+        Sequence sequence = new Sequence();
+        sequence.setSequence("atgcatgc");
+        sequence.setEntry(plasmid);
+        sequenceDAO.create(sequence);
+
+        boolean found = false;
+        try (ScrollableRows rows = sequenceDAO.scrollBlastSequences(1)) {
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                if (((Number) row[0]).longValue() != plasmid.getId())
+                    continue;
+
+                found = true;
+                Assert.assertEquals(plasmid.getRecordType(), row[1]);
+                Assert.assertEquals(plasmid.getName(), row[2]);
+                Assert.assertEquals(plasmid.getPartNumber(), row[3]);
+                Assert.assertEquals("atgcatgc", row[4]);
+            }
+        }
+        Assert.assertTrue(found);
+    }
+
 //    @Test
 //    public void testUpdateSequence() throws Exception {
 //        // create account and sequence
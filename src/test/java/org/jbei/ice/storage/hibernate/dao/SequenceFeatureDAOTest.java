@@ -0,0 +1,68 @@
+package org.jbei.ice.storage.hibernate.dao;
+
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.lib.utils.SequenceUtils;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateRepositoryTest;
+import org.jbei.ice.storage.model.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class SequenceFeatureDAOTest extends HibernateRepositoryTest {
+
+    private SequenceFeatureDAO dao = new SequenceFeatureDAO();
+
+    @Test
+    public void testGetEntryIdsByFeatures() throws Exception {
+        Account account = AccountCreator.createTestAccount("SequenceFeatureDAOTest.testGetEntryIdsByFeatures", false);
+        Plasmid plasmid1 = TestEntryCreator.createTestPlasmid(account);
+        Plasmid plasmid2 = TestEntryCreator.createTestPlasmid(account);
+        Sequence sequence1 = createSequence(plasmid1);
+        Sequence sequence2 = createSequence(plasmid2);
+
+        Feature shared = createFeature("shared", "atgcatgcat");
+        Feature single = createFeature("single", "ggccttaagg");
+        Feature unannotated = createFeature("unannotated", "ccggaattcc");
+        annotate(sequence1, shared);
+        annotate(sequence1, shared);
+        annotate(sequence2, shared);
+        annotate(sequence2, single);
+
+        Map<Long, List<Long>> result = dao.getEntryIdsByFeatures(
+                Arrays.asList(shared.getId(), single.getId(), unannotated.getId()));
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(plasmid1.getId(), plasmid2.getId())),
+                new HashSet<>(result.get(shared.getId())));
+        Assert.assertEquals(2, result.get(shared.getId()).size());
+        Assert.assertEquals(Collections.singletonList(plasmid2.getId()), result.get(single.getId()));
+        Assert.assertTrue(dao.getEntryIdsByFeatures(new ArrayList<>()).isEmpty());
+    }
+
+    private Sequence createSequence(Entry entry) {
+        Sequence sequence = new Sequence();
+        sequence.setSequence("atgcatgcatggccttaagg");
+        sequence.setEntry(entry);
+        return DAOFactory.getSequenceDAO().create(sequence);
+    }
+
+    private Feature createFeature(String name, String sequence) {
+        Feature feature = new Feature();
+        feature.setName(name);
+        feature.setGenbankType("misc_feature");
+        feature.setSequence(sequence);
+        feature.setHash(SequenceUtils.calculateSequenceHash(sequence));
+        return DAOFactory.getFeatureDAO().create(feature);
+    }
+
+    private void annotate(Sequence sequence, Feature feature) {
+        SequenceFeature sequenceFeature = new SequenceFeature();
+        sequenceFeature.setSequence(sequence);
+        sequenceFeature.setFeature(feature);
+        sequenceFeature.setStrand(1);
+        sequenceFeature.setName(feature.getName());
+        dao.create(sequenceFeature);
+    }
+}
@@ -0,0 +1,102 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.hibernate.Session;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.lib.dto.folder.FolderType;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Entry;
+import org.jbei.ice.storage.model.Folder;
+import org.jbei.ice.storage.model.Message;
+import org.junit.*;
+
+import java.util.Date;
+
+/**
+ * Runs (in a separate test execution) with the {@link EntryIndexQueue#ASYNC_PROPERTY} system property enabled
+ */
+public class AsyncIndexingTest {
+
+    @BeforeClass
+    public static void runOnce() {
+        HibernateUtil.initializeMock();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.beginTransaction();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testIndexEntry() throws Exception {
+        Assert.assertTrue(EntryIndexQueue.getInstance().isRunning());
+
+        Account account = AccountCreator.createTestAccount("AsyncIndexingTest.testIndexEntry", false);
+        long id = TestEntryCreator.createTestPart(account.getEmail());
+        HibernateUtil.commitTransaction();
+
+        Assert.assertTrue(EntryIndexQueue.getInstance().awaitIdle(10000));
+        Assert.assertEquals(1, indexCount(Entry.class, "id", Long.toString(id)));
+
+        // deleted entries are removed from the index
+        HibernateUtil.beginTransaction();
+        DAOFactory.getEntryDAO().delete(DAOFactory.getEntryDAO().get(id));
+        HibernateUtil.commitTransaction();
+        Assert.assertTrue(EntryIndexQueue.getInstance().awaitIdle(10000));
+        Assert.assertEquals(0, indexCount(Entry.class, "id", Long.toString(id)));
+        HibernateUtil.beginTransaction();
+    }
+
+    @Test
+    public void testIndexFolderContents() throws Exception {
+        Account account = AccountCreator.createTestAccount("AsyncIndexingTest.testIndexFolderContents", false);
+        long id = TestEntryCreator.createTestPart(account.getEmail());
+        Folder folder = new Folder("AsyncIndexingTest");
+        folder.setOwnerEmail(account.getEmail());
+        folder.setType(FolderType.PRIVATE);
+        folder.getContents().add(DAOFactory.getEntryDAO().get(id));
+        DAOFactory.getFolderDAO().create(folder);
+        HibernateUtil.commitTransaction();
+
+        Assert.assertTrue(EntryIndexQueue.getInstance().awaitIdle(10000));
+        Assert.assertEquals(1, indexCount(Entry.class, "id", Long.toString(id)));
+        HibernateUtil.beginTransaction();
+    }
+
+    @Test
+    public void testIndexMessage() throws Exception {
+        // messages are indexed in the transaction that creates them
+        Message message = new Message();
+        message.setFromEmail("AsyncIndexingTest.testIndexMessage");
+        message.setTitle("title");
+        message.setMessage("message");
+        message.setDateSent(new Date());
+        message = DAOFactory.getMessageDAO().create(message);
+        HibernateUtil.commitTransaction();
+        Assert.assertEquals(1, indexCount(Message.class, "fromEmail", "AsyncIndexingTest.testIndexMessage"));
+
+        HibernateUtil.beginTransaction();
+        DAOFactory.getMessageDAO().delete(DAOFactory.getMessageDAO().get(message.getId()));
+        HibernateUtil.commitTransaction();
+        Assert.assertEquals(0, indexCount(Message.class, "fromEmail", "AsyncIndexingTest.testIndexMessage"));
+        HibernateUtil.beginTransaction();
+    }
+
+    private int indexCount(Class<?> type, String field, String value) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            return fullTextSession.createFullTextQuery(new TermQuery(new Term(field, value)), type).getResultSize();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.lib.dto.entry.AutoCompleteField;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Plasmid;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class AutoCompleteIndexTest {
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.initializeMock();
+        HibernateUtil.beginTransaction();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testKeys() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("jbx_012345", "012345")),
+                AutoCompleteIndex.keys(AutoCompleteField.PART_NUMBER, "JBx_012345"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("puc19", "19")),
+                AutoCompleteIndex.keys(AutoCompleteField.SELECTION_MARKERS, "pUC19"));
+        Assert.assertEquals(Collections.singleton("puc19 plasmid"),
+                AutoCompleteIndex.keys(AutoCompleteField.NAME, "pUC19 plasmid"));
+    }
+
+    @Test
+    public void testGetMatches() throws Exception {
+        AutoCompleteIndex index = AutoCompleteIndex.getInstance();
+        Account account = AccountCreator.createTestAccount("AutoCompleteIndexTest.testGetMatches", false);
+        Plasmid plasmid = TestEntryCreator.createTestPlasmid(account);
+        HibernateUtil.commitTransaction();
+
+        // loaded from the database
+        HibernateUtil.beginTransaction();
+        String partNumber = plasmid.getPartNumber();
+        List<String> results = index.getMatches(AutoCompleteField.PART_NUMBER, partNumber.toLowerCase(), 5, null);
+        Assert.assertEquals(Collections.singletonList(partNumber), results);
+        String number = partNumber.substring(partNumber.lastIndexOf('_') + 1);
+        results = index.getMatches(AutoCompleteField.PART_NUMBER, number, 5, Collections.singleton("plasmid"));
+        Assert.assertTrue(results.contains(partNumber));
+        results = index.getMatches(AutoCompleteField.PART_NUMBER, partNumber, 5, Collections.singleton("strain"));
+        Assert.assertTrue(results.isEmpty());
+
+        // updated on commit
+        plasmid = (Plasmid) DAOFactory.getEntryDAO().get(plasmid.getId());
+        plasmid.setOriginOfReplication("acUniqueOri, acOtherOri");
+        plasmid.setAlias("acAlias");
+        DAOFactory.getEntryDAO().update(plasmid);
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        Assert.assertEquals(Collections.singletonList("acUniqueOri"),
+                index.getMatches(AutoCompleteField.ORIGIN_OF_REPLICATION, "acuniq", 5, null));
+        Assert.assertEquals(Collections.singletonList("acOtherOri"),
+                index.getMatches(AutoCompleteField.ORIGIN_OF_REPLICATION, "ACOTHER", 5, null));
+        Assert.assertEquals(Collections.singletonList("acAlias"),
+                index.getMatches(AutoCompleteField.ALIAS, "acal", 5, null));
+
+        plasmid = (Plasmid) DAOFactory.getEntryDAO().get(plasmid.getId());
+        plasmid.setAlias("acAlias2");
+        DAOFactory.getEntryDAO().update(plasmid);
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        Assert.assertEquals(Collections.singletonList("acAlias2"),
+                index.getMatches(AutoCompleteField.ALIAS, "acal", 5, null));
+    }
+}
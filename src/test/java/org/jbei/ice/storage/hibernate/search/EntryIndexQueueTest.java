@@ -0,0 +1,131 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.hibernate.Session;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Entry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+public class EntryIndexQueueTest {
+
+    private EntryIndexQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.initializeMock();
+        HibernateUtil.beginTransaction();
+        queue = new EntryIndexQueue();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.stop(10000);
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testAdd() {
+        queue.add(Arrays.asList(1L, 2L), Collections.emptyList());
+        queue.add(Arrays.asList(2L, 3L), Collections.singletonList(1L));
+        Assert.assertEquals(4, queue.getPendingCount());
+        Assert.assertTrue(queue.getLag() >= 0);
+        Assert.assertFalse(queue.isRunning());
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        Account account = AccountCreator.createTestAccount("EntryIndexQueueTest.testIndex", false);
+        long id = TestEntryCreator.createTestPart(account.getEmail());
+        HibernateUtil.commitTransaction();
+        Assert.assertEquals(1, indexCount(id));
+
+        // remove from index and have queue restore it
+        purge(id);
+
+        queue.add(Collections.singletonList(id), Collections.emptyList());
+        queue.start();
+        Assert.assertTrue(queue.awaitIdle(10000));
+        Assert.assertEquals(0, queue.getPendingCount());
+        Assert.assertEquals(0, queue.getLag());
+        Assert.assertEquals(1, queue.getIndexedCount());
+        Assert.assertEquals(1, indexCount(id));
+        HibernateUtil.beginTransaction();
+    }
+
+    @Test
+    public void testAddWhenFull() throws Exception {
+        Account account = AccountCreator.createTestAccount("EntryIndexQueueTest.testAddWhenFull", false);
+        long id1 = TestEntryCreator.createTestPart(account.getEmail());
+        long id2 = TestEntryCreator.createTestPart(account.getEmail());
+        HibernateUtil.commitTransaction();
+        purge(id1);
+        purge(id2);
+
+        // updates that do not fit in the queue are indexed by the caller instead of waiting for space
+        Properties properties = new Properties();
+        properties.setProperty(EntryIndexQueue.QUEUE_SIZE_PROPERTY, "1");
+        queue.configure(properties);
+        queue.start();
+        queue.add(Arrays.asList(id1, id2), Collections.emptyList());
+        Assert.assertEquals(1, indexCount(id2));
+        Assert.assertTrue(queue.awaitIdle(10000));
+        Assert.assertEquals(1, indexCount(id1));
+        Assert.assertEquals(2, queue.getIndexedCount());
+        HibernateUtil.beginTransaction();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        Account account = AccountCreator.createTestAccount("EntryIndexQueueTest.testRetry", false);
+        long id = TestEntryCreator.createTestPart(account.getEmail());
+        HibernateUtil.commitTransaction();
+        purge(id);
+
+        // entries of a failed batch are indexed again
+        queue.retry(Collections.singletonList(id));
+        Assert.assertEquals(1, queue.getPendingCount());
+        queue.start();
+        Assert.assertTrue(queue.awaitIdle(10000));
+        Assert.assertEquals(1, indexCount(id));
+        Assert.assertEquals(1, queue.getIndexedCount());
+        Assert.assertEquals(0, queue.getFailedCount());
+
+        // until they fail too many times
+        for (int i = 0; i < 3; i += 1)
+            queue.retry(Collections.singletonList(-1L));
+        Assert.assertEquals(1, queue.getFailedCount());
+        Assert.assertTrue(queue.awaitIdle(10000));
+        HibernateUtil.beginTransaction();
+    }
+
+    private void purge(long id) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            fullTextSession.beginTransaction();
+            fullTextSession.purge(Entry.class, id);
+            fullTextSession.getTransaction().commit();
+        }
+        Assert.assertEquals(0, indexCount(id));
+    }
+
+    private int indexCount(long id) {
+        try (Session session = HibernateUtil.newSession()) {
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            return fullTextSession.createFullTextQuery(new TermQuery(new Term("id", Long.toString(id))),
+                    Entry.class).getResultSize();
+        }
+    }
+}
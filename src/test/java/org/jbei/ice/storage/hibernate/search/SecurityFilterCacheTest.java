@@ -0,0 +1,66 @@
+package org.jbei.ice.storage.hibernate.search;
+
+import org.apache.lucene.search.Query;
+import org.jbei.ice.lib.AccountCreator;
+import org.jbei.ice.lib.TestEntryCreator;
+import org.jbei.ice.lib.dto.folder.FolderType;
+import org.jbei.ice.lib.group.GroupController;
+import org.jbei.ice.storage.DAOFactory;
+import org.jbei.ice.storage.hibernate.HibernateUtil;
+import org.jbei.ice.storage.model.Account;
+import org.jbei.ice.storage.model.Folder;
+import org.jbei.ice.storage.model.Permission;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SecurityFilterCacheTest {
+
+    @Before
+    public void setUp() throws Exception {
+        HibernateUtil.initializeMock();
+        HibernateUtil.beginTransaction();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateUtil.commitTransaction();
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        Account account = AccountCreator.createTestAccount("SecurityFilterCacheTest.testInvalidate", false);
+        Account other = AccountCreator.createTestAccount("SecurityFilterCacheTest.testInvalidateOther", false);
+        new GroupController().createOrRetrievePublicGroup();
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        SecurityFilterCache cache = SecurityFilterCache.getInstance();
+        Query filter = cache.getFilter(account.getEmail());
+        Query otherFilter = cache.getFilter(other.getEmail());
+        Assert.assertSame(filter, cache.getFilter(account.getEmail()));
+
+        // entry permissions do not change the filters
+        TestEntryCreator.createTestPlasmid(account);
+        HibernateUtil.commitTransaction();
+        HibernateUtil.beginTransaction();
+        Assert.assertSame(filter, cache.getFilter(account.getEmail()));
+
+        // folder permission only changes the filter of the account it is for
+        Folder folder = new Folder("SecurityFilterCacheTest");
+        folder.setType(FolderType.PRIVATE);
+        folder.setOwnerEmail(other.getEmail());
+        folder = DAOFactory.getFolderDAO().create(folder);
+        Permission permission = new Permission();
+        permission.setAccount(account);
+        permission.setFolder(folder);
+        permission.setCanRead(true);
+        DAOFactory.getPermissionDAO().create(permission);
+        HibernateUtil.commitTransaction();
+
+        HibernateUtil.beginTransaction();
+        Assert.assertNotSame(filter, cache.getFilter(account.getEmail()));
+        Assert.assertSame(otherFilter, cache.getFilter(other.getEmail()));
+    }
+}